@@ -7,9 +7,17 @@
 
 package tigercat;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 import tigercat.instruction.*;
 
 import static java.lang.System.exit;
@@ -21,6 +29,14 @@ public class Assembler
    */
   public static final int MACHINE_CODE_START = 0x0; // Machine code starts at the top of memory
 
+  /**
+   * Version of the assembler's output. Change it whenever the same source would assemble
+   * differently, or its result would be sent or stored differently, so a client is never
+   * answered by a daemon that encodes differently (see AssemblerDaemon), and results
+   * cached by an older assembler are not reused (see BuildCache)
+   */
+  public static final String VERSION = "1.2";
+
   /**
    * Comments start with this symbol
    */
@@ -41,321 +57,851 @@ public class Assembler
    * followed by LABEL_SUFFIX
    */
   public static final String LABEL_REGEX = "\\s*[A-Z_0-9]+";
+
+  /**
+   * A data label is followed by a line holding only this directive
+   */
+  public static final String DATA_DIRECTIVE = ".data";
+
+  /**
+   * Number of statements each task of a parallel pass works on
+   */
+  public static final int PARALLEL_CHUNK_SIZE = 4096;
+
+  /**
+   * Number of characters of assembly each task of a parallel first pass works on
+   */
+  public static final int PARALLEL_CHUNK_LENGTH = 64 * 1024;
+  
+  /**
+   * Pooled encoding memos holding more distinct encodings than this are emptied, so a
+   * long-lived assembler does not grow without bound
+   */
+  public static final int MEMO_POOL_LIMIT = 64 * 1024;
   
-  public Assembler()
+  private final EncodingContext context;
+  private final ForkJoinPool pool;
+
+  // Scratch encoding memos, reused across encodeStatements calls and assemblies
+  private final ConcurrentLinkedQueue<EncodingMemo> memoPool = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Create an assembler which encodes with the default ISA tables
+   *
+   * @throws XmlLookupException If the default ISA tables cannot be loaded
+   */
+  public Assembler() throws XmlLookupException
+  {
+    this(EncodingContext.getDefault());
+  }
+
+  /**
+   * Create an assembler which encodes with the given context
+   *
+   * For testability, the assembler should have no class-level data other than the
+   * immutable context, so any number of assemblers may share one context and run at once
+   *
+   * @param context The ISA tables and configuration to encode with
+   */
+  public Assembler(EncodingContext context)
+  {
+    this(context, null);
+  }
+
+  /**
+   * Create an assembler which encodes large programs in parallel on the given pool
+   *
+   * @param context The ISA tables and configuration to encode with
+   * @param pool The pool to run parallel passes on, or null to run them one line at a time
+   */
+  public Assembler(EncodingContext context, ForkJoinPool pool)
   {
-    // For testability, the assembler should have no class-level data
+    this.context = context;
+    this.pool = pool;
   }
   
   /**
    * Convert the passed TigerCat assembly code to machine code
+   * 
+   * Prints the errors and exits if there are any, otherwise prints the labels, as the
+   * command line does. Use assembleToResult to assemble without printing or exiting.
+   * 
    * @param assembly Assembly code to assemble
    * @return A machine-code representation of the passed assembly
    */
   public byte[] assemble(String assembly)
   {
-    byte[] machineCode = null;
-    ArrayList<AssemblerException> exceptionList = new ArrayList<>();
-
-    HashMap<String, Label> labelMapping = firstPass(assembly, exceptionList);
-    if (exceptionList.size() > 0)
+    AssemblyResult result = assembleToResult(assembly);
+    result.printWarnings(System.err);
+    result.print(System.out);
+    if (!result.isSuccess())
     {
-      System.out.println("First-Pass Errors:");
-      printExceptions(exceptionList);
       exit(1);
     }
-    
-    machineCode = secondPass(assembly, labelMapping, exceptionList);
+    return result.getImage();
+  }
 
-    if(exceptionList.size() > 0) {
-      System.out.println("Second-Pass Errors:");
-      printExceptions(exceptionList);
-      exit(1);
+  /**
+   * Convert the passed TigerCat assembly code to machine code, returning the image,
+   * labels and any errors instead of printing them
+   * 
+   * The second pass only runs if the first finds no errors.
+   * 
+   * @param assembly Assembly code to assemble
+   * @return The result, whose image is null if there were errors
+   */
+  public AssemblyResult assembleToResult(String assembly)
+  {
+    return assembleToResult(assembly, null, null);
+  }
+
+  /**
+   * Convert the passed TigerCat assembly code to machine code, as assembleToResult(String),
+   * timing each pass and counting the lines, instructions and labels of the program
+   * 
+   * @param assembly Assembly code to assemble
+   * @param stats Where to record the timings and counts, or null not to
+   * @return The result, whose image is null if there were errors
+   */
+  public AssemblyResult assembleToResult(String assembly, AssemblyStats stats)
+  {
+    return assembleToResult(assembly, null, stats);
+  }
+
+  /**
+   * Convert the passed TigerCat assembly code to machine code, as assembleToResult(String,
+   * AssemblyStats), naming its source in Flight Recorder events (see AssemblyEvent)
+   * 
+   * @param assembly Assembly code to assemble
+   * @param source The file the assembly was read from, or null
+   * @param stats Where to record the timings and counts, or null not to
+   * @return The result, whose image is null if there were errors
+   */
+  public AssemblyResult assembleToResult(String assembly, String source, AssemblyStats stats)
+  {
+    ArrayList<AssemblerException> firstPassErrors = new ArrayList<>();
+    ArrayList<AssemblerException> secondPassErrors = new ArrayList<>();
+
+    AssemblyEvent event = new AssemblyEvent();
+    boolean recording = event.isEnabled();
+    event.begin();
+
+    if (stats != null)
+    {
+      stats.startPhase("firstPass");
     }
-    
-    String[] orderedLabels = new String[labelMapping.keySet().size()];
-    labelMapping.keySet().toArray(orderedLabels);
-    Arrays.sort(orderedLabels);
-    
-    for (String labelName : orderedLabels)
+    long firstPassStart = recording ? System.nanoTime() : 0;
+    Program program = firstPass(assembly, firstPassErrors);
+    long firstPassEnd = recording ? System.nanoTime() : 0;
+    if (stats != null)
     {
-      System.out.println(labelName + ": 0x" + Integer.toHexString(labelMapping.get(labelName).getValue()));
+      stats.endPhase();
     }
-    
-    return machineCode;
+
+    byte[] machineCode = null;
+    if (firstPassErrors.isEmpty())
+    {
+      if (stats != null)
+      {
+        stats.startPhase("secondPass");
+      }
+      machineCode = secondPass(program, secondPassErrors);
+      if (stats != null)
+      {
+        stats.endPhase();
+      }
+    }
+
+    if (recording)
+    {
+      event.end();
+      if (event.shouldCommit())
+      {
+        event.source = source;
+        event.sourceLength = assembly.length();
+        event.instructions = program.getStatements().size();
+        event.imageSize = machineCode == null ? 0 : machineCode.length;
+        event.firstPassDuration = firstPassEnd - firstPassStart;
+        event.secondPassDuration = machineCode == null ? 0 : System.nanoTime() - firstPassEnd;
+        event.success = machineCode != null && secondPassErrors.isEmpty();
+        event.commit();
+      }
+    }
+
+    if (stats != null)
+    {
+      stats.countLines(assembly);
+      stats.countProgram(program);
+    }
+    return new AssemblyResult(machineCode, program.getLabelMapping(), firstPassErrors, secondPassErrors,
+        program.getWarnings());
+  }
+
+  /**
+   * Assemble the assembly read from input as a pipeline, writing the machine code to
+   * output while the rest is still being read (see AssemblyPipeline)
+   * 
+   * If there are errors, some of the machine code may already have been written.
+   * 
+   * @param input Assembly code to assemble
+   * @param output Where to write the machine code
+   * @return The result, without an image, since it was written to output
+   */
+  public AssemblyResult assemble(Reader input, WritableByteChannel output) throws IOException
+  {
+    AssemblyPipeline pipeline = new AssemblyPipeline(this);
+    pipeline.run(input, output);
+    return pipeline.getResult();
+  }
+
+  /**
+   * Assemble the file at input in bounded memory, reading it once per pass and writing
+   * the machine code to output as it is encoded (see StreamingAssembly)
+   * 
+   * Second-pass errors are only found once some of the machine code has been written.
+   * 
+   * @param input Assembly file to assemble
+   * @param output Where to write the machine code
+   * @return The result, without an image, since it was written to output
+   */
+  public AssemblyResult assemble(Path input, WritableByteChannel output) throws IOException
+  {
+    StreamingAssembly assembly = new StreamingAssembly(this);
+    assembly.run(input, output);
+
+    return new AssemblyResult(null, assembly.getLabelMapping(), assembly.getFirstPassErrors(),
+        assembly.getSecondPassErrors(), assembly.getWarnings());
   }
   
   /**
-   * Collect a mapping of label names (strings) to address (integers)
+   * Take an encoding memo from the pool, or create one if every pooled memo is in use
+   * 
+   * Memos are keyed by resolved tokens, which encode the same way in every program with
+   * the same context, so a pooled memo stays valid from one assembly to the next.
+   */
+  private EncodingMemo acquireMemo()
+  {
+    EncodingMemo memo = memoPool.poll();
+    return memo != null ? memo : new EncodingMemo(context);
+  }
+
+  private void releaseMemo(EncodingMemo memo)
+  {
+    if (memo.size() > MEMO_POOL_LIMIT)
+    {
+      memo.clear();
+    }
+    memoPool.offer(memo);
+  }
+
+  /**
+   * Parse every line once, collecting a mapping of label names (strings) to address (integers)
+   * and the instructions to be encoded by the second pass
+   * 
+   * With a pool, large programs are split into chunks of whole lines which are parsed in
+   * parallel, each as if it started at address zero and line zero. A prefix sum over the
+   * chunk sizes then rebases every address, and labels are defined chunk by chunk, in line
+   * order, so duplicates and diagnostics are exactly those of a single pass over the lines.
+   * 
    * @param assembly Assembly lines to parse
-   * @return Mapping of strings to addresses
+   * @return The parsed program, including the mapping of strings to addresses
+   */
+  protected Program firstPass(String assembly, ArrayList<AssemblerException> exceptionList)
+  {
+    Program program = new Program(assembly);
+    HashMap<String, Label> labelMapping = program.getLabelMapping();
+    String separator = Lexer.lineSeparator();
+
+    int[] boundaries;
+    if (pool == null)
+    {
+      boundaries = new int[] { 0, Integer.MAX_VALUE };
+    } else
+    {
+      boundaries = Lexer.chunk(assembly, separator, PARALLEL_CHUNK_LENGTH);
+    }
+
+    ParsedChunk[] chunks = new ParsedChunk[boundaries.length - 1];
+    if (chunks.length == 1)
+    {
+      chunks[0] = parseChunk(assembly, separator, boundaries[0], boundaries[1]);
+    } else
+    {
+      pool.invoke(new ParseTask(assembly, separator, boundaries, chunks, 0, chunks.length));
+    }
+
+    //  For each chunk, in order:
+    //    Rebase its lines and addresses by the lines and sizes of the chunks before it
+    //    Define its labels, catching any defined twice
+    //    Collect its diagnostics, in line order
+    //  For each label in the labelMapping:
+    //    Ignore address-type labels
+    //    Store address to data-type labels by using the offset at the end of the machine code
+    //      and incrementing it by the size of each label encountered
+
+    int lineOffset = 0;
+    int offsetAddress = MACHINE_CODE_START; // Offset from the first instruction
+    for (ParsedChunk chunk : chunks)
+    {
+      mergeChunk(chunk, program, labelMapping, lineOffset, offsetAddress, exceptionList);
+      lineOffset += chunk.lineCount;
+      offsetAddress += chunk.size;
+    }
+
+    //printExceptions(exceptionList);
+    return program;
+  }
+
+  /**
+   * Rebase a parsed chunk to where it starts in the program, define its labels and
+   * collect its diagnostics
+   * 
+   * Chunks must be merged in order, since the first definition of a label wins.
+   * 
+   * @param chunk The chunk, as parsed by parseChunk
+   * @param program Where to add the statements of the chunk
+   * @param labelMapping The labels defined by the chunks before this one
+   * @param lineOffset Number of lines before the chunk
+   * @param offsetAddress Address of the start of the chunk
+   * @param exceptionList Where to add diagnostics, in line order
    */
-  protected HashMap<String, Label> firstPass(String assembly, ArrayList<AssemblerException> exceptionList)
+  void mergeChunk(ParsedChunk chunk, Program program, Map<String, Label> labelMapping, int lineOffset,
+                  int offsetAddress, List<AssemblerException> exceptionList)
   {
-    HashMap<String, Label> labelMapping = new HashMap<String, Label>();
-    Integer offsetAddress = MACHINE_CODE_START; // Offset from the first instruction
-    int lineIndex = 0;
+    for (LineRecord record : chunk.records)
+    {
+      int lineIndex = record.lineIndex + lineOffset;
+      AssemblerException exception = record.exception;
+
+      if (record.label != null)
+      {
+        String labelName = record.label.getName();
+        if (labelMapping.containsKey(labelName)) {
+          exception = new DoubleDefinedLabelException(labelName);
+        } else if (exception == null)
+        {
+          if (record.unsupported)
+          {
+            // A label at the end of the file, or a data label
+            // Implement this when a sensible solution has been found, otherwise
+            // don't write assembly which does this!
+            exception = new UnsupportedLabelException(labelName);
+          } else
+          {
+            if (record.isAddress)
+            {
+              record.label.setValue(record.label.getValue() + offsetAddress);
+            }
+            labelMapping.put(labelName, record.label);
+          }
+        }
+      }
+
+      if (exception != null)
+      {
+        exception.setContext(lineIndex, record.line);
+        exceptionList.add(exception);
+      }
+    }
+
+    commitSlowLines(chunk, lineOffset);
+
+    for (Program.Statement statement : chunk.statements)
+    {
+      statement.rebase(lineOffset, offsetAddress);
+      program.addStatement(statement);
+    }
+  }
+
+  /**
+   * Commit the events of a chunk's slow lines, now their place in the assembly is known
+   * 
+   * @param chunk The chunk, as parsed
+   * @param lineOffset Number of lines before the chunk
+   */
+  static void commitSlowLines(ParsedChunk chunk, int lineOffset)
+  {
+    for (SlowLineEvent event : chunk.slowLines)
+    {
+      event.lineNumber += lineOffset;
+      event.commit();
+    }
+  }
+
+  /**
+   * Abandon the assembly if its thread has been interrupted, e.g. by a daemon whose request
+   * has timed out, so the thread is free for the next one. Checked before each line of
+   * both passes; the interrupt is left set for whoever catches the exception
+   * 
+   * @throws CancellationException If the thread has been interrupted
+   */
+  private static void checkInterrupted()
+  {
+    if (Thread.currentThread().isInterrupted())
+    {
+      throw new CancellationException("Assembly interrupted");
+    }
+  }
+
+  /**
+   * Parse the lines in one range of the assembly, as if the range started at line zero
+   * and address zero
+   * 
+   * @param assembly The whole assembly
+   * @param separator The line separator
+   * @param rangeStart Start of the first line to parse
+   * @param rangeEnd Start of the first line not to parse
+   * @return The statements, labels and diagnostics of the range
+   */
+  ParsedChunk parseChunk(String assembly, String separator, int rangeStart, int rangeEnd)
+  {
+    // Lines are only timed while a recording wants slow lines
+    return parseChunk(assembly, separator, rangeStart, rangeEnd, SlowLineEvent.isRecording());
+  }
+
+  /**
+   * Parse the lines in one range of the assembly, as parseChunk(String, String, int, int)
+   * 
+   * @param timeLines Whether to time each line for SlowLineEvents. A range parsed again,
+   *                  e.g. by the second pass of a StreamingAssembly, is not, so each slow
+   *                  line is reported once
+   */
+  ParsedChunk parseChunk(String assembly, String separator, int rangeStart, int rangeEnd, boolean timeLines)
+  {
+    ParsedChunk chunk = new ParsedChunk();
+    int offsetAddress = 0; // Offset from the start of the chunk
     
     //  For each line in the assembly body:
     //    Ignore lines which start with a comment.
     //    Determine if the line is a label or an instruction
     //      For instructions, add their size to the address counter
     //      For labels:
-    //        If it is an address label, immediately store the name and address
+    //        If it is an address label, record the name and address
     //        If it is a data label, create a new label record with the name and size
-    //  For each label in the labelMapping:
-    //    Ignore address-type labels
-    //    Store address to data-type labels by using the offset at the end of the machine code
-    //      and incrementing it by the size of each label encountered
     
-    String[] lines = assembly.split(System.getProperty("line.separator"));
+    Lexer lexer = new Lexer(assembly, separator, rangeStart, rangeEnd);
+    SlowLineEvent lineEvent = null;
 
-    for (lineIndex = 0; lineIndex < lines.length; lineIndex++) {
+    while (lexer.hasNextLine()) {
+      checkInterrupted();
+      if (timeLines)
+      {
+        // Until nextLine, the lexer is still on the line before
+        finishLine(lineEvent, lexer, chunk);
+        lineEvent = SlowLineEvent.start();
+      }
       try {
-        String line = lines[lineIndex];
+        List<Token> tokens = lexer.nextLine();
 
         // Ignore blank lines
-        if (line.matches("^\\s*$")) {
+        if (tokens.isEmpty()) {
           continue;
         }
 
+        Token firstToken = tokens.get(0);
+
         // Ignore comment lines
-        if (line.matches("^\\s*" + COMMENT_PREFIX + ".*"))
+        if (firstToken.getKind() == Token.Kind.COMMENT)
         {
           continue;
         }
-        
-        // Get rid of end-of-line comments
-        line = line.split(COMMENT_PREFIX)[0];
-        
-        line = line.trim();
-
-        // Determine whether the line starts with a label
-        // Labels are defined as whitespace, followed by a sequence of upper-case letters
-        if (line.matches("^" + LABEL_REGEX + ".*")) {
-          String labelName;
-          
-          line = line.trim();
 
-          // A value is a label, followed by an equals sign, followed by a number in hexadecimal
-          String constantValueRegex = "^" + LABEL_REGEX + VALUE_SUFFIX + "\\s*0x" + "[0-9A-Fa-f]+" + "$";
-          
-          // An address is a label, followed by a colon
-          // For simplicity, we enforce below that a label must be on its own line
-          String addressLabelRegex = "^" + LABEL_REGEX + LABEL_SUFFIX;
-          
-          if (line.matches(addressLabelRegex))
-          {
-            // Remove the colon
-            labelName = line.substring(0, line.length() - 1);
-          }
-          else if (line.matches(constantValueRegex))
-          {
-            String[] tokens = line.split(VALUE_SUFFIX);
-            labelName = tokens[0];
-          } else
-          {
-            throw new InstructionSyntaxError("Label does not define a value (needs " + VALUE_SUFFIX + "),"
-                + "nor an address (needs " + LABEL_SUFFIX +")");
-          }
+        // The lexer has already checked that label lines are either a constant value or an address label
+        // Whether the label is defined twice can only be told once every chunk before this one is done
+        if (firstToken.getKind() == Token.Kind.CONSTANT_DEFINITION
+            || firstToken.getKind() == Token.Kind.LABEL_DEFINITION) {
+          String labelName = firstToken.getText();
 
-          if (labelMapping.containsKey(labelName)) {
-            throw new DoubleDefinedLabelException(labelName);
-          }
+          LineRecord record = new LineRecord(lexer.getLineIndex(), lexer.getLine());
 
-          Label toStore;
-          
           // Check if the line is a constant value
-          if (line.matches(constantValueRegex))
+          if (firstToken.getKind() == Token.Kind.CONSTANT_DEFINITION)
           {
-            String[] tokens = line.split(VALUE_SUFFIX);
-            
-            // Remove any whitespace and the leading "0x"
-            String value = tokens[1].trim().substring(2);
-            
-            toStore = new Label(labelName, Integer.parseUnsignedInt(value, 16));
-            labelMapping.put(labelName, toStore);
+            // Remove the leading "0x"
+            String value = tokens.get(1).getText().substring(2);
+
+            try
+            {
+              record.label = new Label(labelName, Integer.parseUnsignedInt(value, 16));
+            } catch (NumberFormatException e)
+            {
+              // Only reported if the label is not also defined twice
+              record.label = new Label(labelName, 0);
+              record.exception = new UnencodeableImmediateException("Integer parser threw an error " + e.getMessage() , 0);
+            }
+            chunk.records.add(record);
             continue;
           }
 
-          // For simplicity, this assembler requires labels be on their own line
-          // A label is detected with the regex plus one more character, either a : or an =
-          if (!((line.matches(addressLabelRegex + "\\s*$")))) {
-            throw new InstructionSyntaxError("Labels must be on their own line");
-          }
-          String nextLine;
-          if (lineIndex == lines.length - 1) {
+          record.label = new Label(labelName, offsetAddress);
+          record.isAddress = true;
+
+          // We need to peek the next line, which may be in the next chunk, to check for a data declaration
+          String nextLine = lexer.peekLine();
+          if (nextLine == null) {
             // This label is at the end of the assembly file. Why?
-            // Implement this when a sensible solution has been found, otherwise
-            // don't write assembly which does this!
-            throw new NotImplementedException();
-          }
-          nextLine = lines[lineIndex + 1];
-          // We need to peek the next line to check for a data declaration
-          if (nextLine.matches("^\\s*\\.data")) {
+            record.unsupported = true;
+          } else if (isDataDeclaration(nextLine)) {
             // TODO: Store data label
-            throw new NotImplementedException();
-          } else {
-            // If not a data label, this is an address label
-            toStore = new Label(labelName, offsetAddress);
+            record.unsupported = true;
           }
 
-          labelMapping.put(labelName, toStore);
+          chunk.records.add(record);
           continue;
         }
 
         // If none of the other patterns, line is either an assembly code or invalid
         // If it is invalid, trying to create an instruction will throw a useful exception
-        offsetAddress += Instruction.createInstruction(line, false, offsetAddress).getSize();
+        Instruction instruction = Instruction.parseInstruction(getInstructionTokens(tokens), lexer.getStatement());
+
+        // The only token which may legally be a label is the last one
+        Token lastToken = tokens.get(tokens.size() - 1);
+        if (lastToken.getKind() == Token.Kind.COMMENT)
+        {
+          lastToken = tokens.get(tokens.size() - 2);
+        }
+        String symbol = lastToken.getKind() == Token.Kind.SYMBOL ? lastToken.getText() : null;
+
+        chunk.statements.add(new Program.Statement(lexer.getLineIndex(), lexer.getLineStart(), lexer.getLineEnd(),
+            offsetAddress, instruction, symbol));
+        offsetAddress += instruction.getSize();
       }
       catch (InstructionSyntaxError | InstructionArgumentCountException | InvalidOpcodeException
-          | InvalidRegisterException | InvalidDataWidthException | DoubleDefinedLabelException
-          | XmlLookupException e) {
+          | InvalidRegisterException | InvalidDataWidthException | XmlLookupException e) {
       //for specific types of exceptions:
       //if (e instanceof InstructionSyntaxError) {...}
       
       //common actions for all exceptions
       //e.printStackTrace();
-        e.setContext(lineIndex, lines[lineIndex]);
-        exceptionList.add(e);
+        LineRecord record = new LineRecord(lexer.getLineIndex(), lexer.getLine());
+        record.exception = e;
+        chunk.records.add(record);
       }
       catch (NumberFormatException e)
       {
-        UnencodeableImmediateException newException = new UnencodeableImmediateException("Integer parser threw an error " + e.getMessage() , 0);
-        newException.setContext(lineIndex, lines[lineIndex]);
-        exceptionList.add(newException);
+        LineRecord record = new LineRecord(lexer.getLineIndex(), lexer.getLine());
+        record.exception = new UnencodeableImmediateException("Integer parser threw an error " + e.getMessage() , 0);
+        chunk.records.add(record);
       }
     }
 
-    //printExceptions(exceptionList);
-    return labelMapping;
+    finishLine(lineEvent, lexer, chunk);
+    chunk.lineCount = lexer.getLineIndex() + 1;
+    chunk.size = offsetAddress;
+    return chunk;
   }
 
-  private void printExceptions(ArrayList<AssemblerException> exceptionList) {
-    System.out.println("Errors:");
-    for (AssemblerException e : exceptionList) {
-      System.out.println(e.getDiagnostic());
+  /**
+   * Keep the event of the line the lexer is on if the line was slow, to be committed once
+   * the chunk is merged and its line number known
+   */
+  private static void finishLine(SlowLineEvent event, Lexer lexer, ParsedChunk chunk)
+  {
+    if (event != null && event.finish(lexer.getLineIndex(), lexer.getLine(), SlowLineEvent.FIRST_PASS))
+    {
+      chunk.slowLines.add(event);
     }
   }
 
-  protected byte[] secondPass(String assembly, HashMap<String, Label> labelMapping, ArrayList<AssemblerException> exceptionList)
+  /**
+   * What the first pass found in one chunk of the assembly, with line indices and
+   * addresses relative to the start of the chunk
+   */
+  static class ParsedChunk
   {
-    ArrayList<Byte> machineCode = new ArrayList<Byte>();
-    int lineIndex;
-    Integer offsetAddress = MACHINE_CODE_START; // Offset from the first instruction
+    final ArrayList<Program.Statement> statements = new ArrayList<>();
 
+    // Label definitions and diagnostics, in line order
+    final ArrayList<LineRecord> records = new ArrayList<>();
 
-    //  For each line in the assembly body:
-    //    Ignore lines which start with a comment. Strip comments from end-of-lines
-    //    Determine if the line is a label or an instruction
-    //      Assemble an instruction (to its 32-bit machine-code representation)
-    //        Replace labels with addresses as encountered
-    //        Throw an exception for undefined labels
-    //        Write that machine code to the output
-    //      Ignore labels
+    // Events for lines slower than the threshold, numbered from the start of the chunk
+    final ArrayList<SlowLineEvent> slowLines = new ArrayList<>();
+
+    int lineCount;
+    int size;
+  }
+
+  /**
+   * A label definition or a diagnostic on one line of a chunk
+   */
+  static class LineRecord
+  {
+    final int lineIndex;
+    final String line;
+
+    // The label defined on the line, if any. Address labels are relative to the chunk
+    Label label;
+    boolean isAddress;
+
+    // Whether the label is of a kind the assembler cannot handle yet
+    boolean unsupported;
+
+    // The diagnostic for the line, if any
+    AssemblerException exception;
+
+    LineRecord(int lineIndex, String line)
+    {
+      this.lineIndex = lineIndex;
+      this.line = line;
+    }
+  }
+
+  /**
+   * Parses a range of chunks, splitting it in half until it is a single chunk
+   */
+  private class ParseTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 2415424374976632370L;
+
+    private final String assembly;
+    private final String separator;
+    private final int[] boundaries;
+    private final ParsedChunk[] chunks;
+    private final int from;
+    private final int to;
+
+    ParseTask(String assembly, String separator, int[] boundaries, ParsedChunk[] chunks, int from, int to)
+    {
+      this.assembly = assembly;
+      this.separator = separator;
+      this.boundaries = boundaries;
+      this.chunks = chunks;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (to - from == 1)
+      {
+        chunks[from] = parseChunk(assembly, separator, boundaries[from], boundaries[from + 1]);
+        return;
+      }
+
+      int middle = (from + to) >>> 1;
+      invokeAll(new ParseTask(assembly, separator, boundaries, chunks, from, middle),
+          new ParseTask(assembly, separator, boundaries, chunks, middle, to));
+    }
+  }
+
+  /**
+   * Collect the text of the opcode and operand tokens of an instruction line
+   *
+   * @param lineTokens Tokens of a line which starts with an OPCODE
+   * @return The opcode followed by each operand, without any comment
+   */
+  private static String[] getInstructionTokens(List<Token> lineTokens)
+  {
+    int count = lineTokens.size();
+    if (lineTokens.get(count - 1).getKind() == Token.Kind.COMMENT)
+    {
+      count--;
+    }
+
+    String[] tokens = new String[count];
+    for (int index = 0; index < count; index++)
+    {
+      tokens[index] = lineTokens.get(index).getText();
+    }
+    return tokens;
+  }
+
+  /**
+   * Check whether a raw line is a data declaration: optional whitespace, then DATA_DIRECTIVE
+   *
+   * @param line The line to check
+   * @return True if the line declares data
+   */
+  private static boolean isDataDeclaration(String line)
+  {
+    int start = 0;
+    while (start < line.length() && Lexer.isWhitespace(line.charAt(start)))
+    {
+      start++;
+    }
+    return line.length() - start == DATA_DIRECTIVE.length() && line.startsWith(DATA_DIRECTIVE, start);
+  }
+
+  /**
+   * Resolve labels and encode every instruction collected by the first pass
+   * 
+   * Once the first pass is done, the label mapping is frozen and the address of every
+   * statement is known, so with a pool, large programs are split into address-ordered
+   * chunks which are encoded in parallel, each straight into its place in the output.
+   * The output and diagnostics are identical to encoding one statement at a time.
+   * 
+   * @param program The program built by the first pass
+   * @return The machine code of the program
+   */
+  protected byte[] secondPass(Program program, ArrayList<AssemblerException> exceptionList)
+  {
+    // Sized exactly, so the buffer never grows and is returned without a copy
+    byte[] machineCode = new byte[program.getSize() * Instruction.BYTES_PER_WORD];
+    List<Program.Statement> statements = program.getStatements();
+
+    if (pool == null || statements.size() < 2 * PARALLEL_CHUNK_SIZE)
+    {
+      encodeStatements(program, program.getLabelMapping(), 0, statements.size(), machineCode, MACHINE_CODE_START,
+          exceptionList);
+    }
+    else
+    {
+      // Diagnostics come back chunk by chunk, in line order
+      exceptionList.addAll(pool.invoke(new EncodeTask(program, 0, statements.size(), machineCode)));
+    }
+
+    return machineCode;
+  }
+
+  /**
+   * Encode a range of statements into their place in the output
+   * 
+   * @param program The program, or part of a program, built by the first pass
+   * @param labelMapping The labels to resolve symbols with
+   * @param from Index of the first statement to encode
+   * @param to Index after the last statement to encode
+   * @param machineCode The output, sized for every statement of the program
+   * @param baseAddress The address of the first byte of machineCode
+   * @param exceptionList Where to add diagnostics, in line order
+   */
+  void encodeStatements(Program program, Map<String, Label> labelMapping, int from, int to, byte[] machineCode,
+                        int baseAddress, List<AssemblerException> exceptionList)
+  {
+    List<Program.Statement> statements = program.getStatements();
+    if (from == to)
+    {
+      return;
+    }
+
+    EncodingMemo memo = acquireMemo();
+    try
+    {
+      encodeStatements(program, labelMapping, from, to, machineCode, baseAddress, exceptionList, memo);
+    } finally
+    {
+      releaseMemo(memo);
+    }
+  }
+
+  private void encodeStatements(Program program, Map<String, Label> labelMapping, int from, int to,
+                                byte[] machineCode, int baseAddress, List<AssemblerException> exceptionList,
+                                EncodingMemo memo)
+  {
+    List<Program.Statement> statements = program.getStatements();
+    int offset = (statements.get(from).getAddress() - baseAddress) * Instruction.BYTES_PER_WORD;
+    MachineCodeSink sink = new MachineCodeSink(machineCode, offset);
+
+    //  For each instruction found by the first pass:
+    //    Assemble the instruction (to its 32-bit machine-code representation)
+    //      Replace labels with addresses as encountered
+    //      Throw an exception for undefined labels
+    //      Write that machine code to the output
     //  Write all data-type label's bodies to the end of the output
     
-    String[] lines = assembly.split(System.getProperty("line.separator"));
-    
-    for (lineIndex = 0; lineIndex < lines.length; lineIndex++)
+    // Lines are only timed while a recording wants slow lines
+    boolean timeLines = SlowLineEvent.isRecording();
+
+    for (int index = from; index < to; index++)
     {
+      checkInterrupted();
+      Program.Statement statement = statements.get(index);
+      SlowLineEvent lineEvent = timeLines ? SlowLineEvent.start() : null;
       try
       {
-        String line = lines[lineIndex];
-        
-        // Ignore blank lines
-        if (line.matches("^\\s*$"))
-        {
-          continue;
-        }
-        
-        // Ignore comment lines
-        if (line.matches("^\\s*" + COMMENT_PREFIX + ".*"))
-        {
-          continue;
-        }
-        
-        // Ignore lines which start with a label
-        // Labels are defined as whitespace, followed by a sequence of upper-case letters, followed by other stuff
-        // These are syntax checked in the first pass. All we need is to ignore them.
-        if (line.matches("^" + LABEL_REGEX + ".*"))
-        {
-          continue;
-        }
-        
-        // Get rid of end-of-line comments
-        line = line.split(COMMENT_PREFIX)[0];
-        
-        // Remove leading/trailing whitespace
-        line = line.trim();
-        
-        // If we are here, the remainder should be assembly code
+        Instruction thisInstruction = statement.getInstruction();
+
         // Replace labels with their values
-        
-        String[] tokens = line.split("\\s+");
-        
-        // If there is only one token, it could legally be a zero-argument instruction. No labels to replace
-        if (tokens.length != 1)
+        String symbol = statement.getSymbol();
+        if (symbol != null)
         {
-          // The only token which may legally be a label is the last one
-          String lastArg = tokens[tokens.length - 1];
-  
-          // Check if the token doesn't look like a register
-          if (!(lastArg.startsWith(Instruction.REGISTER_PREFIX)))
+          // Hopefully it is a label
+          Label label = labelMapping.get(symbol);
+          if (label == null)
           {
-            // Maybe it is an immediate?
-            if (!(lastArg.startsWith(Instruction.IMMEDIATE_PREFIX)))
-            {
-              // Hopefully it is a label
-              if (!(labelMapping.containsKey(lastArg)))
-              {
-                throw new UndefinedLabelException(lastArg);
-              }
-              
-              // Replace the label before trying to construct machine code
-              StringBuilder newLine = new StringBuilder();
-              
-              // Put the first arguments back together in the order they came
-              for (int index = 0; index < tokens.length - 1; index++ )
-              {
-                newLine.append(tokens[index] + " ");
-              }
-              
-              // Replace the label with its value
-              newLine.append(Instruction.IMMEDIATE_PREFIX + "0x" + Integer.toHexString(labelMapping.get(lastArg).getValue()));
-              
-              line = newLine.toString();
-            }
+            throw new UndefinedLabelException(symbol);
           }
+          
+          // Replace the label before trying to construct machine code
+          thisInstruction.resolveSymbol(label.getValue());
         }
 
-        // don't place short circuits
-        // Construct the assembly instruction
-        Instruction thisInstruction = Instruction.createInstruction(line, true, offsetAddress);
-        offsetAddress += thisInstruction.getSize();
-        machineCode.addAll(Arrays.asList((thisInstruction.getMachineCode())));
+        // Construct the assembly instruction, unless an identical one has already been
+        // encoded, in which case its bytes are copied from the memo
+        memo.encode(thisInstruction, statement.getAddress(), sink);
       }
       catch (UndefinedLabelException | UnencodeableImmediateException | InstructionArgumentCountException
               | InvalidOpcodeException | InstructionSyntaxError | InvalidRegisterException
               | InvalidDataWidthException | XmlLookupException e) {
 
-        e.setContext(lineIndex, lines[lineIndex]);
+        e.setContext(statement.getLineIndex(), program.getLine(statement));
         exceptionList.add(e);
+        skipStatement(statement, baseAddress, sink);
       } catch (NumberFormatException e)
       {
         UnencodeableImmediateException newException = new UnencodeableImmediateException("Integer parser threw an error " + e.getMessage() , 0);
-        newException.setContext(lineIndex, lines[lineIndex]);
+        newException.setContext(statement.getLineIndex(), program.getLine(statement));
         exceptionList.add(newException);
+        skipStatement(statement, baseAddress, sink);
+      }
+
+      if (lineEvent != null
+          && lineEvent.finish(statement.getLineIndex(), program.getLine(statement), SlowLineEvent.SECOND_PASS))
+      {
+        lineEvent.commit();
       }
     }
-    
-    // Convert ArrayList to byte[]
-    byte[] toReturn = new byte[machineCode.size()];
-    for (int index = 0; index < machineCode.size(); index ++)
+  }
+
+  /**
+   * Leave zeros where a statement which failed to encode would have been, so every
+   * chunk of a parallel pass writes exactly what the serial pass would
+   */
+  private static void skipStatement(Program.Statement statement, int baseAddress, MachineCodeSink sink)
+  {
+    int end = statement.getAddress() + statement.getInstruction().getSize() - baseAddress;
+    sink.skipTo(end * Instruction.BYTES_PER_WORD);
+  }
+
+  /**
+   * Encodes a range of statements, splitting it in half until it is at most PARALLEL_CHUNK_SIZE
+   */
+  private class EncodeTask extends RecursiveTask<ArrayList<AssemblerException>>
+  {
+    private static final long serialVersionUID = -5846701930831454943L;
+
+    private final Program program;
+    private final int from;
+    private final int to;
+    private final byte[] machineCode;
+
+    EncodeTask(Program program, int from, int to, byte[] machineCode)
     {
-      toReturn[index] = machineCode.get(index);
+      this.program = program;
+      this.from = from;
+      this.to = to;
+      this.machineCode = machineCode;
+    }
+
+    @Override
+    protected ArrayList<AssemblerException> compute()
+    {
+      if (to - from <= PARALLEL_CHUNK_SIZE)
+      {
+        ArrayList<AssemblerException> exceptionList = new ArrayList<>();
+        encodeStatements(program, program.getLabelMapping(), from, to, machineCode, MACHINE_CODE_START,
+            exceptionList);
+        return exceptionList;
+      }
+
+      int middle = (from + to) >>> 1;
+      EncodeTask lower = new EncodeTask(program, from, middle, machineCode);
+      lower.fork();
+      ArrayList<AssemblerException> upperExceptions = new EncodeTask(program, middle, to, machineCode).compute();
+      ArrayList<AssemblerException> exceptionList = lower.join();
+      exceptionList.addAll(upperExceptions);
+      return exceptionList;
     }
-    return toReturn;
   }
   
 }
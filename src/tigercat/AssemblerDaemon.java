@@ -0,0 +1,453 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : AssemblerDaemon.java
+ * Description  : Long-running assembler, serving requests on a localhost port
+ */
+
+package tigercat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import tigercat.instruction.EncodingContext;
+
+/**
+ * Long-running assembler, serving requests on a localhost port (see DaemonProtocol)
+ *
+ * Keeps the ISA tables loaded and the JIT warm between requests, so an assembly costs
+ * only the assembly itself rather than a JVM start. Each client connection has its own
+ * thread; the assemblies themselves run on a pool bounded by the number of CPUs. A request
+ * which takes longer than its timeout is answered with STATUS_TIMEOUT, and its assembly is
+ * interrupted, which stops it before its next line and frees its place in the pool.
+ *
+ * Only the loopback interface is bound. Paths are read with the daemon's permissions, so
+ * only clients which prove they hold the token written to DaemonProtocol.tokenFile,
+ * readable by the daemon's user alone, are served; the daemon proves it holds the token in
+ * turn. The token is made afresh each time the daemon starts.
+ */
+public class AssemblerDaemon
+{
+  /**
+   * Port the daemon listens on and clients connect to, unless told otherwise
+   */
+  public static final int DEFAULT_PORT = 47470;
+
+  /**
+   * Time an assembly may take, unless the request gives its own
+   */
+  public static final int DEFAULT_TIMEOUT_MILLIS = 30000;
+
+  /**
+   * Time a connection may stay idle between requests before it is closed
+   */
+  public static final int IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+
+  // Assembled at start-up, so the first real request runs compiled code
+  private static final String WARM_UP_SOURCE = "START:\n  addw %r1l %a1l %a2l\n  movd %arg1 $0x1234\n"
+      + "  cmpw %a1l %a2l\n  jmpe START\n  call END\n  pushd %arg1\n  popd %arg1\nEND:\n  ret\n";
+  private static final int WARM_UP_ROUNDS = 200;
+
+  private static final int TOKEN_BYTES = 32;
+
+  private final Assembler assembler;
+  private final int requestedPort;
+  private int timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+  private ServerSocket serverSocket;
+  private Path tokenFile;
+  private byte[] token;
+  private Thread acceptor;
+  private final ExecutorService connections = Executors.newCachedThreadPool();
+  private final ExecutorService assemblies =
+      Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+  private final Set<Socket> clients = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+  private final AtomicBoolean running = new AtomicBoolean(false);
+  private final CountDownLatch stopped = new CountDownLatch(1);
+
+  /**
+   * @param context The ISA tables and configuration to encode with
+   * @param port The port to listen on, or 0 for any free port
+   */
+  public AssemblerDaemon(EncodingContext context, int port)
+  {
+    this.assembler = new Assembler(context);
+    this.requestedPort = port;
+  }
+
+  /**
+   * @param timeoutMillis Time an assembly may take, unless the request gives its own
+   */
+  public void setTimeoutMillis(int timeoutMillis)
+  {
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Warm up, start listening, and accept clients on a background thread
+   *
+   * @throws IOException If the port cannot be bound
+   */
+  public void start() throws IOException
+  {
+    String warmUp = WARM_UP_SOURCE.replace("\n", Lexer.lineSeparator());
+    for (int round = 0; round < WARM_UP_ROUNDS; round++)
+    {
+      assembler.assembleToResult(warmUp);
+    }
+
+    serverSocket = new ServerSocket();
+    serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), requestedPort));
+    try
+    {
+      writeToken();
+    } catch (IOException e)
+    {
+      serverSocket.close();
+      throw e;
+    }
+    running.set(true);
+
+    acceptor = new Thread(this::acceptClients, "tigercat-daemon-accept");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * Make a new token and write it where clients of this port look for it, readable by the
+   * owner only
+   */
+  private void writeToken() throws IOException
+  {
+    byte[] random = new byte[TOKEN_BYTES];
+    new SecureRandom().nextBytes(random);
+    StringBuilder text = new StringBuilder();
+    for (byte b : random)
+    {
+      text.append(String.format("%02x", b));
+    }
+    token = text.toString().getBytes(StandardCharsets.UTF_8);
+
+    tokenFile = DaemonProtocol.tokenFile(getPort());
+    Path directory = tokenFile.getParent();
+    Path partial;
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+    {
+      FileAttribute<?> ownerOnly = PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------"));
+      Files.createDirectories(directory, ownerOnly);
+      partial = Files.createTempFile(directory, tokenFile.getFileName().toString(), ".part",
+          PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    } else
+    {
+      // Elsewhere the user's home is assumed to be private
+      Files.createDirectories(directory);
+      partial = Files.createTempFile(directory, tokenFile.getFileName().toString(), ".part");
+    }
+    try
+    {
+      Files.write(partial, token);
+      // Replaces the token of a daemon which did not stop cleanly
+      Files.move(partial, tokenFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally
+    {
+      Files.deleteIfExists(partial);
+    }
+  }
+
+  /**
+   * @return The port the daemon is listening on
+   */
+  public int getPort()
+  {
+    return serverSocket.getLocalPort();
+  }
+
+  public boolean isRunning()
+  {
+    return running.get();
+  }
+
+  private void acceptClients()
+  {
+    while (running.get())
+    {
+      try
+      {
+        final Socket client = serverSocket.accept();
+        clients.add(client);
+        connections.execute(() -> serve(client));
+      } catch (IOException e)
+      {
+        // The server socket was closed by shutdown
+      } catch (RejectedExecutionException e)
+      {
+        // Shutting down
+      }
+    }
+  }
+
+  /**
+   * Answer the requests of one client until it disconnects, idles, or the daemon stops
+   */
+  private void serve(Socket client)
+  {
+    try
+    {
+      client.setSoTimeout(DaemonProtocol.HANDSHAKE_TIMEOUT_MILLIS);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+      if (!handshake(in, out))
+      {
+        return;
+      }
+      client.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+
+      while (running.get())
+      {
+        int magic;
+        try
+        {
+          magic = in.readInt();
+        } catch (EOFException | SocketTimeoutException | SocketException e)
+        {
+          break;
+        }
+        if (magic != DaemonProtocol.MAGIC)
+        {
+          break;
+        }
+
+        byte command = in.readByte();
+        if (command == DaemonProtocol.PING)
+        {
+          out.writeByte(DaemonProtocol.STATUS_OK);
+        } else if (command == DaemonProtocol.SHUTDOWN)
+        {
+          out.writeByte(DaemonProtocol.STATUS_OK);
+          out.flush();
+          shutdown();
+          break;
+        } else if (command == DaemonProtocol.ASSEMBLE_PATH || command == DaemonProtocol.ASSEMBLE_TEXT)
+        {
+          int requestTimeout = in.readInt();
+          String argument = DaemonProtocol.readString(in);
+          assemble(command, argument, requestTimeout > 0 ? requestTimeout : timeoutMillis, out);
+        } else
+        {
+          out.writeByte(DaemonProtocol.STATUS_ERROR);
+          DaemonProtocol.writeString(out, "Unknown command: " + command);
+        }
+        out.flush();
+      }
+    } catch (IOException e)
+    {
+      // The client went away
+    } finally
+    {
+      clients.remove(client);
+      try
+      {
+        client.close();
+      } catch (IOException e)
+      {
+        // Already closed
+      }
+    }
+  }
+
+  /**
+   * Check the client is of this version, prove to it that this daemon holds the token,
+   * and check it holds the token too
+   *
+   * @return True if it is and does, and may send requests
+   */
+  private boolean handshake(DataInputStream in, DataOutputStream out) throws IOException
+  {
+    if (in.readInt() != DaemonProtocol.MAGIC)
+    {
+      return false;
+    }
+    String version = DaemonProtocol.readString(in);
+    byte[] clientChallenge = DaemonProtocol.readChallenge(in);
+    if (!Assembler.VERSION.equals(version))
+    {
+      refuse(out, "Daemon is version " + Assembler.VERSION + ", not " + version);
+      return false;
+    }
+
+    byte[] challenge = DaemonProtocol.newChallenge();
+    out.writeByte(DaemonProtocol.STATUS_OK);
+    DaemonProtocol.writeBytes(out, challenge);
+    DaemonProtocol.writeBytes(out, DaemonProtocol.prove(token, DaemonProtocol.DAEMON_ROLE, clientChallenge,
+        challenge));
+    out.flush();
+
+    byte[] proof = DaemonProtocol.readBytes(in);
+    byte[] expected = DaemonProtocol.prove(token, DaemonProtocol.CLIENT_ROLE, clientChallenge, challenge);
+    if (proof == null || !MessageDigest.isEqual(expected, proof))
+    {
+      refuse(out, "Wrong token");
+      return false;
+    }
+    out.writeByte(DaemonProtocol.STATUS_OK);
+    out.flush();
+    return true;
+  }
+
+  private static void refuse(DataOutputStream out, String refusal) throws IOException
+  {
+    out.writeByte(DaemonProtocol.STATUS_ERROR);
+    DaemonProtocol.writeString(out, refusal);
+    out.flush();
+  }
+
+  private void assemble(final byte command, final String argument, int timeout, DataOutputStream out)
+      throws IOException
+  {
+    Future<AssemblyResult> future;
+    try
+    {
+      future = assemblies.submit(() -> {
+        String source = command == DaemonProtocol.ASSEMBLE_TEXT ? argument
+            : new String(Files.readAllBytes(Paths.get(argument)), Charset.defaultCharset());
+        return assembler.assembleToResult(source, command == DaemonProtocol.ASSEMBLE_TEXT ? null : argument, null);
+      });
+    } catch (RejectedExecutionException e)
+    {
+      out.writeByte(DaemonProtocol.STATUS_ERROR);
+      DaemonProtocol.writeString(out, "The daemon is shutting down");
+      return;
+    }
+
+    try
+    {
+      AssemblyResult result = future.get(timeout, TimeUnit.MILLISECONDS);
+      out.writeByte(DaemonProtocol.STATUS_RESULT);
+      DaemonProtocol.writeResult(out, result);
+    } catch (TimeoutException e)
+    {
+      future.cancel(true);
+      out.writeByte(DaemonProtocol.STATUS_TIMEOUT);
+      DaemonProtocol.writeString(out, "Assembly took longer than " + timeout + " ms");
+    } catch (ExecutionException e)
+    {
+      out.writeByte(DaemonProtocol.STATUS_ERROR);
+      DaemonProtocol.writeString(out, String.valueOf(e.getCause()));
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while assembling", e);
+    }
+  }
+
+  /**
+   * Stop accepting clients. Requests already being assembled are answered; idle
+   * connections are closed
+   */
+  public void shutdown()
+  {
+    if (!running.compareAndSet(true, false))
+    {
+      return;
+    }
+
+    try
+    {
+      serverSocket.close();
+    } catch (IOException e)
+    {
+      // Already closed
+    }
+    try
+    {
+      Files.deleteIfExists(tokenFile);
+    } catch (IOException e)
+    {
+      // Clients fail the handshake with a stale token, and assemble locally
+    }
+
+    // The socket is only really closed, and stops accepting connections, once the thread
+    // blocked accepting on it has woken up
+    if (Thread.currentThread() != acceptor)
+    {
+      try
+      {
+        acceptor.join();
+      } catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    // Wakes connections waiting for their next request, without cutting off a response
+    for (Socket client : clients)
+    {
+      try
+      {
+        client.shutdownInput();
+      } catch (IOException e)
+      {
+        // Already closed
+      }
+    }
+
+    connections.shutdown();
+    assemblies.shutdown();
+    stopped.countDown();
+  }
+
+  /**
+   * Wait until shutdown is called, e.g. by a client
+   */
+  public void awaitShutdown() throws InterruptedException
+  {
+    stopped.await();
+  }
+
+  /**
+   * Wait for the requests being answered when shutdown was called
+   *
+   * @param millis Longest time to wait
+   * @return True if every request was answered
+   */
+  public boolean awaitTermination(long millis) throws InterruptedException
+  {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    boolean answered = connections.awaitTermination(millis, TimeUnit.MILLISECONDS);
+    long remaining = Math.max(0, deadline - System.nanoTime());
+    return assemblies.awaitTermination(remaining, TimeUnit.NANOSECONDS) && answered;
+  }
+}
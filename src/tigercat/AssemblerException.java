@@ -18,6 +18,20 @@ public abstract class AssemblerException extends Exception {
         this.contextLine = contextLine;
     }
 
+    /**
+     * @return The one-based number of the line which caused the error, or 0 if unknown
+     */
+    public int getLineNumber() {
+        return hasContext ? contextLineNum : 0;
+    }
+
+    /**
+     * @return The line which caused the error, or null if unknown
+     */
+    public String getLine() {
+        return hasContext ? contextLine : null;
+    }
+
     public abstract String getDiagnostic();
 
 }
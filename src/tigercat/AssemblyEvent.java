@@ -0,0 +1,62 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : AssemblyEvent.java
+ * Description  : Flight Recorder event for one assembly
+ */
+
+package tigercat;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one assembly, spanning both passes
+ *
+ * Emitted by Assembler.assembleToResult whenever a recording enables it. The durations
+ * of the passes are only measured then.
+ *
+ * The events of the assembler use jdk.jfr, which sets its minimum Java: JDK 11 to build,
+ * and to run, Java 11, or Java 8 from update 262.
+ */
+@Name(AssemblyEvent.NAME)
+@Label("Assembly")
+@Category("TigerCat")
+@Description("One assembly, from the first pass to the end of the second")
+@StackTrace(false)
+final class AssemblyEvent extends Event
+{
+  static final String NAME = "tigercat.Assembly";
+
+  @Label("Source")
+  @Description("The file assembled, or null for text with no file")
+  String source;
+
+  @Label("Source Length")
+  @Description("Characters of assembly")
+  long sourceLength;
+
+  @Label("Instructions")
+  int instructions;
+
+  @Label("Image Size")
+  @DataAmount
+  long imageSize;
+
+  @Label("First Pass")
+  @Timespan
+  long firstPassDuration;
+
+  @Label("Second Pass")
+  @Timespan
+  long secondPassDuration;
+
+  @Label("Success")
+  boolean success;
+}
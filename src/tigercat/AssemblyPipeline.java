@@ -0,0 +1,436 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : AssemblyPipeline.java
+ * Description  : Assembles as a pipeline of stages, so output is written while input is read
+ */
+
+package tigercat;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import tigercat.instruction.Instruction;
+
+/**
+ * Assembles as a pipeline of stages, so output is written while input is still being read
+ *
+ * The stages run on their own threads, joined by bounded queues of batches of lines:
+ *
+ *   read/lex  -- reads batches of whole lines and parses each as a chunk (see Assembler.parseChunk)
+ *   collect   -- rebases each chunk to its address and defines its labels, in order
+ *   encode    -- encodes each batch once every label it refers to is defined
+ *   write     -- writes the machine code of each batch, on the thread which called run
+ *
+ * A batch which refers forward to a label not yet collected is held back by the encode
+ * stage, which keeps taking batches so the collect stage can reach the label. Machine code
+ * is therefore only written ahead of the input as far as forward references allow.
+ *
+ * The batches held back are not bounded: holding fewer would stop the collect stage short
+ * of the label. A reference from near the start to a label near the end, or to a label
+ * which is never defined, holds the whole program in memory, as Assembler.firstPass does.
+ * getMaxHeldBatches reports how far it went. StreamingAssembly assembles in bounded memory
+ * instead, by reading the input once per pass.
+ *
+ * Diagnostics and labels are exactly those of Assembler.firstPass and secondPass. A
+ * pipeline is used once.
+ */
+public class AssemblyPipeline
+{
+  /**
+   * Number of batches each queue holds before its producer has to wait
+   */
+  public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+  private final Assembler assembler;
+  private final int batchLength;
+  private final String separator = Lexer.lineSeparator();
+
+  private final StageQueue<Batch> lexed;
+  private final StageQueue<Batch> collected;
+  private final StageQueue<byte[]> encoded;
+
+  // Marks the end of the input on each queue
+  private static final Batch END = new Batch(null, null);
+  private static final byte[] END_OF_MACHINE_CODE = new byte[0];
+
+  private final Map<String, Label> labelMapping = new ConcurrentHashMap<>();
+  private final ArrayList<AssemblerException> firstPassErrors = new ArrayList<>();
+  private final ArrayList<AssemblerException> secondPassErrors = new ArrayList<>();
+  private final ArrayList<String> warnings = new ArrayList<>();
+
+  private final List<Thread> stages = new ArrayList<>();
+  private volatile Throwable failure = null;
+
+  private volatile long forwardReferenceStalls = 0;
+  private volatile int maxHeldBatches = 0;
+  private long bytesWritten = 0;
+
+  /**
+   * Batches of about Assembler.PARALLEL_CHUNK_LENGTH characters
+   *
+   * @param assembler The assembler whose passes to run
+   */
+  public AssemblyPipeline(Assembler assembler)
+  {
+    this(assembler, Assembler.PARALLEL_CHUNK_LENGTH, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * @param assembler The assembler whose passes to run
+   * @param batchLength Roughly how many characters of assembly each batch holds
+   * @param queueCapacity Number of batches each queue holds before its producer has to wait
+   */
+  public AssemblyPipeline(Assembler assembler, int batchLength, int queueCapacity)
+  {
+    this.assembler = assembler;
+    this.batchLength = batchLength;
+    this.lexed = new StageQueue<>("read/lex -> collect", queueCapacity);
+    this.collected = new StageQueue<>("collect -> encode", queueCapacity);
+    this.encoded = new StageQueue<>("encode -> write", queueCapacity);
+  }
+
+  /**
+   * A batch of whole lines, as it passes through the stages
+   */
+  private static class Batch
+  {
+    // The lines of the batch, followed by a look-ahead of the lines after it
+    final String source;
+    final Assembler.ParsedChunk chunk;
+
+    // Filled in by the collect stage
+    Program program;
+    int startAddress;
+
+    // Statements before this index have their symbols defined
+    int resolved = 0;
+
+    Batch(String source, Assembler.ParsedChunk chunk)
+    {
+      this.source = source;
+      this.chunk = chunk;
+    }
+  }
+
+  /**
+   * Assemble everything read from input, writing the machine code to output as it is encoded
+   *
+   * Returns once everything has been written. The diagnostics are then available from
+   * getFirstPassErrors and getSecondPassErrors. If there are any, the output is incomplete.
+   *
+   * @param input The assembly
+   * @param output Where to write the machine code
+   * @throws IOException If reading or writing fails
+   */
+  public void run(Reader input, WritableByteChannel output) throws IOException
+  {
+    startStage("tigercat-read-lex", () -> readAndLex(input));
+    startStage("tigercat-collect", this::collect);
+    startStage("tigercat-encode", this::encode);
+
+    try
+    {
+      write(output);
+    } catch (IOException | RuntimeException | Error e)
+    {
+      fail(e);
+      throw e;
+    } finally
+    {
+      for (Thread stage : stages)
+      {
+        try
+        {
+          stage.join();
+        } catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    Throwable cause = failure;
+    if (cause instanceof IOException)
+    {
+      throw (IOException) cause;
+    } else if (cause instanceof RuntimeException)
+    {
+      throw (RuntimeException) cause;
+    } else if (cause instanceof Error)
+    {
+      throw (Error) cause;
+    } else if (cause != null)
+    {
+      throw new IOException("Assembly pipeline interrupted", cause);
+    }
+  }
+
+  private interface StageBody
+  {
+    void run() throws Exception;
+  }
+
+  private void startStage(String name, StageBody body)
+  {
+    Thread stage = new Thread(() -> {
+      try
+      {
+        body.run();
+      } catch (Throwable e)
+      {
+        fail(e);
+      }
+    }, name);
+    stage.setDaemon(true);
+    stages.add(stage);
+    stage.start();
+  }
+
+  /**
+   * Stop every stage, and wake the writer so run can report the failure
+   */
+  private synchronized void fail(Throwable cause)
+  {
+    if (failure != null)
+    {
+      return;
+    }
+    failure = cause;
+    for (Thread stage : stages)
+    {
+      stage.interrupt();
+    }
+    encoded.abort(END_OF_MACHINE_CODE);
+  }
+
+  /**
+   * Read/lex stage: split the input into batches of whole lines and parse each
+   */
+  private void readAndLex(Reader input) throws IOException, InterruptedException
+  {
+    LineBatcher batcher = new LineBatcher(input, separator, batchLength);
+    while (batcher.next())
+    {
+      String source = batcher.getSource();
+      lexed.put(new Batch(source, assembler.parseChunk(source, separator, 0, batcher.getRangeEnd())));
+    }
+    lexed.put(END);
+  }
+
+  /**
+   * Collect stage: rebase each chunk by the sizes before it and define its labels
+   */
+  private void collect() throws InterruptedException
+  {
+    int lineOffset = 0;
+    int offsetAddress = Assembler.MACHINE_CODE_START;
+
+    Batch batch;
+    while ((batch = lexed.take()) != END)
+    {
+      batch.program = new Program(batch.source);
+      batch.startAddress = offsetAddress;
+      assembler.mergeChunk(batch.chunk, batch.program, labelMapping, lineOffset, offsetAddress, firstPassErrors);
+
+      lineOffset += batch.chunk.lineCount;
+      offsetAddress += batch.chunk.size;
+
+      // Labels defined by this batch are visible to whoever takes it
+      collected.put(batch);
+    }
+    collected.put(END);
+  }
+
+  /**
+   * Encode stage: encode batches in order, holding back any which refer to labels not yet
+   * collected
+   */
+  private void encode() throws InterruptedException
+  {
+    ArrayDeque<Batch> held = new ArrayDeque<>();
+    boolean collectDone = false;
+
+    while (true)
+    {
+      if (held.isEmpty())
+      {
+        if (collectDone)
+        {
+          break;
+        }
+        Batch batch = collected.take();
+        if (batch == END)
+        {
+          collectDone = true;
+          continue;
+        }
+        held.add(batch);
+      }
+
+      Batch head = held.peek();
+      if (!collectDone && !isResolved(head))
+      {
+        // Take another batch, which may define the label, so the collect stage can carry on
+        forwardReferenceStalls++;
+        Batch batch = collected.take();
+        if (batch == END)
+        {
+          collectDone = true;
+        } else
+        {
+          held.add(batch);
+          maxHeldBatches = Math.max(maxHeldBatches, held.size());
+        }
+        continue;
+      }
+
+      // Once everything is collected, an undefined label is reported like any other error
+      held.poll();
+      List<Program.Statement> statements = head.program.getStatements();
+      byte[] machineCode = new byte[head.program.getSize() * Instruction.BYTES_PER_WORD];
+      assembler.encodeStatements(head.program, labelMapping, 0, statements.size(), machineCode,
+          head.startAddress, secondPassErrors);
+      warnings.addAll(head.program.getWarnings());
+      encoded.put(machineCode);
+    }
+    encoded.put(END_OF_MACHINE_CODE);
+  }
+
+  /**
+   * Whether every symbol the batch refers to has been defined
+   */
+  private boolean isResolved(Batch batch)
+  {
+    List<Program.Statement> statements = batch.program.getStatements();
+    while (batch.resolved < statements.size())
+    {
+      String symbol = statements.get(batch.resolved).getSymbol();
+      if (symbol != null && !labelMapping.containsKey(symbol))
+      {
+        return false;
+      }
+      batch.resolved++;
+    }
+    return true;
+  }
+
+  /**
+   * Write stage: write each batch of machine code as it arrives
+   */
+  private void write(WritableByteChannel output) throws IOException
+  {
+    byte[] machineCode;
+    try
+    {
+      while ((machineCode = encoded.take()) != END_OF_MACHINE_CODE)
+      {
+        ByteBuffer buffer = ByteBuffer.wrap(machineCode);
+        while (buffer.hasRemaining())
+        {
+          bytesWritten += output.write(buffer);
+        }
+      }
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing machine code", e);
+    }
+  }
+
+  public Map<String, Label> getLabelMapping()
+  {
+    return labelMapping;
+  }
+
+  public List<AssemblerException> getFirstPassErrors()
+  {
+    return firstPassErrors;
+  }
+
+  public List<AssemblerException> getSecondPassErrors()
+  {
+    return secondPassErrors;
+  }
+
+  public List<String> getWarnings()
+  {
+    return warnings;
+  }
+
+  public long getBytesWritten()
+  {
+    return bytesWritten;
+  }
+
+  /**
+   * Return the result of run
+   *
+   * @return The result, without an image, since it was written to output
+   */
+  public AssemblyResult getResult()
+  {
+    // The pipeline encodes while it is still parsing, so the second pass has always run
+    List<AssemblerException> secondPassErrors = firstPassErrors.isEmpty()
+        ? this.secondPassErrors : Collections.<AssemblerException>emptyList();
+    List<String> warnings = firstPassErrors.isEmpty() ? this.warnings : Collections.<String>emptyList();
+    return new AssemblyResult(null, labelMapping, firstPassErrors, secondPassErrors, warnings);
+  }
+
+  /**
+   * Return the queues between the stages, in pipeline order, for their statistics
+   *
+   * @return The queues
+   */
+  public List<StageQueue<?>> getQueues()
+  {
+    List<StageQueue<?>> queues = new ArrayList<>();
+    queues.add(lexed);
+    queues.add(collected);
+    queues.add(encoded);
+    return queues;
+  }
+
+  /**
+   * Return how many times the encode stage had to hold a batch back for a forward reference
+   *
+   * @return The number of forward-reference stalls
+   */
+  public long getForwardReferenceStalls()
+  {
+    return forwardReferenceStalls;
+  }
+
+  /**
+   * Return the most batches the encode stage held back at once
+   *
+   * @return The largest number of batches waiting on forward references
+   */
+  public int getMaxHeldBatches()
+  {
+    return maxHeldBatches;
+  }
+
+  /**
+   * Print the statistics of each queue and of the forward references, for --pipeline --stats
+   *
+   * @param out Where to print them
+   */
+  public void printStats(PrintStream out)
+  {
+    for (StageQueue<?> queue : getQueues())
+    {
+      out.println(queue);
+    }
+    out.println("Forward-reference stalls: " + forwardReferenceStalls + ", most batches held: " + maxHeldBatches);
+  }
+}
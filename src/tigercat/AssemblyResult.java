@@ -0,0 +1,201 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : AssemblyResult.java
+ * Description  : The image, symbol table, diagnostics and warnings of one assembly
+ */
+
+package tigercat;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The image, symbol table, diagnostics and warnings of one assembly
+ *
+ * Returned by the Assembler instead of printing and exiting, so that one JVM can assemble
+ * any number of programs. print writes the same report the command line always has.
+ * Warnings travel with the result too, so that they reach the user even when the
+ * assembly ran in an AssemblerDaemon or came from a BuildCache.
+ */
+public class AssemblyResult
+{
+  private final byte[] image;
+  private final SortedMap<String, Integer> symbols;
+  private final List<Diagnostic> diagnostics;
+  private final List<String> warnings;
+  private final Diagnostic.Pass failedPass;
+
+  /**
+   * @param image The machine code, or null if it was streamed elsewhere
+   * @param labelMapping The labels defined by the first pass
+   * @param firstPassErrors Errors found by the first pass
+   * @param secondPassErrors Errors found by the second pass, which is not run if the first pass failed
+   * @param warnings Warnings given while encoding, in line order
+   */
+  AssemblyResult(byte[] image, Map<String, Label> labelMapping, List<AssemblerException> firstPassErrors,
+                 List<AssemblerException> secondPassErrors, List<String> warnings)
+  {
+    SortedMap<String, Integer> symbols = new TreeMap<>();
+    for (Label label : labelMapping.values())
+    {
+      symbols.put(label.getName(), label.getValue());
+    }
+    this.symbols = Collections.unmodifiableSortedMap(symbols);
+
+    List<Diagnostic> diagnostics = new ArrayList<>(firstPassErrors.size() + secondPassErrors.size());
+    for (AssemblerException e : firstPassErrors)
+    {
+      diagnostics.add(new Diagnostic(Diagnostic.Pass.FIRST, e));
+    }
+    for (AssemblerException e : secondPassErrors)
+    {
+      diagnostics.add(new Diagnostic(Diagnostic.Pass.SECOND, e));
+    }
+    this.diagnostics = Collections.unmodifiableList(diagnostics);
+    this.warnings = Collections.unmodifiableList(new ArrayList<>(warnings));
+
+    if (!firstPassErrors.isEmpty())
+    {
+      this.failedPass = Diagnostic.Pass.FIRST;
+    } else if (!secondPassErrors.isEmpty())
+    {
+      this.failedPass = Diagnostic.Pass.SECOND;
+    } else
+    {
+      this.failedPass = null;
+    }
+
+    // The machine code of a failed assembly has gaps where the errors were
+    this.image = failedPass == null ? image : null;
+  }
+
+  /**
+   * Recreate a result reported elsewhere, e.g. by an AssemblerDaemon
+   *
+   * @param image The machine code, or null
+   * @param symbols The value of every label, by name
+   * @param diagnostics Every error, in report order
+   * @param warnings Every warning, in report order
+   */
+  AssemblyResult(byte[] image, SortedMap<String, Integer> symbols, List<Diagnostic> diagnostics,
+                 List<String> warnings)
+  {
+    this.symbols = Collections.unmodifiableSortedMap(symbols);
+    this.diagnostics = Collections.unmodifiableList(diagnostics);
+    this.warnings = Collections.unmodifiableList(warnings);
+
+    Diagnostic.Pass failedPass = null;
+    for (Diagnostic diagnostic : diagnostics)
+    {
+      if (failedPass == null || diagnostic.getPass().compareTo(failedPass) < 0)
+      {
+        failedPass = diagnostic.getPass();
+      }
+    }
+    this.failedPass = failedPass;
+    this.image = failedPass == null ? image : null;
+  }
+
+  /**
+   * @return True if there were no errors
+   */
+  public boolean isSuccess()
+  {
+    return failedPass == null;
+  }
+
+  /**
+   * Return the pass whose errors stopped the assembly
+   *
+   * @return The failed pass, or null if there were no errors
+   */
+  public Diagnostic.Pass getFailedPass()
+  {
+    return failedPass;
+  }
+
+  /**
+   * Return the machine code, without the stall padding (see ImageWriter)
+   *
+   * @return The machine code, or null if there were errors or the image was streamed
+   */
+  public byte[] getImage()
+  {
+    return image;
+  }
+
+  /**
+   * Return the value of every label, by name
+   *
+   * @return The symbol table, sorted by name
+   */
+  public SortedMap<String, Integer> getSymbols()
+  {
+    return symbols;
+  }
+
+  /**
+   * Return every error, first-pass errors then second-pass errors, each in line order
+   *
+   * @return The diagnostics, empty on success
+   */
+  public List<Diagnostic> getDiagnostics()
+  {
+    return diagnostics;
+  }
+
+  /**
+   * Return the warnings given while encoding, e.g. about operands the hardware does not
+   * support. Unlike diagnostics, they do not stop the assembly
+   *
+   * @return The warnings, in line order
+   */
+  public List<String> getWarnings()
+  {
+    return warnings;
+  }
+
+  /**
+   * Print the warnings, which the command line gives on standard error before its report
+   *
+   * @param err Where to print
+   */
+  public void printWarnings(PrintStream err)
+  {
+    for (String warning : warnings)
+    {
+      err.println(warning);
+    }
+  }
+
+  /**
+   * Print the report the command line gives: the errors of the failed pass, or the value
+   * of every label
+   *
+   * @param out Where to print
+   */
+  public void print(PrintStream out)
+  {
+    if (failedPass != null)
+    {
+      out.println(failedPass == Diagnostic.Pass.FIRST ? "First-Pass Errors:" : "Second-Pass Errors:");
+      out.println("Errors:");
+      for (Diagnostic diagnostic : diagnostics)
+      {
+        out.println(diagnostic.getMessage());
+      }
+      return;
+    }
+
+    for (Map.Entry<String, Integer> symbol : symbols.entrySet())
+    {
+      out.println(symbol.getKey() + ": 0x" + Integer.toHexString(symbol.getValue()));
+    }
+  }
+}
@@ -0,0 +1,293 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : AssemblyStats.java
+ * Description  : Per-phase timings and counters of one assembly, for --stats
+ */
+
+package tigercat;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import tigercat.instruction.Instruction;
+import tigercat.instruction.InstructionSyntaxError;
+
+/**
+ * Per-phase timings and counters of one assembly, for --stats
+ *
+ * Each phase records its wall time and the bytes allocated while it ran, by every thread
+ * of the JVM, so work done on a pool is included (a thread which ends during a phase
+ * takes its allocations with it). Allocations are only known on JVMs whose ThreadMXBean
+ * counts them, and are otherwise reported as -1.
+ *
+ * The counters are of lines by kind, instructions by mnemonic, the machine words emitted
+ * by each pseudo-instruction mnemonic (in words, as addresses count them), labels defined
+ * and ISA table lookups. They are gathered after the assembly from its source and
+ * Program, so an assembly without stats does no counting at all.
+ */
+public class AssemblyStats
+{
+  public static final String BLANK = "blank";
+  public static final String COMMENT = "comment";
+  public static final String LABEL = "label";
+  public static final String CONSTANT = "constant";
+  public static final String INSTRUCTION = "instruction";
+  public static final String INVALID = "invalid";
+
+  /**
+   * Time and allocation of one phase
+   */
+  private static class Phase
+  {
+    long wallNanos;
+    long allocatedBytes;
+  }
+
+  private final Map<String, Phase> phases = new LinkedHashMap<>();
+  private final Map<String, Long> lines = new LinkedHashMap<>();
+  private final Map<String, Long> mnemonics = new TreeMap<>();
+  private final Map<String, Long> pseudoInstructionWords = new TreeMap<>();
+  private long labels;
+  private long isaLookups;
+
+  private String currentPhase;
+  private long phaseStart;
+  private long allocationStart;
+
+  public AssemblyStats()
+  {
+    for (String kind : new String[] { BLANK, COMMENT, LABEL, CONSTANT, INSTRUCTION, INVALID })
+    {
+      lines.put(kind, 0L);
+    }
+  }
+
+  /**
+   * Start timing a phase. A phase run more than once is recorded as their total
+   *
+   * @param name The phase, e.g. firstPass
+   */
+  public void startPhase(String name)
+  {
+    assert currentPhase == null : "Phase " + currentPhase + " was not ended";
+    currentPhase = name;
+    allocationStart = allocatedBytes();
+    phaseStart = System.nanoTime();
+  }
+
+  /**
+   * Stop timing the phase last started
+   */
+  public void endPhase()
+  {
+    long wallNanos = System.nanoTime() - phaseStart;
+    long allocationEnd = allocatedBytes();
+
+    Phase phase = phases.get(currentPhase);
+    if (phase == null)
+    {
+      phase = new Phase();
+      phases.put(currentPhase, phase);
+    }
+    phase.wallNanos += wallNanos;
+    if (allocationStart < 0 || allocationEnd < 0)
+    {
+      phase.allocatedBytes = -1;
+    } else if (phase.allocatedBytes >= 0)
+    {
+      phase.allocatedBytes += Math.max(0, allocationEnd - allocationStart);
+    }
+    currentPhase = null;
+  }
+
+  /**
+   * Return the bytes allocated so far by the threads of the JVM which are still alive
+   *
+   * @return The bytes, or -1 if the JVM does not count them
+   */
+  static long allocatedBytes()
+  {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean))
+    {
+      return -1;
+    }
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+    if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+    {
+      return -1;
+    }
+
+    long total = 0;
+    for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds()))
+    {
+      // -1 for a thread which ended since it was listed
+      if (bytes > 0)
+      {
+        total += bytes;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Count the lines of the source by kind, and the instructions by mnemonic
+   *
+   * @param source The assembly
+   */
+  public void countLines(String source)
+  {
+    Lexer lexer = new Lexer(source);
+    while (lexer.hasNextLine())
+    {
+      List<Token> tokens;
+      try
+      {
+        tokens = lexer.nextLine();
+      } catch (InstructionSyntaxError e)
+      {
+        increment(lines, INVALID, 1);
+        continue;
+      }
+
+      if (tokens.isEmpty())
+      {
+        increment(lines, BLANK, 1);
+        continue;
+      }
+
+      Token first = tokens.get(0);
+      switch (first.getKind())
+      {
+        case COMMENT:
+          increment(lines, COMMENT, 1);
+          break;
+        case LABEL_DEFINITION:
+          increment(lines, LABEL, 1);
+          break;
+        case CONSTANT_DEFINITION:
+          increment(lines, CONSTANT, 1);
+          break;
+        default:
+          increment(lines, INSTRUCTION, 1);
+          increment(mnemonics, first.getText(), 1);
+      }
+    }
+  }
+
+  /**
+   * Count the labels of the program, and the machine words of its pseudo-instructions
+   *
+   * @param program The program built by the first pass
+   */
+  public void countProgram(Program program)
+  {
+    labels += program.getLabelMapping().size();
+    for (Program.Statement statement : program.getStatements())
+    {
+      Instruction instruction = statement.getInstruction();
+      if (instruction.isPseudoInstruction())
+      {
+        String line = program.getLine(statement).trim();
+        int end = 0;
+        while (end < line.length() && !Character.isWhitespace(line.charAt(end)))
+        {
+          end++;
+        }
+        increment(pseudoInstructionWords, line.substring(0, end), instruction.getSize());
+      }
+    }
+  }
+
+  /**
+   * @param isaLookups The number of ISA table lookups made (see IsaTables.counting)
+   */
+  public void setIsaLookups(long isaLookups)
+  {
+    this.isaLookups = isaLookups;
+  }
+
+  private static void increment(Map<String, Long> counts, String key, long amount)
+  {
+    Long count = counts.get(key);
+    counts.put(key, count == null ? amount : count + amount);
+  }
+
+  /**
+   * Print the stats as tables
+   *
+   * @param out Where to print them
+   */
+  public void print(PrintStream out)
+  {
+    out.println(String.format("%-16s %12s %16s", "Phase", "Wall ms", "Allocated KB"));
+    long totalNanos = 0;
+    long totalBytes = 0;
+    for (Map.Entry<String, Phase> entry : phases.entrySet())
+    {
+      Phase phase = entry.getValue();
+      out.println(String.format("%-16s %12.3f %16s", entry.getKey(), phase.wallNanos / 1e6,
+          kilobytes(phase.allocatedBytes)));
+      totalNanos += phase.wallNanos;
+      totalBytes = totalBytes < 0 || phase.allocatedBytes < 0 ? -1 : totalBytes + phase.allocatedBytes;
+    }
+    out.println(String.format("%-16s %12.3f %16s", "total", totalNanos / 1e6, kilobytes(totalBytes)));
+
+    out.println();
+    printCounts(out, "Lines", lines);
+    printCounts(out, "Mnemonic", mnemonics);
+    printCounts(out, "Pseudo-op words", pseudoInstructionWords);
+    out.println(String.format("%-16s %12d", "Labels", labels));
+    out.println(String.format("%-16s %12d", "ISA lookups", isaLookups));
+  }
+
+  private static String kilobytes(long bytes)
+  {
+    return bytes < 0 ? "n/a" : String.format("%.1f", bytes / 1024.0);
+  }
+
+  private static void printCounts(PrintStream out, String title, Map<String, Long> counts)
+  {
+    out.println(String.format("%-16s %12s", title, "Count"));
+    for (Map.Entry<String, Long> entry : counts.entrySet())
+    {
+      out.println(String.format("  %-14s %12d", entry.getKey(), entry.getValue()));
+    }
+    out.println();
+  }
+
+  /**
+   * Return the stats in the form written by --stats-json
+   *
+   * @return {"phases": {NAME: {"wallNanos": ..., "allocatedBytes": ...}, ...}, "lines": {...},
+   *         "mnemonics": {...}, "pseudoInstructionWords": {...}, "labels": ..., "isaLookups": ...}
+   */
+  public Map<String, Object> toJson()
+  {
+    Map<String, Object> phaseMap = new LinkedHashMap<>();
+    for (Map.Entry<String, Phase> entry : phases.entrySet())
+    {
+      Map<String, Object> phase = new LinkedHashMap<>();
+      phase.put("wallNanos", entry.getValue().wallNanos);
+      phase.put("allocatedBytes", entry.getValue().allocatedBytes);
+      phaseMap.put(entry.getKey(), phase);
+    }
+
+    Map<String, Object> json = new LinkedHashMap<>();
+    json.put("version", Assembler.VERSION);
+    json.put("phases", phaseMap);
+    json.put("lines", new LinkedHashMap<String, Object>(lines));
+    json.put("mnemonics", new LinkedHashMap<String, Object>(mnemonics));
+    json.put("pseudoInstructionWords", new LinkedHashMap<String, Object>(pseudoInstructionWords));
+    json.put("labels", labels);
+    json.put("isaLookups", isaLookups);
+    return json;
+  }
+}
@@ -0,0 +1,435 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : BatchAssembler.java
+ * Description  : Assembles many files in one JVM, on a pool of workers
+ */
+
+package tigercat;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import tigercat.instruction.EncodingContext;
+
+/**
+ * Assembles many files in one JVM, on a pool of workers
+ *
+ * Reading and writing files run on a pool of I/O threads, and assembling on a separate
+ * pool bounded by the number of CPUs, so a slow disk does not hold up the assembler. Every
+ * worker shares one Assembler, and with it the ISA tables and the pooled scratch buffers.
+ * Each output is written next to its input, with OUTPUT_EXTENSION in place of the input's.
+ */
+public class BatchAssembler
+{
+  /**
+   * Extension of the machine code written for each input
+   */
+  public static final String OUTPUT_EXTENSION = ".bin";
+
+  /**
+   * Extension of the assembly files found in a directory
+   */
+  public static final String INPUT_EXTENSION = ".s";
+
+  /**
+   * An argument starting with this names a manifest: a file listing one input per line
+   */
+  public static final String MANIFEST_PREFIX = "@";
+
+  private static final String GLOB_CHARACTERS = "*?[{";
+
+  private final Assembler assembler;
+  private int jobs = Runtime.getRuntime().availableProcessors();
+  private int ioThreads = 4;
+  private boolean sync = false;
+
+  /**
+   * The outcome of assembling one file
+   */
+  public static class FileResult
+  {
+    private final Path input;
+    private final Path output;
+    private AssemblyResult result;
+    private Throwable failure;
+    private long readNanos;
+    private long assembleNanos;
+    private long writeNanos;
+
+    FileResult(Path input)
+    {
+      this.input = input;
+      this.output = outputFor(input);
+    }
+
+    public Path getInput()
+    {
+      return input;
+    }
+
+    public Path getOutput()
+    {
+      return output;
+    }
+
+    /**
+     * @return The result of assembling, or null if the file could not be read or assembled
+     */
+    public AssemblyResult getResult()
+    {
+      return result;
+    }
+
+    /**
+     * @return What went wrong reading, assembling or writing the file, or null
+     */
+    public Throwable getFailure()
+    {
+      return failure;
+    }
+
+    /**
+     * @return True if the file assembled and its output was written
+     */
+    public boolean isSuccess()
+    {
+      return failure == null && result != null && result.isSuccess();
+    }
+
+    public long getReadNanos()
+    {
+      return readNanos;
+    }
+
+    public long getAssembleNanos()
+    {
+      return assembleNanos;
+    }
+
+    public long getWriteNanos()
+    {
+      return writeNanos;
+    }
+  }
+
+  /**
+   * @param context The ISA tables and configuration to encode with
+   */
+  public BatchAssembler(EncodingContext context)
+  {
+    this.assembler = new Assembler(context);
+  }
+
+  /**
+   * @param jobs Number of files to assemble at once
+   */
+  public void setJobs(int jobs)
+  {
+    this.jobs = jobs;
+  }
+
+  /**
+   * @param ioThreads Number of files to read or write at once
+   */
+  public void setIoThreads(int ioThreads)
+  {
+    this.ioThreads = ioThreads;
+  }
+
+  /**
+   * @param sync Whether to force each output to disk (see ImageWriter)
+   */
+  public void setSync(boolean sync)
+  {
+    this.sync = sync;
+  }
+
+  /**
+   * Return where the output for an input is written: beside it, with OUTPUT_EXTENSION
+   *
+   * @param input The assembly file
+   * @return The machine code file
+   */
+  public static Path outputFor(Path input)
+  {
+    String name = input.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return input.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + OUTPUT_EXTENSION);
+  }
+
+  /**
+   * Expand the inputs given on the command line into assembly files, in order
+   *
+   * Each argument is a file, a directory (every INPUT_EXTENSION file in it), a glob such as
+   * tests/*.s or gen/**.s, or MANIFEST_PREFIX followed by a manifest. A manifest lists one
+   * argument per line, relative to the manifest; blank lines and # comments are ignored.
+   *
+   * A file named more than once is only assembled once, since its output would otherwise
+   * be written twice at the same time.
+   *
+   * @param arguments The arguments
+   * @return The files to assemble
+   * @throws IOException If a directory or manifest cannot be read, or an input does not exist
+   */
+  public static List<Path> expandInputs(List<String> arguments) throws IOException
+  {
+    List<Path> inputs = new ArrayList<>();
+    for (String argument : arguments)
+    {
+      expandInput(argument, Paths.get(""), inputs);
+    }
+
+    Set<Path> seen = new HashSet<>();
+    List<Path> unique = new ArrayList<>(inputs.size());
+    for (Path input : inputs)
+    {
+      if (seen.add(input.toAbsolutePath().normalize()))
+      {
+        unique.add(input);
+      }
+    }
+    return unique;
+  }
+
+  private static void expandInput(String argument, Path base, List<Path> inputs) throws IOException
+  {
+    if (argument.startsWith(MANIFEST_PREFIX))
+    {
+      Path manifest = base.resolve(argument.substring(MANIFEST_PREFIX.length()));
+      Path manifestBase = manifest.getParent() == null ? Paths.get("") : manifest.getParent();
+      for (String line : Files.readAllLines(manifest, Charset.defaultCharset()))
+      {
+        line = line.trim();
+        if (!line.isEmpty() && !line.startsWith(Assembler.COMMENT_PREFIX))
+        {
+          expandInput(line, manifestBase, inputs);
+        }
+      }
+      return;
+    }
+
+    int glob = firstGlobCharacter(argument);
+    if (glob != -1)
+    {
+      // Walk from the deepest directory before the first wildcard
+      int slash = argument.lastIndexOf('/', glob);
+      Path root = base.resolve(slash == -1 ? "" : argument.substring(0, slash + 1));
+      final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + base.resolve(argument));
+      List<Path> matches = new ArrayList<>();
+      try (Stream<Path> paths = Files.walk(root))
+      {
+        paths.filter(path -> Files.isRegularFile(path) && matcher.matches(path)).forEach(matches::add);
+      }
+      matches.sort(null);
+      inputs.addAll(matches);
+      return;
+    }
+
+    Path path = base.resolve(argument);
+    if (Files.isDirectory(path))
+    {
+      List<Path> matches = new ArrayList<>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, "*" + INPUT_EXTENSION))
+      {
+        for (Path entry : stream)
+        {
+          matches.add(entry);
+        }
+      }
+      matches.sort(null);
+      inputs.addAll(matches);
+    } else if (Files.exists(path))
+    {
+      inputs.add(path);
+    } else
+    {
+      throw new IOException("Input file " + path + " does not exist");
+    }
+  }
+
+  private static int firstGlobCharacter(String argument)
+  {
+    for (int index = 0; index < argument.length(); index++)
+    {
+      if (GLOB_CHARACTERS.indexOf(argument.charAt(index)) != -1)
+      {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Assemble every input, writing the output of each one which succeeds beside it
+   *
+   * @param inputs The assembly files
+   * @return The outcome of each, in the order of inputs
+   */
+  public List<FileResult> assemble(List<Path> inputs)
+  {
+    ExecutorService cpu = Executors.newFixedThreadPool(jobs, daemonThreads("tigercat-assemble"));
+    ExecutorService io = Executors.newFixedThreadPool(ioThreads, daemonThreads("tigercat-io"));
+    try
+    {
+      List<CompletableFuture<FileResult>> futures = new ArrayList<>();
+      for (Path input : inputs)
+      {
+        final FileResult file = new FileResult(input);
+        futures.add(CompletableFuture
+            .supplyAsync(() -> read(file), io)
+            .thenApplyAsync(source -> assemble(file, source), cpu)
+            .thenApplyAsync(result -> write(file, result), io)
+            .exceptionally(e -> {
+              file.failure = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+              return file;
+            }));
+      }
+
+      List<FileResult> results = new ArrayList<>();
+      for (CompletableFuture<FileResult> future : futures)
+      {
+        results.add(future.join());
+      }
+      return results;
+    } finally
+    {
+      cpu.shutdownNow();
+      io.shutdownNow();
+    }
+  }
+
+  private String read(FileResult file)
+  {
+    long start = System.nanoTime();
+    try
+    {
+      return new String(Files.readAllBytes(file.input), Charset.defaultCharset());
+    } catch (IOException e)
+    {
+      throw new CompletionException(e);
+    } finally
+    {
+      file.readNanos = System.nanoTime() - start;
+    }
+  }
+
+  private AssemblyResult assemble(FileResult file, String source)
+  {
+    long start = System.nanoTime();
+    try
+    {
+      file.result = assembler.assembleToResult(source, file.input.toString(), null);
+      return file.result;
+    } finally
+    {
+      file.assembleNanos = System.nanoTime() - start;
+    }
+  }
+
+  private FileResult write(FileResult file, AssemblyResult result)
+  {
+    if (!result.isSuccess())
+    {
+      return file;
+    }
+
+    long start = System.nanoTime();
+    try
+    {
+      ImageWriter writer = new ImageWriter(file.output);
+      writer.setSync(sync);
+      writer.write(result.getImage());
+      return file;
+    } catch (IOException e)
+    {
+      throw new CompletionException(e);
+    } finally
+    {
+      file.writeNanos = System.nanoTime() - start;
+    }
+  }
+
+  private static ThreadFactory daemonThreads(final String name)
+  {
+    final AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Print one line per file, with the errors of any which failed and any warnings, then
+   * the totals
+   *
+   * @param results The outcome of each file
+   * @param elapsedNanos Wall-clock time of the whole batch
+   * @param out Where to print
+   * @return True if every file succeeded
+   */
+  public static boolean printSummary(List<FileResult> results, long elapsedNanos, PrintStream out)
+  {
+    int failed = 0;
+    for (FileResult file : results)
+    {
+      String timings = String.format("read %.1f ms, assemble %.1f ms, write %.1f ms", file.readNanos / 1e6,
+          file.assembleNanos / 1e6, file.writeNanos / 1e6);
+
+      if (file.isSuccess())
+      {
+        out.println(String.format("OK      %s -> %s (%d bytes; %s)", file.input, file.output,
+            file.result.getImage().length + ImageWriter.STALL_PADDING_BYTES, timings));
+        printWarnings(file.result, out);
+        continue;
+      }
+
+      failed++;
+      if (file.failure != null)
+      {
+        out.println(String.format("ERROR   %s (%s)", file.input, timings));
+        out.println("  " + file.failure);
+      } else
+      {
+        out.println(String.format("FAILED  %s (%s pass errors; %s)", file.input,
+            file.result.getFailedPass() == Diagnostic.Pass.FIRST ? "first" : "second", timings));
+        for (Diagnostic diagnostic : file.result.getDiagnostics())
+        {
+          out.println("  " + diagnostic.getMessage());
+        }
+        printWarnings(file.result, out);
+      }
+    }
+
+    out.println(String.format("%d files: %d succeeded, %d failed in %.1f ms", results.size(),
+        results.size() - failed, failed, elapsedNanos / 1e6));
+    return failed == 0;
+  }
+
+  private static void printWarnings(AssemblyResult result, PrintStream out)
+  {
+    for (String warning : result.getWarnings())
+    {
+      out.println("  " + warning);
+    }
+  }
+}
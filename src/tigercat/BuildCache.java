@@ -0,0 +1,468 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : BuildCache.java
+ * Description  : Content-addressed on-disk cache of assembled images
+ */
+
+package tigercat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import tigercat.instruction.IsaTables;
+import tigercat.instruction.XmlLookupException;
+
+/**
+ * Content-addressed on-disk cache of assembled images
+ *
+ * Each entry is keyed by a hash of the source, the ISA tables, the line separator and
+ * Assembler.VERSION, which between them decide the output. An entry is a directory named
+ * by its key, holding the labels, diagnostics and warnings (in the DaemonProtocol result format)
+ * and, if the assembly succeeded, the image with its stall padding, ready to be linked or
+ * copied into place.
+ *
+ * Any number of processes may share a cache directory. Entries are written into a
+ * temporary directory which is then renamed into place, so an entry is either whole or
+ * absent, and are removed by renaming them away before deleting them. A hit marks its
+ * entry as used; once the cache holds more than its size limit, the least recently used
+ * entries are evicted.
+ */
+public class BuildCache
+{
+  /**
+   * Size limit of the cache, unless told otherwise
+   */
+  public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+  private static final String RESULT_FILE = "result";
+  private static final String IMAGE_FILE = "image" + BatchAssembler.OUTPUT_EXTENSION;
+  private static final String TEMPORARY_PREFIX = "tmp-";
+
+  // Temporary directories older than this were left by a process which died
+  private static final long ABANDONED_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private static byte[] isaTables;
+
+  private final Path directory;
+  private final long maxBytes;
+  private boolean sync = false;
+
+  /**
+   * A cached assembly
+   */
+  public static class Entry
+  {
+    private final AssemblyResult result;
+    private final Path image;
+
+    Entry(AssemblyResult result, Path image)
+    {
+      this.result = result;
+      this.image = image;
+    }
+
+    /**
+     * @return The labels, diagnostics and warnings. The image itself is left on disk (see install)
+     */
+    public AssemblyResult getResult()
+    {
+      return result;
+    }
+  }
+
+  /**
+   * @param directory The cache directory, created if it does not exist
+   * @param maxBytes Size the cache is trimmed back to when it grows past it
+   * @throws IOException If the directory cannot be created
+   */
+  public BuildCache(Path directory, long maxBytes) throws IOException
+  {
+    this.directory = Files.createDirectories(directory);
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @param sync Whether to force stored entries and installed outputs to disk, along with
+   *             the directories naming them, before returning
+   */
+  public void setSync(boolean sync)
+  {
+    this.sync = sync;
+  }
+
+  /**
+   * Return the key of a source: a hash of everything which decides its output
+   *
+   * @param source The bytes of the assembly file
+   * @return The key, in hexadecimal
+   * @throws XmlLookupException If the ISA tables cannot be read
+   */
+  public String keyFor(byte[] source) throws XmlLookupException
+  {
+    MessageDigest digest;
+    try
+    {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e)
+    {
+      throw new IllegalStateException("SHA-256 is missing", e);
+    }
+
+    update(digest, Assembler.VERSION.getBytes(StandardCharsets.UTF_8));
+    update(digest, Lexer.lineSeparator().getBytes(StandardCharsets.UTF_8));
+    update(digest, getIsaTables());
+    update(digest, source);
+
+    StringBuilder key = new StringBuilder();
+    for (byte b : digest.digest())
+    {
+      key.append(String.format("%02x", b));
+    }
+    return key.toString();
+  }
+
+  // Each part is preceded by its length, so no two different sets of parts hash alike
+  private static void update(MessageDigest digest, byte[] part)
+  {
+    int length = part.length;
+    digest.update(new byte[] { (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8),
+        (byte) length });
+    digest.update(part);
+  }
+
+  private static synchronized byte[] getIsaTables() throws XmlLookupException
+  {
+    if (isaTables == null)
+    {
+      try (InputStream stream = IsaTables.class.getResourceAsStream(IsaTables.LOOKUP_RESOURCE))
+      {
+        if (stream == null)
+        {
+          throw new XmlLookupException("Unable to find " + IsaTables.LOOKUP_RESOURCE);
+        }
+        byte[] buffer = new byte[8192];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int count = stream.read(buffer); count != -1; count = stream.read(buffer))
+        {
+          bytes.write(buffer, 0, count);
+        }
+        isaTables = bytes.toByteArray();
+      } catch (IOException e)
+      {
+        throw new XmlLookupException("Unable to read " + IsaTables.LOOKUP_RESOURCE + ": " + e.getMessage());
+      }
+    }
+    return isaTables;
+  }
+
+  /**
+   * Look up a cached assembly, marking it as recently used
+   *
+   * @param key The key of the source (see keyFor)
+   * @return The entry, or null if there is none
+   */
+  public Entry lookup(String key)
+  {
+    CacheLookupEvent event = new CacheLookupEvent();
+    event.begin();
+    Entry found = read(key);
+    event.end();
+    if (event.shouldCommit())
+    {
+      event.key = key;
+      event.hit = found != null;
+      event.commit();
+    }
+    return found;
+  }
+
+  private Entry read(String key)
+  {
+    Path entry = directory.resolve(key);
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Files.newInputStream(entry.resolve(RESULT_FILE)))))
+    {
+      AssemblyResult result = DaemonProtocol.readResult(in);
+      Path image = entry.resolve(IMAGE_FILE);
+      if (result.isSuccess() && !Files.exists(image))
+      {
+        return null;
+      }
+      markUsed(entry);
+      return new Entry(result, image);
+    } catch (IOException e)
+    {
+      // Absent, or evicted while it was being read
+      return null;
+    }
+  }
+
+  /**
+   * Mark an entry as just used. Every entry is stamped by the same clock, since the times
+   * the filesystem gives new files may be coarser
+   */
+  private static void markUsed(Path entry) throws IOException
+  {
+    Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+  }
+
+  /**
+   * Put the cached image of a successful assembly in place, as a hard link to the cache
+   * if the filesystem allows, or else as a copy
+   *
+   * The output replaces any existing file atomically. ImageWriter never writes through
+   * a hard link, so a linked output may later be overwritten without harming the cache.
+   *
+   * @param entry The entry, whose assembly succeeded
+   * @param output Where to put the image
+   * @throws IOException If the entry was evicted, or the output cannot be written
+   */
+  public void install(Entry entry, Path output) throws IOException
+  {
+    Path absoluteOutput = output.toAbsolutePath();
+    Path partial = absoluteOutput.resolveSibling(absoluteOutput.getFileName() + "." + UUID.randomUUID() + ".part");
+    try
+    {
+      try
+      {
+        Files.createLink(partial, entry.image);
+      } catch (IOException | UnsupportedOperationException e)
+      {
+        // Another filesystem, or no hard links
+        Files.copy(entry.image, partial);
+      }
+      Files.move(partial, absoluteOutput, StandardCopyOption.REPLACE_EXISTING);
+      if (sync)
+      {
+        force(absoluteOutput);
+        forceDirectory(absoluteOutput.getParent());
+      }
+    } finally
+    {
+      Files.deleteIfExists(partial);
+    }
+  }
+
+  private static void force(Path file) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+    {
+      channel.force(true);
+    }
+  }
+
+  /**
+   * Force the names in a directory to disk, so files renamed into it stay there
+   */
+  private static void forceDirectory(Path directory) throws IOException
+  {
+    try
+    {
+      force(directory);
+    } catch (AccessDeniedException e)
+    {
+      // Windows cannot open a directory, and keeps its names in the journal anyway
+    }
+  }
+
+  /**
+   * Cache an assembly, then evict the least recently used entries if the cache is too big
+   *
+   * @param key The key of the source (see keyFor)
+   * @param result The result, with its image if it succeeded
+   * @throws IOException If the entry cannot be written
+   */
+  public void store(String key, AssemblyResult result) throws IOException
+  {
+    Path temporary = Files.createDirectory(directory.resolve(TEMPORARY_PREFIX + UUID.randomUUID()));
+    try
+    {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+          Files.newOutputStream(temporary.resolve(RESULT_FILE)))))
+      {
+        DaemonProtocol.writeResult(out, new AssemblyResult(null, result.getSymbols(), result.getDiagnostics(),
+            result.getWarnings()));
+      }
+      if (result.isSuccess())
+      {
+        ImageWriter writer = new ImageWriter(temporary.resolve(IMAGE_FILE));
+        writer.setSync(sync);
+        writer.write(result.getImage());
+      }
+      if (sync)
+      {
+        force(temporary.resolve(RESULT_FILE));
+        forceDirectory(temporary);
+      }
+
+      try
+      {
+        Files.move(temporary, directory.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+      } catch (FileAlreadyExistsException | AtomicMoveNotSupportedException e)
+      {
+        // Another process cached the same source first
+      } catch (IOException e)
+      {
+        // Renaming onto a non-empty directory fails in a platform-specific way
+        if (!Files.isDirectory(directory.resolve(key)))
+        {
+          throw e;
+        }
+      }
+
+      if (sync)
+      {
+        forceDirectory(directory);
+      }
+
+      try
+      {
+        markUsed(directory.resolve(key));
+      } catch (NoSuchFileException e)
+      {
+        // Evicted by another process already
+      }
+    } finally
+    {
+      deleteRecursively(temporary);
+    }
+
+    evict();
+  }
+
+  /**
+   * Delete the least recently used entries until the cache fits in its size limit, and
+   * any temporary directories abandoned by processes which died
+   *
+   * @throws IOException If the cache directory cannot be listed
+   */
+  public void evict() throws IOException
+  {
+    List<Usage> entries = new ArrayList<>();
+    long total = 0;
+    long now = System.currentTimeMillis();
+
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory))
+    {
+      for (Path entry : stream)
+      {
+        try
+        {
+          long used = Files.getLastModifiedTime(entry).toMillis();
+          if (entry.getFileName().toString().startsWith(TEMPORARY_PREFIX))
+          {
+            if (now - used > ABANDONED_MILLIS)
+            {
+              deleteRecursively(entry);
+            }
+            continue;
+          }
+
+          Usage usage = new Usage(entry, sizeOf(entry), used);
+          entries.add(usage);
+          total += usage.size;
+        } catch (NoSuchFileException e)
+        {
+          // Evicted by another process
+        }
+      }
+    }
+
+    entries.sort(Comparator.comparingLong(usage -> usage.used));
+    for (int index = 0; index < entries.size() && total > maxBytes; index++)
+    {
+      remove(entries.get(index).entry);
+      total -= entries.get(index).size;
+    }
+  }
+
+  /**
+   * The size of an entry, and when it was last used
+   */
+  private static class Usage
+  {
+    final Path entry;
+    final long size;
+    final long used;
+
+    Usage(Path entry, long size, long used)
+    {
+      this.entry = entry;
+      this.size = size;
+      this.used = used;
+    }
+  }
+
+  /**
+   * Rename an entry away before deleting it, so no reader sees it half deleted
+   */
+  private void remove(Path entry) throws IOException
+  {
+    Path doomed = directory.resolve(TEMPORARY_PREFIX + UUID.randomUUID());
+    try
+    {
+      Files.move(entry, doomed, StandardCopyOption.ATOMIC_MOVE);
+    } catch (NoSuchFileException e)
+    {
+      // Evicted by another process
+      return;
+    }
+    deleteRecursively(doomed);
+  }
+
+  private static long sizeOf(Path entry) throws IOException
+  {
+    long size = 0;
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(entry))
+    {
+      for (Path file : stream)
+      {
+        size += Files.size(file);
+      }
+    }
+    return size;
+  }
+
+  private static void deleteRecursively(Path path) throws IOException
+  {
+    if (Files.isDirectory(path))
+    {
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(path))
+      {
+        for (Path child : stream)
+        {
+          deleteRecursively(child);
+        }
+      } catch (NoSuchFileException e)
+      {
+        return;
+      }
+    }
+    Files.deleteIfExists(path);
+  }
+}
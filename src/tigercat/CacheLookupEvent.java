@@ -0,0 +1,34 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : CacheLookupEvent.java
+ * Description  : Flight Recorder event for a lookup in the build cache
+ */
+
+package tigercat;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a lookup in the build cache (see BuildCache.lookup)
+ */
+@Name(CacheLookupEvent.NAME)
+@Label("Build Cache Lookup")
+@Category("TigerCat")
+@Description("A lookup of an assembly in the build cache, and whether it was found")
+@StackTrace(false)
+final class CacheLookupEvent extends Event
+{
+  static final String NAME = "tigercat.CacheLookup";
+
+  @Label("Key")
+  String key;
+
+  @Label("Hit")
+  boolean hit;
+}
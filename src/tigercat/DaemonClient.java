@@ -0,0 +1,219 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : DaemonClient.java
+ * Description  : Sends assembly requests to a running AssemblerDaemon
+ */
+
+package tigercat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+/**
+ * Sends assembly requests to a running AssemblerDaemon, over one connection
+ */
+public class DaemonClient implements Closeable
+{
+  /**
+   * Time to wait for the daemon to accept a connection
+   */
+  public static final int CONNECT_TIMEOUT_MILLIS = 200;
+
+  /**
+   * Time to wait for an answer beyond the timeout of the request, for queueing and transfer
+   */
+  public static final int ANSWER_MARGIN_MILLIS = 5000;
+
+  private final Socket socket;
+  private final DataInputStream in;
+  private final DataOutputStream out;
+
+  private DaemonClient(Socket socket) throws IOException
+  {
+    this.socket = socket;
+    this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+  }
+
+  /**
+   * Connect to the daemon on a localhost port, each proving to the other that it holds
+   * the token the daemon wrote for its user
+   *
+   * @param port The daemon's port
+   * @return The client, or null if none of this user's daemons is listening
+   * @throws IOException If connecting fails for any other reason, the daemon refuses the
+   *                     client, or whatever is listening cannot prove it holds the token
+   */
+  public static DaemonClient connect(int port) throws IOException
+  {
+    byte[] token;
+    try
+    {
+      token = Files.readAllBytes(DaemonProtocol.tokenFile(port));
+    } catch (NoSuchFileException e)
+    {
+      return null;
+    }
+
+    Socket socket = new Socket();
+    try
+    {
+      socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+      DaemonClient client = new DaemonClient(socket);
+      client.handshake(token);
+      return client;
+    } catch (ConnectException e)
+    {
+      socket.close();
+      return null;
+    } catch (IOException e)
+    {
+      socket.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Check the daemon holds the token, so its answers can be trusted, then prove this
+   * client holds it too
+   */
+  private void handshake(byte[] token) throws IOException
+  {
+    socket.setSoTimeout(DaemonProtocol.HANDSHAKE_TIMEOUT_MILLIS);
+    byte[] challenge = DaemonProtocol.newChallenge();
+    out.writeInt(DaemonProtocol.MAGIC);
+    DaemonProtocol.writeString(out, Assembler.VERSION);
+    DaemonProtocol.writeBytes(out, challenge);
+    out.flush();
+    if (in.readByte() != DaemonProtocol.STATUS_OK)
+    {
+      throw new IOException("Daemon refused the connection: " + DaemonProtocol.readString(in));
+    }
+
+    byte[] daemonChallenge = DaemonProtocol.readChallenge(in);
+    byte[] proof = DaemonProtocol.readBytes(in);
+    byte[] expected = DaemonProtocol.prove(token, DaemonProtocol.DAEMON_ROLE, challenge, daemonChallenge);
+    if (proof == null || !MessageDigest.isEqual(expected, proof))
+    {
+      throw new IOException("The server on port " + socket.getPort() + " is not the daemon which wrote "
+          + DaemonProtocol.tokenFile(socket.getPort()));
+    }
+
+    DaemonProtocol.writeBytes(out, DaemonProtocol.prove(token, DaemonProtocol.CLIENT_ROLE, challenge,
+        daemonChallenge));
+    out.flush();
+    if (in.readByte() != DaemonProtocol.STATUS_OK)
+    {
+      throw new IOException("Daemon refused the connection: " + DaemonProtocol.readString(in));
+    }
+  }
+
+  /**
+   * Have the daemon assemble a file, which it reads itself
+   *
+   * @param input The assembly file
+   * @param timeoutMillis Longest time the assembly may take, or 0 for the daemon's default
+   * @return The result
+   * @throws IOException If the daemon cannot be reached, fails, or times out, or does not
+   *                     answer within ANSWER_MARGIN_MILLIS of the timeout (which for 0 is
+   *                     taken to be AssemblerDaemon.DEFAULT_TIMEOUT_MILLIS)
+   */
+  public AssemblyResult assemble(Path input, int timeoutMillis) throws IOException
+  {
+    return request(DaemonProtocol.ASSEMBLE_PATH, input.toAbsolutePath().toString(), timeoutMillis);
+  }
+
+  /**
+   * Have the daemon assemble source text
+   *
+   * @param assembly Assembly code to assemble
+   * @param timeoutMillis Longest time the assembly may take, or 0 for the daemon's default
+   * @return The result
+   * @throws IOException As for assemble(Path, int)
+   */
+  public AssemblyResult assemble(String assembly, int timeoutMillis) throws IOException
+  {
+    return request(DaemonProtocol.ASSEMBLE_TEXT, assembly, timeoutMillis);
+  }
+
+  private AssemblyResult request(byte command, String argument, int timeoutMillis) throws IOException
+  {
+    // A hung daemon, or some other service on the port, must not block the client forever
+    int answerMillis = (timeoutMillis > 0 ? timeoutMillis : AssemblerDaemon.DEFAULT_TIMEOUT_MILLIS)
+        + ANSWER_MARGIN_MILLIS;
+    socket.setSoTimeout(answerMillis);
+
+    out.writeInt(DaemonProtocol.MAGIC);
+    out.writeByte(command);
+    out.writeInt(timeoutMillis);
+    DaemonProtocol.writeString(out, argument);
+    out.flush();
+
+    try
+    {
+      byte status = in.readByte();
+      if (status == DaemonProtocol.STATUS_RESULT)
+      {
+        return DaemonProtocol.readResult(in);
+      }
+      String message = DaemonProtocol.readString(in);
+      throw new IOException(status == DaemonProtocol.STATUS_TIMEOUT ? "Daemon timed out: " + message
+          : "Daemon failed: " + message);
+    } catch (SocketTimeoutException e)
+    {
+      throw new IOException("Daemon did not answer within " + answerMillis + " ms", e);
+    }
+  }
+
+  /**
+   * Check the daemon is answering
+   *
+   * @throws IOException If it is not
+   */
+  public void ping() throws IOException
+  {
+    command(DaemonProtocol.PING);
+  }
+
+  /**
+   * Ask the daemon to stop, once it has answered the requests it is working on
+   *
+   * @throws IOException If the daemon cannot be reached
+   */
+  public void shutdown() throws IOException
+  {
+    command(DaemonProtocol.SHUTDOWN);
+  }
+
+  private void command(byte command) throws IOException
+  {
+    socket.setSoTimeout(DaemonProtocol.HANDSHAKE_TIMEOUT_MILLIS);
+    out.writeInt(DaemonProtocol.MAGIC);
+    out.writeByte(command);
+    out.flush();
+    if (in.readByte() != DaemonProtocol.STATUS_OK)
+    {
+      throw new IOException("Unexpected answer from the daemon");
+    }
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    socket.close();
+  }
+}
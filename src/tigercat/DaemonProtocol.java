@@ -0,0 +1,268 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : DaemonProtocol.java
+ * Description  : Wire format shared by AssemblerDaemon and DaemonClient
+ */
+
+package tigercat;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Wire format shared by AssemblerDaemon and DaemonClient
+ *
+ * A connection starts with a handshake, then carries any number of requests, each
+ * answered before the next is sent.
+ *
+ *   handshake: MAGIC, the client's Assembler.VERSION and a random challenge. A daemon
+ *              of another version would encode differently, so it answers STATUS_ERROR
+ *              and a message, and the client assembles locally instead. Otherwise it
+ *              answers STATUS_OK, its own challenge and its proof (see prove) of the
+ *              token it wrote to tokenFile. The client hangs up unless the proof is
+ *              right, then sends its own proof, answered by STATUS_OK, or by
+ *              STATUS_ERROR and a message, after which the daemon hangs up
+ *   request:  MAGIC, command byte, then for the ASSEMBLE commands the timeout in
+ *             milliseconds (0 for the daemon's default) and the path or source text
+ *   response: status byte, then a result for STATUS_RESULT, or a message for
+ *             STATUS_ERROR and STATUS_TIMEOUT
+ *
+ * Strings are UTF-8, preceded by their length in bytes, or -1 for null. A length over
+ * MAX_LENGTH is refused before anything is allocated for it, so a peer cannot exhaust
+ * the memory of the other side.
+ *
+ * The token itself is never sent. Each side proves it can read the token file, so a
+ * client is served only if it is of the daemon's user, and is never answered by another
+ * process listening on the port, e.g. one started by another user after the daemon died
+ * without removing its token file.
+ */
+final class DaemonProtocol
+{
+  static final int MAGIC = 0x54434144; // "TCAD"
+
+  /**
+   * Longest string or byte array either side accepts, e.g. the source text of a request
+   */
+  static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+  /**
+   * Time either side waits for the handshake, and a client for the answer to PING or SHUTDOWN
+   */
+  static final int HANDSHAKE_TIMEOUT_MILLIS = 2000;
+
+  /**
+   * Length of the random challenge each side sends in the handshake
+   */
+  static final int CHALLENGE_BYTES = 32;
+
+  // Proofs name the side they come from, so neither can be replayed as the other's
+  static final String DAEMON_ROLE = "daemon";
+  static final String CLIENT_ROLE = "client";
+
+  private static final String PROOF_ALGORITHM = "HmacSHA256";
+  private static final SecureRandom random = new SecureRandom();
+
+  // Commands
+  static final byte ASSEMBLE_PATH = 1;
+  static final byte ASSEMBLE_TEXT = 2;
+  static final byte PING = 3;
+  static final byte SHUTDOWN = 4;
+
+  // Statuses
+  static final byte STATUS_OK = 0;
+  static final byte STATUS_RESULT = 1;
+  static final byte STATUS_ERROR = 2;
+  static final byte STATUS_TIMEOUT = 3;
+
+  private DaemonProtocol()
+  {
+  }
+
+  /**
+   * Return the file holding the token of the daemon on a port. Only its owner can read it,
+   * so only the user who started the daemon can use it
+   *
+   * @param port The daemon's port
+   * @return The file, in the .tigercat directory of the user's home
+   */
+  static Path tokenFile(int port)
+  {
+    return Paths.get(System.getProperty("user.home"), ".tigercat", "daemon-" + port + ".token");
+  }
+
+  /**
+   * @return A new random challenge, for the other side to prove the token with
+   */
+  static byte[] newChallenge()
+  {
+    byte[] challenge = new byte[CHALLENGE_BYTES];
+    random.nextBytes(challenge);
+    return challenge;
+  }
+
+  /**
+   * Read the other side's challenge
+   *
+   * @throws IOException If it is not of the length every challenge has
+   */
+  static byte[] readChallenge(DataInputStream in) throws IOException
+  {
+    byte[] challenge = readBytes(in);
+    if (challenge == null || challenge.length != CHALLENGE_BYTES)
+    {
+      throw new IOException("Malformed handshake challenge");
+    }
+    return challenge;
+  }
+
+  /**
+   * Prove knowledge of the token without revealing it: an HMAC of both challenges, keyed
+   * on the token. Check a proof received with MessageDigest.isEqual
+   *
+   * @param token The contents of the token file
+   * @param role DAEMON_ROLE or CLIENT_ROLE, whichever is proving
+   * @param clientChallenge The challenge the client sent
+   * @param daemonChallenge The challenge the daemon sent
+   * @return The proof
+   */
+  static byte[] prove(byte[] token, String role, byte[] clientChallenge, byte[] daemonChallenge)
+  {
+    try
+    {
+      Mac mac = Mac.getInstance(PROOF_ALGORITHM);
+      mac.init(new SecretKeySpec(token, PROOF_ALGORITHM));
+      mac.update(role.getBytes(StandardCharsets.UTF_8));
+      mac.update(clientChallenge);
+      mac.update(daemonChallenge);
+      return mac.doFinal();
+    } catch (NoSuchAlgorithmException | InvalidKeyException e)
+    {
+      // Every Java platform has HmacSHA256, and it takes keys of any length
+      throw new IllegalStateException(PROOF_ALGORITHM + " is unavailable", e);
+    }
+  }
+
+  static void writeString(DataOutputStream out, String value) throws IOException
+  {
+    if (value == null)
+    {
+      out.writeInt(-1);
+      return;
+    }
+    writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static String readString(DataInputStream in) throws IOException
+  {
+    byte[] bytes = readBytes(in);
+    return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  static void writeBytes(DataOutputStream out, byte[] value) throws IOException
+  {
+    if (value == null)
+    {
+      out.writeInt(-1);
+      return;
+    }
+    if (value.length > MAX_LENGTH)
+    {
+      throw new IOException("Message of " + value.length + " bytes is longer than the limit of " + MAX_LENGTH);
+    }
+    out.writeInt(value.length);
+    out.write(value);
+  }
+
+  static byte[] readBytes(DataInputStream in) throws IOException
+  {
+    int length = in.readInt();
+    if (length < 0)
+    {
+      return null;
+    }
+    if (length > MAX_LENGTH)
+    {
+      throw new IOException("Message of " + length + " bytes is longer than the limit of " + MAX_LENGTH);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  static void writeResult(DataOutputStream out, AssemblyResult result) throws IOException
+  {
+    out.writeInt(result.getSymbols().size());
+    for (Map.Entry<String, Integer> symbol : result.getSymbols().entrySet())
+    {
+      writeString(out, symbol.getKey());
+      out.writeInt(symbol.getValue());
+    }
+
+    out.writeInt(result.getDiagnostics().size());
+    for (Diagnostic diagnostic : result.getDiagnostics())
+    {
+      out.writeByte(diagnostic.getPass().ordinal());
+      out.writeInt(diagnostic.getLineNumber());
+      writeString(out, diagnostic.getLine());
+      writeString(out, diagnostic.getKind());
+      writeString(out, diagnostic.getMessage());
+    }
+
+    out.writeInt(result.getWarnings().size());
+    for (String warning : result.getWarnings())
+    {
+      writeString(out, warning);
+    }
+
+    writeBytes(out, result.getImage());
+  }
+
+  static AssemblyResult readResult(DataInputStream in) throws IOException
+  {
+    SortedMap<String, Integer> symbols = new TreeMap<>();
+    for (int count = in.readInt(); count > 0; count--)
+    {
+      String name = readString(in);
+      symbols.put(name, in.readInt());
+    }
+
+    List<Diagnostic> diagnostics = new ArrayList<>();
+    for (int count = in.readInt(); count > 0; count--)
+    {
+      byte ordinal = in.readByte();
+      if (ordinal < 0 || ordinal >= Diagnostic.Pass.values().length)
+      {
+        throw new IOException("Unknown pass " + ordinal + " in a result");
+      }
+      Diagnostic.Pass pass = Diagnostic.Pass.values()[ordinal];
+      int lineNumber = in.readInt();
+      String line = readString(in);
+      String kind = readString(in);
+      diagnostics.add(new Diagnostic(pass, lineNumber, line, kind, readString(in)));
+    }
+
+    List<String> warnings = new ArrayList<>();
+    for (int count = in.readInt(); count > 0; count--)
+    {
+      warnings.add(readString(in));
+    }
+
+    return new AssemblyResult(readBytes(in), symbols, diagnostics, warnings);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : Diagnostic.java
+ * Description  : One error found while assembling, as reported by AssemblyResult
+ */
+
+package tigercat;
+
+/**
+ * One error found while assembling, as reported by AssemblyResult
+ */
+public final class Diagnostic
+{
+  /**
+   * The pass which found the error
+   */
+  public enum Pass
+  {
+    FIRST,  // Parsing, and defining labels
+    SECOND  // Resolving labels, and encoding
+  }
+
+  private final Pass pass;
+  private final int lineNumber;
+  private final String line;
+  private final String kind;
+  private final String message;
+  private final AssemblerException exception;
+
+  Diagnostic(Pass pass, AssemblerException exception)
+  {
+    this(pass, exception.getLineNumber(), exception.getLine(), exception.getClass().getSimpleName(),
+        exception.getDiagnostic(), exception);
+  }
+
+  /**
+   * Recreate a diagnostic reported elsewhere, e.g. by an AssemblerDaemon
+   */
+  Diagnostic(Pass pass, int lineNumber, String line, String kind, String message)
+  {
+    this(pass, lineNumber, line, kind, message, null);
+  }
+
+  private Diagnostic(Pass pass, int lineNumber, String line, String kind, String message,
+                     AssemblerException exception)
+  {
+    this.pass = pass;
+    this.lineNumber = lineNumber;
+    this.line = line;
+    this.kind = kind;
+    this.message = message;
+    this.exception = exception;
+  }
+
+  public Pass getPass()
+  {
+    return pass;
+  }
+
+  /**
+   * Return the one-based number of the line which caused the error
+   *
+   * @return The line number, or 0 if the error is not about any one line
+   */
+  public int getLineNumber()
+  {
+    return lineNumber;
+  }
+
+  /**
+   * Return the line which caused the error
+   *
+   * @return The source line, or null if the error is not about any one line
+   */
+  public String getLine()
+  {
+    return line;
+  }
+
+  /**
+   * Return the kind of error, e.g. UndefinedLabelException
+   *
+   * @return The simple name of the exception
+   */
+  public String getKind()
+  {
+    return kind;
+  }
+
+  /**
+   * Return the message printed for this error, including the line
+   *
+   * @return The diagnostic
+   */
+  public String getMessage()
+  {
+    return message;
+  }
+
+  /**
+   * @return The exception which reported the error, or null if it was reported elsewhere
+   */
+  public AssemblerException getException()
+  {
+    return exception;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getMessage();
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : ImageWriter.java
+ * Description  : Writes a machine-code image, followed by its stall padding, to a file
+ */
+
+package tigercat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a machine-code image, followed by its stall padding, to a file
+ *
+ * The file is opened once and sized for the whole image up front. Small images are
+ * written with a single gathered write of the code and the padding; large ones are
+ * copied into a mapping of the file. Neither is forced to disk unless asked, since a
+ * crash only loses an image which can be assembled again.
+ */
+public class ImageWriter
+{
+  /**
+   * An instruction's worth of zeros, written after the program so the CPU stalls after
+   * executing it
+   */
+  public static final int STALL_PADDING_BYTES = 4;
+
+  /**
+   * Images of at least this many bytes are written through a MappedByteBuffer
+   */
+  public static final int DEFAULT_MAPPING_THRESHOLD = 4 * 1024 * 1024;
+
+  private static final byte[] STALL_PADDING = new byte[STALL_PADDING_BYTES];
+
+  private final Path path;
+  private boolean sync = false;
+  private int mappingThreshold = DEFAULT_MAPPING_THRESHOLD;
+
+  /**
+   * @param path The file to write, replaced if it exists
+   */
+  public ImageWriter(Path path)
+  {
+    this.path = path;
+  }
+
+  /**
+   * @param sync Whether to force the image to disk before returning
+   */
+  public void setSync(boolean sync)
+  {
+    this.sync = sync;
+  }
+
+  /**
+   * @param mappingThreshold Size, in bytes, from which images are written through a mapping
+   */
+  public void setMappingThreshold(int mappingThreshold)
+  {
+    this.mappingThreshold = mappingThreshold;
+  }
+
+  /**
+   * Write the image and its padding
+   *
+   * @param machineCode The assembled program
+   * @throws IOException If the file cannot be written
+   */
+  public void write(byte[] machineCode) throws IOException
+  {
+    long imageSize = (long) machineCode.length + STALL_PADDING_BYTES;
+    unlinkIfShared();
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE))
+    {
+      // Overwrite in place, rather than truncating to nothing and growing again
+      if (channel.size() > imageSize)
+      {
+        channel.truncate(imageSize);
+      }
+
+      if (imageSize >= mappingThreshold)
+      {
+        // Mapping past the end of the file grows it to the size of the image
+        MappedByteBuffer image = channel.map(FileChannel.MapMode.READ_WRITE, 0, imageSize);
+        image.put(machineCode);
+        image.put(STALL_PADDING);
+        if (sync)
+        {
+          image.force();
+        }
+      } else
+      {
+        ByteBuffer[] image = { ByteBuffer.wrap(machineCode), ByteBuffer.wrap(STALL_PADDING) };
+        while (image[1].hasRemaining())
+        {
+          channel.write(image);
+        }
+      }
+
+      if (sync)
+      {
+        // Also the file's size
+        channel.force(true);
+      }
+    }
+  }
+
+  /**
+   * Open the file for an image streamed in parts, e.g. by an AssemblyPipeline
+   *
+   * @return The channel to write the machine code to, to be passed to finish afterwards
+   * @throws IOException If the file cannot be opened
+   */
+  public FileChannel open() throws IOException
+  {
+    unlinkIfShared();
+    return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  /**
+   * Write the padding after a streamed image, and close the channel
+   *
+   * @param channel The channel returned by open, with all the machine code written
+   * @throws IOException If the file cannot be written
+   */
+  public void finish(FileChannel channel) throws IOException
+  {
+    try
+    {
+      ByteBuffer padding = ByteBuffer.wrap(STALL_PADDING);
+      while (padding.hasRemaining())
+      {
+        channel.write(padding);
+      }
+      if (sync)
+      {
+        channel.force(true);
+      }
+    } finally
+    {
+      channel.close();
+    }
+  }
+
+  /**
+   * Remove the file first if it is a hard link, e.g. to a BuildCache entry, so the image
+   * is written to a new file rather than through the link into every other name
+   */
+  private void unlinkIfShared() throws IOException
+  {
+    try
+    {
+      if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)
+          && ((Number) Files.getAttribute(path, "unix:nlink", LinkOption.NOFOLLOW_LINKS)).intValue() > 1)
+      {
+        Files.delete(path);
+      }
+    } catch (UnsupportedOperationException | IllegalArgumentException e)
+    {
+      // No link counts on this filesystem
+    }
+  }
+}
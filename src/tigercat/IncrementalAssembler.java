@@ -0,0 +1,446 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : IncrementalAssembler.java
+ * Description  : Reassembles an edited program, redoing only the work the edit affects
+ */
+
+package tigercat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import tigercat.instruction.EncodingContext;
+import tigercat.instruction.Instruction;
+
+/**
+ * Reassembles successive versions of one program, redoing only the work each edit affects
+ *
+ * The parse and encoding of every line of the previous version are kept. A new version is
+ * compared with the previous one line by line, by content: the lines before the first
+ * difference and after the last keep their results, and only the lines in between (and
+ * the line before them, since an address label looks at the line after it) are parsed
+ * again. Addresses are then recomputed from the sizes of the lines, which moves the labels
+ * after the edit, and a line is only encoded again if its bytes may have changed: it was
+ * parsed again, it refers to a label whose value changed, its encoding depends on its
+ * address and it moved, or it failed to encode last time. Every other line's machine code
+ * is copied from the previous image.
+ *
+ * The result is always identical to a full assembly of the same source. With setVerify,
+ * every assembly is checked against a full one as well.
+ *
+ * Not thread-safe: one IncrementalAssembler follows one program.
+ */
+public class IncrementalAssembler
+{
+  private final Assembler assembler;
+  private final String separator = Lexer.lineSeparator();
+  private boolean verify = false;
+
+  // The previous version, one entry per line, and the image it encoded to
+  private List<Line> lines = new ArrayList<>();
+  private byte[] image = new byte[0];
+
+  // Whether the image was encoded from the lines as they are now, i.e. the first pass succeeded
+  private boolean imageCurrent = true;
+
+  private int linesParsed;
+  private int linesEncoded;
+
+  /**
+   * What is kept of one line of the previous version
+   */
+  private static class Line
+  {
+    final String text;
+
+    // The label defined by the line, or its first-pass diagnostic
+    Assembler.LineRecord record;
+
+    // The instruction on the line, if any, and the label it refers to
+    Instruction instruction;
+    String symbol;
+
+    // Where the line was, and what it was encoded with, last time
+    int address = -1;
+    int symbolValue;
+    boolean bound;
+    boolean encoded;
+
+    Line(String text)
+    {
+      this.text = text;
+    }
+
+    int getSize()
+    {
+      return instruction == null ? 0 : instruction.getSize();
+    }
+  }
+
+  /**
+   * @param context The ISA tables and configuration to encode with
+   */
+  public IncrementalAssembler(EncodingContext context)
+  {
+    this.assembler = new Assembler(context);
+  }
+
+  /**
+   * @param verify Whether to check every assembly against a full one, throwing
+   *               IllegalStateException if they differ
+   */
+  public void setVerify(boolean verify)
+  {
+    this.verify = verify;
+  }
+
+  /**
+   * @return Number of lines the last assembly parsed, rather than kept, including kept lines
+   *         parsed again to be encoded again
+   */
+  public int getLinesParsed()
+  {
+    return linesParsed;
+  }
+
+  /**
+   * @return Number of lines the last assembly encoded, rather than copied
+   */
+  public int getLinesEncoded()
+  {
+    return linesEncoded;
+  }
+
+  /**
+   * @return Number of lines in the last version assembled
+   */
+  int getLineCount()
+  {
+    return lines.size();
+  }
+
+  /**
+   * @param lineIndex Index of a line of the last version assembled
+   * @return The name of the label or constant the line defines, or null
+   */
+  String getDefinedLabel(int lineIndex)
+  {
+    Assembler.LineRecord record = lines.get(lineIndex).record;
+    return record == null || record.label == null ? null : record.label.getName();
+  }
+
+  /**
+   * @param lineIndex Index of a line of the last version assembled
+   * @return The label the line's instruction refers to, or null
+   */
+  String getSymbol(int lineIndex)
+  {
+    return lines.get(lineIndex).symbol;
+  }
+
+  /**
+   * @param lineIndex Index of a line of the last version assembled
+   * @return The address of the line's instruction, or -1 if it has none or was not encoded
+   */
+  int getAddress(int lineIndex)
+  {
+    Line line = lines.get(lineIndex);
+    return imageCurrent && line.instruction != null ? line.address : -1;
+  }
+
+  /**
+   * @param lineIndex Index of a line of the last version assembled
+   * @return The 32-bit machine words the line's instruction encoded to, or null if it
+   *         has none or failed to encode
+   */
+  int[] getMachineWords(int lineIndex)
+  {
+    Line line = lines.get(lineIndex);
+    if (!imageCurrent || line.instruction == null || !line.encoded)
+    {
+      return null;
+    }
+
+    int offset = (line.address - Assembler.MACHINE_CODE_START) * Instruction.BYTES_PER_WORD;
+    int[] words = new int[line.getSize() * Instruction.BYTES_PER_WORD / 4];
+    for (int index = 0; index < words.length; index++)
+    {
+      int at = offset + index * 4;
+      words[index] = (image[at] & 0xFF) << 24 | (image[at + 1] & 0xFF) << 16 | (image[at + 2] & 0xFF) << 8
+          | (image[at + 3] & 0xFF);
+    }
+    return words;
+  }
+
+  /**
+   * Assemble the next version of the program
+   *
+   * @param assembly Assembly code to assemble
+   * @return The result, exactly as Assembler.assembleToResult would return it
+   */
+  public AssemblyResult assemble(String assembly)
+  {
+    AssemblyResult result = assembleIncrementally(assembly);
+    if (verify)
+    {
+      verify(assembly, result);
+    }
+    return result;
+  }
+
+  private AssemblyResult assembleIncrementally(String assembly)
+  {
+    int[] starts = lineStarts(assembly);
+    int lineCount = starts.length - 1;
+    List<Line> previous = lines;
+
+    // Lines at either end which did not change keep their results
+    int prefix = 0;
+    while (prefix < lineCount && prefix < previous.size()
+        && isSameLine(previous.get(prefix), assembly, starts, prefix))
+    {
+      prefix++;
+    }
+    int suffix = 0;
+    while (suffix < lineCount - prefix && suffix < previous.size() - prefix
+        && isSameLine(previous.get(previous.size() - 1 - suffix), assembly, starts, lineCount - 1 - suffix))
+    {
+      suffix++;
+    }
+
+    // An address label looks at the line after it, so the line before the edit is parsed again too
+    int parseFrom = Math.max(0, prefix - 1);
+    int parseTo = lineCount - suffix;
+
+    List<Line> current = new ArrayList<>(lineCount);
+    current.addAll(previous.subList(0, parseFrom));
+    for (int index = parseFrom; index < parseTo; index++)
+    {
+      current.add(new Line(lineText(assembly, starts, index)));
+    }
+    current.addAll(previous.subList(previous.size() - suffix, previous.size()));
+
+    linesParsed = parseTo - parseFrom;
+    if (linesParsed > 0)
+    {
+      int rangeEnd = parseTo == lineCount ? Integer.MAX_VALUE : starts[parseTo];
+      Assembler.ParsedChunk chunk = assembler.parseChunk(assembly, separator, starts[parseFrom], rangeEnd);
+      Assembler.commitSlowLines(chunk, parseFrom);
+      for (Assembler.LineRecord record : chunk.records)
+      {
+        current.get(parseFrom + record.lineIndex).record = record;
+      }
+      for (Program.Statement statement : chunk.statements)
+      {
+        Line line = current.get(parseFrom + statement.getLineIndex());
+        line.instruction = statement.getInstruction();
+        line.symbol = statement.getSymbol();
+      }
+    }
+
+    // Define the labels in line order, as Assembler.mergeChunk does, at their new addresses
+    HashMap<String, Label> labelMapping = new HashMap<>();
+    ArrayList<AssemblerException> firstPassErrors = new ArrayList<>();
+    int address = Assembler.MACHINE_CODE_START;
+    for (int index = 0; index < lineCount; index++)
+    {
+      Line line = current.get(index);
+      if (line.record != null)
+      {
+        defineLabel(line.record, index, address, labelMapping, firstPassErrors);
+      }
+      address += line.getSize();
+    }
+
+    if (!firstPassErrors.isEmpty())
+    {
+      // Nothing was encoded, so the kept lines still refer to the previous image
+      lines = current;
+      imageCurrent = false;
+      linesEncoded = 0;
+      return new AssemblyResult(null, labelMapping, firstPassErrors, new ArrayList<AssemblerException>(),
+          new ArrayList<String>());
+    }
+
+    // Copy the machine code of each line whose bytes cannot have changed, and encode the rest
+    Program program = new Program(assembly);
+    byte[] machineCode = new byte[(address - Assembler.MACHINE_CODE_START) * Instruction.BYTES_PER_WORD];
+    ArrayList<AssemblerException> secondPassErrors = new ArrayList<>();
+    ArrayList<String> warnings = new ArrayList<>();
+    linesEncoded = 0;
+    address = Assembler.MACHINE_CODE_START;
+    for (int index = 0; index < lineCount; index++)
+    {
+      Line line = current.get(index);
+      if (line.instruction == null)
+      {
+        continue;
+      }
+
+      Label label = line.symbol == null ? null : labelMapping.get(line.symbol);
+      int symbolValue = label == null ? 0 : label.getValue();
+      boolean moved = line.address != address;
+      if (!line.encoded || (line.symbol != null && (label == null || symbolValue != line.symbolValue))
+          || (moved && !line.instruction.isShareable()))
+      {
+        if (line.bound)
+        {
+          // Binding rewrites an instruction's arguments, so only a freshly parsed one may be bound again
+          int rangeEnd = index + 1 == lineCount ? Integer.MAX_VALUE : starts[index + 1];
+          line.instruction = assembler.parseChunk(assembly, separator, starts[index], rangeEnd, false).statements
+              .get(0).getInstruction();
+          linesParsed++;
+        }
+        int errors = secondPassErrors.size();
+        program.addStatement(new Program.Statement(index, starts[index], starts[index] + line.text.length(), address,
+            line.instruction, line.symbol));
+        int statement = program.getStatements().size() - 1;
+        assembler.encodeStatements(program, labelMapping, statement, statement + 1, machineCode,
+            Assembler.MACHINE_CODE_START, secondPassErrors);
+        line.bound = true;
+        line.encoded = secondPassErrors.size() == errors;
+        linesEncoded++;
+      } else
+      {
+        System.arraycopy(image, (line.address - Assembler.MACHINE_CODE_START) * Instruction.BYTES_PER_WORD,
+            machineCode, (address - Assembler.MACHINE_CODE_START) * Instruction.BYTES_PER_WORD,
+            line.getSize() * Instruction.BYTES_PER_WORD);
+      }
+      // A copied line keeps the warning of the bind which encoded it
+      if (line.instruction.getWarning() != null)
+      {
+        warnings.add(line.instruction.getWarning());
+      }
+      line.address = address;
+      line.symbolValue = symbolValue;
+      address += line.getSize();
+    }
+
+    lines = current;
+    image = machineCode;
+    imageCurrent = true;
+    return new AssemblyResult(secondPassErrors.isEmpty() ? machineCode.clone() : null, labelMapping,
+        firstPassErrors, secondPassErrors, warnings);
+  }
+
+  /**
+   * Define the label of one line, or collect its diagnostic, as Assembler.mergeChunk does
+   */
+  private static void defineLabel(Assembler.LineRecord record, int lineIndex, int address,
+                                  HashMap<String, Label> labelMapping, List<AssemblerException> exceptionList)
+  {
+    AssemblerException exception = record.exception;
+
+    if (record.label != null)
+    {
+      String labelName = record.label.getName();
+      if (labelMapping.containsKey(labelName))
+      {
+        exception = new DoubleDefinedLabelException(labelName);
+      } else if (exception == null)
+      {
+        if (record.unsupported)
+        {
+          // A label at the end of the file, or a data label (see Assembler.mergeChunk)
+          exception = new UnsupportedLabelException(labelName);
+        } else
+        {
+          // Address labels move with the lines before them, so each assembly defines its own
+          labelMapping.put(labelName, new Label(labelName, record.isAddress ? address : record.label.getValue()));
+        }
+      }
+    }
+
+    if (exception != null)
+    {
+      exception.setContext(lineIndex, record.line);
+      exceptionList.add(exception);
+    }
+  }
+
+  /**
+   * Find where each line starts, splitting as the Lexer does
+   *
+   * @return The start of each line, followed by one past the end of the last line's separator
+   */
+  private int[] lineStarts(String assembly)
+  {
+    int end = Lexer.contentEnd(assembly, separator);
+    if (!assembly.isEmpty() && end == 0)
+    {
+      // Nothing but separators
+      return new int[] { 0 };
+    }
+
+    int[] starts = new int[16];
+    int count = 0;
+    int start = 0;
+    while (true)
+    {
+      if (count + 1 >= starts.length)
+      {
+        starts = Arrays.copyOf(starts, starts.length * 2);
+      }
+      starts[count++] = start;
+      int separatorIndex = assembly.indexOf(separator, start);
+      if (separatorIndex == -1 || separatorIndex >= end)
+      {
+        break;
+      }
+      start = separatorIndex + separator.length();
+    }
+    starts[count++] = end + separator.length();
+    return Arrays.copyOf(starts, count);
+  }
+
+  private String lineText(String assembly, int[] starts, int index)
+  {
+    return assembly.substring(starts[index], starts[index + 1] - separator.length());
+  }
+
+  private boolean isSameLine(Line line, String assembly, int[] starts, int index)
+  {
+    int length = starts[index + 1] - separator.length() - starts[index];
+    return line.text.length() == length && assembly.regionMatches(starts[index], line.text, 0, length);
+  }
+
+  /**
+   * Check an incremental result against a full assembly of the same source
+   */
+  private void verify(String assembly, AssemblyResult result)
+  {
+    AssemblyResult full = assembler.assembleToResult(assembly);
+
+    String difference = null;
+    if (!Arrays.equals(full.getImage(), result.getImage()))
+    {
+      difference = "image";
+    } else if (!full.getSymbols().equals(result.getSymbols()))
+    {
+      difference = "symbols";
+    } else if (full.getDiagnostics().size() != result.getDiagnostics().size())
+    {
+      difference = "diagnostics";
+    } else
+    {
+      for (int index = 0; index < full.getDiagnostics().size(); index++)
+      {
+        Diagnostic expected = full.getDiagnostics().get(index);
+        Diagnostic actual = result.getDiagnostics().get(index);
+        if (expected.getPass() != actual.getPass() || !expected.getMessage().equals(actual.getMessage()))
+        {
+          difference = "diagnostic " + index;
+          break;
+        }
+      }
+    }
+
+    if (difference != null)
+    {
+      throw new IllegalStateException("Incremental assembly differs from a full assembly in its " + difference);
+    }
+  }
+}
@@ -0,0 +1,357 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : Json.java
+ * Description  : Minimal JSON reader and writer, for the language server and reports
+ */
+
+package tigercat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader and writer, for the language server and machine-readable reports
+ *
+ * Objects are read as LinkedHashMaps, arrays as ArrayLists, integers as Longs, other
+ * numbers as Doubles, and true, false and null as Boolean.TRUE, Boolean.FALSE and null.
+ * The same types, and any Number, are written back.
+ */
+public final class Json
+{
+  private final String text;
+  private int position;
+
+  private Json(String text)
+  {
+    this.text = text;
+  }
+
+  /**
+   * Read a JSON value
+   *
+   * @param text The JSON text
+   * @return The value
+   * @throws IllegalArgumentException If the text is not a single JSON value
+   */
+  public static Object parse(String text)
+  {
+    Json reader = new Json(text);
+    Object value = reader.readValue();
+    reader.skipWhitespace();
+    if (reader.position != text.length())
+    {
+      throw reader.error("Unexpected text after the value");
+    }
+    return value;
+  }
+
+  /**
+   * Write a value as JSON
+   *
+   * @param value A Map, List, String, Number, Boolean or null
+   * @return The JSON text
+   */
+  public static String write(Object value)
+  {
+    StringBuilder out = new StringBuilder();
+    write(value, out);
+    return out.toString();
+  }
+
+  private static void write(Object value, StringBuilder out)
+  {
+    if (value == null)
+    {
+      out.append("null");
+    } else if (value instanceof String)
+    {
+      writeString((String) value, out);
+    } else if (value instanceof Double || value instanceof Float)
+    {
+      double number = ((Number) value).doubleValue();
+      if (Double.isNaN(number) || Double.isInfinite(number))
+      {
+        out.append("null");
+      } else if (number == Math.rint(number) && Math.abs(number) < 1e15)
+      {
+        out.append((long) number);
+      } else
+      {
+        out.append(number);
+      }
+    } else if (value instanceof Number || value instanceof Boolean)
+    {
+      out.append(value);
+    } else if (value instanceof Map)
+    {
+      out.append('{');
+      boolean first = true;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+      {
+        if (!first)
+        {
+          out.append(',');
+        }
+        first = false;
+        writeString(String.valueOf(entry.getKey()), out);
+        out.append(':');
+        write(entry.getValue(), out);
+      }
+      out.append('}');
+    } else if (value instanceof List)
+    {
+      out.append('[');
+      boolean first = true;
+      for (Object element : (List<?>) value)
+      {
+        if (!first)
+        {
+          out.append(',');
+        }
+        first = false;
+        write(element, out);
+      }
+      out.append(']');
+    } else
+    {
+      throw new IllegalArgumentException("Cannot write " + value.getClass().getName() + " as JSON");
+    }
+  }
+
+  private static void writeString(String value, StringBuilder out)
+  {
+    out.append('"');
+    for (int index = 0; index < value.length(); index++)
+    {
+      char c = value.charAt(index);
+      switch (c)
+      {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        default:
+          if (c < 0x20)
+          {
+            out.append(String.format("\\u%04x", (int) c));
+          } else
+          {
+            out.append(c);
+          }
+      }
+    }
+    out.append('"');
+  }
+
+  private Object readValue()
+  {
+    skipWhitespace();
+    if (position >= text.length())
+    {
+      throw error("Expected a value");
+    }
+
+    char c = text.charAt(position);
+    switch (c)
+    {
+      case '{':
+        return readObject();
+      case '[':
+        return readArray();
+      case '"':
+        return readString();
+      case 't':
+        expect("true");
+        return Boolean.TRUE;
+      case 'f':
+        expect("false");
+        return Boolean.FALSE;
+      case 'n':
+        expect("null");
+        return null;
+      default:
+        return readNumber();
+    }
+  }
+
+  private Map<String, Object> readObject()
+  {
+    Map<String, Object> object = new LinkedHashMap<>();
+    position++;
+    skipWhitespace();
+    if (consume('}'))
+    {
+      return object;
+    }
+    do
+    {
+      skipWhitespace();
+      if (position >= text.length() || text.charAt(position) != '"')
+      {
+        throw error("Expected a member name");
+      }
+      String name = readString();
+      skipWhitespace();
+      if (!consume(':'))
+      {
+        throw error("Expected ':'");
+      }
+      object.put(name, readValue());
+      skipWhitespace();
+    } while (consume(','));
+
+    if (!consume('}'))
+    {
+      throw error("Expected ',' or '}'");
+    }
+    return object;
+  }
+
+  private List<Object> readArray()
+  {
+    List<Object> array = new ArrayList<>();
+    position++;
+    skipWhitespace();
+    if (consume(']'))
+    {
+      return array;
+    }
+    do
+    {
+      array.add(readValue());
+      skipWhitespace();
+    } while (consume(','));
+
+    if (!consume(']'))
+    {
+      throw error("Expected ',' or ']'");
+    }
+    return array;
+  }
+
+  private String readString()
+  {
+    StringBuilder value = new StringBuilder();
+    position++;
+    while (position < text.length())
+    {
+      char c = text.charAt(position++);
+      if (c == '"')
+      {
+        return value.toString();
+      }
+      if (c != '\\')
+      {
+        value.append(c);
+        continue;
+      }
+      if (position >= text.length())
+      {
+        break;
+      }
+      char escape = text.charAt(position++);
+      switch (escape)
+      {
+        case 'b':
+          value.append('\b');
+          break;
+        case 'f':
+          value.append('\f');
+          break;
+        case 'n':
+          value.append('\n');
+          break;
+        case 'r':
+          value.append('\r');
+          break;
+        case 't':
+          value.append('\t');
+          break;
+        case 'u':
+          if (position + 4 > text.length())
+          {
+            throw error("Incomplete escape");
+          }
+          value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+          position += 4;
+          break;
+        default:
+          value.append(escape);
+      }
+    }
+    throw error("Unterminated string");
+  }
+
+  private Number readNumber()
+  {
+    int start = position;
+    boolean integer = true;
+    while (position < text.length())
+    {
+      char c = text.charAt(position);
+      if (c == '.' || c == 'e' || c == 'E')
+      {
+        integer = false;
+      } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9')))
+      {
+        break;
+      }
+      position++;
+    }
+
+    String number = text.substring(start, position);
+    try
+    {
+      return integer ? (Number) Long.valueOf(number) : (Number) Double.valueOf(number);
+    } catch (NumberFormatException e)
+    {
+      throw error("Invalid number " + number);
+    }
+  }
+
+  private void expect(String literal)
+  {
+    if (!text.startsWith(literal, position))
+    {
+      throw error("Expected " + literal);
+    }
+    position += literal.length();
+  }
+
+  private boolean consume(char c)
+  {
+    if (position < text.length() && text.charAt(position) == c)
+    {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private void skipWhitespace()
+  {
+    while (position < text.length() && Character.isWhitespace(text.charAt(position)))
+    {
+      position++;
+    }
+  }
+
+  private IllegalArgumentException error(String message)
+  {
+    return new IllegalArgumentException(message + " at offset " + position + " of JSON");
+  }
+}
@@ -0,0 +1,697 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : LanguageServer.java
+ * Description  : Language Server Protocol server for TigerCat assembly, over stdio
+ */
+
+package tigercat;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tigercat.instruction.EncodingContext;
+
+/**
+ * Language Server Protocol server for TigerCat assembly, speaking JSON-RPC over a pair
+ * of streams, normally stdin and stdout
+ *
+ * Each open document is followed by an IncrementalAssembler, so an edit only parses and
+ * encodes the lines it affects. Every change publishes the document's diagnostics, exactly
+ * as the command line would report them. Go to definition and find references use an index
+ * of the labels defined and referred to on each line, built when first asked for after a
+ * change. Hovering over a label shows its value; hovering over an instruction shows its
+ * address and the machine words it encodes to.
+ *
+ * Lines are split on '\n', and characters counted in UTF-16 code units, as the protocol
+ * requires.
+ */
+public class LanguageServer
+{
+  // JSON-RPC error codes
+  private static final int PARSE_ERROR = -32700;
+  private static final int INVALID_REQUEST = -32600;
+  private static final int METHOD_NOT_FOUND = -32601;
+  private static final int INVALID_PARAMS = -32602;
+  private static final int INTERNAL_ERROR = -32603;
+  private static final int SERVER_NOT_INITIALIZED = -32002;
+
+  private static final int SEVERITY_ERROR = 1;
+  private static final int SYNC_INCREMENTAL = 2;
+
+  private final EncodingContext context;
+  private final InputStream in;
+  private final OutputStream out;
+
+  private final Map<String, Document> documents = new HashMap<>();
+  private boolean initialized = false;
+  private boolean shuttingDown = false;
+
+  /**
+   * An open document, and what the last analysis of it found
+   */
+  private static class Document
+  {
+    final String uri;
+    final IncrementalAssembler assembler;
+    String text;
+
+    // The result of the last analysis, or null if the assembler could not handle the text
+    AssemblyResult result;
+
+    // Line of the first definition of each label, and the lines referring to each
+    Map<String, Integer> definitions;
+    Map<String, List<Integer>> references;
+
+    Document(String uri, String text, EncodingContext context)
+    {
+      this.uri = uri;
+      this.text = text;
+      this.assembler = new IncrementalAssembler(context);
+    }
+  }
+
+  /**
+   * @param context The ISA tables and configuration to encode with
+   * @param in Where requests come from
+   * @param out Where responses and notifications go
+   */
+  public LanguageServer(EncodingContext context, InputStream in, OutputStream out)
+  {
+    this.context = context;
+    this.in = new BufferedInputStream(in);
+    this.out = out;
+  }
+
+  /**
+   * Serve requests until the client sends exit, or closes the input
+   *
+   * @return The exit code: 0 if the client asked to shut down first, otherwise 1
+   * @throws IOException If the streams fail
+   */
+  public int run() throws IOException
+  {
+    while (true)
+    {
+      String content;
+      Object parsed;
+      try
+      {
+        content = readMessage();
+        if (content == null)
+        {
+          return 1;
+        }
+        parsed = Json.parse(content);
+      } catch (RequestException e)
+      {
+        // Not even a request, so there is no id to answer with
+        respondError(null, e.code, e.getMessage());
+        continue;
+      } catch (IllegalArgumentException e)
+      {
+        respondError(null, PARSE_ERROR, "Parse error: " + e.getMessage());
+        continue;
+      }
+
+      if (!(parsed instanceof Map))
+      {
+        respondError(null, INVALID_REQUEST, "A message must be a JSON object");
+        continue;
+      }
+      Map<String, Object> message = asObject(parsed);
+      Object id = message.get("id");
+      if (id != null && !(id instanceof String) && !(id instanceof Number))
+      {
+        respondError(null, INVALID_REQUEST, "An id must be a string or a number");
+        continue;
+      }
+
+      Object method = message.get("method");
+      if (method == null)
+      {
+        // A response to a request we never sent
+        continue;
+      }
+      Object params = message.get("params");
+      if (!(method instanceof String) || (params != null && !(params instanceof Map)))
+      {
+        if (id != null)
+        {
+          respondError(id, INVALID_REQUEST, "A request needs a string method, and params which are an object");
+        }
+        continue;
+      }
+      if (method.equals("exit"))
+      {
+        return shuttingDown ? 0 : 1;
+      }
+
+      try
+      {
+        Object result = handle((String) method, asObject(params), id != null);
+        if (id != null)
+        {
+          respond(id, result);
+        }
+      } catch (RequestException e)
+      {
+        if (id != null)
+        {
+          respondError(id, e.code, e.getMessage());
+        }
+      } catch (ClassCastException | NullPointerException e)
+      {
+        // A parameter which is missing, or of the wrong type
+        if (id != null)
+        {
+          respondError(id, INVALID_PARAMS, "Invalid params: " + e);
+        }
+      } catch (RuntimeException e)
+      {
+        if (id != null)
+        {
+          respondError(id, INTERNAL_ERROR, String.valueOf(e));
+        }
+      }
+    }
+  }
+
+  /**
+   * An error to answer a request with
+   */
+  private static class RequestException extends RuntimeException
+  {
+    private static final long serialVersionUID = 2465874281871080575L;
+
+    final int code;
+
+    RequestException(int code, String message)
+    {
+      super(message);
+      this.code = code;
+    }
+  }
+
+  private Object handle(String method, Map<String, Object> params, boolean isRequest) throws IOException
+  {
+    if (method.equals("initialize"))
+    {
+      initialized = true;
+      return initializeResult();
+    }
+    if (!initialized)
+    {
+      throw new RequestException(SERVER_NOT_INITIALIZED, "Server not initialized");
+    }
+
+    switch (method)
+    {
+      case "initialized":
+        return null;
+      case "shutdown":
+        shuttingDown = true;
+        return null;
+      case "textDocument/didOpen":
+        didOpen(asObject(params.get("textDocument")));
+        return null;
+      case "textDocument/didChange":
+        didChange(params);
+        return null;
+      case "textDocument/didClose":
+        didClose(asObject(params.get("textDocument")));
+        return null;
+      case "textDocument/definition":
+        return definition(params);
+      case "textDocument/references":
+        return references(params);
+      case "textDocument/hover":
+        return hover(params);
+      default:
+        if (isRequest)
+        {
+          throw new RequestException(METHOD_NOT_FOUND, "Unsupported method " + method);
+        }
+        // Unsupported notifications are ignored
+        return null;
+    }
+  }
+
+  private Map<String, Object> initializeResult()
+  {
+    Map<String, Object> sync = new LinkedHashMap<>();
+    sync.put("openClose", true);
+    sync.put("change", SYNC_INCREMENTAL);
+
+    Map<String, Object> capabilities = new LinkedHashMap<>();
+    capabilities.put("textDocumentSync", sync);
+    capabilities.put("definitionProvider", true);
+    capabilities.put("referencesProvider", true);
+    capabilities.put("hoverProvider", true);
+
+    Map<String, Object> serverInfo = new LinkedHashMap<>();
+    serverInfo.put("name", "tigercat");
+    serverInfo.put("version", Assembler.VERSION);
+
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("capabilities", capabilities);
+    result.put("serverInfo", serverInfo);
+    return result;
+  }
+
+  private void didOpen(Map<String, Object> textDocument) throws IOException
+  {
+    String uri = (String) textDocument.get("uri");
+    Document document = new Document(uri, (String) textDocument.get("text"), context);
+    documents.put(uri, document);
+    analyze(document);
+  }
+
+  private void didChange(Map<String, Object> params) throws IOException
+  {
+    Document document = getDocument(params);
+    for (Object change : (List<?>) params.get("contentChanges"))
+    {
+      Map<String, Object> edit = asObject(change);
+      String text = (String) edit.get("text");
+      Map<String, Object> range = asObject(edit.get("range"));
+      if (range == null)
+      {
+        document.text = text;
+      } else
+      {
+        int start = offsetOf(document.text, asObject(range.get("start")));
+        int end = offsetOf(document.text, asObject(range.get("end")));
+        document.text = document.text.substring(0, start) + text + document.text.substring(end);
+      }
+    }
+    analyze(document);
+  }
+
+  private void didClose(Map<String, Object> textDocument) throws IOException
+  {
+    String uri = (String) textDocument.get("uri");
+    documents.remove(uri);
+    publishDiagnostics(uri, new ArrayList<>());
+  }
+
+  /**
+   * Reassemble the document, redoing only what its changes affect, and publish its diagnostics
+   */
+  private void analyze(Document document) throws IOException
+  {
+    document.definitions = null;
+    document.references = null;
+
+    List<Object> diagnostics = new ArrayList<>();
+    document.result = document.assembler.assemble(document.text);
+    for (Diagnostic diagnostic : document.result.getDiagnostics())
+    {
+      int line = Math.max(0, diagnostic.getLineNumber() - 1);
+      diagnostics.add(diagnostic(line, lineLength(document.text, line), diagnostic.getMessage()));
+    }
+    publishDiagnostics(document.uri, diagnostics);
+  }
+
+  private static Map<String, Object> diagnostic(int line, int length, String message)
+  {
+    Map<String, Object> diagnostic = new LinkedHashMap<>();
+    diagnostic.put("range", range(line, 0, line, length));
+    diagnostic.put("severity", SEVERITY_ERROR);
+    diagnostic.put("source", "tigercat");
+    diagnostic.put("message", message);
+    return diagnostic;
+  }
+
+  private void publishDiagnostics(String uri, List<Object> diagnostics) throws IOException
+  {
+    Map<String, Object> params = new LinkedHashMap<>();
+    params.put("uri", uri);
+    params.put("diagnostics", diagnostics);
+
+    Map<String, Object> notification = new LinkedHashMap<>();
+    notification.put("jsonrpc", "2.0");
+    notification.put("method", "textDocument/publishDiagnostics");
+    notification.put("params", params);
+    send(notification);
+  }
+
+  private Object definition(Map<String, Object> params)
+  {
+    Document document = getDocument(params);
+    int line = getLine(params);
+    String name = wordAt(document.text, line, getCharacter(params));
+    if (name == null || !buildIndex(document))
+    {
+      return null;
+    }
+
+    Integer definition = document.definitions.get(name);
+    return definition == null ? null : location(document, definition, name, false);
+  }
+
+  private Object references(Map<String, Object> params)
+  {
+    Document document = getDocument(params);
+    int line = getLine(params);
+    String name = wordAt(document.text, line, getCharacter(params));
+    List<Object> locations = new ArrayList<>();
+    if (name == null || !buildIndex(document))
+    {
+      return locations;
+    }
+
+    Map<String, Object> referenceContext = asObject(params.get("context"));
+    Integer definition = document.definitions.get(name);
+    if (definition != null && referenceContext != null && Boolean.TRUE.equals(referenceContext.get("includeDeclaration")))
+    {
+      locations.add(location(document, definition, name, false));
+    }
+    List<Integer> lines = document.references.get(name);
+    if (lines != null)
+    {
+      for (int reference : lines)
+      {
+        locations.add(location(document, reference, name, true));
+      }
+    }
+    return locations;
+  }
+
+  private Object hover(Map<String, Object> params)
+  {
+    Document document = getDocument(params);
+    int line = getLine(params);
+    if (document.result == null || line >= document.assembler.getLineCount())
+    {
+      return null;
+    }
+
+    String name = wordAt(document.text, line, getCharacter(params));
+    Integer value = name == null ? null : document.result.getSymbols().get(name);
+    String contents;
+    if (value != null)
+    {
+      contents = "**" + name + "**: `0x" + Integer.toHexString(value) + "`";
+    } else
+    {
+      int[] words = document.assembler.getMachineWords(line);
+      if (words == null)
+      {
+        return null;
+      }
+      StringBuilder text = new StringBuilder("`0x").append(Integer.toHexString(document.assembler.getAddress(line)))
+          .append("`:");
+      for (int word : words)
+      {
+        text.append(" `").append(String.format("0x%08x", word)).append('`');
+      }
+      contents = text.toString();
+    }
+
+    Map<String, Object> markup = new LinkedHashMap<>();
+    markup.put("kind", "markdown");
+    markup.put("value", contents);
+    Map<String, Object> hover = new LinkedHashMap<>();
+    hover.put("contents", markup);
+    return hover;
+  }
+
+  /**
+   * Index the labels of the document, if it has not been since it changed
+   *
+   * @return False if the last analysis failed, so there is nothing to index
+   */
+  private static boolean buildIndex(Document document)
+  {
+    if (document.result == null)
+    {
+      return false;
+    }
+    if (document.definitions != null)
+    {
+      return true;
+    }
+
+    Map<String, Integer> definitions = new HashMap<>();
+    Map<String, List<Integer>> references = new HashMap<>();
+    IncrementalAssembler assembler = document.assembler;
+    for (int line = 0; line < assembler.getLineCount(); line++)
+    {
+      String defined = assembler.getDefinedLabel(line);
+      if (defined != null && !definitions.containsKey(defined))
+      {
+        definitions.put(defined, line);
+      }
+      String symbol = assembler.getSymbol(line);
+      if (symbol != null)
+      {
+        List<Integer> lines = references.get(symbol);
+        if (lines == null)
+        {
+          lines = new ArrayList<>();
+          references.put(symbol, lines);
+        }
+        lines.add(line);
+      }
+    }
+    document.definitions = definitions;
+    document.references = references;
+    return true;
+  }
+
+  /**
+   * The location of a label on a line: its definition, which starts the line, or a
+   * reference, which is the last operand before any comment
+   */
+  private static Map<String, Object> location(Document document, int line, String name, boolean isReference)
+  {
+    String text = lineText(document.text, line);
+    int comment = text.indexOf(Assembler.COMMENT_PREFIX);
+    String code = comment == -1 ? text : text.substring(0, comment);
+    int start = Math.max(0, isReference ? code.lastIndexOf(name) : code.indexOf(name));
+
+    Map<String, Object> location = new LinkedHashMap<>();
+    location.put("uri", document.uri);
+    location.put("range", range(line, start, line, start + name.length()));
+    return location;
+  }
+
+  private static Map<String, Object> range(int startLine, int startCharacter, int endLine, int endCharacter)
+  {
+    Map<String, Object> range = new LinkedHashMap<>();
+    range.put("start", position(startLine, startCharacter));
+    range.put("end", position(endLine, endCharacter));
+    return range;
+  }
+
+  private static Map<String, Object> position(int line, int character)
+  {
+    Map<String, Object> position = new LinkedHashMap<>();
+    position.put("line", line);
+    position.put("character", character);
+    return position;
+  }
+
+  /**
+   * Return the label name under a position, or null if there is none
+   */
+  private static String wordAt(String text, int line, int character)
+  {
+    String lineText = lineText(text, line);
+    int start = Math.min(character, lineText.length());
+    int end = start;
+    while (start > 0 && Lexer.isLabelCharacter(lineText.charAt(start - 1)))
+    {
+      start--;
+    }
+    while (end < lineText.length() && Lexer.isLabelCharacter(lineText.charAt(end)))
+    {
+      end++;
+    }
+    return start == end ? null : lineText.substring(start, end);
+  }
+
+  private static int lineStart(String text, int line)
+  {
+    int offset = 0;
+    for (int index = 0; index < line; index++)
+    {
+      int newline = text.indexOf('\n', offset);
+      if (newline == -1)
+      {
+        return text.length();
+      }
+      offset = newline + 1;
+    }
+    return offset;
+  }
+
+  private static String lineText(String text, int line)
+  {
+    int start = lineStart(text, line);
+    int end = text.indexOf('\n', start);
+    return text.substring(start, end == -1 ? text.length() : end);
+  }
+
+  private static int lineLength(String text, int line)
+  {
+    return lineText(text, line).length();
+  }
+
+  private static int offsetOf(String text, Map<String, Object> position)
+  {
+    int line = ((Number) position.get("line")).intValue();
+    int character = ((Number) position.get("character")).intValue();
+    int start = lineStart(text, line);
+    int end = text.indexOf('\n', start);
+    return Math.min(start + character, end == -1 ? text.length() : end);
+  }
+
+  private Document getDocument(Map<String, Object> params)
+  {
+    String uri = (String) asObject(params.get("textDocument")).get("uri");
+    Document document = documents.get(uri);
+    if (document == null)
+    {
+      throw new RequestException(INTERNAL_ERROR, "Document " + uri + " is not open");
+    }
+    return document;
+  }
+
+  private static int getLine(Map<String, Object> params)
+  {
+    return ((Number) asObject(params.get("position")).get("line")).intValue();
+  }
+
+  private static int getCharacter(Map<String, Object> params)
+  {
+    return ((Number) asObject(params.get("position")).get("character")).intValue();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> asObject(Object value)
+  {
+    return (Map<String, Object>) value;
+  }
+
+  private void respond(Object id, Object result) throws IOException
+  {
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("jsonrpc", "2.0");
+    response.put("id", id);
+    response.put("result", result);
+    send(response);
+  }
+
+  private void respondError(Object id, int code, String message) throws IOException
+  {
+    Map<String, Object> error = new LinkedHashMap<>();
+    error.put("code", code);
+    error.put("message", message);
+
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("jsonrpc", "2.0");
+    response.put("id", id);
+    response.put("error", error);
+    send(response);
+  }
+
+  /**
+   * Read one message: headers, a blank line, then Content-Length bytes of JSON
+   *
+   * @return The JSON, or null at the end of the input
+   * @throws RequestException If the Content-Length is not a length
+   */
+  private String readMessage() throws IOException
+  {
+    int contentLength = -1;
+    while (true)
+    {
+      String header = readHeaderLine();
+      if (header == null)
+      {
+        return null;
+      }
+      if (header.isEmpty())
+      {
+        if (contentLength >= 0)
+        {
+          break;
+        }
+        continue;
+      }
+      int colon = header.indexOf(':');
+      if (colon != -1 && header.substring(0, colon).trim().equalsIgnoreCase("Content-Length"))
+      {
+        String value = header.substring(colon + 1).trim();
+        try
+        {
+          contentLength = Integer.parseInt(value);
+        } catch (NumberFormatException e)
+        {
+          contentLength = -1;
+        }
+        if (contentLength < 0)
+        {
+          // The content cannot be told from the next message's headers, which are
+          // looked for from here on
+          throw new RequestException(PARSE_ERROR, "Malformed Content-Length: " + value);
+        }
+      }
+    }
+
+    byte[] content = new byte[contentLength];
+    int read = 0;
+    while (read < contentLength)
+    {
+      int count = in.read(content, read, contentLength - read);
+      if (count == -1)
+      {
+        throw new EOFException("Input ended inside a message");
+      }
+      read += count;
+    }
+    return new String(content, StandardCharsets.UTF_8);
+  }
+
+  private String readHeaderLine() throws IOException
+  {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    while (true)
+    {
+      int b = in.read();
+      if (b == -1)
+      {
+        return null;
+      }
+      if (b == '\n')
+      {
+        break;
+      }
+      if (b != '\r')
+      {
+        line.write(b);
+      }
+    }
+    return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+  }
+
+  private void send(Map<String, Object> message) throws IOException
+  {
+    byte[] content = Json.write(message).getBytes(StandardCharsets.UTF_8);
+    out.write(("Content-Length: " + content.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+    out.write(content);
+    out.flush();
+  }
+}
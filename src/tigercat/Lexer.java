@@ -0,0 +1,456 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : Lexer.java
+ * Description  : Single-scan lexer for TigerCat assembly
+ */
+
+package tigercat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import tigercat.instruction.Instruction;
+import tigercat.instruction.InstructionSyntaxError;
+
+/**
+ * Single-scan lexer for TigerCat assembly
+ *
+ * Splits the assembly into lines the same way String.split(line.separator) does
+ * (trailing empty lines are dropped), then breaks each line into typed Tokens
+ * without using any regular expressions.
+ *
+ * A line is one of:
+ *   Blank                 -- no tokens
+ *   A comment             -- a single COMMENT token
+ *   A label definition    -- LABEL_DEFINITION, then optionally a COMMENT
+ *   A constant definition -- CONSTANT_DEFINITION, IMMEDIATE, then optionally a COMMENT
+ *   An instruction        -- OPCODE, zero or more REGISTER/IMMEDIATE/SYMBOL, then optionally a COMMENT
+ *
+ * Any line starting with a label character is a label line. If it is neither a well-formed
+ * address label nor a well-formed constant definition, nextLine throws an InstructionSyntaxError.
+ * Instructions are not checked beyond classifying their operands.
+ */
+public class Lexer
+{
+  private static final char COMMENT_CHAR = Assembler.COMMENT_PREFIX.charAt(0);
+  private static final char LABEL_CHAR = Assembler.LABEL_SUFFIX.charAt(0);
+  private static final char VALUE_CHAR = Assembler.VALUE_SUFFIX.charAt(0);
+  private static final char REGISTER_CHAR = Instruction.REGISTER_PREFIX.charAt(0);
+  private static final char IMMEDIATE_CHAR = Instruction.IMMEDIATE_PREFIX.charAt(0);
+  private static final String HEX_PREFIX = "0x";
+
+  private final String source;
+  private final String separator;
+
+  // End of the source once trailing separators have been dropped
+  private final int sourceEnd;
+
+  // Start of the first line not to lex, when lexing only part of the source
+  private final int rangeEnd;
+
+  // Start of the next line, or -1 if there is no next line
+  private int nextLineStart;
+
+  private int lineIndex = -1;
+  private int lineStart;
+  private int lineEnd;
+
+  // The current line with its comment and surrounding whitespace removed
+  private int statementStart;
+  private int statementEnd;
+
+  private final ArrayList<Token> tokens = new ArrayList<>();
+
+  /**
+   * Create a lexer which splits lines on the platform line separator
+   *
+   * @param source The assembly to lex
+   */
+  public Lexer(String source)
+  {
+    this(source, lineSeparator());
+  }
+
+  /**
+   * Create a lexer which splits lines on the given separator
+   *
+   * @param source The assembly to lex
+   * @param separator The line separator
+   */
+  public Lexer(String source, String separator)
+  {
+    this.source = source;
+    this.separator = separator;
+    this.sourceEnd = contentEnd(source, separator);
+    this.rangeEnd = Integer.MAX_VALUE;
+
+    // A non-empty source made of nothing but separators has no lines at all
+    this.nextLineStart = (source.isEmpty() || sourceEnd > 0) ? 0 : -1;
+  }
+
+  /**
+   * Create a lexer for the lines which start in part of the source, as split by chunk
+   *
+   * Line indices count from the start of the range, but offsets (getLineStart, getLineEnd)
+   * are offsets in the whole source, and peekLine may look past the end of the range.
+   *
+   * @param source The whole assembly
+   * @param separator The line separator
+   * @param rangeStart Start of the first line to lex
+   * @param rangeEnd Start of the first line not to lex
+   */
+  public Lexer(String source, String separator, int rangeStart, int rangeEnd)
+  {
+    this.source = source;
+    this.separator = separator;
+    this.sourceEnd = contentEnd(source, separator);
+    this.rangeEnd = rangeEnd;
+
+    // As for the whole source, a non-empty source made of nothing but separators has no lines
+    boolean hasLines = rangeStart > 0 || source.isEmpty() || sourceEnd > 0;
+    this.nextLineStart = (hasLines && rangeStart < rangeEnd) ? rangeStart : -1;
+  }
+
+  /**
+   * Return the platform line separator, which the assembly is expected to use
+   *
+   * @return The line separator
+   */
+  public static String lineSeparator()
+  {
+    return System.getProperty("line.separator");
+  }
+
+  /**
+   * Split the source into ranges of whole lines, for lexing separately
+   *
+   * @param source The whole assembly
+   * @param separator The line separator
+   * @param chunkLength Roughly how many characters each range should hold
+   * @return The start of each range, followed by Integer.MAX_VALUE, which is past every line
+   */
+  public static int[] chunk(String source, String separator, int chunkLength)
+  {
+    int end = contentEnd(source, separator);
+    ArrayList<Integer> starts = new ArrayList<>();
+    starts.add(0);
+
+    int target = chunkLength;
+    while (target < end)
+    {
+      int separatorIndex = source.indexOf(separator, target);
+      if (separatorIndex == -1 || separatorIndex >= end)
+      {
+        break;
+      }
+      int lineStart = separatorIndex + separator.length();
+      starts.add(lineStart);
+      target = lineStart + chunkLength;
+    }
+
+    int[] boundaries = new int[starts.size() + 1];
+    for (int index = 0; index < starts.size(); index++)
+    {
+      boundaries[index] = starts.get(index);
+    }
+    boundaries[starts.size()] = Integer.MAX_VALUE;
+    return boundaries;
+  }
+
+  /**
+   * String.split drops trailing empty strings, so find the end without trailing separators
+   */
+  static int contentEnd(String source, String separator)
+  {
+    int end = source.length();
+    while (end >= separator.length() && source.startsWith(separator, end - separator.length()))
+    {
+      end -= separator.length();
+    }
+    return end;
+  }
+
+  /**
+   * Whether nextLine may be called again
+   *
+   * @return True if there is another line
+   */
+  public boolean hasNextLine()
+  {
+    return nextLineStart != -1 && nextLineStart < rangeEnd;
+  }
+
+  /**
+   * Advance to the next line and break it into tokens
+   *
+   * The returned list is reused by the next call to nextLine. Even if this throws,
+   * getLineIndex and getLine refer to the offending line.
+   *
+   * @return The tokens of the next line. Empty for a blank line.
+   * @throws InstructionSyntaxError If the line starts a label but is not a valid label or constant
+   */
+  public List<Token> nextLine() throws InstructionSyntaxError
+  {
+    assert hasNextLine() : "nextLine called past the end of the assembly";
+
+    lineIndex++;
+    lineStart = nextLineStart;
+    int separatorIndex = source.indexOf(separator, lineStart);
+    if (separatorIndex == -1 || separatorIndex >= sourceEnd)
+    {
+      lineEnd = sourceEnd;
+      nextLineStart = -1;
+    } else
+    {
+      lineEnd = separatorIndex;
+      nextLineStart = separatorIndex + separator.length();
+    }
+
+    tokens.clear();
+    statementStart = statementEnd = lineStart;
+
+    int pos = skipWhitespace(lineStart, lineEnd);
+    if (pos == lineEnd)
+    {
+      // Blank line
+      return tokens;
+    }
+
+    int commentStart = pos;
+    while (commentStart < lineEnd && source.charAt(commentStart) != COMMENT_CHAR)
+    {
+      commentStart++;
+    }
+
+    statementStart = pos;
+    statementEnd = commentStart;
+    while (statementEnd > statementStart && isWhitespace(source.charAt(statementEnd - 1)))
+    {
+      statementEnd--;
+    }
+
+    if (statementStart == statementEnd)
+    {
+      // Nothing but a comment
+    } else if (isLabelCharacter(source.charAt(statementStart)))
+    {
+      lexLabel();
+    } else
+    {
+      lexInstruction();
+    }
+
+    if (commentStart < lineEnd)
+    {
+      tokens.add(newToken(Token.Kind.COMMENT, commentStart, lineEnd));
+    }
+
+    return tokens;
+  }
+
+  /**
+   * Return the zero-based index of the current line
+   *
+   * @return Index of the line last returned by nextLine
+   */
+  public int getLineIndex()
+  {
+    return lineIndex;
+  }
+
+  /**
+   * Return the raw text of the current line
+   *
+   * @return The line last returned by nextLine, exactly as in the source
+   */
+  public String getLine()
+  {
+    return source.substring(lineStart, lineEnd);
+  }
+
+  /**
+   * Return the offset in the source at which the current line starts
+   *
+   * @return Offset of the first character of the current line
+   */
+  public int getLineStart()
+  {
+    return lineStart;
+  }
+
+  /**
+   * Return the offset in the source at which the current line ends
+   *
+   * @return Offset just past the last character of the current line
+   */
+  public int getLineEnd()
+  {
+    return lineEnd;
+  }
+
+  /**
+   * Return the current line without its comment and leading or trailing whitespace
+   *
+   * @return The statement on the line last returned by nextLine
+   */
+  public String getStatement()
+  {
+    return source.substring(statementStart, statementEnd);
+  }
+
+  /**
+   * Return the raw text of the line after the current one, without advancing
+   *
+   * @return The next line, or null if the current line is the last
+   */
+  public String peekLine()
+  {
+    if (nextLineStart == -1)
+    {
+      return null;
+    }
+    int separatorIndex = source.indexOf(separator, nextLineStart);
+    if (separatorIndex == -1 || separatorIndex >= sourceEnd)
+    {
+      separatorIndex = sourceEnd;
+    }
+    return source.substring(nextLineStart, separatorIndex);
+  }
+
+  /**
+   * Lex a statement which starts with a label character.
+   *
+   * Address labels are the name followed directly by LABEL_SUFFIX, alone on their line.
+   * Constants are the name followed directly by VALUE_SUFFIX, then a hexadecimal value.
+   */
+  private void lexLabel() throws InstructionSyntaxError
+  {
+    int nameEnd = statementStart;
+    while (nameEnd < statementEnd && isLabelCharacter(source.charAt(nameEnd)))
+    {
+      nameEnd++;
+    }
+
+    if (nameEnd < statementEnd)
+    {
+      char suffix = source.charAt(nameEnd);
+
+      if (suffix == LABEL_CHAR && nameEnd + 1 == statementEnd)
+      {
+        tokens.add(newToken(Token.Kind.LABEL_DEFINITION, statementStart, nameEnd));
+        return;
+      }
+
+      if (suffix == VALUE_CHAR)
+      {
+        int valueStart = skipWhitespace(nameEnd + 1, statementEnd);
+        if (isHexLiteral(valueStart, statementEnd))
+        {
+          tokens.add(newToken(Token.Kind.CONSTANT_DEFINITION, statementStart, nameEnd));
+          tokens.add(newToken(Token.Kind.IMMEDIATE, valueStart, statementEnd));
+          return;
+        }
+      }
+    }
+
+    throw new InstructionSyntaxError("Label does not define a value (needs " + Assembler.VALUE_SUFFIX + "),"
+        + "nor an address (needs " + Assembler.LABEL_SUFFIX +")");
+  }
+
+  /**
+   * Lex a statement which is (hopefully) an instruction: an opcode followed by
+   * whitespace-separated operands
+   */
+  private void lexInstruction()
+  {
+    int pos = statementStart;
+    boolean isOpcode = true;
+
+    while (pos < statementEnd)
+    {
+      int tokenEnd = pos;
+      while (tokenEnd < statementEnd && !isWhitespace(source.charAt(tokenEnd)))
+      {
+        tokenEnd++;
+      }
+
+      Token.Kind kind;
+      char first = source.charAt(pos);
+      if (isOpcode)
+      {
+        kind = Token.Kind.OPCODE;
+        isOpcode = false;
+      } else if (first == REGISTER_CHAR)
+      {
+        kind = Token.Kind.REGISTER;
+      } else if (first == IMMEDIATE_CHAR)
+      {
+        kind = Token.Kind.IMMEDIATE;
+      } else
+      {
+        kind = Token.Kind.SYMBOL;
+      }
+      tokens.add(newToken(kind, pos, tokenEnd));
+
+      pos = skipWhitespace(tokenEnd, statementEnd);
+    }
+  }
+
+  private boolean isHexLiteral(int start, int end)
+  {
+    if (end - start <= HEX_PREFIX.length() || !source.startsWith(HEX_PREFIX, start))
+    {
+      return false;
+    }
+    for (int index = start + HEX_PREFIX.length(); index < end; index++)
+    {
+      if (!isHexDigit(source.charAt(index)))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Token newToken(Token.Kind kind, int start, int end)
+  {
+    return new Token(kind, source.substring(start, end), lineIndex, start - lineStart);
+  }
+
+  private int skipWhitespace(int pos, int end)
+  {
+    while (pos < end && isWhitespace(source.charAt(pos)))
+    {
+      pos++;
+    }
+    return pos;
+  }
+
+  /**
+   * Whether the character may appear in a label name (see Assembler.LABEL_REGEX)
+   *
+   * @param c The character to check
+   * @return True for upper-case letters, digits and underscores
+   */
+  public static boolean isLabelCharacter(char c)
+  {
+    return (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+  }
+
+  private static boolean isHexDigit(char c)
+  {
+    return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F') || (c >= 'a' && c <= 'f');
+  }
+
+  /**
+   * Whether the character is whitespace, in the sense of the regex class \s
+   *
+   * @param c The character to check
+   * @return True for space, tab, newline, vertical tab, form feed and carriage return
+   */
+  public static boolean isWhitespace(char c)
+  {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+}
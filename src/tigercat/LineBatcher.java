@@ -0,0 +1,135 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : LineBatcher.java
+ * Description  : Splits a stream of assembly into batches of whole lines
+ */
+
+package tigercat;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits a stream of assembly into batches of whole lines, each small enough to parse as
+ * one chunk (see Assembler.parseChunk)
+ *
+ * A batch is only cut once the next non-empty line has been read in full, so that a label
+ * at the end of a batch can still see the line after it, as Lexer.peekLine would. Each
+ * batch's source is therefore followed by that look-ahead, which belongs to the next batch.
+ */
+class LineBatcher
+{
+  private final Reader input;
+  private final String separator;
+  private final int batchLength;
+
+  private final StringBuilder buffer = new StringBuilder();
+  private final char[] block;
+  private boolean endOfInput = false;
+  private boolean finished = false;
+
+  private String source;
+  private int rangeEnd;
+
+  /**
+   * @param input The assembly
+   * @param separator The line separator
+   * @param batchLength Roughly how many characters of assembly each batch holds
+   */
+  LineBatcher(Reader input, String separator, int batchLength)
+  {
+    this.input = input;
+    this.separator = separator;
+    this.batchLength = batchLength;
+    this.block = new char[batchLength];
+  }
+
+  /**
+   * Read the next batch
+   *
+   * @return False once every batch has been read
+   * @throws IOException If reading fails
+   */
+  boolean next() throws IOException
+  {
+    if (finished)
+    {
+      return false;
+    }
+
+    while (!endOfInput)
+    {
+      if (buffer.length() >= batchLength && cut())
+      {
+        return true;
+      }
+
+      int read = input.read(block);
+      if (read == -1)
+      {
+        endOfInput = true;
+      } else
+      {
+        buffer.append(block, 0, read);
+      }
+    }
+
+    // Whatever is left is the last batch, to be lexed as the end of the source
+    source = buffer.toString();
+    rangeEnd = Integer.MAX_VALUE;
+    buffer.setLength(0);
+    finished = true;
+    return true;
+  }
+
+  /**
+   * Cut a batch from the front of the buffer, if it holds a complete non-empty line after
+   * the first
+   */
+  private boolean cut()
+  {
+    // Find the last complete non-empty line: the batch is everything before it
+    int lineEnd = buffer.lastIndexOf(separator);
+    int lineStart = -1;
+    while (lineEnd > 0)
+    {
+      int previous = buffer.lastIndexOf(separator, lineEnd - separator.length());
+      lineStart = previous == -1 ? 0 : previous + separator.length();
+      if (lineStart < lineEnd)
+      {
+        break;
+      }
+      lineEnd = previous;
+    }
+    if (lineEnd <= 0 || lineStart <= 0)
+    {
+      return false;
+    }
+
+    source = buffer.substring(0, lineEnd);
+    rangeEnd = lineStart;
+    buffer.delete(0, lineStart);
+    return true;
+  }
+
+  /**
+   * Return the current batch, followed by its look-ahead
+   *
+   * @return The source of the batch
+   */
+  String getSource()
+  {
+    return source;
+  }
+
+  /**
+   * Return where the lines of the current batch end in getSource, to pass to parseChunk
+   *
+   * @return The end of the batch, or Integer.MAX_VALUE for the last batch
+   */
+  int getRangeEnd()
+  {
+    return rangeEnd;
+  }
+}
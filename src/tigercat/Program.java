@@ -0,0 +1,158 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : Program.java
+ * Description  : Parsed representation of an assembly program, shared by both passes
+ */
+
+package tigercat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import tigercat.instruction.Instruction;
+
+/**
+ * Parsed representation of an assembly program, shared by both passes
+ *
+ * The first pass lexes every line once and records one Statement per instruction line,
+ * along with every label. The second pass only has to resolve symbols and encode the
+ * already-created instructions, without going back to the source text.
+ */
+public class Program
+{
+  /**
+   * One instruction line of the program
+   */
+  public static class Statement
+  {
+    private int lineIndex;
+    private final int lineStart;
+    private final int lineEnd;
+    private int address;
+    private final Instruction instruction;
+    private final String symbol;
+
+    /**
+     * @param lineIndex Zero-based index of the line in the source
+     * @param lineStart Offset in the source at which the line starts
+     * @param lineEnd Offset in the source at which the line ends
+     * @param address Address of the instruction
+     * @param instruction The unbound instruction on this line
+     * @param symbol The label referenced by the last argument, or null if there is none
+     */
+    public Statement(int lineIndex, int lineStart, int lineEnd, int address, Instruction instruction, String symbol)
+    {
+      this.lineIndex = lineIndex;
+      this.lineStart = lineStart;
+      this.lineEnd = lineEnd;
+      this.address = address;
+      this.instruction = instruction;
+      this.symbol = symbol;
+    }
+
+    /**
+     * Move a statement parsed as part of a chunk to its place in the whole program
+     *
+     * @param lineOffset Number of lines before the chunk
+     * @param addressOffset Address of the start of the chunk
+     */
+    void rebase(int lineOffset, int addressOffset)
+    {
+      lineIndex += lineOffset;
+      address += addressOffset;
+    }
+
+    public int getLineIndex()
+    {
+      return lineIndex;
+    }
+
+    public int getAddress()
+    {
+      return address;
+    }
+
+    public Instruction getInstruction()
+    {
+      return instruction;
+    }
+
+    public String getSymbol()
+    {
+      return symbol;
+    }
+  }
+
+  private final String source;
+  private final HashMap<String, Label> labelMapping = new HashMap<>();
+  private final ArrayList<Statement> statements = new ArrayList<>();
+  private int size = 0;
+
+  public Program(String source)
+  {
+    this.source = source;
+  }
+
+  public HashMap<String, Label> getLabelMapping()
+  {
+    return labelMapping;
+  }
+
+  public List<Statement> getStatements()
+  {
+    return statements;
+  }
+
+  /**
+   * Return the size, in words, of all the instructions in the program
+   *
+   * @return The size of the program in machine words
+   */
+  public int getSize()
+  {
+    return size;
+  }
+
+  /**
+   * Return the source line a statement came from, for diagnostics
+   *
+   * @param statement A statement of this program
+   * @return The raw source line
+   */
+  public String getLine(Statement statement)
+  {
+    return source.substring(statement.lineStart, statement.lineEnd);
+  }
+
+  /**
+   * Return the warnings given when the statements were encoded (see Instruction.getWarning)
+   *
+   * @return The warnings, in line order
+   */
+  public List<String> getWarnings()
+  {
+    List<String> warnings = new ArrayList<>();
+    for (Statement statement : statements)
+    {
+      String warning = statement.getInstruction().getWarning();
+      if (warning != null)
+      {
+        warnings.add(warning);
+      }
+    }
+    return warnings;
+  }
+
+  /**
+   * Append a statement, growing the program by the size of its instruction
+   *
+   * @param statement The statement to add
+   */
+  public void addStatement(Statement statement)
+  {
+    statements.add(statement);
+    size += statement.getInstruction().getSize();
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : SlowLineEvent.java
+ * Description  : Flight Recorder event for a line which took long to parse or encode
+ */
+
+package tigercat;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for a line which took longer than the threshold to parse (in the
+ * first pass) or encode (in the second)
+ *
+ * The threshold is a setting of the recording, e.g.
+ *   -XX:StartFlightRecording:settings=profile,tigercat.SlowLine#threshold=100us
+ * or Recording.enable(SlowLineEvent.NAME).withThreshold(...), and defaults to 1 ms.
+ *
+ * The passes only time their lines while a recording has this event enabled (see
+ * isRecording), so otherwise it costs one check per chunk of lines.
+ */
+@Name(SlowLineEvent.NAME)
+@Label("Slow Line")
+@Category("TigerCat")
+@Description("A line which took longer than the threshold to parse or encode")
+@Threshold("1 ms")
+@StackTrace(false)
+final class SlowLineEvent extends Event
+{
+  static final String NAME = "tigercat.SlowLine";
+
+  static final String FIRST_PASS = "firstPass";
+  static final String SECOND_PASS = "secondPass";
+
+  private static final EventType TYPE = EventType.getEventType(SlowLineEvent.class);
+
+  @Label("Line Number")
+  @Description("One-based, as in diagnostics")
+  int lineNumber;
+
+  @Label("Mnemonic")
+  @Description("The mnemonic of an instruction, or the first word of any other line")
+  String mnemonic;
+
+  @Label("Phase")
+  String phase;
+
+  /**
+   * @return Whether any recording has this event enabled, so lines should be timed
+   */
+  static boolean isRecording()
+  {
+    return TYPE.isEnabled();
+  }
+
+  /**
+   * Start timing a line
+   *
+   * @return The event, to be finished once the line is done
+   */
+  static SlowLineEvent start()
+  {
+    SlowLineEvent event = new SlowLineEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Stop timing the line, and describe it if it took longer than the threshold
+   *
+   * @param lineIndex Zero-based index of the line
+   * @param line The line
+   * @param phase FIRST_PASS or SECOND_PASS
+   * @return Whether the event should be committed
+   */
+  boolean finish(int lineIndex, String line, String phase)
+  {
+    end();
+    if (!shouldCommit())
+    {
+      return false;
+    }
+    this.lineNumber = lineIndex + 1;
+    this.mnemonic = firstWord(line);
+    this.phase = phase;
+    return true;
+  }
+
+  /**
+   * Return the first word of a line, which for an instruction is its mnemonic
+   *
+   * @param line The line
+   * @return The first word, or an empty string for a blank line
+   */
+  private static String firstWord(String line)
+  {
+    int start = 0;
+    while (start < line.length() && Character.isWhitespace(line.charAt(start)))
+    {
+      start++;
+    }
+    int end = start;
+    while (end < line.length() && !Character.isWhitespace(line.charAt(end)))
+    {
+      end++;
+    }
+    return line.substring(start, end);
+  }
+}
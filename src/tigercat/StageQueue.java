@@ -0,0 +1,187 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : StageQueue.java
+ * Description  : Bounded queue joining two stages of the assembly pipeline, with statistics
+ */
+
+package tigercat;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Bounded queue joining two stages of the assembly pipeline
+ *
+ * Counts how often, and for how long, the producer found the queue full and the consumer
+ * found it empty, and samples its depth. A stage whose input queue is usually full, or
+ * whose output queue is usually empty, is the bottleneck.
+ *
+ * @param <T> The type of the batches passed between the stages
+ */
+public class StageQueue<T>
+{
+  private final String name;
+  private final ArrayBlockingQueue<T> queue;
+
+  // Written by the producer
+  private volatile long puts = 0;
+  private volatile long producerStalls = 0;
+  private volatile long producerStallNanos = 0;
+  private volatile int maxDepth = 0;
+  private volatile long totalDepth = 0;
+
+  // Written by the consumer
+  private volatile long consumerStalls = 0;
+  private volatile long consumerStallNanos = 0;
+
+  /**
+   * @param name Name of the queue, for reports
+   * @param capacity Number of batches the queue holds before the producer has to wait
+   */
+  public StageQueue(String name, int capacity)
+  {
+    this.name = name;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+  }
+
+  /**
+   * Add a batch, waiting for space if the queue is full
+   *
+   * Only to be called from the producing stage's thread
+   *
+   * @param batch The batch to add
+   */
+  public void put(T batch) throws InterruptedException
+  {
+    if (!queue.offer(batch))
+    {
+      long start = System.nanoTime();
+      queue.put(batch);
+      producerStalls++;
+      producerStallNanos += System.nanoTime() - start;
+    }
+
+    int depth = queue.size();
+    puts++;
+    totalDepth += depth;
+    if (depth > maxDepth)
+    {
+      maxDepth = depth;
+    }
+  }
+
+  /**
+   * Remove the oldest batch, waiting for one if the queue is empty
+   *
+   * Only to be called from the consuming stage's thread
+   *
+   * @return The oldest batch
+   */
+  public T take() throws InterruptedException
+  {
+    T batch = queue.poll();
+    if (batch == null)
+    {
+      long start = System.nanoTime();
+      batch = queue.take();
+      consumerStalls++;
+      consumerStallNanos += System.nanoTime() - start;
+    }
+    return batch;
+  }
+
+  /**
+   * Throw away whatever is waiting and leave only the given end marker, so the consumer
+   * stops without waiting for a producer which has failed
+   *
+   * May be called from any thread
+   *
+   * @param end The marker the consumer stops at
+   */
+  public void abort(T end)
+  {
+    queue.clear();
+    while (!queue.offer(end))
+    {
+      queue.clear();
+    }
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * Return the number of batches waiting in the queue right now
+   *
+   * @return The current depth of the queue
+   */
+  public int getDepth()
+  {
+    return queue.size();
+  }
+
+  public int getCapacity()
+  {
+    return queue.size() + queue.remainingCapacity();
+  }
+
+  public int getMaxDepth()
+  {
+    return maxDepth;
+  }
+
+  /**
+   * Return the average depth of the queue just after a batch was added
+   *
+   * @return The average depth, or zero if nothing has been added
+   */
+  public double getAverageDepth()
+  {
+    return puts == 0 ? 0 : (double) totalDepth / puts;
+  }
+
+  public long getPuts()
+  {
+    return puts;
+  }
+
+  /**
+   * Return how many times the producing stage had to wait because the queue was full
+   *
+   * @return The number of producer stalls
+   */
+  public long getProducerStalls()
+  {
+    return producerStalls;
+  }
+
+  public long getProducerStallNanos()
+  {
+    return producerStallNanos;
+  }
+
+  /**
+   * Return how many times the consuming stage had to wait because the queue was empty
+   *
+   * @return The number of consumer stalls
+   */
+  public long getConsumerStalls()
+  {
+    return consumerStalls;
+  }
+
+  public long getConsumerStallNanos()
+  {
+    return consumerStallNanos;
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("%s: %d batches, depth max %d avg %.1f of %d, producer stalls %d (%d ms), "
+            + "consumer stalls %d (%d ms)", name, puts, maxDepth, getAverageDepth(), getCapacity(),
+        producerStalls, producerStallNanos / 1000000, consumerStalls, consumerStallNanos / 1000000);
+  }
+}
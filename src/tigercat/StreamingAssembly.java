@@ -0,0 +1,256 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : StreamingAssembly.java
+ * Description  : Assembles a source too large to hold in memory, reading it once per pass
+ */
+
+package tigercat;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import tigercat.instruction.Instruction;
+
+/**
+ * Assembles a source too large to hold in memory, reading it once per pass
+ *
+ * The source is decoded a batch of lines at a time (see LineBatcher). The first pass keeps
+ * only the labels and the size of the program; nothing of the lines themselves. The second
+ * pass reads the source again, parsing and encoding each batch and writing its machine code
+ * before reading the next. Memory therefore grows with the number of labels, not with the
+ * size of the source.
+ *
+ * Diagnostics and labels are exactly those of Assembler.firstPass and secondPass. The
+ * second pass only runs if the first found no errors. An assembly is used once.
+ */
+public class StreamingAssembly
+{
+  private final Assembler assembler;
+  private final int batchLength;
+  private final String separator = Lexer.lineSeparator();
+
+  private final Map<String, Label> labelMapping = new HashMap<>();
+  private final ArrayList<AssemblerException> firstPassErrors = new ArrayList<>();
+  private final ArrayList<AssemblerException> secondPassErrors = new ArrayList<>();
+  private final ArrayList<String> warnings = new ArrayList<>();
+
+  // What the first pass found, to check the second pass reads the same source
+  private int lineCount = 0;
+  private int size = 0;
+
+  /**
+   * Batches of about Assembler.PARALLEL_CHUNK_LENGTH characters
+   *
+   * @param assembler The assembler whose passes to run
+   */
+  public StreamingAssembly(Assembler assembler)
+  {
+    this(assembler, Assembler.PARALLEL_CHUNK_LENGTH);
+  }
+
+  /**
+   * @param assembler The assembler whose passes to run
+   * @param batchLength Roughly how many characters of assembly to hold at once
+   */
+  public StreamingAssembly(Assembler assembler, int batchLength)
+  {
+    this.assembler = assembler;
+    this.batchLength = batchLength;
+  }
+
+  /**
+   * Assemble the file at input, writing the machine code to output
+   *
+   * @param input The assembly file, read twice
+   * @param output Where to write the machine code
+   * @throws IOException If reading or writing fails, or the file changes between passes
+   */
+  public void run(Path input, WritableByteChannel output) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ))
+    {
+      run(channel, output);
+    }
+  }
+
+  /**
+   * Assemble everything read from input, writing the machine code to output
+   *
+   * A SeekableByteChannel is read from its current position in both passes. Any other
+   * channel can only be read once, so it is first copied to a temporary file.
+   *
+   * @param input The assembly. Not closed
+   * @param output Where to write the machine code
+   * @throws IOException If reading or writing fails, or the source changes between passes
+   */
+  public void run(ReadableByteChannel input, WritableByteChannel output) throws IOException
+  {
+    if (!(input instanceof SeekableByteChannel))
+    {
+      Path copy = Files.createTempFile("tigercat", ".s");
+      try
+      {
+        try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.WRITE))
+        {
+          ByteBuffer buffer = ByteBuffer.allocate(batchLength);
+          while (input.read(buffer) != -1)
+          {
+            buffer.flip();
+            while (buffer.hasRemaining())
+            {
+              channel.write(buffer);
+            }
+            buffer.clear();
+          }
+        }
+        run(copy, output);
+      } finally
+      {
+        Files.delete(copy);
+      }
+      return;
+    }
+
+    SeekableByteChannel source = (SeekableByteChannel) input;
+    long start = source.position();
+
+    firstPass(newReader(source));
+    if (!firstPassErrors.isEmpty())
+    {
+      return;
+    }
+
+    source.position(start);
+    secondPass(newReader(source), output);
+  }
+
+  /**
+   * Decode the channel as new String(bytes, Charset.defaultCharset()) would, replacing
+   * anything malformed
+   */
+  private static Reader newReader(ReadableByteChannel channel)
+  {
+    CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    return Channels.newReader(channel, decoder, -1);
+  }
+
+  /**
+   * Collect the labels and size of the program, one batch at a time
+   */
+  private void firstPass(Reader input) throws IOException
+  {
+    int offsetAddress = Assembler.MACHINE_CODE_START;
+    LineBatcher batcher = new LineBatcher(input, separator, batchLength);
+    while (batcher.next())
+    {
+      String source = batcher.getSource();
+      Assembler.ParsedChunk chunk = assembler.parseChunk(source, separator, 0, batcher.getRangeEnd());
+
+      // The batch's statements are dropped with it; only its labels are kept
+      assembler.mergeChunk(chunk, new Program(source), labelMapping, lineCount, offsetAddress, firstPassErrors);
+      lineCount += chunk.lineCount;
+      offsetAddress += chunk.size;
+    }
+    size = offsetAddress - Assembler.MACHINE_CODE_START;
+  }
+
+  /**
+   * Parse each batch again, and encode and write it
+   */
+  private void secondPass(Reader input, WritableByteChannel output) throws IOException
+  {
+    int lineOffset = 0;
+    int offsetAddress = Assembler.MACHINE_CODE_START;
+    List<AssemblerException> ignored = new ArrayList<>();
+
+    LineBatcher batcher = new LineBatcher(input, separator, batchLength);
+    while (batcher.next())
+    {
+      String source = batcher.getSource();
+      Assembler.ParsedChunk chunk = assembler.parseChunk(source, separator, 0, batcher.getRangeEnd(), false);
+
+      // The labels were collected by the first pass, which also reported any errors and slow lines
+      Program program = new Program(source);
+      assembler.mergeChunk(chunk, program, new HashMap<String, Label>(), lineOffset, offsetAddress, ignored);
+      ignored.clear();
+
+      byte[] machineCode = new byte[chunk.size * Instruction.BYTES_PER_WORD];
+      assembler.encodeStatements(program, labelMapping, 0, program.getStatements().size(), machineCode,
+          offsetAddress, secondPassErrors);
+      warnings.addAll(program.getWarnings());
+
+      ByteBuffer buffer = ByteBuffer.wrap(machineCode);
+      while (buffer.hasRemaining())
+      {
+        output.write(buffer);
+      }
+
+      lineOffset += chunk.lineCount;
+      offsetAddress += chunk.size;
+    }
+
+    if (lineOffset != lineCount || offsetAddress - Assembler.MACHINE_CODE_START != size)
+    {
+      throw new IOException("Assembly source changed between the first and second pass");
+    }
+  }
+
+  public Map<String, Label> getLabelMapping()
+  {
+    return labelMapping;
+  }
+
+  public List<AssemblerException> getFirstPassErrors()
+  {
+    return firstPassErrors;
+  }
+
+  public List<AssemblerException> getSecondPassErrors()
+  {
+    return secondPassErrors;
+  }
+
+  public List<String> getWarnings()
+  {
+    return warnings;
+  }
+
+  /**
+   * Return the size of the program found by the first pass
+   *
+   * @return The size, in words
+   */
+  public int getSize()
+  {
+    return size;
+  }
+
+  /**
+   * Return the number of lines read by the first pass
+   *
+   * @return The line count
+   */
+  public int getLineCount()
+  {
+    return lineCount;
+  }
+}
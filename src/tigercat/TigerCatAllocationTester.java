@@ -0,0 +1,226 @@
+package tigercat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import tigercat.bench.ProgramGenerator;
+import tigercat.instruction.EncodingContext;
+
+/**
+ * Checks that assembling allocates no more bytes per instruction than its recorded budget
+ *
+ * Each phase of a serial assembly is measured with the allocation counter of the current
+ * thread, once the JIT has settled, as the least of several runs. The budgets are in
+ * tests/allocation_budgets.json, in bytes per instruction for each program and phase. After
+ * a change which rightly allocates more (or less), record them again by running this class
+ * with -Dtigercat.recordAllocationBudgets=true, which allows each phase 10% over what it
+ * measured.
+ *
+ * Object sizes depend on the layout of the JVM, so the budgets are kept per layout (compact
+ * strings and compressed oops on or off, see getLayout), and recording only replaces those
+ * of the running layout. On a layout with no budgets the test is skipped.
+ */
+public class TigerCatAllocationTester
+{
+  private static final Path BUDGETS = Paths.get("tests", "allocation_budgets.json");
+  private static final String RECORD_PROPERTY = "tigercat.recordAllocationBudgets";
+  private static final double RECORD_HEADROOM = 1.1;
+
+  private static final int WARMUP_RUNS = 30;
+  private static final int MEASURED_RUNS = 5;
+  private static final int SYNTHETIC_LINES = 10_000;
+  private static final long SYNTHETIC_SEED = 1;
+
+  /**
+   * Exposes the two passes of a serial assembler
+   */
+  private static class PhaseAssembler extends Assembler
+  {
+    PhaseAssembler(EncodingContext context)
+    {
+      super(context);
+    }
+
+    Program parse(String assembly)
+    {
+      ArrayList<AssemblerException> exceptions = new ArrayList<>();
+      Program program = firstPass(assembly, exceptions);
+      Assert.assertEquals("Program does not assemble", new ArrayList<AssemblerException>(), exceptions);
+      return program;
+    }
+
+    byte[] encode(Program program)
+    {
+      ArrayList<AssemblerException> exceptions = new ArrayList<>();
+      byte[] machineCode = secondPass(program, exceptions);
+      Assert.assertEquals("Program does not assemble", new ArrayList<AssemblerException>(), exceptions);
+      return machineCode;
+    }
+  }
+
+  /**
+   * Describe the JVM options which change the size of the objects an assembly allocates
+   *
+   * @return e.g. "compactStrings=true,compressedOops=true", or null if the options are unknown
+   */
+  private static String getLayout()
+  {
+    HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+    if (hotSpot == null)
+    {
+      return null;
+    }
+    return "compactStrings=" + getBooleanOption(hotSpot, "CompactStrings")
+        + ",compressedOops=" + getBooleanOption(hotSpot, "UseCompressedOops");
+  }
+
+  /**
+   * @return The value of a boolean VM option, or false if this JVM does not have it (as Java 8
+   * does not have CompactStrings)
+   */
+  private static boolean getBooleanOption(HotSpotDiagnosticMXBean hotSpot, String name)
+  {
+    try
+    {
+      return Boolean.parseBoolean(hotSpot.getVMOption(name).getValue());
+    } catch (IllegalArgumentException e)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Return the bytes allocated so far by this thread
+   */
+  private static long allocatedBytes(com.sun.management.ThreadMXBean threads)
+  {
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Measure the bytes per instruction of each phase of assembling a program
+   *
+   * @return lex, firstPass and secondPass, in that order
+   */
+  private static Map<String, Long> measure(com.sun.management.ThreadMXBean threads, String source)
+      throws Exception
+  {
+    PhaseAssembler assembler = new PhaseAssembler(EncodingContext.getDefault());
+    long[] least = { Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE };
+    int instructions = 0;
+
+    for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++)
+    {
+      long start = allocatedBytes(threads);
+      Lexer lexer = new Lexer(source);
+      while (lexer.hasNextLine())
+      {
+        lexer.nextLine();
+      }
+      long lexed = allocatedBytes(threads);
+      Program program = assembler.parse(source);
+      long parsed = allocatedBytes(threads);
+      assembler.encode(program);
+      long encoded = allocatedBytes(threads);
+
+      if (run >= WARMUP_RUNS)
+      {
+        least[0] = Math.min(least[0], lexed - start);
+        least[1] = Math.min(least[1], parsed - lexed);
+        least[2] = Math.min(least[2], encoded - parsed);
+      }
+      instructions = program.getStatements().size();
+    }
+
+    Map<String, Long> perInstruction = new LinkedHashMap<>();
+    perInstruction.put("lex", least[0] / instructions);
+    perInstruction.put("firstPass", least[1] / instructions);
+    perInstruction.put("secondPass", least[2] / instructions);
+    return perInstruction;
+  }
+
+  @Test
+  /*
+   * Test that no phase of assembling the sample programs goes over its allocation budget
+   */
+  public void testAllocationBudgets() throws Exception
+  {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue("This JVM does not count allocations", bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue("This JVM does not count allocations",
+        threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+    String layout = getLayout();
+    Assume.assumeNotNull(layout);
+
+    Map<String, String> programs = new LinkedHashMap<>();
+    programs.put("ascii_snake",
+        new String(Files.readAllBytes(Paths.get("tests", "ASCII_Snake.s")), Charset.defaultCharset()));
+    programs.put("synthetic_10k", new ProgramGenerator(SYNTHETIC_SEED).generate(SYNTHETIC_LINES));
+
+    Map<String, Object> measured = new LinkedHashMap<>();
+    for (Map.Entry<String, String> program : programs.entrySet())
+    {
+      measured.put(program.getKey(), measure(threads, program.getValue()));
+    }
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> layouts = Files.exists(BUDGETS)
+        ? (Map<String, Object>) Json.parse(new String(Files.readAllBytes(BUDGETS), StandardCharsets.UTF_8))
+        : new LinkedHashMap<String, Object>();
+    if (Boolean.getBoolean(RECORD_PROPERTY))
+    {
+      Map<String, Object> budgets = new LinkedHashMap<>();
+      for (Map.Entry<String, Object> program : measured.entrySet())
+      {
+        Map<String, Object> phases = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> phase : ((Map<?, ?>) program.getValue()).entrySet())
+        {
+          phases.put((String) phase.getKey(), (long) Math.ceil((Long) phase.getValue() * RECORD_HEADROOM));
+        }
+        budgets.put(program.getKey(), phases);
+      }
+      layouts.put(layout, budgets);
+      Files.write(BUDGETS, (Json.write(layouts) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    Map<?, ?> budgets = (Map<?, ?>) layouts.get(layout);
+    Assume.assumeTrue("No allocation budgets recorded for " + layout, budgets != null);
+    List<String> overBudget = new ArrayList<>();
+    System.out.println(layout);
+    System.out.println(String.format("%-16s %-12s %12s %12s", "Program", "Phase", "Bytes/instr", "Budget"));
+    for (Map.Entry<String, Object> program : measured.entrySet())
+    {
+      Map<?, ?> programBudgets = (Map<?, ?>) budgets.get(program.getKey());
+      Assert.assertNotNull("No budgets recorded for " + program.getKey(), programBudgets);
+      for (Map.Entry<?, ?> phase : ((Map<?, ?>) program.getValue()).entrySet())
+      {
+        Long budget = (Long) programBudgets.get(phase.getKey());
+        Assert.assertNotNull("No budget recorded for " + program.getKey() + " " + phase.getKey(), budget);
+        long bytes = (Long) phase.getValue();
+        System.out.println(String.format("%-16s %-12s %12d %12d%s", program.getKey(), phase.getKey(), bytes,
+            budget, bytes > budget ? "  OVER" : ""));
+        if (bytes > budget)
+        {
+          overBudget.add(program.getKey() + " " + phase.getKey() + ": " + bytes + " > " + budget);
+        }
+      }
+    }
+    Assert.assertTrue("Over the allocation budget (bytes per instruction): " + overBudget, overBudget.isEmpty());
+  }
+}
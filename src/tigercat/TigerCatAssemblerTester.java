@@ -0,0 +1,485 @@
+package tigercat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tigercat.instruction.EncodingContext;
+import tigercat.instruction.IsaTables;
+
+public class TigerCatAssemblerTester
+{
+  private static String readTestProgram(String name) throws Exception
+  {
+    return new String(Files.readAllBytes(Paths.get("tests", name)), Charset.defaultCharset());
+  }
+
+  @Test
+  /*
+   * Test that a successful assembly returns its image and symbols, and prints the labels
+   * as the command line does
+   */
+  public void testAssembleToResultSuccess() throws Exception
+  {
+    Assembler assembler = new Assembler();
+    AssemblyResult result = assembler.assembleToResult("START:\n  addw %r1l %a1l %a2l\nEND:\n  jmp START\n"
+        .replace("\n", Lexer.lineSeparator()));
+
+    Assert.assertTrue(result.isSuccess());
+    Assert.assertNull(result.getFailedPass());
+    Assert.assertTrue(result.getDiagnostics().isEmpty());
+    Assert.assertEquals(8, result.getImage().length);
+    Assert.assertEquals(Integer.valueOf(0x0), result.getSymbols().get("START"));
+    Assert.assertEquals(Integer.valueOf(0x2), result.getSymbols().get("END"));
+
+    ByteArrayOutputStream report = new ByteArrayOutputStream();
+    result.print(new PrintStream(report, true));
+    Assert.assertEquals("END: 0x2" + System.lineSeparator() + "START: 0x0" + System.lineSeparator(), report.toString());
+  }
+
+  @Test
+  /*
+   * Test that errors are returned as diagnostics, without exiting, and the same assembler
+   * can be used again afterwards
+   */
+  public void testAssembleToResultErrors() throws Exception
+  {
+    Assembler assembler = new Assembler();
+    AssemblyResult result = assembler.assembleToResult(readTestProgram("assembler_second_pass_multi_error.s"));
+
+    Assert.assertFalse(result.isSuccess());
+    Assert.assertEquals(Diagnostic.Pass.SECOND, result.getFailedPass());
+    Assert.assertNull(result.getImage());
+    Assert.assertEquals(4, result.getDiagnostics().size());
+
+    Diagnostic undefined = result.getDiagnostics().get(0);
+    Assert.assertEquals(Diagnostic.Pass.SECOND, undefined.getPass());
+    Assert.assertEquals(4, undefined.getLineNumber());
+    Assert.assertEquals("jmpt LOOP # Undefined label", undefined.getLine());
+    Assert.assertEquals("UndefinedLabelException", undefined.getKind());
+
+    result = assembler.assembleToResult(readTestProgram("assembler_first_pass_multi_error.s"));
+    Assert.assertEquals(Diagnostic.Pass.FIRST, result.getFailedPass());
+
+    result = assembler.assembleToResult(readTestProgram("simple_loop_test.s"));
+    Assert.assertTrue(result.isSuccess());
+  }
+
+  @Test
+  /*
+   * Test that comment, label and instruction lines ending in CR are lexed as if the CR were
+   * not there, and assemble to the same image. The regex passes rejected a comment line
+   * ending in CR with an InvalidOpcodeException
+   */
+  public void testLexerCarriageReturnLines() throws Exception
+  {
+    String text = "# Comment\nSTART:\n  addw %r1l %a1l %a2l\n  jmp START\n";
+    Lexer lexer = new Lexer(text.replace("\n", "\r\n"), "\n");
+    Assert.assertEquals("[COMMENT]", kinds(lexer.nextLine()));
+    Assert.assertEquals("[LABEL_DEFINITION]", kinds(lexer.nextLine()));
+    Assert.assertEquals("[OPCODE, REGISTER, REGISTER, REGISTER]", kinds(lexer.nextLine()));
+    Assert.assertEquals("[OPCODE, SYMBOL]", kinds(lexer.nextLine()));
+    Assert.assertFalse(lexer.hasNextLine());
+
+    Assembler assembler = new Assembler();
+    AssemblyResult expected = assembler.assembleToResult(text.replace("\n", Lexer.lineSeparator()));
+    AssemblyResult result = assembler.assembleToResult(text.replace("\n", "\r" + Lexer.lineSeparator()));
+    Assert.assertTrue(result.isSuccess());
+    Assert.assertArrayEquals(expected.getImage(), result.getImage());
+    Assert.assertEquals(expected.getSymbols(), result.getSymbols());
+  }
+
+  private static String kinds(List<Token> tokens)
+  {
+    List<Token.Kind> kinds = new ArrayList<>();
+    for (Token token : tokens)
+    {
+      kinds.add(token.getKind());
+    }
+    return kinds.toString();
+  }
+
+  @Test
+  /*
+   * Test that a batch assembles every input from a directory and a manifest once, writing
+   * each output beside its input, and reports the failures
+   */
+  public void testBatchAssembler() throws Exception
+  {
+    Path directory = Files.createTempDirectory("tigercat-batch");
+    Path nested = Files.createDirectory(directory.resolve("nested"));
+    Files.copy(Paths.get("tests", "simple_loop_test.s"), directory.resolve("loop.s"));
+    Files.copy(Paths.get("tests", "assembler_second_pass_multi_error.s"), directory.resolve("errors.s"));
+    Files.copy(Paths.get("tests", "memory_zeroer.s"), nested.resolve("zeroer.s"));
+    Files.write(directory.resolve("manifest"), Arrays.asList("# Inputs", "loop.s", "nested/zeroer.s"),
+        Charset.defaultCharset());
+
+    List<Path> inputs = BatchAssembler.expandInputs(Arrays.asList(directory.toString(),
+        BatchAssembler.MANIFEST_PREFIX + directory.resolve("manifest")));
+    Assert.assertEquals(3, inputs.size());
+
+    BatchAssembler batch = new BatchAssembler(EncodingContext.getDefault());
+    batch.setJobs(2);
+    List<BatchAssembler.FileResult> results = batch.assemble(inputs);
+
+    ByteArrayOutputStream summary = new ByteArrayOutputStream();
+    Assert.assertFalse(BatchAssembler.printSummary(results, 0, new PrintStream(summary, true)));
+    Assert.assertTrue(summary.toString().contains("3 files: 2 succeeded, 1 failed"));
+
+    Assert.assertFalse(Files.exists(directory.resolve("errors.bin")));
+    byte[] expected = new Assembler().assembleToResult(readTestProgram("memory_zeroer.s")).getImage();
+    byte[] actual = Files.readAllBytes(nested.resolve("zeroer.bin"));
+    Assert.assertArrayEquals(expected, Arrays.copyOf(actual, expected.length));
+    Assert.assertEquals(expected.length + ImageWriter.STALL_PADDING_BYTES, actual.length);
+  }
+
+  @Test
+  /*
+   * Test that reassembling an edited program matches a full assembly, while parsing only
+   * the edited lines and encoding only those whose bytes may have changed
+   */
+  public void testIncrementalAssembler() throws Exception
+  {
+    String separator = Lexer.lineSeparator();
+    String original = readTestProgram("ASCII_Snake.s");
+    IncrementalAssembler incremental = new IncrementalAssembler(EncodingContext.getDefault());
+    incremental.setVerify(true);
+
+    AssemblyResult result = incremental.assemble(original);
+    Assert.assertTrue(result.isSuccess());
+    Assert.assertArrayEquals(new Assembler().assembleToResult(original).getImage(), result.getImage());
+
+    // Insert an instruction into the collision subroutine, moving every label after it
+    String anchor = "  # If there's a wall or another snake, kill the snake" + separator;
+    String edited = original.replace(anchor, "  addw %r1l %a1l %a2l" + separator + anchor);
+    Assert.assertNotEquals(original, edited);
+    result = incremental.assemble(edited);
+    Assert.assertTrue(result.isSuccess());
+    Assert.assertArrayEquals(new Assembler().assembleToResult(edited).getImage(), result.getImage());
+    Assert.assertTrue(incremental.getLinesParsed() < 100);
+    Assert.assertTrue(incremental.getLinesEncoded() < 100);
+
+    // Break the edit, then undo it
+    result = incremental.assemble(edited.replace("  addw %r1l %a1l %a2l", "  addw %r1l"));
+    Assert.assertEquals(Diagnostic.Pass.FIRST, result.getFailedPass());
+    result = incremental.assemble(original);
+    Assert.assertTrue(result.isSuccess());
+    Assert.assertTrue(incremental.getLinesEncoded() < 100);
+
+    // Type a label on the last line, which neither assembler supports yet
+    String trailing = original + "TRAILING:" + separator;
+    for (AssemblyResult unsupported : Arrays.asList(incremental.assemble(trailing),
+                                                    new Assembler().assembleToResult(trailing)))
+    {
+      Assert.assertEquals(Diagnostic.Pass.FIRST, unsupported.getFailedPass());
+      Assert.assertEquals("UnsupportedLabelException", unsupported.getDiagnostics().get(0).getKind());
+    }
+  }
+
+  @Test
+  /*
+   * Test that a cached assembly is found again by the same source only, installed with
+   * the same bytes and reporting the same warnings, and evicted least recently used first
+   */
+  public void testBuildCache() throws Exception
+  {
+    Path directory = Files.createTempDirectory("tigercat-cache");
+    byte[] loop = Files.readAllBytes(Paths.get("tests", "simple_loop_test.s"));
+    byte[] zeroer = Files.readAllBytes(Paths.get("tests", "memory_zeroer.s"));
+
+    BuildCache cache = new BuildCache(directory.resolve("cache"), BuildCache.DEFAULT_MAX_BYTES);
+    cache.setSync(true);
+    String loopKey = cache.keyFor(loop);
+    Assert.assertNotEquals(loopKey, cache.keyFor(zeroer));
+    Assert.assertNull(cache.lookup(loopKey));
+
+    AssemblyResult result = new Assembler().assembleToResult(new String(loop, Charset.defaultCharset()));
+    cache.store(loopKey, result);
+    BuildCache.Entry entry = cache.lookup(loopKey);
+    Assert.assertNotNull(entry);
+    Assert.assertEquals(result.getSymbols(), entry.getResult().getSymbols());
+
+    Path output = directory.resolve("loop.bin");
+    cache.install(entry, output);
+    byte[] installed = Files.readAllBytes(output);
+    Assert.assertArrayEquals(result.getImage(), Arrays.copyOf(installed, result.getImage().length));
+
+    // Writing over the installed output leaves the cached image alone
+    new ImageWriter(output).write(new byte[4]);
+    cache.install(cache.lookup(loopKey), output);
+    Assert.assertArrayEquals(installed, Files.readAllBytes(output));
+
+    // A hit reports the warnings of the assembly it stands for
+    String warns = "  invd %ret1 $0xFFFFF" + Lexer.lineSeparator();
+    String warnsKey = cache.keyFor(warns.getBytes(Charset.defaultCharset()));
+    cache.store(warnsKey, new Assembler().assembleToResult(warns));
+    Assert.assertEquals(1, cache.lookup(warnsKey).getResult().getWarnings().size());
+
+    // Trimmed to the size of the entry stored last, the cache keeps only that one
+    Files.setLastModifiedTime(directory.resolve("cache").resolve(loopKey), FileTime.fromMillis(0));
+    String zeroerKey = cache.keyFor(zeroer);
+    cache.store(zeroerKey, new Assembler().assembleToResult(new String(zeroer, Charset.defaultCharset())));
+    long zeroerSize = 0;
+    try (Stream<Path> files = Files.list(directory.resolve("cache").resolve(zeroerKey)))
+    {
+      zeroerSize = files.mapToLong(file -> file.toFile().length()).sum();
+    }
+    BuildCache small = new BuildCache(directory.resolve("cache"), zeroerSize);
+    small.evict();
+    Assert.assertNull(small.lookup(loopKey));
+    Assert.assertNotNull(small.lookup(zeroerKey));
+  }
+
+  @Test
+  /*
+   * Test that the language server publishes diagnostics as a document is edited, and
+   * answers definition and hover requests
+   */
+  public void testLanguageServer() throws Exception
+  {
+    String uri = "file:///loop.s";
+    String text = "START:\n  addw %r1l %a1l %a2l\nEND:\n  jmp START\n".replace("\n", Lexer.lineSeparator());
+    StringBuilder requests = new StringBuilder();
+    appendMessage(requests, "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\",\"params\":{}}");
+    appendMessage(requests, "{\"jsonrpc\":\"2.0\",\"method\":\"textDocument/didOpen\",\"params\":{\"textDocument\":"
+        + "{\"uri\":\"" + uri + "\",\"text\":" + Json.write(text) + "}}}");
+    appendMessage(requests, "{\"jsonrpc\":\"2.0\",\"method\":\"textDocument/didChange\",\"params\":{\"textDocument\":"
+        + "{\"uri\":\"" + uri + "\"},\"contentChanges\":[{\"range\":{\"start\":{\"line\":3,\"character\":6},"
+        + "\"end\":{\"line\":3,\"character\":11}},\"text\":\"LOOP\"}]}}");
+    appendMessage(requests, "{\"jsonrpc\":\"2.0\",\"method\":\"textDocument/didChange\",\"params\":{\"textDocument\":"
+        + "{\"uri\":\"" + uri + "\"},\"contentChanges\":[{\"range\":{\"start\":{\"line\":3,\"character\":6},"
+        + "\"end\":{\"line\":3,\"character\":10}},\"text\":\"END\"}]}}");
+    appendMessage(requests, "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"textDocument/definition\",\"params\":"
+        + "{\"textDocument\":{\"uri\":\"" + uri + "\"},\"position\":{\"line\":3,\"character\":7}}}");
+    appendMessage(requests, "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"textDocument/hover\",\"params\":"
+        + "{\"textDocument\":{\"uri\":\"" + uri + "\"},\"position\":{\"line\":1,\"character\":3}}}");
+    appendMessage(requests, "{\"jsonrpc\":\"2.0\",\"id\":4,\"method\":\"shutdown\"}");
+    appendMessage(requests, "{\"jsonrpc\":\"2.0\",\"method\":\"exit\"}");
+
+    ByteArrayOutputStream responses = new ByteArrayOutputStream();
+    LanguageServer server = new LanguageServer(EncodingContext.getDefault(),
+        new ByteArrayInputStream(requests.toString().getBytes(StandardCharsets.UTF_8)), responses);
+    Assert.assertEquals(0, server.run());
+
+    List<String> messages = new ArrayList<>();
+    for (String part : responses.toString("UTF-8").split("Content-Length: \\d+\r\n\r\n"))
+    {
+      if (!part.isEmpty())
+      {
+        messages.add(part);
+      }
+    }
+    Assert.assertEquals(7, messages.size());
+    Assert.assertTrue(messages.get(1).contains("\"diagnostics\":[]"));
+    Assert.assertTrue(messages.get(2), messages.get(2).contains("Undefined label: LOOP"));
+    Assert.assertTrue(messages.get(3).contains("\"diagnostics\":[]"));
+    Assert.assertTrue(messages.get(4), messages.get(4).contains("\"range\":{\"start\":{\"line\":2,\"character\":0}"));
+    Assert.assertTrue(messages.get(5), messages.get(5).contains("`0x0`: `0x"));
+  }
+
+  @Test
+  /*
+   * Test that the language server answers malformed messages with JSON-RPC errors, and
+   * keeps serving the messages after them
+   */
+  public void testLanguageServerMalformedInput() throws Exception
+  {
+    StringBuilder requests = new StringBuilder();
+    appendMessage(requests, "not json");
+    appendMessage(requests, "[1,2]");
+    appendMessage(requests, "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":4}");
+    appendMessage(requests, "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"initialize\",\"params\":[]}");
+    requests.append("Content-Length: many\r\n\r\n{}\r\n");
+    appendMessage(requests, "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"initialize\",\"params\":{}}");
+    appendMessage(requests, "{\"jsonrpc\":\"2.0\",\"id\":4,\"method\":\"textDocument/hover\",\"params\":"
+        + "{\"textDocument\":7}}");
+    appendMessage(requests, "{\"jsonrpc\":\"2.0\",\"method\":\"exit\"}");
+
+    ByteArrayOutputStream responses = new ByteArrayOutputStream();
+    LanguageServer server = new LanguageServer(EncodingContext.getDefault(),
+        new ByteArrayInputStream(requests.toString().getBytes(StandardCharsets.UTF_8)), responses);
+    Assert.assertEquals(1, server.run());
+
+    List<String> messages = new ArrayList<>();
+    for (String part : responses.toString("UTF-8").split("Content-Length: \\d+\r\n\r\n"))
+    {
+      if (!part.isEmpty())
+      {
+        messages.add(part);
+      }
+    }
+    Assert.assertEquals(7, messages.size());
+    String[] codes = { "-32700", "-32600", "-32600", "-32600", "-32700" };
+    for (int index = 0; index < codes.length; index++)
+    {
+      Assert.assertTrue(messages.get(index), messages.get(index).contains("\"code\":" + codes[index]));
+    }
+    Assert.assertTrue(messages.get(5), messages.get(5).contains("\"capabilities\""));
+    Assert.assertTrue(messages.get(6), messages.get(6).contains("\"code\":-32602"));
+  }
+
+  @Test
+  /*
+   * Test that assembling with stats times both passes and counts the lines by kind, the
+   * mnemonics, the words of each pseudo-instruction, the labels and the ISA lookups
+   */
+  public void testAssemblyStats() throws Exception
+  {
+    String source = ("START:\n  addw %r1l %a1l %a2l\n# note\n\nVALUE=0x5\n  movd %arg1 $0x12345678\n"
+        + "  call START\n  ret\n").replace("\n", Lexer.lineSeparator());
+    IsaTables isaTables = IsaTables.getDefault().counting();
+    AssemblyStats stats = new AssemblyStats();
+    AssemblyResult result = new Assembler(new EncodingContext(isaTables, false)).assembleToResult(source, stats);
+    Assert.assertTrue(result.isSuccess());
+    stats.setIsaLookups(isaTables.getLookupCount());
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> json = (Map<String, Object>) Json.parse(Json.write(stats.toJson()));
+    Assert.assertEquals(Arrays.asList("firstPass", "secondPass"),
+        new ArrayList<>(((Map<?, ?>) json.get("phases")).keySet()));
+    Assert.assertEquals("{blank=1, comment=1, label=1, constant=1, instruction=4, invalid=0}",
+        json.get("lines").toString());
+    Assert.assertEquals("{addw=1, call=1, movd=1, ret=1}", json.get("mnemonics").toString());
+    Assert.assertEquals("{call=4, movd=4, ret=2}", json.get("pseudoInstructionWords").toString());
+    Assert.assertEquals(2L, json.get("labels"));
+    Assert.assertTrue((Long) json.get("isaLookups") >= 3);
+  }
+
+  @Test
+  /*
+   * Test that a recording receives an event for the assembly, one for each line slower than
+   * its threshold (every line, at zero) and one for each build cache lookup
+   */
+  public void testFlightRecorderEvents() throws Exception
+  {
+    String source = "START:\n  addw %r1l %a1l %a2l\n  jmp START\n".replace("\n", Lexer.lineSeparator());
+    Path directory = Files.createTempDirectory("tigercat-jfr");
+    Path dump = directory.resolve("assembly.jfr");
+    BuildCache cache = new BuildCache(directory.resolve("cache"), BuildCache.DEFAULT_MAX_BYTES);
+
+    try (Recording recording = new Recording())
+    {
+      recording.enable(AssemblyEvent.NAME);
+      recording.enable(SlowLineEvent.NAME).withThreshold(Duration.ZERO);
+      recording.enable(CacheLookupEvent.NAME);
+      recording.start();
+      Assert.assertTrue(new Assembler().assembleToResult(source, "loop.s", null).isSuccess());
+      Assert.assertNull(cache.lookup("absent"));
+      recording.stop();
+      recording.dump(dump);
+    }
+
+    List<String> lines = new ArrayList<>();
+    RecordedEvent assembly = null;
+    RecordedEvent lookup = null;
+    for (RecordedEvent event : RecordingFile.readAllEvents(dump))
+    {
+      switch (event.getEventType().getName())
+      {
+        case AssemblyEvent.NAME:
+          assembly = event;
+          break;
+        case SlowLineEvent.NAME:
+          lines.add(event.getString("phase") + " " + event.getInt("lineNumber") + " " + event.getString("mnemonic"));
+          break;
+        case CacheLookupEvent.NAME:
+          lookup = event;
+          break;
+      }
+    }
+
+    Assert.assertNotNull(assembly);
+    Assert.assertEquals("loop.s", assembly.getString("source"));
+    Assert.assertEquals(source.length(), assembly.getLong("sourceLength"));
+    Assert.assertEquals(2, assembly.getInt("instructions"));
+    Assert.assertEquals(8, assembly.getLong("imageSize"));
+    Assert.assertTrue(assembly.getBoolean("success"));
+    Collections.sort(lines);
+    Assert.assertEquals(Arrays.asList("firstPass 1 START:", "firstPass 2 addw", "firstPass 3 jmp",
+        "secondPass 2 addw", "secondPass 3 jmp"), lines);
+    Assert.assertNotNull(lookup);
+    Assert.assertEquals("absent", lookup.getString("key"));
+    Assert.assertFalse(lookup.getBoolean("hit"));
+  }
+
+  @Test
+  /*
+   * Test that a streaming assembly, which parses every line twice, and an incremental
+   * assembly, which parses only the lines edited, each report a slow line once per pass
+   */
+  public void testSlowLineEventsReportedOnce() throws Exception
+  {
+    String source = "START:\n  addw %r1l %a1l %a2l\n  jmp START\n".replace("\n", Lexer.lineSeparator());
+    Path directory = Files.createTempDirectory("tigercat-jfr");
+    Path input = directory.resolve("loop.s");
+    Files.write(input, source.getBytes(Charset.defaultCharset()));
+
+    Path streamed = directory.resolve("streamed.jfr");
+    try (Recording recording = new Recording())
+    {
+      recording.enable(SlowLineEvent.NAME).withThreshold(Duration.ZERO);
+      recording.start();
+      new Assembler().assemble(input, Channels.newChannel(new ByteArrayOutputStream()));
+      recording.stop();
+      recording.dump(streamed);
+    }
+    Assert.assertEquals(Arrays.asList("firstPass 1 START:", "firstPass 2 addw", "firstPass 3 jmp",
+        "secondPass 2 addw", "secondPass 3 jmp"), slowLines(streamed));
+
+    IncrementalAssembler incremental = new IncrementalAssembler(EncodingContext.getDefault());
+    incremental.assemble(source);
+    Path edited = directory.resolve("edited.jfr");
+    try (Recording recording = new Recording())
+    {
+      recording.enable(SlowLineEvent.NAME).withThreshold(Duration.ZERO);
+      recording.start();
+      Assert.assertTrue(incremental.assemble(source.replace("%r1l", "%r2l")).isSuccess());
+      recording.stop();
+      recording.dump(edited);
+    }
+    // The line before an edit is parsed again, in case it is a label
+    Assert.assertEquals(Arrays.asList("firstPass 1 START:", "firstPass 2 addw", "secondPass 2 addw"),
+        slowLines(edited));
+  }
+
+  private static List<String> slowLines(Path dump) throws Exception
+  {
+    List<String> lines = new ArrayList<>();
+    for (RecordedEvent event : RecordingFile.readAllEvents(dump))
+    {
+      if (event.getEventType().getName().equals(SlowLineEvent.NAME))
+      {
+        lines.add(event.getString("phase") + " " + event.getInt("lineNumber") + " " + event.getString("mnemonic"));
+      }
+    }
+    Collections.sort(lines);
+    return lines;
+  }
+
+  private static void appendMessage(StringBuilder requests, String json)
+  {
+    requests.append("Content-Length: ").append(json.getBytes(StandardCharsets.UTF_8).length).append("\r\n\r\n")
+        .append(json);
+  }
+}
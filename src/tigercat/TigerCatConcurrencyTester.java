@@ -0,0 +1,596 @@
+package tigercat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tigercat.bench.ProgramGenerator;
+import tigercat.instruction.EncodingContext;
+import tigercat.instruction.Instruction;
+
+public class TigerCatConcurrencyTester
+{
+  private static final Path TEST_PROGRAMS = Paths.get("tests");
+  private static final int THREADS = 16;
+  private static final int ROUNDS = 8;
+
+  /**
+   * The outcome of assembling one program: its machine code, or its diagnostics
+   */
+  private static class Outcome
+  {
+    final byte[] machineCode;
+    final List<String> diagnostics = new ArrayList<>();
+
+    Outcome(byte[] machineCode)
+    {
+      this.machineCode = machineCode;
+    }
+  }
+
+  /**
+   * Run both passes the way Assembler.assemble does, without printing or exiting
+   */
+  private static Outcome assemble(Assembler assembler, String source)
+  {
+    ArrayList<AssemblerException> exceptionList = new ArrayList<>();
+    Program program = assembler.firstPass(source, exceptionList);
+    byte[] machineCode = exceptionList.isEmpty() ? assembler.secondPass(program, exceptionList) : null;
+
+    Outcome outcome = new Outcome(machineCode);
+    for (AssemblerException e : exceptionList)
+    {
+      outcome.diagnostics.add(e.getDiagnostic());
+    }
+    return outcome;
+  }
+
+  private static List<String> readTestPrograms() throws IOException
+  {
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(TEST_PROGRAMS, "*.s"))
+    {
+      for (Path path : stream)
+      {
+        paths.add(path);
+      }
+    }
+    paths.sort(null);
+
+    List<String> sources = new ArrayList<>();
+    for (Path path : paths)
+    {
+      sources.add(new String(Files.readAllBytes(path), Charset.defaultCharset()));
+    }
+    return sources;
+  }
+
+  @Test
+  /*
+   * Test that assembling every test program from many threads at once, sharing one
+   * encoding context, gives exactly the output of a single-threaded run
+   */
+  public void testConcurrentAssembliesMatchSingleThreaded() throws Exception
+  {
+    final EncodingContext context = EncodingContext.getDefault();
+    final List<String> sources = readTestPrograms();
+    Assert.assertFalse("No test programs found in " + TEST_PROGRAMS.toAbsolutePath(), sources.isEmpty());
+
+    List<Outcome> expected = new ArrayList<>();
+    for (String source : sources)
+    {
+      expected.add(assemble(new Assembler(context), source));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try
+    {
+      // Hold every task until all have been submitted, so they really do overlap
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<Outcome>> futures = new ArrayList<>();
+      for (int round = 0; round < ROUNDS; round++)
+      {
+        for (final String source : sources)
+        {
+          futures.add(executor.submit(new Callable<Outcome>()
+          {
+            @Override
+            public Outcome call() throws Exception
+            {
+              start.await();
+              return assemble(new Assembler(context), source);
+            }
+          }));
+        }
+      }
+      start.countDown();
+
+      for (int index = 0; index < futures.size(); index++)
+      {
+        Outcome actual = futures.get(index).get();
+        Outcome reference = expected.get(index % sources.size());
+        Assert.assertArrayEquals(reference.machineCode, actual.machineCode);
+        Assert.assertEquals(reference.diagnostics, actual.diagnostics);
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  /*
+   * Test that the shared default context is only ever created once
+   */
+  public void testDefaultContextShared() throws Exception
+  {
+    Assert.assertSame(EncodingContext.getDefault(), EncodingContext.getDefault());
+  }
+
+  @Test
+  /*
+   * Test that a program large enough to be parsed and encoded in parallel chunks gives
+   * exactly the labels, output and diagnostics of assembling it one line at a time
+   */
+  public void testParallelPassesMatchSerial() throws Exception
+  {
+    StringBuilder source = new StringBuilder();
+    int blocks = 4 * Assembler.PARALLEL_CHUNK_SIZE / 5;
+    for (int block = 0; block < blocks; block++)
+    {
+      source.append("LOOP_").append(block).append(":\n");
+      source.append("  addw %r1l %a1l %a2l\n");
+      source.append("  movd %arg1 $0x").append(Integer.toHexString(block * 0x11)).append("\n");
+      source.append("  cmpw %a1l %a2l\n");
+      source.append("  jmpe LOOP_").append(block).append("\n");
+      source.append("  call LOOP_").append(blocks - 1 - block).append("\n");
+      if (block % 1000 == 999)
+      {
+        // First-pass errors, including labels defined in an earlier chunk
+        source.append("LOOP_0: # again\n");
+        source.append("HUGE_").append(block).append("= 0x123456789\n");
+        source.append("  addx %r1l %a1l %a2l\n");
+        // Second-pass errors, which must be reported in line order
+        source.append("  jmp NOWHERE_").append(block).append("\n");
+        source.append("  addw %r1l %a1l $0x").append(Integer.toHexString(0x10000 + block)).append("\n");
+      }
+    }
+    source.append("  ret\n");
+
+    EncodingContext context = EncodingContext.getDefault();
+    Assembler serialAssembler = new Assembler(context);
+    Assembler parallelAssembler = new Assembler(context, ForkJoinPool.commonPool());
+
+    ArrayList<AssemblerException> serialExceptions = new ArrayList<>();
+    ArrayList<AssemblerException> parallelExceptions = new ArrayList<>();
+    Program serialProgram = serialAssembler.firstPass(source.toString(), serialExceptions);
+    Program parallelProgram = parallelAssembler.firstPass(source.toString(), parallelExceptions);
+
+    Assert.assertEquals(9, serialExceptions.size());
+    Assert.assertEquals(diagnostics(serialExceptions), diagnostics(parallelExceptions));
+    Assert.assertEquals(serialProgram.getSize(), parallelProgram.getSize());
+    Assert.assertEquals(labelValues(serialProgram), labelValues(parallelProgram));
+
+    // Without the first-pass errors, so the second pass runs
+    String valid = source.toString().replaceAll("(?m)^(LOOP_0: # again|HUGE_.*|  addx .*)\n", "");
+    Outcome serial = assemble(serialAssembler, valid);
+    Outcome parallel = assemble(parallelAssembler, valid);
+
+    Assert.assertEquals(6, serial.diagnostics.size());
+    Assert.assertArrayEquals(serial.machineCode, parallel.machineCode);
+    Assert.assertEquals(serial.diagnostics, parallel.diagnostics);
+  }
+
+  @Test
+  /*
+   * Test that generated programs, with labels near and far ahead, with and without
+   * errors of either pass, assemble in parallel exactly as one line at a time
+   */
+  public void testGeneratedProgramsParallelMatchSerial() throws Exception
+  {
+    EncodingContext context = EncodingContext.getDefault();
+    Assembler serialAssembler = new Assembler(context);
+    Assembler parallelAssembler = new Assembler(context, ForkJoinPool.commonPool());
+    int lines = 4 * Assembler.PARALLEL_CHUNK_SIZE;
+
+    for (long seed = 1; seed <= 3; seed++)
+    {
+      for (int forwardDistance : new int[] { 0, 2, 10000 })
+      {
+        ProgramGenerator generator = new ProgramGenerator(seed).setForwardDistance(forwardDistance).setErrorRate(0.002);
+        String source = generator.generate(lines);
+
+        ArrayList<AssemblerException> serialExceptions = new ArrayList<>();
+        ArrayList<AssemblerException> parallelExceptions = new ArrayList<>();
+        Program serialProgram = serialAssembler.firstPass(source, serialExceptions);
+        Program parallelProgram = parallelAssembler.firstPass(source, parallelExceptions);
+
+        Assert.assertEquals(generator.getFirstPassErrors(), serialExceptions.size());
+        Assert.assertEquals(diagnostics(serialExceptions), diagnostics(parallelExceptions));
+        Assert.assertEquals(serialProgram.getSize(), parallelProgram.getSize());
+        Assert.assertEquals(labelValues(serialProgram), labelValues(parallelProgram));
+
+        // Without the first-pass errors, so the second pass runs
+        String valid = source.replaceAll("(?m)^  (addx|movq|HUGE_|L_).*\\R", "");
+        Outcome serial = assemble(serialAssembler, valid);
+        Outcome parallel = assemble(parallelAssembler, valid);
+
+        Assert.assertEquals(generator.getSecondPassErrors(), serial.diagnostics.size());
+        Assert.assertArrayEquals(serial.machineCode, parallel.machineCode);
+        Assert.assertEquals(serial.diagnostics, parallel.diagnostics);
+
+        Outcome clean = assemble(parallelAssembler, new ProgramGenerator(seed).setForwardDistance(forwardDistance)
+            .generate(lines));
+        Assert.assertTrue(clean.diagnostics.isEmpty());
+      }
+    }
+  }
+
+  @Test
+  /*
+   * Test that the staged pipeline, with batches small enough that labels are referred to
+   * from batches before the ones defining them, writes exactly the output of both passes
+   */
+  public void testPipelineMatchesPasses() throws Exception
+  {
+    StringBuilder source = new StringBuilder();
+    int blocks = 500;
+    for (int block = 0; block < blocks; block++)
+    {
+      source.append("LOOP_").append(block).append(":\n\n");
+      source.append("  addw %r1l %a1l %a2l\n");
+      source.append("  jmpe LOOP_").append(block).append("\n");
+      source.append("  call LOOP_").append(blocks - 1 - block).append("\n");
+      if (block % 100 == 99)
+      {
+        source.append("  jmp NOWHERE_").append(block).append("\n");
+      }
+    }
+    source.append("  ret\n");
+
+    Assembler assembler = new Assembler(EncodingContext.getDefault());
+    for (String text : new String[] { source.toString(), source.toString().replaceAll("(?m)^  jmp NOWHERE_.*\n", "") })
+    {
+      Outcome expected = assemble(assembler, text);
+
+      AssemblyPipeline pipeline = new AssemblyPipeline(assembler, 256, 2);
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      pipeline.run(new StringReader(text.replace("\n", Lexer.lineSeparator())), Channels.newChannel(output));
+
+      Assert.assertTrue(pipeline.getFirstPassErrors().isEmpty());
+      Assert.assertEquals(expected.diagnostics, diagnostics(pipeline.getSecondPassErrors()));
+      if (expected.diagnostics.isEmpty())
+      {
+        Assert.assertArrayEquals(expected.machineCode, output.toByteArray());
+      }
+      Assert.assertTrue(pipeline.getForwardReferenceStalls() > 0);
+      Assert.assertTrue(pipeline.getQueues().get(0).getPuts() > 1);
+    }
+  }
+
+  @Test
+  /*
+   * Test that streaming a program in small batches, reading it once per pass, writes
+   * exactly the output of both passes
+   */
+  public void testStreamingMatchesPasses() throws Exception
+  {
+    String source = new String(Files.readAllBytes(TEST_PROGRAMS.resolve("ASCII_Snake.s")), Charset.defaultCharset());
+    Assembler assembler = new Assembler(EncodingContext.getDefault());
+    Outcome expected = assemble(assembler, source);
+
+    StreamingAssembly assembly = new StreamingAssembly(assembler, 64);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ReadableByteChannel input = Channels.newChannel(new ByteArrayInputStream(source.getBytes(Charset.defaultCharset())));
+    assembly.run(input, Channels.newChannel(output));
+
+    Assert.assertTrue(assembly.getFirstPassErrors().isEmpty());
+    Assert.assertTrue(assembly.getSecondPassErrors().isEmpty());
+    Assert.assertArrayEquals(expected.machineCode, output.toByteArray());
+    Assert.assertEquals(expected.machineCode.length / Instruction.BYTES_PER_WORD, assembly.getSize());
+  }
+
+  @Test
+  /*
+   * Test that a daemon answers many clients at once with exactly the local results and
+   * warnings, times out long requests, and stops when asked
+   */
+  public void testDaemonConcurrentClients() throws Exception
+  {
+    final AssemblerDaemon daemon = new AssemblerDaemon(EncodingContext.getDefault(), 0);
+    daemon.start();
+    try
+    {
+      final List<String> sources = readTestPrograms();
+      final Assembler local = new Assembler(EncodingContext.getDefault());
+
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try
+      {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int client = 0; client < 4; client++)
+        {
+          futures.add(executor.submit(new Callable<Void>()
+          {
+            @Override
+            public Void call() throws Exception
+            {
+              try (DaemonClient connection = DaemonClient.connect(daemon.getPort()))
+              {
+                for (String source : sources)
+                {
+                  AssemblyResult expected = local.assembleToResult(source);
+                  AssemblyResult actual = connection.assemble(source, 0);
+                  Assert.assertArrayEquals(expected.getImage(), actual.getImage());
+                  Assert.assertEquals(expected.getSymbols(), actual.getSymbols());
+                  Assert.assertEquals(expected.getFailedPass(), actual.getFailedPass());
+                  Assert.assertEquals(diagnosticMessages(expected), diagnosticMessages(actual));
+                }
+              }
+              return null;
+            }
+          }));
+        }
+        for (Future<Void> future : futures)
+        {
+          future.get();
+        }
+      }
+      finally
+      {
+        executor.shutdownNow();
+      }
+
+      StringBuilder large = new StringBuilder();
+      for (int line = 0; line < 200000; line++)
+      {
+        large.append("  addw %r1l %a1l $0x").append(Integer.toHexString(line & 0xFF)).append(Lexer.lineSeparator());
+      }
+      try (DaemonClient connection = DaemonClient.connect(daemon.getPort()))
+      {
+        // Warnings are answered with the result rather than printed by the daemon
+        String warns = "  invd %ret1 $0xFFFFF" + Lexer.lineSeparator();
+        AssemblyResult warned = connection.assemble(warns, 0);
+        Assert.assertTrue(warned.isSuccess());
+        Assert.assertEquals(1, warned.getWarnings().size());
+        Assert.assertEquals(local.assembleToResult(warns).getWarnings(), warned.getWarnings());
+
+        try
+        {
+          connection.assemble(large.toString(), 1);
+          Assert.fail("Expected the request to time out");
+        } catch (IOException e)
+        {
+          Assert.assertTrue(e.getMessage(), e.getMessage().contains("timed out"));
+        }
+
+        // A message longer than the daemon accepts is refused before it is read
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort()))
+        {
+          DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+          request.writeInt(DaemonProtocol.MAGIC);
+          request.writeInt(Integer.MAX_VALUE);
+          request.flush();
+          Assert.assertEquals(-1, socket.getInputStream().read());
+        }
+
+        // A result naming an unknown pass is refused as malformed
+        ByteArrayOutputStream malformed = new ByteArrayOutputStream();
+        DataOutputStream result = new DataOutputStream(malformed);
+        result.writeInt(0);
+        result.writeInt(1);
+        result.writeByte(Diagnostic.Pass.values().length);
+        try
+        {
+          DaemonProtocol.readResult(new DataInputStream(new ByteArrayInputStream(malformed.toByteArray())));
+          Assert.fail("Expected an unknown pass to be refused");
+        } catch (IOException e)
+        {
+          Assert.assertTrue(e.getMessage(), e.getMessage().contains("Unknown pass"));
+        }
+
+        // So is a client of another version, or without the token, to which the daemon
+        // still proves it holds the token
+        byte[] token = Files.readAllBytes(DaemonProtocol.tokenFile(daemon.getPort()));
+        for (String version : new String[] { "0.0", Assembler.VERSION })
+        {
+          try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort()))
+          {
+            byte[] challenge = DaemonProtocol.newChallenge();
+            DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+            request.writeInt(DaemonProtocol.MAGIC);
+            DaemonProtocol.writeString(request, version);
+            DaemonProtocol.writeBytes(request, challenge);
+            request.flush();
+            DataInputStream response = new DataInputStream(socket.getInputStream());
+            if (version.equals(Assembler.VERSION))
+            {
+              Assert.assertEquals(DaemonProtocol.STATUS_OK, response.readByte());
+              byte[] daemonChallenge = DaemonProtocol.readChallenge(response);
+              Assert.assertArrayEquals(DaemonProtocol.prove(token, DaemonProtocol.DAEMON_ROLE, challenge,
+                  daemonChallenge), DaemonProtocol.readBytes(response));
+              DaemonProtocol.writeBytes(request, DaemonProtocol.prove("guess".getBytes(StandardCharsets.UTF_8),
+                  DaemonProtocol.CLIENT_ROLE, challenge, daemonChallenge));
+              request.flush();
+            }
+            Assert.assertEquals(DaemonProtocol.STATUS_ERROR, response.readByte());
+            DaemonProtocol.readString(response);
+            Assert.assertEquals(-1, response.read());
+            Assert.assertTrue(daemon.isRunning());
+          }
+        }
+        connection.ping();
+        connection.shutdown();
+      }
+      daemon.awaitShutdown();
+      Assert.assertFalse(daemon.isRunning());
+      Assert.assertNull(DaemonClient.connect(daemon.getPort()));
+    }
+    finally
+    {
+      daemon.shutdown();
+    }
+  }
+
+  @Test
+  /*
+   * Test that an assembly on an interrupted thread stops, as a daemon's timed-out request does
+   */
+  public void testInterruptedAssemblyStops() throws Exception
+  {
+    Assembler assembler = new Assembler(EncodingContext.getDefault());
+    String source = readTestPrograms().get(0);
+    AssemblyResult expected = assembler.assembleToResult(source);
+    Thread.currentThread().interrupt();
+    try
+    {
+      assembler.assembleToResult(source);
+      Assert.fail("Expected the assembly to stop");
+    } catch (CancellationException e)
+    {
+      Assert.assertTrue(Thread.currentThread().isInterrupted());
+    } finally
+    {
+      Thread.interrupted();
+    }
+
+    // The assembler is still usable afterwards
+    Assert.assertArrayEquals(expected.getImage(), assembler.assembleToResult(source).getImage());
+  }
+
+  @Test
+  /*
+   * Test that a client refuses a server which cannot prove it holds the token, and gives
+   * up on a daemon which completes the handshake but never answers, rather than waiting
+   * forever
+   */
+  public void testDaemonClientAnswerTimeout() throws Exception
+  {
+    try (ServerSocket hung = new ServerSocket(0, 1, InetAddress.getLoopbackAddress()))
+    {
+      Path tokenFile = DaemonProtocol.tokenFile(hung.getLocalPort());
+      Files.createDirectories(tokenFile.getParent());
+      final byte[] token = "token".getBytes(StandardCharsets.UTF_8);
+      Files.write(tokenFile, token);
+      Thread acceptor = new Thread(() -> {
+        try
+        {
+          // First an impostor, then the daemon which wrote the token
+          for (byte[] key : new byte[][] { "guess".getBytes(StandardCharsets.UTF_8), token })
+          {
+            try (Socket client = hung.accept())
+            {
+              DataInputStream in = new DataInputStream(client.getInputStream());
+              DataOutputStream out = new DataOutputStream(client.getOutputStream());
+              in.readInt();
+              DaemonProtocol.readString(in);
+              byte[] clientChallenge = DaemonProtocol.readChallenge(in);
+              byte[] challenge = DaemonProtocol.newChallenge();
+              out.writeByte(DaemonProtocol.STATUS_OK);
+              DaemonProtocol.writeBytes(out, challenge);
+              DaemonProtocol.writeBytes(out, DaemonProtocol.prove(key, DaemonProtocol.DAEMON_ROLE,
+                  clientChallenge, challenge));
+              out.flush();
+              if (key == token)
+              {
+                DaemonProtocol.readBytes(in);
+                out.writeByte(DaemonProtocol.STATUS_OK);
+                out.flush();
+                Thread.sleep(60000);
+              }
+            }
+          }
+        } catch (IOException | InterruptedException e)
+        {
+          // The test is over
+        }
+      });
+      acceptor.start();
+      try
+      {
+        DaemonClient.connect(hung.getLocalPort());
+        Assert.fail("Expected the impostor to be refused");
+      } catch (IOException e)
+      {
+        Assert.assertTrue(e.getMessage(), e.getMessage().contains("is not the daemon"));
+      }
+      try (DaemonClient client = DaemonClient.connect(hung.getLocalPort()))
+      {
+        long start = System.nanoTime();
+        try
+        {
+          client.assemble("  ret" + Lexer.lineSeparator(), 1);
+          Assert.fail("Expected the client to give up");
+        } catch (IOException e)
+        {
+          Assert.assertTrue(e.getMessage(), e.getMessage().contains("did not answer"));
+        }
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30));
+      } finally
+      {
+        acceptor.interrupt();
+        Files.deleteIfExists(tokenFile);
+      }
+    }
+  }
+
+  private static List<String> diagnosticMessages(AssemblyResult result)
+  {
+    List<String> messages = new ArrayList<>();
+    for (Diagnostic diagnostic : result.getDiagnostics())
+    {
+      messages.add(diagnostic.getPass() + " " + diagnostic.getLineNumber() + " " + diagnostic.getMessage());
+    }
+    return messages;
+  }
+
+  private static List<String> diagnostics(List<AssemblerException> exceptionList)
+  {
+    List<String> diagnostics = new ArrayList<>();
+    for (AssemblerException e : exceptionList)
+    {
+      diagnostics.add(e.getDiagnostic());
+    }
+    return diagnostics;
+  }
+
+  private static Map<String, Integer> labelValues(Program program)
+  {
+    Map<String, Integer> values = new HashMap<>();
+    for (Label label : program.getLabelMapping().values())
+    {
+      values.put(label.getName(), label.getValue());
+    }
+    return values;
+  }
+}
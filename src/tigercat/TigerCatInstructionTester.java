@@ -3,12 +3,14 @@ package tigercat;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import tigercat.fuzz.InstructionFuzzer;
 import tigercat.instruction.*;
 
 public class TigerCatInstructionTester
@@ -858,4 +860,151 @@ public class TigerCatInstructionTester
     // If an exception is not thrown, this test succeeds
   }
 
+  @Test
+  /*
+   * Test that encoding the same instruction twice gives the same machine code
+   */
+  public void testGetMachineCodeIdempotent() throws UnencodeableImmediateException, InstructionArgumentCountException, InvalidOpcodeException, InstructionSyntaxError, InvalidRegisterException, InvalidDataWidthException, XmlLookupException
+  {
+    Instruction toCheck = Instruction.createInstruction("movd %arg1 $0x12345678", true, 0);
+
+    Byte[] first = toCheck.getMachineCode();
+    Assert.assertArrayEquals(first, toCheck.getMachineCode());
+  }
+
+  @Test
+  /*
+   * Test that a memoized instruction writes the same machine code as the first occurrence
+   */
+  public void testEncodingMemo() throws UnencodeableImmediateException, InstructionArgumentCountException, InvalidOpcodeException, InstructionSyntaxError, InvalidRegisterException, InvalidDataWidthException, XmlLookupException
+  {
+    EncodingMemo memo = new EncodingMemo(EncodingContext.getDefault());
+    MachineCodeSink sink = new MachineCodeSink();
+
+    memo.encode(Instruction.createInstruction("cmpw %a1l %a2l", false, 0), 0, sink);
+    memo.encode(Instruction.createInstruction("cmpw %a1l %a2l", false, 0), 2, sink);
+    // call depends on its address, so is never shared
+    memo.encode(Instruction.createInstruction("call $0x10", false, 0), 4, sink);
+    memo.encode(Instruction.createInstruction("call $0x10", false, 0), 8, sink);
+
+    Assert.assertEquals(1, memo.getHits());
+    byte[] machineCode = sink.toByteArray();
+    Assert.assertArrayEquals(Arrays.copyOfRange(machineCode, 0, 4), Arrays.copyOfRange(machineCode, 4, 8));
+    Assert.assertFalse(Arrays.equals(Arrays.copyOfRange(machineCode, 8, 16), Arrays.copyOfRange(machineCode, 16, 24)));
+  }
+
+  @Test
+  /*
+   * Test that an immediate which is not a hexadecimal number throws a syntax error
+   */
+  public void testMalformedImmediate() throws InstructionArgumentCountException, InvalidOpcodeException, InstructionSyntaxError, InvalidRegisterException, InvalidDataWidthException, XmlLookupException
+  {
+    String toTest = "addw %r1l %a1l $5";
+
+    exception.expect(InstructionSyntaxError.class);
+    Instruction.createInstruction(toTest, true, 0);
+  }
+
+  @Test
+  /*
+   * Test that an immediate without the 0x prefix throws a syntax error. It used to assemble,
+   * as 0x00, because the first two characters were skipped whatever they were
+   */
+  public void testImmediateWithoutHexPrefix() throws InstructionArgumentCountException, InvalidOpcodeException, InstructionSyntaxError, InvalidRegisterException, InvalidDataWidthException, XmlLookupException
+  {
+    String toTest = "addw %r1l %a1l $0000";
+
+    exception.expect(InstructionSyntaxError.class);
+    Instruction.createInstruction(toTest, true, 0);
+  }
+
+  @Test
+  /*
+   * Test that an immediate with a misspelled 0x prefix throws a syntax error. It used to
+   * assemble, as 0x500
+   */
+  public void testImmediateWithMisspelledHexPrefix() throws InstructionArgumentCountException, InvalidOpcodeException, InstructionSyntaxError, InvalidRegisterException, InvalidDataWidthException, XmlLookupException
+  {
+    String toTest = "addw %r1l %a1l $1x500";
+
+    exception.expect(InstructionSyntaxError.class);
+    Instruction.createInstruction(toTest, true, 0);
+  }
+
+  @Test
+  /*
+   * Test that a signed immediate throws a syntax error. It used to assemble, as 0xFF61,
+   * because the integer parser accepts a leading plus
+   */
+  public void testImmediateWithSign() throws InstructionArgumentCountException, InvalidOpcodeException, InstructionSyntaxError, InvalidRegisterException, InvalidDataWidthException, XmlLookupException
+  {
+    String toTest = "addw %r1l %a1l $0x+FF61";
+
+    exception.expect(InstructionSyntaxError.class);
+    Instruction.createInstruction(toTest, true, 0);
+  }
+
+  @Test
+  /*
+   * Test that the assembler reports an immediate with non-hexadecimal digits as a syntax
+   * error. It used to be reported as an UnencodeableImmediateException, from the
+   * NumberFormatException of the integer parser
+   */
+  public void testAssembleNonHexImmediate() throws XmlLookupException
+  {
+    AssemblyResult result = new Assembler().assembleToResult("  addw %r1l %a1l $0xZZ" + Lexer.lineSeparator());
+
+    Assert.assertEquals("InstructionSyntaxError", result.getDiagnostics().get(0).getKind());
+  }
+
+  @Test
+  /*
+   * Test that a malformed immediate is reported before an invalid register in the same
+   * instruction. The invalid register used to be reported, since registers were looked up
+   * before the immediate was parsed
+   */
+  public void testMalformedImmediateBeforeInvalidRegister() throws InstructionArgumentCountException, InvalidOpcodeException, InstructionSyntaxError, InvalidRegisterException, InvalidDataWidthException, XmlLookupException
+  {
+    String toTest = "addw %zz %a1l $0xZZ";
+
+    exception.expect(InstructionSyntaxError.class);
+    Instruction.createInstruction(toTest, true, 0);
+  }
+
+  @Test
+  /*
+   * Test that moving an immediate into a register without single-word halves throws an exception
+   */
+  public void testMoveImmediateWithoutHalves() throws InstructionArgumentCountException, InvalidOpcodeException, InstructionSyntaxError, InvalidRegisterException, InvalidDataWidthException, XmlLookupException
+  {
+    String toTest = "movd %SP $0x10";
+
+    exception.expect(InvalidRegisterException.class);
+    Instruction.createInstruction(toTest, true, 0);
+  }
+
+  @Test
+  /*
+   * Test that a jump with an unknown condition throws an opcode exception, even if the
+   * condition looks like a data width
+   */
+  public void testJumpConditionLikeWidth() throws InstructionArgumentCountException, InvalidOpcodeException, InstructionSyntaxError, InvalidRegisterException, InvalidDataWidthException, XmlLookupException
+  {
+    String toTest = "jmpw %arg1";
+
+    exception.expect(InvalidOpcodeException.class);
+    Instruction.createInstruction(toTest, true, 0);
+  }
+
+  @Test
+  /*
+   * Test a fixed run of the instruction fuzzer: every generated line must encode as the
+   * grammar expects, or throw the exception of its fault
+   */
+  public void testFuzzedInstructions() throws Exception
+  {
+    List<InstructionFuzzer.Failure> failures = new InstructionFuzzer(1).setThreads(2).run(100_000);
+    Assert.assertTrue(failures.toString(), failures.isEmpty());
+  }
+
 }
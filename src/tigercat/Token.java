@@ -0,0 +1,72 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : Token.java
+ * Description  : A single lexical element of a line of TigerCat assembly
+ */
+
+package tigercat;
+
+/**
+ * A single lexical element of a line of TigerCat assembly, as produced by the Lexer
+ *
+ * Line and column are both zero-based, matching the line index used by
+ * AssemblerException.setContext
+ */
+public class Token
+{
+  public enum Kind
+  {
+    LABEL_DEFINITION,     // NAME: -- text is the name, without the LABEL_SUFFIX
+    CONSTANT_DEFINITION,  // NAME=0x... -- text is the name, the value follows as an IMMEDIATE token
+    OPCODE,               // The mnemonic of an instruction, e.g. movw
+    REGISTER,             // An operand starting with REGISTER_PREFIX
+    IMMEDIATE,            // An operand starting with IMMEDIATE_PREFIX, or the value of a constant definition
+    SYMBOL,               // Any other operand. Hopefully a label reference
+    COMMENT               // Everything from COMMENT_PREFIX to the end of the line
+  }
+
+  private final Kind kind;
+  private final String text;
+  private final int line;
+  private final int column;
+
+  public Token(Kind kind, String text, int line, int column)
+  {
+    this.kind = kind;
+    this.text = text;
+    this.line = line;
+    this.column = column;
+  }
+
+  public Kind getKind()
+  {
+    return kind;
+  }
+
+  /**
+   * Return the source text of this token, exactly as it appears in the assembly
+   *
+   * @return The source text of this token
+   */
+  public String getText()
+  {
+    return text;
+  }
+
+  public int getLine()
+  {
+    return line;
+  }
+
+  public int getColumn()
+  {
+    return column;
+  }
+
+  @Override
+  public String toString()
+  {
+    return kind + "(" + text + ")@" + (line + 1) + ":" + (column + 1);
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : UnsupportedLabelException.java
+ * Description  : Error for a label of a kind the assembler cannot handle yet
+ */
+
+package tigercat;
+
+/**
+ * Error for a label of a kind the assembler cannot handle yet: an address label at the end
+ * of the file, or one followed by a data declaration
+ */
+public class UnsupportedLabelException extends AssemblerException
+{
+  private static final long serialVersionUID = 3391466917380270518L;
+
+  private final String label;
+
+  public UnsupportedLabelException(String label)
+  {
+    this.label = label;
+  }
+
+  @Override
+  public String getDiagnostic()
+  {
+    return getContextError() + "Labels at the end of the file, or followed by " + Assembler.DATA_DIRECTIVE
+        + ", are not supported: " + label;
+  }
+}
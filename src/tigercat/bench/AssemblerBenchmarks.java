@@ -0,0 +1,258 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : AssemblerBenchmarks.java
+ * Description  : Benchmarks of every phase of the assembler
+ */
+
+package tigercat.bench;
+
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import tigercat.Assembler;
+import tigercat.AssemblerException;
+import tigercat.Lexer;
+import tigercat.Program;
+import tigercat.instruction.EncodingContext;
+import tigercat.instruction.Instruction;
+import tigercat.instruction.MachineCodeSink;
+
+/**
+ * Benchmarks of every phase of the assembler
+ *
+ *   lex.*        Splitting every line of a program into classified tokens
+ *   parse.*      Instruction.parseInstruction for one line of each mnemonic family
+ *   bind.*       Binding a parsed instruction, which looks up each register operand
+ *   expand.*     Binding and encoding the pseudo-instructions movd and call
+ *   firstPass.*  The first pass over a program: parsing and laying out every line
+ *   secondPass.* The second pass: resolving labels and encoding every statement
+ *   assemble.*   Assembling a program end to end, one line at a time and in parallel
+ *
+ * The programs are tests/ASCII_Snake.s and programs of 10,000 and 100,000 lines made
+ * by ProgramGenerator, always from the same seed. See BenchmarkHarness for the options, which select benchmarks, write the
+ * results as JSON and compare them to a baseline.
+ *
+ * Usage: java tigercat.bench.AssemblerBenchmarks [--source FILE] [harness options]
+ */
+public class AssemblerBenchmarks
+{
+  // One line of each mnemonic family
+  private static final String[][] FAMILIES = {
+      { "arithmetic", "addw %r1l %a1l %a2l" },
+      { "immediate", "subd %ret1 %arg1 $0x5" },
+      { "shift", "ssrw %r1l %a1l $0x8" },
+      { "logic", "xord %ret1 %arg1 %arg2" },
+      { "stack", "pushd %arg1" },
+      { "memory", "loadd %arg1 %arg2" },
+      { "compare", "cmpw %a1l %a2l" },
+      { "jump", "jmpge LOOP" },
+      { "move", "movd %arg1 $0x12345678" },
+      { "call", "call LOOP" },
+      { "ret", "ret" },
+  };
+
+  private static final int[] SYNTHETIC_LINES = { 10_000, 100_000 };
+  private static final long SYNTHETIC_SEED = 1;
+
+  /**
+   * Exposes the two passes of the assembler
+   */
+  private static class PhaseAssembler extends Assembler
+  {
+    PhaseAssembler(EncodingContext context)
+    {
+      super(context);
+    }
+
+    Program parse(String assembly)
+    {
+      ArrayList<AssemblerException> exceptions = new ArrayList<>();
+      Program program = firstPass(assembly, exceptions);
+      check(exceptions);
+      return program;
+    }
+
+    byte[] encode(Program program)
+    {
+      ArrayList<AssemblerException> exceptions = new ArrayList<>();
+      byte[] machineCode = secondPass(program, exceptions);
+      check(exceptions);
+      return machineCode;
+    }
+
+    private static void check(List<AssemblerException> exceptions)
+    {
+      if (!exceptions.isEmpty())
+      {
+        throw new IllegalStateException("Benchmark program does not assemble: " + exceptions.get(0).getMessage());
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception
+  {
+    String sourcePath = Paths.get("tests", "ASCII_Snake.s").toString();
+    List<String> harnessArgs = new ArrayList<>();
+    for (int index = 0; index < args.length; index++)
+    {
+      if (args[index].equals("--source") && index + 1 < args.length)
+      {
+        sourcePath = args[++index];
+      } else
+      {
+        harnessArgs.add(args[index]);
+      }
+    }
+
+    String snake = new String(Files.readAllBytes(Paths.get(sourcePath)), Charset.defaultCharset());
+    BenchmarkHarness harness = new BenchmarkHarness(harnessArgs.toArray(new String[0]));
+    System.exit(harness.run(benchmarks(snake)));
+  }
+
+  /**
+   * Build every benchmark
+   *
+   * @param snake The source of the end-to-end program (normally tests/ASCII_Snake.s)
+   * @return The benchmarks, cheapest first
+   */
+  static List<BenchmarkHarness.Benchmark> benchmarks(final String snake) throws Exception
+  {
+    final EncodingContext context = EncodingContext.getDefault();
+    List<BenchmarkHarness.Benchmark> benchmarks = new ArrayList<>();
+
+    benchmarks.add(new BenchmarkHarness.Benchmark("lex.ascii_snake")
+    {
+      @Override
+      protected Object run() throws Exception
+      {
+        Lexer lexer = new Lexer(snake);
+        int tokens = 0;
+        while (lexer.hasNextLine())
+        {
+          tokens += lexer.nextLine().size();
+        }
+        return tokens;
+      }
+    });
+
+    for (final String[] family : FAMILIES)
+    {
+      final String[] tokens = family[1].split("\\s+");
+      benchmarks.add(new BenchmarkHarness.Benchmark("parse." + family[0])
+      {
+        @Override
+        protected Object run() throws Exception
+        {
+          return Instruction.parseInstruction(tokens, family[1]);
+        }
+      });
+    }
+
+    benchmarks.add(bind("bind.registers", "addw %r1l %a1l %a2l", context));
+    benchmarks.add(bind("bind.immediate", "subd %ret1 %arg1 $0x5", context));
+    benchmarks.add(expand("expand.movd", "movd %arg1 $0x12345678", context));
+    benchmarks.add(expand("expand.call", "call $0x40", context));
+
+    List<String[]> programs = new ArrayList<>();
+    programs.add(new String[] { "ascii_snake", snake });
+    for (int lines : SYNTHETIC_LINES)
+    {
+      programs.add(new String[] { "synthetic_" + lines / 1000 + "k", new ProgramGenerator(SYNTHETIC_SEED).generate(lines) });
+    }
+
+    final PhaseAssembler phases = new PhaseAssembler(context);
+    final Assembler parallel = new Assembler(context, ForkJoinPool.commonPool());
+    for (String[] program : programs)
+    {
+      final String source = program[1];
+      benchmarks.add(new BenchmarkHarness.Benchmark("firstPass." + program[0])
+      {
+        @Override
+        protected Object run()
+        {
+          return phases.parse(source);
+        }
+      });
+
+      // Encoding binds the instructions, so each call needs a freshly parsed program
+      benchmarks.add(new BenchmarkHarness.Benchmark("secondPass." + program[0])
+      {
+        private Program parsed;
+
+        @Override
+        protected void setUp()
+        {
+          parsed = phases.parse(source);
+        }
+
+        @Override
+        protected boolean hasSetUp()
+        {
+          return true;
+        }
+
+        @Override
+        protected Object run()
+        {
+          return phases.encode(parsed);
+        }
+      });
+
+      benchmarks.add(new BenchmarkHarness.Benchmark("assemble." + program[0])
+      {
+        @Override
+        protected Object run()
+        {
+          return phases.assembleToResult(source);
+        }
+      });
+      benchmarks.add(new BenchmarkHarness.Benchmark("assemble.parallel." + program[0])
+      {
+        @Override
+        protected Object run()
+        {
+          return parallel.assembleToResult(source);
+        }
+      });
+    }
+    return benchmarks;
+  }
+
+  private static BenchmarkHarness.Benchmark bind(String name, String line, final EncodingContext context)
+      throws AssemblerException
+  {
+    final Instruction instruction = Instruction.parseInstruction(line.split("\\s+"), line);
+    return new BenchmarkHarness.Benchmark(name)
+    {
+      @Override
+      protected Object run() throws Exception
+      {
+        instruction.bind(context, 0);
+        return instruction;
+      }
+    };
+  }
+
+  private static BenchmarkHarness.Benchmark expand(String name, String line, final EncodingContext context)
+      throws AssemblerException
+  {
+    final Instruction instruction = Instruction.parseInstruction(line.split("\\s+"), line);
+    final MachineCodeSink sink = new MachineCodeSink(instruction.getSize() * Instruction.BYTES_PER_WORD);
+    return new BenchmarkHarness.Benchmark(name)
+    {
+      @Override
+      protected Object run() throws Exception
+      {
+        sink.reset();
+        instruction.bind(context, 0x100);
+        instruction.encode(sink);
+        return sink.size();
+      }
+    };
+  }
+}
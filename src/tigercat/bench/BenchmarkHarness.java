@@ -0,0 +1,388 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : BenchmarkHarness.java
+ * Description  : Runs benchmarks, writes their results as JSON and compares them to a baseline
+ */
+
+package tigercat.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import tigercat.Assembler;
+import tigercat.Json;
+
+/**
+ * Runs benchmarks, writes their results as JSON and compares them to a baseline
+ *
+ * Each benchmark is run for a number of warm-up iterations, whose times are thrown away,
+ * then for a number of measured iterations. An iteration calls the benchmark over and over
+ * for a fixed time; its score is the mean time of a call. The result of a benchmark is
+ * the mean of its iteration scores, with their standard deviation as the error.
+ *
+ * Results are written as
+ *   {"version": ..., "java": ..., "results": [{"name": ..., "unit": "ns/op",
+ *     "score": ..., "error": ..., "iterations": [...]}, ...]}
+ * and the same file can be read back as a baseline. A benchmark is flagged as a regression
+ * if it is slower than its baseline by more than the threshold and by more than the error
+ * of both runs, so noise alone does not fail a comparison.
+ *
+ * Options:
+ *   --filter TEXT       Only run benchmarks whose names contain TEXT
+ *   --warmup N          Warm-up iterations (default 3)
+ *   --iterations N      Measured iterations (default 5)
+ *   --time MS           Length of an iteration in milliseconds (default 1000)
+ *   --output FILE       Write the results to FILE
+ *   --baseline FILE     Compare the results to those in FILE
+ *   --threshold PCT     Slowdown, in percent, flagged as a regression (default 10)
+ */
+public class BenchmarkHarness
+{
+  public static final String UNIT = "ns/op";
+
+  private static final int DEFAULT_WARMUP = 3;
+  private static final int DEFAULT_ITERATIONS = 5;
+  private static final long DEFAULT_TIME_MILLIS = 1000;
+  private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+  // Written to so the JIT cannot discard the measured work
+  private static int sink;
+
+  /**
+   * One benchmark: a named operation, timed call by call
+   */
+  public abstract static class Benchmark
+  {
+    private final String name;
+
+    protected Benchmark(String name)
+    {
+      this.name = name;
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    /**
+     * Prepare the next call. If overridden, each call is timed on its own and the
+     * preparation is left out, so only use it for calls well over a microsecond long
+     */
+    protected void setUp() throws Exception
+    {
+    }
+
+    /**
+     * @return Whether setUp is run before each call
+     */
+    protected boolean hasSetUp()
+    {
+      return false;
+    }
+
+    /**
+     * The measured operation
+     *
+     * @return Anything derived from the work done, so it cannot be optimised away
+     */
+    protected abstract Object run() throws Exception;
+  }
+
+  /**
+   * The result of one benchmark
+   */
+  public static class Result
+  {
+    private final String name;
+    private final double score;
+    private final double error;
+    private final double[] iterations;
+
+    Result(String name, double score, double error, double[] iterations)
+    {
+      this.name = name;
+      this.score = score;
+      this.error = error;
+      this.iterations = iterations;
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    /**
+     * @return Mean time of a call, in nanoseconds
+     */
+    public double getScore()
+    {
+      return score;
+    }
+
+    /**
+     * @return Standard deviation of the iteration scores, in nanoseconds
+     */
+    public double getError()
+    {
+      return error;
+    }
+  }
+
+  private String filter = "";
+  private int warmup = DEFAULT_WARMUP;
+  private int iterations = DEFAULT_ITERATIONS;
+  private long timeNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIME_MILLIS);
+  private Path output;
+  private Path baseline;
+  private double thresholdPercent = DEFAULT_THRESHOLD_PERCENT;
+
+  /**
+   * @param args The command-line options (see the class comment)
+   * @throws IllegalArgumentException If an option is unknown or lacks its value
+   */
+  public BenchmarkHarness(String[] args)
+  {
+    for (int index = 0; index < args.length; index++)
+    {
+      String option = args[index];
+      if (index + 1 >= args.length)
+      {
+        throw new IllegalArgumentException("Missing value for " + option);
+      }
+      String value = args[++index];
+      switch (option)
+      {
+        case "--filter":
+          filter = value;
+          break;
+        case "--warmup":
+          warmup = Integer.parseInt(value);
+          break;
+        case "--iterations":
+          iterations = Integer.parseInt(value);
+          break;
+        case "--time":
+          timeNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(value));
+          break;
+        case "--output":
+          output = Paths.get(value);
+          break;
+        case "--baseline":
+          baseline = Paths.get(value);
+          break;
+        case "--threshold":
+          thresholdPercent = Double.parseDouble(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + option);
+      }
+    }
+    if (iterations < 1)
+    {
+      throw new IllegalArgumentException("At least one measured iteration is needed");
+    }
+  }
+
+  /**
+   * Run the benchmarks, print a table of the results, then write and compare them as asked
+   *
+   * @param benchmarks The benchmarks, run in order
+   * @return 0, or 1 if any benchmark regressed against the baseline
+   * @throws Exception If a benchmark fails, or a file cannot be read or written
+   */
+  public int run(List<Benchmark> benchmarks) throws Exception
+  {
+    List<Result> results = new ArrayList<>();
+    System.out.println(String.format("%-36s %14s %12s", "benchmark", "score " + UNIT, "error"));
+    for (Benchmark benchmark : benchmarks)
+    {
+      if (!benchmark.getName().contains(filter))
+      {
+        continue;
+      }
+      Result result = measure(benchmark);
+      results.add(result);
+      System.out.println(String.format("%-36s %14.1f %12.1f", result.name, result.score, result.error));
+    }
+
+    if (output != null)
+    {
+      Files.write(output, Json.write(toJson(results)).getBytes(StandardCharsets.UTF_8));
+    }
+    if (baseline != null)
+    {
+      List<Result> expected = fromJson(Json.parse(new String(Files.readAllBytes(baseline), StandardCharsets.UTF_8)));
+      return compare(expected, results, thresholdPercent) ? 1 : 0;
+    }
+    return 0;
+  }
+
+  private Result measure(Benchmark benchmark) throws Exception
+  {
+    for (int iteration = 0; iteration < warmup; iteration++)
+    {
+      iterate(benchmark);
+    }
+
+    double[] scores = new double[iterations];
+    double sum = 0;
+    for (int iteration = 0; iteration < iterations; iteration++)
+    {
+      scores[iteration] = iterate(benchmark);
+      sum += scores[iteration];
+    }
+
+    double mean = sum / iterations;
+    double squares = 0;
+    for (double score : scores)
+    {
+      squares += (score - mean) * (score - mean);
+    }
+    double error = iterations > 1 ? Math.sqrt(squares / (iterations - 1)) : 0;
+    return new Result(benchmark.getName(), mean, error, scores);
+  }
+
+  /**
+   * Call the benchmark for one iteration
+   *
+   * @return The mean time of a call, in nanoseconds
+   */
+  private double iterate(Benchmark benchmark) throws Exception
+  {
+    long calls = 0;
+    long measured = 0;
+    long start = System.nanoTime();
+
+    if (benchmark.hasSetUp())
+    {
+      while (System.nanoTime() - start < timeNanos)
+      {
+        benchmark.setUp();
+        long callStart = System.nanoTime();
+        Object value = benchmark.run();
+        measured += System.nanoTime() - callStart;
+        sink += System.identityHashCode(value);
+        calls++;
+      }
+      return (double) measured / calls;
+    }
+
+    // Batches of calls, so reading the clock does not swamp short operations
+    int batch = 1;
+    while (measured < timeNanos)
+    {
+      long batchStart = System.nanoTime();
+      for (int call = 0; call < batch; call++)
+      {
+        sink += System.identityHashCode(benchmark.run());
+      }
+      measured += System.nanoTime() - batchStart;
+      calls += batch;
+      if (batch < 1024)
+      {
+        batch *= 2;
+      }
+    }
+    return (double) measured / calls;
+  }
+
+  private static Map<String, Object> toJson(List<Result> results)
+  {
+    List<Object> entries = new ArrayList<>();
+    for (Result result : results)
+    {
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("name", result.name);
+      entry.put("unit", UNIT);
+      entry.put("score", result.score);
+      entry.put("error", result.error);
+      List<Object> iterationScores = new ArrayList<>();
+      for (double score : result.iterations)
+      {
+        iterationScores.add(score);
+      }
+      entry.put("iterations", iterationScores);
+      entries.add(entry);
+    }
+
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("version", Assembler.VERSION);
+    report.put("java", System.getProperty("java.version"));
+    report.put("results", entries);
+    return report;
+  }
+
+  /**
+   * Read results back from their JSON form
+   *
+   * @param json The report, as read by Json.parse
+   * @return The results, without their iteration scores
+   * @throws IllegalArgumentException If the report is not in the form toJson writes
+   */
+  static List<Result> fromJson(Object json)
+  {
+    if (!(json instanceof Map) || !(((Map<?, ?>) json).get("results") instanceof List))
+    {
+      throw new IllegalArgumentException("Not a benchmark report");
+    }
+
+    List<Result> results = new ArrayList<>();
+    for (Object element : (List<?>) ((Map<?, ?>) json).get("results"))
+    {
+      Map<?, ?> entry = (Map<?, ?>) element;
+      if (!UNIT.equals(entry.get("unit")))
+      {
+        throw new IllegalArgumentException("Unknown unit " + entry.get("unit"));
+      }
+      results.add(new Result((String) entry.get("name"), ((Number) entry.get("score")).doubleValue(),
+          ((Number) entry.get("error")).doubleValue(), new double[0]));
+    }
+    return results;
+  }
+
+  /**
+   * Print each result against its baseline, flagging regressions
+   *
+   * @param expected The baseline results
+   * @param actual The results of this run
+   * @param thresholdPercent Slowdown, in percent, flagged as a regression
+   * @return True if any benchmark regressed
+   */
+  static boolean compare(List<Result> expected, List<Result> actual, double thresholdPercent)
+  {
+    Map<String, Result> baselines = new LinkedHashMap<>();
+    for (Result result : expected)
+    {
+      baselines.put(result.name, result);
+    }
+
+    boolean regressed = false;
+    System.out.println();
+    System.out.println(String.format("%-36s %14s %14s %9s", "benchmark", "baseline", "score", "change"));
+    for (Result result : actual)
+    {
+      Result base = baselines.get(result.name);
+      if (base == null)
+      {
+        System.out.println(String.format("%-36s %14s %14.1f %9s", result.name, "-", result.score, "new"));
+        continue;
+      }
+
+      double change = (result.score - base.score) / base.score * 100;
+      boolean slower = change > thresholdPercent && result.score - base.score > result.error + base.error;
+      regressed |= slower;
+      System.out.println(String.format("%-36s %14.1f %14.1f %+8.1f%%%s", result.name, base.score, result.score,
+          change, slower ? "  REGRESSION" : ""));
+    }
+    return regressed;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : DispatchBenchmark.java
+ * Description  : Micro-benchmark of opcode dispatch, per mnemonic
+ */
+
+package tigercat.bench;
+
+import tigercat.AssemblerException;
+import tigercat.instruction.Instruction;
+import tigercat.instruction.Mnemonic;
+
+/**
+ * Micro-benchmark of opcode dispatch, per mnemonic
+ *
+ * For one representative line of every mnemonic, measures the cost of the opcode table
+ * lookup alone and of creating the (unbound) instruction through it. Dispatch is a single
+ * hash lookup, so the cost should be flat across mnemonics: ret and call should cost the
+ * same as noop, even though they used to come last in the dispatch order.
+ *
+ * Usage: java tigercat.bench.DispatchBenchmark [iterations]
+ */
+public class DispatchBenchmark
+{
+  // In the order the assembler used to try them
+  private static final String[] LINES = {
+      "noop",
+      "debug",
+      "addw %r1l %a1l %a2l",
+      "addcd %ret1 %arg1 %arg2",
+      "subw %r1l %a1l $0x5",
+      "subcd %ret1 %arg1 $0x5",
+      "convs %r1h %r2h",
+      "ssrw %r1l %a1l $0x8",
+      "surd %ret1 %arg1 %arg2",
+      "slw %r1l %a1l %a2l",
+      "pushd %arg1",
+      "popd %IP",
+      "movw %a1l %a2l",
+      "loadd %arg1 %arg2",
+      "stow %a1l $0x4865",
+      "andd %ret1 %arg1 %arg2",
+      "orw %r1l %a1l %a2l",
+      "xord %ret1 %arg1 $0x3",
+      "invw %r1l %a2l",
+      "jmp LOOP",
+      "jmpge LOOP",
+      "cmpw %a1l %a2l",
+      "call LOOP",
+      "ret",
+  };
+
+  private static final int DEFAULT_ITERATIONS = 2_000_000;
+  private static final int WARMUP_ROUNDS = 3;
+
+  // Written to so the JIT cannot discard the measured work
+  private static int sink;
+
+  public static void main(String[] args) throws AssemblerException
+  {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+
+    String[][] tokens = new String[LINES.length][];
+    for (int index = 0; index < LINES.length; index++)
+    {
+      tokens[index] = LINES[index].split("\\s+");
+    }
+
+    for (int round = 0; round < WARMUP_ROUNDS; round++)
+    {
+      for (int index = 0; index < LINES.length; index++)
+      {
+        timeLookup(tokens[index][0], iterations);
+        timeParse(tokens[index], LINES[index], iterations);
+      }
+    }
+
+    System.out.println(String.format("%-10s %12s %12s", "mnemonic", "lookup ns", "parse ns"));
+    double minParse = Double.MAX_VALUE;
+    double maxParse = 0;
+    for (int index = 0; index < LINES.length; index++)
+    {
+      double lookup = timeLookup(tokens[index][0], iterations);
+      double parse = timeParse(tokens[index], LINES[index], iterations);
+      minParse = Math.min(minParse, parse);
+      maxParse = Math.max(maxParse, parse);
+      System.out.println(String.format("%-10s %12.1f %12.1f", tokens[index][0], lookup, parse));
+    }
+    System.out.println(String.format("parse spread (slowest / fastest): %.2f", maxParse / minParse));
+    System.out.println("(sink " + sink + ")");
+  }
+
+  private static double timeLookup(String opcode, int iterations)
+  {
+    // A fresh copy, so each lookup hashes the string like the assembler does for a new line
+    long start = System.nanoTime();
+    for (int iteration = 0; iteration < iterations; iteration++)
+    {
+      sink += Mnemonic.lookup(new String(opcode)).getArgumentCount();
+    }
+    return (double) (System.nanoTime() - start) / iterations;
+  }
+
+  private static double timeParse(String[] tokens, String line, int iterations) throws AssemblerException
+  {
+    long start = System.nanoTime();
+    for (int iteration = 0; iteration < iterations; iteration++)
+    {
+      sink += Instruction.parseInstruction(tokens, line).getSize();
+    }
+    return (double) (System.nanoTime() - start) / iterations;
+  }
+}
@@ -0,0 +1,427 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : ProgramGenerator.java
+ * Description  : Seeded generator of synthetic TigerCat programs of any size
+ */
+
+package tigercat.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import tigercat.Lexer;
+
+/**
+ * Seeded generator of synthetic TigerCat programs of any size
+ *
+ * The programs mirror the test corpus: address labels about every eight lines and half
+ * as many constant definitions, comment lines, trailing comments and blank lines, and
+ * instructions in roughly the proportions of tests/*.s, led by movw, movd, call, addw and
+ * addd. Jumps, calls and movd refer to labels both behind and ahead of them, and movw and
+ * stow to constants.
+ *
+ * The knobs are the number of labels, how many labels ahead of itself a reference may
+ * point (and so how long a label stays unresolved in a single pass), and the fraction of
+ * instruction lines replaced by an error. Errors are evenly split between first-pass
+ * errors (unknown mnemonics, labels defined twice, oversized constants) and second-pass
+ * errors (undefined labels, unencodable immediates); the generator counts each kind.
+ *
+ * A program is a function of its seed, size and knobs alone: the same arguments always
+ * give the same text, on any JVM.
+ *
+ * Usage: java tigercat.bench.ProgramGenerator LINES [--seed N] [--labels N] [--forward N]
+ *   [--errors RATE] > program.s
+ */
+public class ProgramGenerator
+{
+  /**
+   * Lines per address label in the test corpus
+   */
+  public static final int DEFAULT_LINES_PER_LABEL = 8;
+
+  /**
+   * Labels ahead of itself a reference may point, unless told otherwise
+   */
+  public static final int DEFAULT_FORWARD_DISTANCE = 16;
+
+  private static final String[] SINGLE_REGISTERS = { "r1l", "r2l", "a1l", "a2l", "a3l", "a4l", "s1l", "r1h",
+      "r2h", "a1h", "a2h", "a3h", "a4h", "s1h" };
+  private static final String[] DOUBLE_REGISTERS = { "ret1", "ret2", "arg1", "arg2", "arg3", "arg4" };
+  private static final String[] CONDITIONS = { "e", "z", "b", "be", "a", "ge", "t" };
+
+  // Instruction kinds and their weights, about their counts in the test corpus
+  private static final int MOVW = 0, MOVD = 1, CALL = 2, ADDW = 3, ADDD = 4, STOW = 5, CMPW = 6, JMP_CONDITION = 7,
+      RET = 8, SUBW = 9, JMP = 10, ANDW = 11, LOADW = 12, PUSHW = 13, POPW = 14, ORW = 15, PUSHD = 16, POPD = 17,
+      SLW = 18, CMPD = 19, LOADD = 20, SURW = 21;
+  private static final int[] WEIGHTS = { 84, 56, 55, 48, 46, 44, 40, 54, 32, 27, 27, 18, 16, 15, 16, 14, 13, 13,
+      8, 8, 6, 6 };
+  private static final int TOTAL_WEIGHT;
+
+  static
+  {
+    int total = 0;
+    for (int weight : WEIGHTS)
+    {
+      total += weight;
+    }
+    TOTAL_WEIGHT = total;
+  }
+
+  // Per hundred lines, of those which are not definitions
+  private static final int COMMENT_PERCENT = 30;
+  private static final int BLANK_PERCENT = 10;
+  private static final int TRAILING_COMMENT_PERCENT = 15;
+
+  private final long seed;
+  private int labelCount;
+  private int forwardDistance = DEFAULT_FORWARD_DISTANCE;
+  private double errorRate;
+
+  private Random random;
+  private int labels;
+  private int labelsDefined;
+  private int constantCount;
+  private int firstPassErrors;
+  private int secondPassErrors;
+
+  /**
+   * @param seed The seed, which with the size and knobs decides the program
+   */
+  public ProgramGenerator(long seed)
+  {
+    this.seed = seed;
+  }
+
+  /**
+   * @param labelCount Number of address labels, or 0 for one per DEFAULT_LINES_PER_LABEL lines
+   * @return This generator
+   */
+  public ProgramGenerator setLabelCount(int labelCount)
+  {
+    this.labelCount = labelCount;
+    return this;
+  }
+
+  /**
+   * @param forwardDistance How many labels ahead of the last label defined a reference may
+   *          point. 0 makes every reference a backward one
+   * @return This generator
+   */
+  public ProgramGenerator setForwardDistance(int forwardDistance)
+  {
+    this.forwardDistance = forwardDistance;
+    return this;
+  }
+
+  /**
+   * @param errorRate Fraction of instruction lines replaced by an error, from 0 to 1
+   * @return This generator
+   */
+  public ProgramGenerator setErrorRate(double errorRate)
+  {
+    this.errorRate = errorRate;
+    return this;
+  }
+
+  /**
+   * @return Number of first-pass errors in the last program generated
+   */
+  public int getFirstPassErrors()
+  {
+    return firstPassErrors;
+  }
+
+  /**
+   * @return Number of second-pass errors in the last program generated. They are only
+   *         reported if there are no first-pass errors
+   */
+  public int getSecondPassErrors()
+  {
+    return secondPassErrors;
+  }
+
+  /**
+   * Generate a program
+   *
+   * @param lines Number of lines, at least 2
+   * @return The program, with the platform line separator
+   */
+  public String generate(int lines)
+  {
+    StringBuilder program = new StringBuilder(lines * 24);
+    try
+    {
+      generate(lines, program);
+    } catch (IOException e)
+    {
+      throw new IllegalStateException("StringBuilder threw", e);
+    }
+    return program.toString();
+  }
+
+  /**
+   * Generate a program, a line at a time, so programs of any size can be written out
+   *
+   * @param lines Number of lines, at least 2
+   * @param out Where to write the program, with the platform line separator
+   * @throws IOException If the program cannot be written
+   */
+  public void generate(int lines, Appendable out) throws IOException
+  {
+    if (lines < 2)
+    {
+      throw new IllegalArgumentException("A program needs at least 2 lines");
+    }
+
+    random = new Random(seed);
+    labelsDefined = 0;
+    firstPassErrors = 0;
+    secondPassErrors = 0;
+
+    // The last line is a ret, since a label may not end the file
+    int bodyLines = lines - 1;
+    labels = Math.max(1, Math.min(labelCount > 0 ? labelCount : bodyLines / DEFAULT_LINES_PER_LABEL,
+        bodyLines * 2 / 3));
+    constantCount = Math.min(labels / 2, bodyLines - labels);
+    int definitions = labels + constantCount;
+
+    String separator = Lexer.lineSeparator();
+    int constantsDefined = 0;
+    int definitionsMade = 0;
+    for (int line = 0; line < bodyLines; line++)
+    {
+      // Definition n is due on line n * bodyLines / definitions; every third is a constant
+      if (definitionsMade < definitions && (long) definitionsMade * bodyLines / definitions <= line)
+      {
+        boolean constant = definitionsMade % 3 == 2 && constantsDefined < constantCount
+            || labelsDefined == labels;
+        if (constant)
+        {
+          out.append(constant(constantsDefined++));
+        } else
+        {
+          out.append("L_").append(Integer.toString(labelsDefined++)).append(':');
+        }
+        definitionsMade++;
+      } else
+      {
+        int kind = random.nextInt(100);
+        if (kind < COMMENT_PERCENT)
+        {
+          out.append("# Comment ").append(Long.toHexString(random.nextLong()));
+        } else if (kind >= COMMENT_PERCENT + BLANK_PERCENT)
+        {
+          out.append("  ").append(random.nextDouble() < errorRate ? error(line) : instruction());
+          if (random.nextInt(100) < TRAILING_COMMENT_PERCENT)
+          {
+            out.append(" # Trailing comment");
+          }
+        }
+      }
+      out.append(separator);
+    }
+    out.append("  ret").append(separator);
+  }
+
+  private String constant(int index)
+  {
+    return "C_" + index + "=0x" + Integer.toHexString(random.nextInt(0x10000)) + " # Constant";
+  }
+
+  private String instruction()
+  {
+    int pick = random.nextInt(TOTAL_WEIGHT);
+    int kind = 0;
+    while (pick >= WEIGHTS[kind])
+    {
+      pick -= WEIGHTS[kind++];
+    }
+
+    switch (kind)
+    {
+      case MOVW:
+        return "movw " + single() + " " + choose(single(), word(), constantReference());
+      case MOVD:
+        return "movd " + pair() + " " + choose(pair(), "$0x" + Integer.toHexString(random.nextInt()), label());
+      case CALL:
+        return "call " + label();
+      case ADDW:
+        return "addw " + single() + " " + single() + " " + either(single(), small());
+      case ADDD:
+        return "addd " + pair() + " " + pair() + " " + either(pair(), small());
+      case STOW:
+        return "stow " + single() + " " + choose(single(), word(), constantReference());
+      case CMPW:
+        return "cmpw " + single() + " " + single();
+      case JMP_CONDITION:
+        return "jmp" + CONDITIONS[random.nextInt(CONDITIONS.length)] + " " + label();
+      case RET:
+        return "ret";
+      case SUBW:
+        return "subw " + single() + " " + single() + " " + either(single(), small());
+      case JMP:
+        return "jmp " + label();
+      case ANDW:
+        return "andw " + single() + " " + single() + " " + single();
+      case LOADW:
+        return "loadw " + single() + " " + single();
+      case PUSHW:
+        return "pushw " + single();
+      case POPW:
+        return "popw " + single();
+      case ORW:
+        return "orw " + single() + " " + single() + " " + single();
+      case PUSHD:
+        return "pushd " + pair();
+      case POPD:
+        return "popd " + pair();
+      case SLW:
+        return "slw " + single() + " " + single() + " " + single();
+      case CMPD:
+        return "cmpd " + pair() + " " + pair();
+      case LOADD:
+        return "loadd " + pair() + " " + pair();
+      default:
+        return "surw " + single() + " " + single() + " $0x" + Integer.toHexString(1 + random.nextInt(15));
+    }
+  }
+
+  private String error(int line)
+  {
+    if (random.nextBoolean())
+    {
+      secondPassErrors++;
+      if (random.nextBoolean())
+      {
+        return "jmp NOWHERE_" + line;
+      }
+      return "addw " + single() + " " + single() + " $0x" + Integer.toHexString(0x10000 + random.nextInt(0x10000));
+    }
+
+    firstPassErrors++;
+    switch (random.nextInt(labelsDefined == 0 ? 3 : 4))
+    {
+      case 0:
+        return "addx " + single() + " " + single() + " " + single();
+      case 1:
+        return "movq " + pair() + " " + pair();
+      case 2:
+        return "HUGE_" + line + "=0x1" + String.format("%08x", random.nextInt());
+      default:
+        // Defined already
+        return "L_" + random.nextInt(labelsDefined) + ":";
+    }
+  }
+
+  /**
+   * A label at most forwardDistance labels ahead of the last one defined, or any before it
+   */
+  private String label()
+  {
+    int newest = Math.max(0, labelsDefined - 1);
+    int last = Math.min(labels - 1, newest + forwardDistance);
+    int target;
+    if (last > newest && random.nextBoolean())
+    {
+      target = newest + 1 + random.nextInt(last - newest);
+    } else
+    {
+      target = random.nextInt(newest + 1);
+    }
+    return "L_" + target;
+  }
+
+  private String constantReference()
+  {
+    return constantCount == 0 ? word() : "C_" + random.nextInt(constantCount);
+  }
+
+  private String either(String first, String second)
+  {
+    return random.nextBoolean() ? first : second;
+  }
+
+  private String choose(String first, String second, String third)
+  {
+    switch (random.nextInt(3))
+    {
+      case 0:
+        return first;
+      case 1:
+        return second;
+      default:
+        return third;
+    }
+  }
+
+  private String single()
+  {
+    return "%" + SINGLE_REGISTERS[random.nextInt(SINGLE_REGISTERS.length)];
+  }
+
+  private String pair()
+  {
+    return "%" + DOUBLE_REGISTERS[random.nextInt(DOUBLE_REGISTERS.length)];
+  }
+
+  private String word()
+  {
+    return "$0x" + Integer.toHexString(random.nextInt(0x10000));
+  }
+
+  private String small()
+  {
+    return "$0x" + Integer.toHexString(random.nextInt(0x100));
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    if (args.length < 1)
+    {
+      System.err.println("Usage: java tigercat.bench.ProgramGenerator LINES [--seed N] [--labels N] [--forward N] "
+          + "[--errors RATE]");
+      System.exit(2);
+    }
+
+    int lines = Integer.parseInt(args[0]);
+    long seed = 0;
+    int labelCount = 0;
+    int forwardDistance = DEFAULT_FORWARD_DISTANCE;
+    double errorRate = 0;
+    for (int index = 1; index + 1 < args.length; index += 2)
+    {
+      String value = args[index + 1];
+      switch (args[index])
+      {
+        case "--seed":
+          seed = Long.parseLong(value);
+          break;
+        case "--labels":
+          labelCount = Integer.parseInt(value);
+          break;
+        case "--forward":
+          forwardDistance = Integer.parseInt(value);
+          break;
+        case "--errors":
+          errorRate = Double.parseDouble(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + args[index]);
+      }
+    }
+
+    ProgramGenerator generator = new ProgramGenerator(seed).setLabelCount(labelCount)
+        .setForwardDistance(forwardDistance).setErrorRate(errorRate);
+
+    Writer out = new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()), 1 << 16);
+    generator.generate(lines, out);
+    out.flush();
+    System.err.println(generator.getFirstPassErrors() + " first-pass and " + generator.getSecondPassErrors()
+        + " second-pass errors");
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : FuzzCase.java
+ * Description  : One generated instruction line, and what assembling it should do
+ */
+
+package tigercat.fuzz;
+
+import java.util.Arrays;
+
+import tigercat.AssemblerException;
+import tigercat.instruction.InstructionArgumentCountException;
+import tigercat.instruction.InstructionSyntaxError;
+import tigercat.instruction.InvalidDataWidthException;
+import tigercat.instruction.InvalidOpcodeException;
+import tigercat.instruction.InvalidRegisterException;
+import tigercat.instruction.UnencodeableImmediateException;
+
+/**
+ * One generated instruction line, and what assembling it should do
+ *
+ * A case is a valid line of some form of the grammar, into which at most one fault has
+ * been introduced. The fault decides which exception the line must raise; a case without
+ * one must encode. Cases are immutable: shrinking makes simpler copies (see with).
+ */
+public final class FuzzCase
+{
+  /**
+   * The ways a line is made invalid, each with the exception it must raise
+   */
+  public enum Fault
+  {
+    NONE(null),
+    UNKNOWN_MNEMONIC(InvalidOpcodeException.class),
+    BAD_WIDTH(InvalidDataWidthException.class),
+    BAD_CONDITION(InvalidOpcodeException.class),
+    UNIMPLEMENTED(InvalidOpcodeException.class),
+    ARGUMENT_COUNT(InstructionArgumentCountException.class),
+    UNKNOWN_REGISTER(InvalidRegisterException.class),
+    NO_HALVES(InvalidRegisterException.class),
+    MISPLACED_IMMEDIATE(InstructionSyntaxError.class),
+    MALFORMED_IMMEDIATE(InstructionSyntaxError.class),
+    BAD_TOKEN(InstructionSyntaxError.class),
+    IMMEDIATE_RANGE(UnencodeableImmediateException.class);
+
+    private final Class<? extends AssemblerException> exception;
+
+    Fault(Class<? extends AssemblerException> exception)
+    {
+      this.exception = exception;
+    }
+
+    /**
+     * @return The exception a line with this fault must raise, or null if it must encode
+     */
+    public Class<? extends AssemblerException> getException()
+    {
+      return exception;
+    }
+  }
+
+  final InstructionGrammar.Form form;
+  final String mnemonic;
+  final String[] operands;
+  final String separator;
+  final int address;
+  final Fault fault;
+  // The operand the fault is in, or -1 if it is in the mnemonic or the operand count
+  final int faultIndex;
+
+  FuzzCase(InstructionGrammar.Form form, String mnemonic, String[] operands, String separator, int address,
+           Fault fault, int faultIndex)
+  {
+    this.form = form;
+    this.mnemonic = mnemonic;
+    this.operands = operands;
+    this.separator = separator;
+    this.address = address;
+    this.fault = fault;
+    this.faultIndex = faultIndex;
+  }
+
+  /**
+   * @return The line, e.g. "addw %r1l %a1l $0x5"
+   */
+  public String getLine()
+  {
+    StringBuilder line = new StringBuilder(mnemonic);
+    for (String operand : operands)
+    {
+      line.append(separator).append(operand);
+    }
+    return line.toString();
+  }
+
+  /**
+   * @return The address the line is bound at
+   */
+  public int getAddress()
+  {
+    return address;
+  }
+
+  public Fault getFault()
+  {
+    return fault;
+  }
+
+  /**
+   * Copy this case with one operand replaced
+   */
+  FuzzCase withOperand(int index, String operand)
+  {
+    String[] copy = Arrays.copyOf(operands, operands.length);
+    copy[index] = operand;
+    return new FuzzCase(form, mnemonic, copy, separator, address, fault, faultIndex);
+  }
+
+  FuzzCase withMnemonic(String mnemonic)
+  {
+    return new FuzzCase(form, mnemonic, operands, separator, address, fault, faultIndex);
+  }
+
+  FuzzCase withSeparator(String separator)
+  {
+    return new FuzzCase(form, mnemonic, operands, separator, address, fault, faultIndex);
+  }
+
+  FuzzCase withAddress(int address)
+  {
+    return new FuzzCase(form, mnemonic, operands, separator, address, fault, faultIndex);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "\"" + getLine() + "\" at 0x" + Integer.toHexString(address)
+        + (fault == Fault.NONE ? "" : " (" + fault + ")");
+  }
+}
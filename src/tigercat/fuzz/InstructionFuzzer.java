@@ -0,0 +1,488 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : InstructionFuzzer.java
+ * Description  : Multi-threaded fuzzer of instruction parsing, binding and encoding
+ */
+
+package tigercat.fuzz;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tigercat.AssemblerException;
+import tigercat.instruction.Instruction;
+import tigercat.instruction.IsaTables;
+import tigercat.instruction.MachineCodeSink;
+import tigercat.instruction.XmlLookupException;
+
+/**
+ * Multi-threaded fuzzer of instruction parsing, binding and encoding
+ *
+ * Each case is a line made by InstructionGrammar, which is assembled by
+ * Instruction.createInstruction and encoded. A valid line must encode, and:
+ *   size       emit getSize() words
+ *   opcode     emit the opcode of its mnemonic (or of each instruction it stands for)
+ *   flags      if it is not a pseudo-instruction, set the width and type flags as spelled
+ *   immediate  hold its immediate in the low bits of its word
+ * An invalid line must raise the AssemblerException subtype of its fault, including
+ * UnencodeableImmediateException for an immediate outside the range of its form, and
+ * nothing must ever raise a RuntimeException.
+ *
+ * Case N of seed S is generated from a random seeded by S and N alone, so it is the same
+ * whatever the threads, and can be run again on its own with --seed S --case N. A failing
+ * case is minimized: it is shrunk (see InstructionGrammar.shrink) for as long as it still
+ * fails the same way. Failures are told apart by what failed, so each is reported once.
+ *
+ * Usage: java tigercat.fuzz.InstructionFuzzer [--seed N] [--cases N | --seconds N]
+ *        [--threads N] [--case N] [--max-failures N]
+ */
+public class InstructionFuzzer
+{
+  private static final long DEFAULT_CASES = 1_000_000;
+  private static final int DEFAULT_MAX_FAILURES = 10;
+  private static final int MAX_SHRINK_STEPS = 1_000;
+
+  // Cases a thread runs between checks of the clock and the failure count
+  private static final int BATCH = 1_024;
+
+  /**
+   * A case which failed, and its minimized form
+   */
+  public static final class Failure
+  {
+    private final long caseIndex;
+    private final FuzzCase original;
+    private final FuzzCase minimized;
+    private final String kind;
+    private final String message;
+
+    Failure(long caseIndex, FuzzCase original, FuzzCase minimized, String kind, String message)
+    {
+      this.caseIndex = caseIndex;
+      this.original = original;
+      this.minimized = minimized;
+      this.kind = kind;
+      this.message = message;
+    }
+
+    public long getCaseIndex()
+    {
+      return caseIndex;
+    }
+
+    public FuzzCase getMinimized()
+    {
+      return minimized;
+    }
+
+    /**
+     * @return What failed, e.g. "size" or "threw ArrayIndexOutOfBoundsException"
+     */
+    public String getKind()
+    {
+      return kind;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "case " + caseIndex + ": " + kind + "\n  " + original + "\n  minimized: " + minimized + "\n  " + message;
+    }
+  }
+
+  /**
+   * The way a case failed. Cases fail the same way if their kinds are equal
+   */
+  private static final class Outcome
+  {
+    final String kind;
+    final String message;
+
+    Outcome(String kind, String message)
+    {
+      this.kind = kind;
+      this.message = message;
+    }
+  }
+
+  private final long seed;
+  private final InstructionGrammar grammar;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private int maxFailures = DEFAULT_MAX_FAILURES;
+
+  private final AtomicLong validCases = new AtomicLong();
+  private final AtomicLong casesRun = new AtomicLong();
+
+  /**
+   * Create a fuzzer of the default ISA tables
+   *
+   * @param seed Seed of every case
+   * @throws XmlLookupException If the ISA tables cannot be loaded
+   */
+  public InstructionFuzzer(long seed) throws XmlLookupException
+  {
+    this.seed = seed;
+    this.grammar = new InstructionGrammar(IsaTables.getDefault());
+  }
+
+  public InstructionFuzzer setThreads(int threads)
+  {
+    this.threads = threads;
+    return this;
+  }
+
+  /**
+   * @param maxFailures Stop once this many different failures are found
+   */
+  public InstructionFuzzer setMaxFailures(int maxFailures)
+  {
+    this.maxFailures = maxFailures;
+    return this;
+  }
+
+  /**
+   * @return The number of cases run so far
+   */
+  public long getCasesRun()
+  {
+    return casesRun.get();
+  }
+
+  /**
+   * @return The number of cases run so far which were valid lines
+   */
+  public long getValidCases()
+  {
+    return validCases.get();
+  }
+
+  /**
+   * Generate case index of this fuzzer's seed
+   *
+   * @param index The index of the case
+   * @return The case
+   */
+  public FuzzCase generate(long index)
+  {
+    // Spread consecutive indices over unrelated seeds
+    return grammar.generate(new SplittableRandom(new SplittableRandom(seed + index * 0x9E3779B97F4A7C15L).nextLong()));
+  }
+
+  /**
+   * Run cases 0 to cases - 1, or until maxFailures different failures are found
+   *
+   * @param cases The number of cases
+   * @return The different failures, minimized
+   */
+  public List<Failure> run(long cases) throws InterruptedException
+  {
+    return run(cases, Long.MAX_VALUE);
+  }
+
+  /**
+   * Run cases from 0 until the time is up, or until maxFailures different failures are found
+   *
+   * @param cases The greatest number of cases
+   * @param nanos The greatest time to run for
+   * @return The different failures, minimized
+   */
+  public List<Failure> run(final long cases, long nanos) throws InterruptedException
+  {
+    final boolean timed = nanos != Long.MAX_VALUE;
+    final long deadline = System.nanoTime() + (timed ? nanos : 0);
+    final Map<String, Failure> failures = Collections.synchronizedMap(new LinkedHashMap<String, Failure>());
+    final AtomicBoolean stop = new AtomicBoolean();
+    final AtomicLong nextBatch = new AtomicLong();
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try
+    {
+      List<Future<?>> workers = new ArrayList<>();
+      for (int thread = 0; thread < threads; thread++)
+      {
+        workers.add(pool.submit(() -> {
+          long start;
+          while (!stop.get() && (start = nextBatch.getAndAdd(BATCH)) < cases)
+          {
+            long end = Math.min(cases, start + BATCH);
+            for (long index = start; index < end; index++)
+            {
+              FuzzCase c = generate(index);
+              if (c.getFault() == FuzzCase.Fault.NONE)
+              {
+                validCases.incrementAndGet();
+              }
+              Outcome outcome = check(c);
+              if (outcome != null)
+              {
+                record(failures, index, c, outcome, stop);
+              }
+            }
+            casesRun.addAndGet(end - start);
+            if (timed && System.nanoTime() - deadline > 0)
+            {
+              stop.set(true);
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> worker : workers)
+      {
+        try
+        {
+          worker.get();
+        } catch (java.util.concurrent.ExecutionException e)
+        {
+          throw new IllegalStateException("Fuzzing thread failed", e.getCause());
+        }
+      }
+    } finally
+    {
+      pool.shutdownNow();
+    }
+
+    synchronized (failures)
+    {
+      return new ArrayList<>(failures.values());
+    }
+  }
+
+  private void record(Map<String, Failure> failures, long index, FuzzCase c, Outcome outcome, AtomicBoolean stop)
+  {
+    synchronized (failures)
+    {
+      if (failures.containsKey(outcome.kind) || failures.size() >= maxFailures)
+      {
+        return;
+      }
+    }
+    // Minimizing can take a while, so is done outside the lock; another thread may find the same failure meanwhile
+    FuzzCase minimized = minimize(c, outcome.kind);
+    Failure failure = new Failure(index, c, minimized, outcome.kind, check(minimized).message);
+    synchronized (failures)
+    {
+      if (!failures.containsKey(outcome.kind) && failures.size() < maxFailures)
+      {
+        failures.put(outcome.kind, failure);
+      }
+      if (failures.size() >= maxFailures)
+      {
+        stop.set(true);
+      }
+    }
+  }
+
+  /**
+   * Shrink a failing case for as long as it still fails the same way
+   *
+   * @param c The failing case
+   * @param kind How it fails
+   * @return The smallest case found
+   */
+  FuzzCase minimize(FuzzCase c, String kind)
+  {
+    FuzzCase smallest = c;
+    boolean shrunk = true;
+    for (int step = 0; shrunk && step < MAX_SHRINK_STEPS; step++)
+    {
+      shrunk = false;
+      for (FuzzCase variant : grammar.shrink(smallest))
+      {
+        Outcome outcome = check(variant);
+        if (outcome != null && outcome.kind.equals(kind))
+        {
+          smallest = variant;
+          shrunk = true;
+          break;
+        }
+      }
+    }
+    return smallest;
+  }
+
+  /**
+   * Assemble a case and check it against the grammar
+   *
+   * @param c The case
+   * @return How it failed, or null if it did as the grammar expects
+   */
+  Outcome check(FuzzCase c)
+  {
+    Class<? extends AssemblerException> expected = c.getFault().getException();
+    Instruction instruction;
+    MachineCodeSink sink = new MachineCodeSink();
+    try
+    {
+      instruction = Instruction.createInstruction(c.getLine(), true, c.getAddress());
+      instruction.encode(sink);
+    } catch (AssemblerException e)
+    {
+      if (expected == null)
+      {
+        return new Outcome("threw " + e.getClass().getSimpleName(), e.getDiagnostic());
+      } else if (!expected.isInstance(e))
+      {
+        return new Outcome("expected " + expected.getSimpleName() + ", threw " + e.getClass().getSimpleName(),
+            e.getDiagnostic());
+      }
+      return null;
+    } catch (RuntimeException | AssertionError e)
+    {
+      return new Outcome("threw " + e.getClass().getSimpleName(), String.valueOf(e));
+    }
+
+    if (expected != null)
+    {
+      return new Outcome("expected " + expected.getSimpleName() + ", threw nothing", "The line assembled");
+    }
+    return checkEncoding(c, instruction, sink);
+  }
+
+  private Outcome checkEncoding(FuzzCase c, Instruction instruction, MachineCodeSink sink)
+  {
+    byte[] bytes = sink.toByteArray();
+    int size = instruction.getSize();
+    if (bytes.length != size * Instruction.BYTES_PER_WORD)
+    {
+      return new Outcome("size", "getSize() is " + size + " words, but " + bytes.length + " bytes were emitted");
+    }
+
+    int[] words = new int[bytes.length / 4];
+    for (int index = 0; index < words.length; index++)
+    {
+      words[index] = (bytes[4 * index] & 0xFF) << 24 | (bytes[4 * index + 1] & 0xFF) << 16
+          | (bytes[4 * index + 2] & 0xFF) << 8 | (bytes[4 * index + 3] & 0xFF);
+    }
+
+    int[] opcodes = grammar.expectedOpcodes(c);
+    if (opcodes.length != words.length)
+    {
+      return new Outcome("size", "Expected " + opcodes.length + " machine words, but " + words.length + " were emitted");
+    }
+    for (int index = 0; index < words.length; index++)
+    {
+      if (words[index] >>> 27 != opcodes[index])
+      {
+        return new Outcome("opcode", "Word " + index + " is 0x" + Integer.toHexString(words[index])
+            + ", but its opcode should be 0x" + Integer.toHexString(opcodes[index]));
+      }
+    }
+
+    if (!c.form.isPseudoInstruction())
+    {
+      int width = c.form.doubleWord ? 1 : 0;
+      int type = c.operands.length > 0 && c.operands[c.operands.length - 1].startsWith(Instruction.REGISTER_PREFIX)
+          ? 1 : 0;
+      if ((words[0] >>> 26 & 1) != width || (words[0] >>> 25 & 1) != type)
+      {
+        return new Outcome("flags", "Word 0x" + Integer.toHexString(words[0]) + " should have width flag " + width
+            + " and type flag " + type);
+      }
+    }
+
+    for (long[] field : grammar.expectedImmediates(c))
+    {
+      int word = words[(int) field[0]];
+      long mask = (1L << field[1]) - 1;
+      if ((word & mask) != field[2])
+      {
+        return new Outcome("immediate", "Word " + field[0] + " is 0x" + Integer.toHexString(word) + ", but its low "
+            + field[1] + " bits should be 0x" + Long.toHexString(field[2]));
+      }
+    }
+    return null;
+  }
+
+  public static void main(String[] args) throws Exception
+  {
+    long seed = System.nanoTime();
+    long cases = DEFAULT_CASES;
+    long seconds = 0;
+    long only = -1;
+    int threads = Runtime.getRuntime().availableProcessors();
+    int maxFailures = DEFAULT_MAX_FAILURES;
+
+    for (int index = 0; index < args.length; index++)
+    {
+      String option = args[index];
+      if (index + 1 >= args.length)
+      {
+        usage("Missing value for " + option);
+      }
+      String value = args[++index];
+      switch (option)
+      {
+        case "--seed":
+          seed = Long.parseLong(value);
+          break;
+        case "--cases":
+          cases = Long.parseLong(value);
+          break;
+        case "--seconds":
+          seconds = Long.parseLong(value);
+          cases = Long.MAX_VALUE;
+          break;
+        case "--threads":
+          threads = Integer.parseInt(value);
+          break;
+        case "--case":
+          only = Long.parseLong(value);
+          break;
+        case "--max-failures":
+          maxFailures = Integer.parseInt(value);
+          break;
+        default:
+          usage("Unknown option " + option);
+      }
+    }
+
+    InstructionFuzzer fuzzer = new InstructionFuzzer(seed).setThreads(threads).setMaxFailures(maxFailures);
+    if (only >= 0)
+    {
+      FuzzCase c = fuzzer.generate(only);
+      Outcome outcome = fuzzer.check(c);
+      System.out.println(c);
+      if (outcome == null)
+      {
+        System.out.println("OK");
+        return;
+      }
+      System.out.println(outcome.kind + ": " + outcome.message);
+      System.out.println("minimized: " + fuzzer.minimize(c, outcome.kind));
+      System.exit(1);
+    }
+
+    System.out.println("Seed " + seed + ", " + threads + " threads, " + fuzzer.grammar.getFormCount() + " forms");
+    long start = System.nanoTime();
+    List<Failure> failures = fuzzer.run(cases, seconds > 0 ? seconds * 1_000_000_000L : Long.MAX_VALUE);
+    double elapsed = (System.nanoTime() - start) / 1e9;
+
+    System.out.println(String.format("%d cases (%d valid) in %.1f s: %.0f cases per minute", fuzzer.getCasesRun(),
+        fuzzer.getValidCases(), elapsed, fuzzer.getCasesRun() / elapsed * 60));
+    for (Failure failure : failures)
+    {
+      System.out.println(failure);
+      System.out.println("  reproduce with: --seed " + seed + " --case " + failure.getCaseIndex());
+    }
+    System.exit(failures.isEmpty() ? 0 : 1);
+  }
+
+  private static void usage(String error)
+  {
+    System.err.println(error);
+    System.err.println("Usage: java tigercat.fuzz.InstructionFuzzer [--seed N] [--cases N | --seconds N]"
+        + " [--threads N] [--case N] [--max-failures N]");
+    System.exit(2);
+  }
+}
@@ -0,0 +1,712 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : InstructionGrammar.java
+ * Description  : Grammar of every instruction line, for generating and checking fuzz cases
+ */
+
+package tigercat.fuzz;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import tigercat.instruction.Instruction;
+import tigercat.instruction.IsaTables;
+import tigercat.instruction.Mnemonic;
+
+/**
+ * Grammar of every instruction line, for generating and checking fuzz cases
+ *
+ * The forms of the grammar are every mnemonic of the opcode table (see Mnemonic.getNames)
+ * and a jump for every condition of the ISA tables, each with its operands. The registers
+ * and conditions are those of magicNumbers.xml. Each form also knows what it encodes to:
+ * the opcode of each machine word it emits, and how many bits its immediate may have.
+ *
+ * Every word starts with the opcode and two flags, the registers follow, and an immediate
+ * gets the bits which are left, right-aligned. A single-word instruction's immediate is also
+ * limited to 16 bits.
+ */
+public final class InstructionGrammar
+{
+  private static final int WORD_BITS = 32;
+  private static final int OPCODE_BITS = 5;
+  private static final int HEADER_BITS = OPCODE_BITS + 2;
+  private static final int SINGLE_WORD_BITS = 16;
+  private static final int SINGLE_REGISTER_BITS = 4;
+  private static final int DOUBLE_REGISTER_BITS = 3;
+  private static final int CONDITION_BITS = 4;
+
+  private static final char SINGLE_WORD_SUFFIX = 'w';
+  private static final char DOUBLE_WORD_SUFFIX = 'd';
+  private static final String JUMP = "jmp";
+  private static final int MAX_CONDITION_LENGTH = 2;
+  private static final int CALL_WORDS = 4;
+
+  // Spacing between the tokens of a line
+  private static final String[] SEPARATORS = { " ", " ", " ", "  ", "\t", " \t " };
+
+  // Out of every hundred cases, how many are left valid
+  private static final int VALID_PERCENT = 40;
+
+  /**
+   * The operands a form takes, and what it is encoded as
+   */
+  enum Kind
+  {
+    THREE,          // register, register, register or immediate
+    TWO,            // register, register or immediate
+    COMPARE,        // as TWO, encoded with a dummy destination register in front
+    MOVE,           // pseudo: an add to zero, or two for a double-word immediate
+    STACK,          // register or immediate
+    JUMP,           // register or immediate, after the condition
+    CALL,           // pseudo: a push of the return address and a jump
+    NONE,           // no operands
+    UNIMPLEMENTED   // recognised, but never assembled
+  }
+
+  private static final Map<String, Kind> KINDS = new HashMap<>();
+
+  static
+  {
+    for (String stem : new String[] { "add", "addc", "sub", "subc", "ssr", "sur", "sl", "and", "or", "xor" })
+    {
+      KINDS.put(stem, Kind.THREE);
+    }
+    for (String stem : new String[] { "load", "sto", "inv", "convs" })
+    {
+      KINDS.put(stem, Kind.TWO);
+    }
+    KINDS.put("cmp", Kind.COMPARE);
+    KINDS.put("mov", Kind.MOVE);
+    KINDS.put("push", Kind.STACK);
+    KINDS.put("pop", Kind.STACK);
+    KINDS.put(JUMP, Kind.JUMP);
+    KINDS.put("call", Kind.CALL);
+    KINDS.put("noop", Kind.NONE);
+    KINDS.put("debug", Kind.NONE);
+    KINDS.put("ret", Kind.NONE);
+    KINDS.put("convu", Kind.UNIMPLEMENTED);
+    KINDS.put("readwcc", Kind.UNIMPLEMENTED);
+  }
+
+  /**
+   * One valid spelling of an instruction
+   */
+  static final class Form
+  {
+    final String mnemonic;
+    // The stem of its width family (e.g. add for addw), or null
+    final String stem;
+    final Kind kind;
+    final boolean doubleWord;
+    final int arguments;
+    final int encoding;
+
+    Form(String mnemonic, String stem, Kind kind, boolean doubleWord)
+    {
+      Mnemonic entry = Mnemonic.lookup(mnemonic);
+      this.mnemonic = mnemonic;
+      this.stem = stem;
+      this.kind = kind;
+      this.doubleWord = doubleWord;
+      this.arguments = entry.getArgumentCount();
+      this.encoding = entry.getEncoding();
+    }
+
+    /**
+     * @return The bits of the immediate field of the word which holds the last operand
+     */
+    int immediateBits()
+    {
+      int registerBits = doubleWord ? DOUBLE_REGISTER_BITS : SINGLE_REGISTER_BITS;
+      int bits;
+      switch (kind)
+      {
+        case THREE:
+        case COMPARE:
+          bits = WORD_BITS - HEADER_BITS - 2 * registerBits;
+          break;
+        case TWO:
+          bits = WORD_BITS - HEADER_BITS - registerBits;
+          break;
+        case MOVE:
+          // A double-word immediate is split between two single-word adds
+          bits = doubleWord ? WORD_BITS : WORD_BITS - HEADER_BITS - 2 * registerBits;
+          break;
+        case STACK:
+          bits = WORD_BITS - HEADER_BITS;
+          break;
+        case JUMP:
+        case CALL:
+          bits = WORD_BITS - HEADER_BITS - CONDITION_BITS;
+          break;
+        default:
+          return 0;
+      }
+      return doubleWord ? bits : Math.min(bits, SINGLE_WORD_BITS);
+    }
+
+    /**
+     * Whether the form is assembled as other instructions, so its words do not carry its
+     * own opcode and flags
+     */
+    boolean isPseudoInstruction()
+    {
+      return kind == Kind.MOVE || kind == Kind.CALL || mnemonic.equals("noop") || mnemonic.equals("ret");
+    }
+  }
+
+  private final List<Form> forms = new ArrayList<>();
+  private final Set<String> mnemonics;
+  private final Set<String> conditions;
+  private final List<String> singleRegisters;
+  private final List<String> doubleRegisters;
+  private final List<String> registersWithHalves = new ArrayList<>();
+  private final List<String> registersWithoutHalves = new ArrayList<>();
+
+  private final int addEncoding;
+  private final int pushEncoding;
+  private final int popEncoding;
+  private final int jumpEncoding;
+
+  /**
+   * Build the grammar of the opcode table and the given ISA tables
+   *
+   * @param isaTables The registers and conditions
+   * @throws IllegalStateException If the opcode table has a mnemonic the grammar does not know
+   */
+  public InstructionGrammar(IsaTables isaTables)
+  {
+    mnemonics = Mnemonic.getNames();
+    conditions = isaTables.getConditionNames();
+    singleRegisters = new ArrayList<>(isaTables.getRegisterNames(false));
+    doubleRegisters = new ArrayList<>(isaTables.getRegisterNames(true));
+
+    for (String mnemonic : mnemonics)
+    {
+      char suffix = mnemonic.charAt(mnemonic.length() - 1);
+      String stem = mnemonic.substring(0, mnemonic.length() - 1);
+      if (KINDS.containsKey(mnemonic))
+      {
+        Kind kind = KINDS.get(mnemonic);
+        forms.add(new Form(mnemonic, null, kind, kind == Kind.JUMP || kind == Kind.CALL));
+      } else if (KINDS.containsKey(stem) && (suffix == SINGLE_WORD_SUFFIX || suffix == DOUBLE_WORD_SUFFIX))
+      {
+        forms.add(new Form(mnemonic, stem, KINDS.get(stem), suffix == DOUBLE_WORD_SUFFIX));
+      } else
+      {
+        throw new IllegalStateException("The fuzzing grammar does not know the mnemonic " + mnemonic);
+      }
+    }
+    for (String condition : conditions)
+    {
+      forms.add(new Form(JUMP + condition, null, Kind.JUMP, true));
+    }
+
+    // A double-word register has halves if they are named after it (e.g. arg1: a1l and a1h)
+    for (String register : doubleRegisters)
+    {
+      boolean halves = register.length() == 4
+          && singleRegisters.contains("" + register.charAt(0) + register.charAt(3) + "l")
+          && singleRegisters.contains("" + register.charAt(0) + register.charAt(3) + "h");
+      (halves ? registersWithHalves : registersWithoutHalves).add(register);
+    }
+
+    addEncoding = Mnemonic.lookup("addw").getEncoding();
+    pushEncoding = Mnemonic.lookup("pushd").getEncoding();
+    popEncoding = Mnemonic.lookup("popd").getEncoding();
+    jumpEncoding = Mnemonic.lookup(JUMP).getEncoding();
+  }
+
+  /**
+   * @return The number of forms, i.e. of valid spellings including every jump condition
+   */
+  public int getFormCount()
+  {
+    return forms.size();
+  }
+
+  /**
+   * Generate a case: a valid line of a random form, into which at most one random fault
+   * has been introduced
+   *
+   * @param random The source of every choice made
+   * @return The case
+   */
+  public FuzzCase generate(SplittableRandom random)
+  {
+    Form form = forms.get(random.nextInt(forms.size()));
+    FuzzCase valid = validCase(form, random);
+    if (form.kind == Kind.UNIMPLEMENTED)
+    {
+      return withFault(valid, FuzzCase.Fault.UNIMPLEMENTED, -1);
+    }
+    if (random.nextInt(100) < VALID_PERCENT)
+    {
+      return valid;
+    }
+
+    FuzzCase.Fault[] faults = FuzzCase.Fault.values();
+    for (int attempt = 0; attempt < faults.length; attempt++)
+    {
+      FuzzCase.Fault fault = faults[random.nextInt(faults.length)];
+      FuzzCase faulty = introduce(fault, valid, random);
+      if (faulty != null)
+      {
+        return faulty;
+      }
+    }
+    return valid;
+  }
+
+  private FuzzCase validCase(Form form, SplittableRandom random)
+  {
+    String[] operands = new String[form.arguments];
+    for (int index = 0; index < operands.length; index++)
+    {
+      operands[index] = register(form, random);
+    }
+
+    int bits = form.immediateBits();
+    if (operands.length > 0 && bits > 0 && random.nextBoolean())
+    {
+      // Every length of immediate is as likely, and the largest allowed more so
+      long value = random.nextInt(8) == 0 ? maximum(bits) : random.nextLong() & maximum(random.nextInt(bits + 1));
+      operands[operands.length - 1] = immediate(value, random);
+      if (form.kind == Kind.MOVE && form.doubleWord)
+      {
+        operands[0] = Instruction.REGISTER_PREFIX + pick(registersWithHalves, random);
+      }
+    }
+
+    String separator = SEPARATORS[random.nextInt(SEPARATORS.length)];
+    return new FuzzCase(form, form.mnemonic, operands, separator, random.nextInt(0x10000), FuzzCase.Fault.NONE, -1);
+  }
+
+  /**
+   * Introduce a fault into a valid case
+   *
+   * @return The faulty case, or null if the fault cannot occur in this form
+   */
+  private FuzzCase introduce(FuzzCase.Fault fault, FuzzCase valid, SplittableRandom random)
+  {
+    Form form = valid.form;
+    int operandCount = valid.operands.length;
+    switch (fault)
+    {
+      case UNKNOWN_MNEMONIC:
+        for (int attempt = 0; attempt < 10; attempt++)
+        {
+          FuzzCase faulty = withFault(valid.withMnemonic(word(random, 1, 7, false)), fault, -1);
+          if (faultHolds(faulty))
+          {
+            return faulty;
+          }
+        }
+        return null;
+
+      case BAD_WIDTH:
+        if (form.stem == null)
+        {
+          return null;
+        }
+        for (int attempt = 0; attempt < 10; attempt++)
+        {
+          FuzzCase faulty = withFault(valid.withMnemonic(form.stem + (char) ('a' + random.nextInt(26))), fault, -1);
+          if (faultHolds(faulty))
+          {
+            return faulty;
+          }
+        }
+        return null;
+
+      case BAD_CONDITION:
+        if (form.kind != Kind.JUMP)
+        {
+          return null;
+        }
+        for (int attempt = 0; attempt < 10; attempt++)
+        {
+          FuzzCase faulty = withFault(valid.withMnemonic(JUMP + word(random, 1, MAX_CONDITION_LENGTH, false)),
+              fault, -1);
+          if (faultHolds(faulty))
+          {
+            return faulty;
+          }
+        }
+        return null;
+
+      case ARGUMENT_COUNT:
+      {
+        String[] operands;
+        if (operandCount > 0 && random.nextBoolean())
+        {
+          operands = new String[operandCount - 1];
+          System.arraycopy(valid.operands, 0, operands, 0, operands.length);
+        } else
+        {
+          operands = new String[operandCount + 1];
+          System.arraycopy(valid.operands, 0, operands, 0, operandCount);
+          operands[operandCount] = register(form, random);
+        }
+        return new FuzzCase(form, valid.mnemonic, operands, valid.separator, valid.address, fault, -1);
+      }
+
+      case UNKNOWN_REGISTER:
+      {
+        List<Integer> registers = new ArrayList<>();
+        for (int index = 0; index < operandCount; index++)
+        {
+          if (valid.operands[index].startsWith(Instruction.REGISTER_PREFIX))
+          {
+            registers.add(index);
+          }
+        }
+        if (registers.isEmpty())
+        {
+          return null;
+        }
+        int index = pick(registers, random);
+        String name = random.nextBoolean() ? pick(form.doubleWord ? singleRegisters : doubleRegisters, random)
+            : word(random, 1, 5, true);
+        FuzzCase faulty = withFault(valid.withOperand(index, Instruction.REGISTER_PREFIX + name), fault, index);
+        return faultHolds(faulty) ? faulty : null;
+      }
+
+      case NO_HALVES:
+        if (form.kind != Kind.MOVE || !form.doubleWord || registersWithoutHalves.isEmpty()
+            || !valid.operands[1].startsWith(Instruction.IMMEDIATE_PREFIX))
+        {
+          return null;
+        }
+        return withFault(valid.withOperand(0, Instruction.REGISTER_PREFIX + pick(registersWithoutHalves, random)),
+            fault, 0);
+
+      case MISPLACED_IMMEDIATE:
+      {
+        if (operandCount < 2)
+        {
+          return null;
+        }
+        int index = random.nextInt(operandCount - 1);
+        return withFault(valid.withOperand(index, immediate(random.nextInt(0x100), random)), fault, index);
+      }
+
+      case MALFORMED_IMMEDIATE:
+      {
+        if (operandCount == 0)
+        {
+          return null;
+        }
+        FuzzCase faulty = withFault(valid.withOperand(operandCount - 1, malformedImmediate(random)), fault,
+            operandCount - 1);
+        return faultHolds(faulty) ? faulty : null;
+      }
+
+      case BAD_TOKEN:
+      {
+        if (operandCount == 0)
+        {
+          return null;
+        }
+        int index = random.nextInt(operandCount);
+        // Either a word which is nothing at all, or a label, which has to be resolved before binding
+        String token = random.nextBoolean() ? word(random, 1, 6, true) : word(random, 1, 6, false).toUpperCase();
+        return withFault(valid.withOperand(index, token), fault, index);
+      }
+
+      case IMMEDIATE_RANGE:
+      {
+        int bits = form.immediateBits();
+        if (operandCount == 0 || bits == 0 || bits >= WORD_BITS)
+        {
+          return null;
+        }
+        long value = maximum(bits) + 1 + (random.nextLong() >>> 1) % (maximum(WORD_BITS) - maximum(bits));
+        return withFault(valid.withOperand(operandCount - 1, immediate(value, random)), fault, operandCount - 1);
+      }
+
+      default:
+        return null;
+    }
+  }
+
+  private static FuzzCase withFault(FuzzCase c, FuzzCase.Fault fault, int faultIndex)
+  {
+    return new FuzzCase(c.form, c.mnemonic, c.operands, c.separator, c.address, fault, faultIndex);
+  }
+
+  /**
+   * Whether the fault of a case is still there, after its text was changed
+   *
+   * @param c The case
+   * @return True if the case still raises the exception of its fault
+   */
+  boolean faultHolds(FuzzCase c)
+  {
+    Form form = c.form;
+    switch (c.fault)
+    {
+      case UNKNOWN_MNEMONIC:
+        return !c.mnemonic.isEmpty() && Mnemonic.lookup(c.mnemonic) == null;
+      case BAD_WIDTH:
+      {
+        // Still spelled as the family, with a suffix which is not a width
+        Mnemonic entry = Mnemonic.lookup(c.mnemonic);
+        char suffix = c.mnemonic.charAt(c.mnemonic.length() - 1);
+        return entry != null && !mnemonics.contains(c.mnemonic) && c.mnemonic.equals(form.stem + suffix)
+            && suffix != SINGLE_WORD_SUFFIX && suffix != DOUBLE_WORD_SUFFIX;
+      }
+      case BAD_CONDITION:
+      {
+        String condition = c.mnemonic.startsWith(JUMP) ? c.mnemonic.substring(JUMP.length()) : null;
+        return condition != null && !condition.isEmpty() && condition.length() <= MAX_CONDITION_LENGTH
+            && !conditions.contains(condition);
+      }
+      case UNKNOWN_REGISTER:
+      {
+        String operand = c.operands[c.faultIndex];
+        return operand.startsWith(Instruction.REGISTER_PREFIX)
+            && !(form.doubleWord ? doubleRegisters : singleRegisters).contains(operand.substring(1));
+      }
+      case MALFORMED_IMMEDIATE:
+      {
+        String operand = c.operands[c.faultIndex];
+        return operand.startsWith(Instruction.IMMEDIATE_PREFIX) && !isImmediate(operand);
+      }
+      case BAD_TOKEN:
+      {
+        String operand = c.operands[c.faultIndex];
+        return !operand.isEmpty() && !operand.startsWith(Instruction.REGISTER_PREFIX)
+            && !operand.startsWith(Instruction.IMMEDIATE_PREFIX);
+      }
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * Whether a token is a well-formed immediate: $0x and at most 32 bits of hexadecimal
+   */
+  static boolean isImmediate(String token)
+  {
+    return token.matches("\\$0x0*[0-9a-fA-F]{1,8}");
+  }
+
+  /**
+   * Return simpler variants of a case, each of which must fail the same way if it is to
+   * replace the case: plainer spacing, address zero, the first register of the table,
+   * smaller immediates, and fewer characters in whatever holds a textual fault
+   *
+   * @param c The failing case
+   * @return The variants, most promising first
+   */
+  List<FuzzCase> shrink(FuzzCase c)
+  {
+    List<FuzzCase> variants = new ArrayList<>();
+    if (!c.separator.equals(" "))
+    {
+      variants.add(c.withSeparator(" "));
+    }
+    if (c.address != 0)
+    {
+      variants.add(c.withAddress(0));
+      variants.add(c.withAddress(c.address >>> 1));
+    }
+
+    for (int index = 0; index < c.operands.length; index++)
+    {
+      String operand = c.operands[index];
+      if (index == c.faultIndex)
+      {
+        if (c.fault == FuzzCase.Fault.IMMEDIATE_RANGE)
+        {
+          // The smallest immediate which is too large
+          String smallest = "$0x" + Long.toHexString(maximum(c.form.immediateBits()) + 1);
+          if (!operand.equals(smallest))
+          {
+            variants.add(c.withOperand(index, smallest));
+          }
+        } else
+        {
+          for (int drop = 0; drop < operand.length(); drop++)
+          {
+            FuzzCase variant = c.withOperand(index, operand.substring(0, drop) + operand.substring(drop + 1));
+            if (faultHolds(variant))
+            {
+              variants.add(variant);
+            }
+          }
+        }
+      } else if (operand.startsWith(Instruction.REGISTER_PREFIX))
+      {
+        List<String> registers = c.form.doubleWord ? doubleRegisters : singleRegisters;
+        String first = Instruction.REGISTER_PREFIX + registers.get(0);
+        if (!operand.equals(first) && registers.contains(operand.substring(1)))
+        {
+          variants.add(c.withOperand(index, first));
+        }
+      } else if (isImmediate(operand))
+      {
+        long value = immediateValue(operand);
+        String plain = "$0x" + Long.toHexString(value);
+        if (!operand.equals(plain))
+        {
+          variants.add(c.withOperand(index, plain));
+        }
+        if (value != 0)
+        {
+          variants.add(c.withOperand(index, "$0x0"));
+          variants.add(c.withOperand(index, "$0x" + Long.toHexString(value >>> 1)));
+        }
+      }
+    }
+
+    if (c.fault == FuzzCase.Fault.UNKNOWN_MNEMONIC || c.fault == FuzzCase.Fault.BAD_CONDITION)
+    {
+      for (int drop = 0; drop < c.mnemonic.length(); drop++)
+      {
+        FuzzCase variant = c.withMnemonic(c.mnemonic.substring(0, drop) + c.mnemonic.substring(drop + 1));
+        if (faultHolds(variant))
+        {
+          variants.add(variant);
+        }
+      }
+    }
+    return variants;
+  }
+
+  /**
+   * Return the opcode of each machine word a valid case should emit
+   */
+  int[] expectedOpcodes(FuzzCase c)
+  {
+    Form form = c.form;
+    if (form.kind == Kind.MOVE)
+    {
+      return form.doubleWord && isLastImmediate(c) ? new int[] { addEncoding, addEncoding } : new int[] { addEncoding };
+    } else if (form.kind == Kind.CALL)
+    {
+      return new int[] { pushEncoding, jumpEncoding };
+    } else if (form.mnemonic.equals("ret"))
+    {
+      return new int[] { popEncoding };
+    } else if (form.mnemonic.equals("noop"))
+    {
+      return new int[] { jumpEncoding };
+    }
+    return new int[] { form.encoding };
+  }
+
+  /**
+   * Return the immediate fields a valid case should emit, each as {word, bits, value}: the
+   * low bits of that word should hold the value
+   */
+  List<long[]> expectedImmediates(FuzzCase c)
+  {
+    Form form = c.form;
+    if (form.kind == Kind.CALL)
+    {
+      // The return address is after the push and the jump, of two words each
+      List<long[]> fields = new ArrayList<>();
+      fields.add(new long[] { 0, WORD_BITS - HEADER_BITS, c.address + CALL_WORDS });
+      if (isLastImmediate(c))
+      {
+        fields.add(new long[] { 1, form.immediateBits(), immediateValue(c.operands[0]) });
+      }
+      return fields;
+    }
+    if (!isLastImmediate(c))
+    {
+      return Collections.emptyList();
+    }
+
+    long value = immediateValue(c.operands[c.operands.length - 1]);
+    List<long[]> fields = new ArrayList<>();
+    if (form.kind == Kind.MOVE && form.doubleWord)
+    {
+      fields.add(new long[] { 0, SINGLE_WORD_BITS, value & 0xFFFF });
+      fields.add(new long[] { 1, SINGLE_WORD_BITS, value >>> SINGLE_WORD_BITS });
+    } else
+    {
+      fields.add(new long[] { 0, form.immediateBits(), value });
+    }
+    return fields;
+  }
+
+  private static boolean isLastImmediate(FuzzCase c)
+  {
+    return c.operands.length > 0 && c.operands[c.operands.length - 1].startsWith(Instruction.IMMEDIATE_PREFIX);
+  }
+
+  static long immediateValue(String operand)
+  {
+    return Long.parseLong(operand.substring(3), 16);
+  }
+
+  private static long maximum(int bits)
+  {
+    return (1L << bits) - 1;
+  }
+
+  private String register(Form form, SplittableRandom random)
+  {
+    return Instruction.REGISTER_PREFIX + pick(form.doubleWord ? doubleRegisters : singleRegisters, random);
+  }
+
+  private static String immediate(long value, SplittableRandom random)
+  {
+    String digits = Long.toHexString(value);
+    if (random.nextInt(4) == 0)
+    {
+      digits = digits.toUpperCase();
+    }
+    if (random.nextInt(8) == 0)
+    {
+      digits = "0" + digits;
+    }
+    return "$0x" + digits;
+  }
+
+  private static String malformedImmediate(SplittableRandom random)
+  {
+    switch (random.nextInt(6))
+    {
+      case 0:
+        // Decimal
+        return "$" + (1 + random.nextInt(1000));
+      case 1:
+        return "$0x";
+      case 2:
+        return "$0x" + Integer.toHexString(random.nextInt(0x1000)) + (char) ('g' + random.nextInt(20));
+      case 3:
+        // Too large for 32 bits
+        return "$0x" + Long.toHexString(0x100000000L + (random.nextLong() >>> 24));
+      case 4:
+        return "$0X" + Integer.toHexString(random.nextInt(0x1000));
+      default:
+        return "$-0x" + Integer.toHexString(1 + random.nextInt(0x1000));
+    }
+  }
+
+  private static String word(SplittableRandom random, int minimumLength, int maximumLength, boolean digits)
+  {
+    int length = minimumLength + random.nextInt(maximumLength - minimumLength + 1);
+    StringBuilder word = new StringBuilder(length);
+    for (int index = 0; index < length; index++)
+    {
+      word.append(digits && random.nextInt(4) == 0 ? (char) ('0' + random.nextInt(10)) : (char) ('a' + random.nextInt(26)));
+    }
+    return word.toString();
+  }
+
+  private static <T> T pick(List<T> list, SplittableRandom random)
+  {
+    return list.get(random.nextInt(list.size()));
+  }
+}
@@ -4,10 +4,9 @@ public class AndInstruction extends Instruction
 {
   static final int AND_ENCODING = 0x1C;
 
-  protected AndInstruction(String[] tokens, boolean encodingValid, Integer returnAddress)
-          throws InvalidDataWidthException, InstructionArgumentCountException, InvalidOpcodeException,
-          InstructionSyntaxError, InvalidRegisterException, XmlLookupException {
-    super(tokens, encodingValid, AND_ENCODING, THREE_ARGUMENTS);
+  protected AndInstruction(String[] tokens, Mnemonic mnemonic)
+          throws InvalidDataWidthException, InstructionArgumentCountException, InstructionSyntaxError {
+    super(tokens, mnemonic);
   }
 
 }
@@ -1,14 +1,5 @@
 package tigercat.instruction;
 
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.*;
-import java.io.IOException;
-
 class Argument
 {
   protected static final String ZERO_REG = "zero";
@@ -27,37 +18,12 @@ class Argument
     return machineCodeRepresentation;
   }
 
-  protected int getRegisterCode(String registerName, Instruction.DataWidth dataWidth) throws XmlLookupException, InvalidRegisterException {
-    //set data width
-    String widthArg;
-    if (dataWidth == Instruction.DataWidth.SINGLE_WORD) {
-      widthArg = "single";
-    } else if (dataWidth == Instruction.DataWidth.DOUBLE_WORD) {
-      widthArg = "double";
-    } else {
-      throw new XmlLookupException("Unrecognized datawidth argument");
-    }
-    XPathFactory xPathfactory = XPathFactory.newInstance();
-    XPath xpath = xPathfactory.newXPath();
-    String protoExpr = String.format("/lookup/register-numbers/register[@data_width='%s' and @name='%s']",
-                                     widthArg, registerName);
-
-    try {
-      XPathExpression expr = xpath.compile(protoExpr);
-      NodeList protoResult = (NodeList) expr.evaluate(Instruction.lookupDoc, XPathConstants.NODESET);
-
-      //check to make sure we only found one matching register
-      if(protoResult.getLength() == 0)
-        throw new InvalidRegisterException(registerName);
-      if(protoResult.getLength() > 1)
-        throw new XmlLookupException("More than one matching register found for: " + registerName
-                                             + " (this is a bug in the assembler.");
-
-      return Integer.decode(protoResult.item(0).getTextContent());
-
-    } catch (XPathExpressionException e) {
-      throw new XmlLookupException("XML lookup of register: '" + registerName + "' failed.");
-    }
+  protected int getRegisterCode(String registerName, Instruction.DataWidth dataWidth, IsaTables isaTables)
+          throws InvalidRegisterException {
+    int registerCode = isaTables.getRegisterCode(registerName, dataWidth);
+    if (registerCode == IsaTables.NOT_FOUND)
+      throw new InvalidRegisterException(registerName);
+    return registerCode;
   }
 
   /**
@@ -71,24 +37,26 @@ class Argument
     return size;
   }
 
-  public Argument() throws XmlLookupException {
-    //one-time setup
-    try {
-      if(Instruction.lookupDoc == null) {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        Instruction.lookupDoc = builder.parse(Instruction.LOOKUP_FILE_URI);
-      }
-    } catch (ParserConfigurationException | SAXException | IOException e) {
-      throw new XmlLookupException("XML file not found: " + Instruction.LOOKUP_FILE_URI + ".");
-    }
+  public Argument() {
+  }
 
+  /**
+   * Create an immediate argument with a known value
+   *
+   * @param value The value of the immediate
+   * @return The immediate argument
+   */
+  static Argument immediate(int value)
+  {
+    Argument argument = new Argument();
+    argument.argumentType = Instruction.DataType.IMMEDIATE;
+    argument.machineCodeRepresentation = value;
+    return argument;
   }
-  public Argument(String argument, Instruction.DataWidth dataWidth, Instruction.DataType argumentType)
-          throws InvalidRegisterException, XmlLookupException {
 
-    //set up xml lookup document
-    this();
+  public Argument(String argument, Instruction.DataWidth dataWidth, Instruction.DataType argumentType,
+                  IsaTables isaTables)
+          throws InvalidRegisterException {
 
     this.argumentType = argumentType;
     if (argumentType == Instruction.DataType.IMMEDIATE)
@@ -96,7 +64,7 @@ class Argument
       machineCodeRepresentation = this.parseImmediate(argument);
     } else if (argumentType == Instruction.DataType.REGISTER)
     {
-      machineCodeRepresentation = this.parseRegister(argument, dataWidth);
+      machineCodeRepresentation = this.parseRegister(argument, dataWidth, isaTables);
       switch(dataWidth)
       {
       case SINGLE_WORD:
@@ -119,14 +87,17 @@ class Argument
    *          A string containing a register
    * @param dataWidth
    *          Whether a single- or double-word register should be encoded
+   * @param isaTables
+   *          The register tables to look the register up in
    * @return The machine code encoding of the register
    * @throws InvalidRegisterException
    *           If an undefined register is encountered
    */
-  protected int parseRegister(String argument, Instruction.DataWidth dataWidth) throws InvalidRegisterException, XmlLookupException {
+  protected int parseRegister(String argument, Instruction.DataWidth dataWidth, IsaTables isaTables)
+          throws InvalidRegisterException {
     if (dataWidth == Instruction.DataWidth.SINGLE_WORD | dataWidth == Instruction.DataWidth.DOUBLE_WORD)
     {
-      return getRegisterCode(argument, dataWidth);
+      return getRegisterCode(argument, dataWidth, isaTables);
     } else
     {
       throw new RuntimeException("Undefined Data Width");
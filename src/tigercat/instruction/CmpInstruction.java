@@ -4,15 +4,16 @@ public class CmpInstruction extends Instruction
 {
   static final int CMP_ENCODING = 0x0E;
 
-  protected CmpInstruction(String[] tokens, boolean encodingValid, Integer returnAddress)
+  protected CmpInstruction(String[] tokens, Mnemonic mnemonic)
+          throws InvalidDataWidthException, InstructionArgumentCountException, InstructionSyntaxError {
+    super(tokens, mnemonic);
+  }
+
+  @Override
+  public void bind(EncodingContext context, Integer returnAddress)
           throws InvalidDataWidthException, InstructionArgumentCountException, InvalidOpcodeException,
           InstructionSyntaxError, InvalidRegisterException, XmlLookupException {
-    super(tokens, encodingValid, CMP_ENCODING, TWO_ARGUMENTS);
-
-    if (!encodingValid)
-    {
-      return;
-    }
+    super.bind(context, returnAddress);
     
     assert this.arguments.length == 2 : "CMP should have two real arguments";
     
@@ -21,10 +22,10 @@ public class CmpInstruction extends Instruction
     
     if (this.dataWidth == DataWidth.SINGLE_WORD)
     {
-      cmpArguments[0] = new Argument("r1l", this.dataWidth, DataType.REGISTER);
+      cmpArguments[0] = new Argument("r1l", this.dataWidth, DataType.REGISTER, context.getIsaTables());
     } else if (this.dataWidth == DataWidth.DOUBLE_WORD)
     {
-      cmpArguments[0] = new Argument("ret1", this.dataWidth, DataType.REGISTER);
+      cmpArguments[0] = new Argument("ret1", this.dataWidth, DataType.REGISTER, context.getIsaTables());
     } else
     {
       assert false : "Undefined DataWidth";
@@ -4,10 +4,9 @@ public class ConvsInstruction extends Instruction
 {
   static final int CONVS_ENCODING = 0x0B;
 
-  protected ConvsInstruction(String[] tokens, boolean encodingValid, Integer returnAddress)
-          throws InvalidDataWidthException, InstructionArgumentCountException, InvalidOpcodeException,
-          InstructionSyntaxError, InvalidRegisterException, XmlLookupException {
-    super(tokens, encodingValid, CONVS_ENCODING, TWO_ARGUMENTS);
+  protected ConvsInstruction(String[] tokens, Mnemonic mnemonic)
+          throws InvalidDataWidthException, InstructionArgumentCountException, InstructionSyntaxError {
+    super(tokens, mnemonic);
     
     if (this.dataWidth == DataWidth.DOUBLE_WORD)
     {
@@ -0,0 +1,66 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : EncodingContext.java
+ * Description  : Immutable ISA tables and configuration used to encode instructions
+ */
+
+package tigercat.instruction;
+
+/**
+ * Immutable ISA tables and configuration used to encode instructions
+ *
+ * A context holds no per-run state, so one may be created once and shared by any number
+ * of assemblies running at the same time.
+ */
+public final class EncodingContext
+{
+  private static volatile EncodingContext defaultContext = null;
+
+  private final IsaTables isaTables;
+  private final boolean shareEncodings;
+
+  /**
+   * @param isaTables The register and condition-code tables to encode with
+   * @param shareEncodings Whether identical instructions may be encoded once per run (see EncodingMemo)
+   */
+  public EncodingContext(IsaTables isaTables, boolean shareEncodings)
+  {
+    this.isaTables = isaTables;
+    this.shareEncodings = shareEncodings;
+  }
+
+  /**
+   * Return the context for the default ISA tables, creating it on first use
+   *
+   * @return The default encoding context
+   * @throws XmlLookupException If the default ISA tables cannot be loaded
+   */
+  public static EncodingContext getDefault() throws XmlLookupException
+  {
+    EncodingContext context = defaultContext;
+    if (context == null)
+    {
+      synchronized (EncodingContext.class)
+      {
+        context = defaultContext;
+        if (context == null)
+        {
+          context = new EncodingContext(IsaTables.getDefault(), true);
+          defaultContext = context;
+        }
+      }
+    }
+    return context;
+  }
+
+  public IsaTables getIsaTables()
+  {
+    return isaTables;
+  }
+
+  public boolean isSharingEncodings()
+  {
+    return shareEncodings;
+  }
+}
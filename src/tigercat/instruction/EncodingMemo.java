@@ -0,0 +1,132 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : EncodingMemo.java
+ * Description  : Table of the machine code of instructions already encoded
+ */
+
+package tigercat.instruction;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Table of the machine code of instructions already encoded
+ *
+ * Instructions are keyed by their tokens once symbols have been resolved, i.e. the
+ * mnemonic and the resolved operands. Lines such as pushd/popd pairs, cmpw, or a jmp to
+ * the same label are bound and encoded the first time only; later occurrences copy the
+ * cached words. Failures are not cached, so each occurrence reports its own diagnostic.
+ *
+ * Not thread-safe: use one per thread at a time. Since keys are resolved tokens, a memo
+ * may be reused by later runs with the same context.
+ */
+public class EncodingMemo
+{
+  private final EncodingContext context;
+  private final HashMap<Key, int[]> encodings = new HashMap<>();
+  private int hits = 0;
+
+  /**
+   * @param context The context to bind instructions with
+   */
+  public EncodingMemo(EncodingContext context)
+  {
+    this.context = context;
+  }
+
+  /**
+   * Bind and encode an instruction whose symbol has been resolved, or write the cached
+   * machine code of an identical instruction
+   *
+   * @param instruction The unbound instruction
+   * @param returnAddress The address of the instruction
+   * @param sink Where to write the machine code
+   */
+  public void encode(Instruction instruction, int returnAddress, MachineCodeSink sink)
+      throws InvalidDataWidthException, InstructionArgumentCountException, InvalidOpcodeException,
+      InstructionSyntaxError, InvalidRegisterException, XmlLookupException, UnencodeableImmediateException
+  {
+    if (!context.isSharingEncodings() || !instruction.isShareable())
+    {
+      instruction.bind(context, returnAddress);
+      instruction.encode(sink);
+      return;
+    }
+
+    Key key = new Key(instruction.tokens);
+    int[] words = encodings.get(key);
+    if (words != null)
+    {
+      hits++;
+      for (int word : words)
+      {
+        sink.putWord(word);
+      }
+      return;
+    }
+
+    instruction.bind(context, returnAddress);
+    int start = sink.size();
+    instruction.encode(sink);
+
+    words = new int[(sink.size() - start) / Instruction.BYTES_PER_INSTRUCTION];
+    for (int index = 0; index < words.length; index++)
+    {
+      words[index] = sink.getWord(start + index * Instruction.BYTES_PER_INSTRUCTION);
+    }
+    encodings.put(key, words);
+  }
+
+  /**
+   * Return how many instructions were written from the table
+   *
+   * @return The number of cache hits
+   */
+  public int getHits()
+  {
+    return hits;
+  }
+
+  /**
+   * Return how many distinct instructions have been encoded
+   *
+   * @return The number of cached encodings
+   */
+  public int size()
+  {
+    return encodings.size();
+  }
+
+  /**
+   * Forget every cached encoding, keeping the table for reuse
+   */
+  public void clear()
+  {
+    encodings.clear();
+  }
+
+  private static final class Key
+  {
+    private final String[] tokens;
+    private final int hash;
+
+    Key(String[] tokens)
+    {
+      this.tokens = tokens;
+      this.hash = Arrays.hashCode(tokens);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+      return other instanceof Key && Arrays.equals(tokens, ((Key) other).tokens);
+    }
+  }
+}
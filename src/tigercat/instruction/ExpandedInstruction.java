@@ -0,0 +1,31 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : ExpandedInstruction.java
+ * Description  : Machine instruction created directly from encoded operands
+ */
+
+package tigercat.instruction;
+
+/**
+ * Machine instruction created directly from encoded operands, as produced by the
+ * expansion of a pseudo-instruction
+ *
+ * It is bound from the moment it is created: there are no tokens to check or resolve.
+ */
+final class ExpandedInstruction extends Instruction
+{
+  /**
+   * @param opcodeEncoding The opcode, e.g. AddInstruction.ADD_ENCODING
+   * @param dataWidth Whether the instruction operates on single- or double-word data
+   * @param instructionType Whether the last argument is an immediate or a register
+   * @param arguments The encoded arguments, as bind would have created them
+   */
+  ExpandedInstruction(int opcodeEncoding, DataWidth dataWidth, DataType instructionType, Argument... arguments)
+  {
+    this.opcode_encoding = opcodeEncoding;
+    this.dataWidth = dataWidth;
+    this.instructionType = instructionType;
+    this.arguments = arguments;
+  }
+}
@@ -7,9 +7,8 @@
 
 package tigercat.instruction;
 
-import org.w3c.dom.Document;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
-import tigercat.Assembler;
+import tigercat.Lexer;
 
 import javax.xml.crypto.Data;
 
@@ -25,6 +24,11 @@ public abstract class Instruction
    */
   static final int BYTES_PER_INSTRUCTION = 4;
 
+  /**
+   * Sizes and addresses are counted in 16-bit words of two bytes each
+   */
+  public static final int BYTES_PER_WORD = 2;
+
   // Size Definitions (in bits)
   static final int SIZEOF_INSTRUCTION               = 32;
   static final int SIZEOF_OPCODE                    = 5;
@@ -50,10 +54,8 @@ public abstract class Instruction
   // What tokens the assembly expects
   public static final String REGISTER_PREFIX = "%";
   public static final String IMMEDIATE_PREFIX = "$";
-
-  // The XML lookup file uri and DOM
-  protected static final String  LOOKUP_FILE_URI = "./src/magicNumbers.xml";
-  protected static Document lookupDoc = null;
+  static final String HEX_PREFIX = "0x";
+  static final int MAX_IMMEDIATE_DIGITS = 8;
 
   /**
    * Record whether an instruction operates on single-word or double-word data
@@ -98,28 +100,55 @@ public abstract class Instruction
   protected int opcode_encoding;
   protected DataWidth dataWidth;
   protected DataType instructionType;
+  protected String[] tokens;
+  protected Mnemonic mnemonic;
   protected Argument[] arguments;
-  
-  protected int machineCode;
 
   /**
    * Return the machine code representation of this instruction
    * 
-   * For the default implementation, it is expected that machineCode already contains the opcode
-   * All other portions filled in based on local variables!
+   * Adapter over encode(MachineCodeSink), for callers which want boxed bytes
    * 
    * @return Machine code representation of this instruction
    * @throws UnencodeableImmediateException If the immediate is determined to be unencodable
    */
   public Byte[] getMachineCode() throws UnencodeableImmediateException
+  {
+    MachineCodeSink sink = new MachineCodeSink(getSize() * BYTES_PER_WORD);
+    encode(sink);
+    return sink.toBoxedArray();
+  }
+
+  /**
+   * Write the machine code representation of this instruction to the sink
+   * 
+   * Pseudo-instructions override this to write each of their children
+   * 
+   * @param sink Where to write the machine code
+   * @throws UnencodeableImmediateException If the immediate is determined to be unencodable
+   */
+  public void encode(MachineCodeSink sink) throws UnencodeableImmediateException
+  {
+    sink.putWord(encodeWord());
+  }
+
+  /**
+   * Return the 32-bit machine code word of this (non-pseudo) instruction
+   * 
+   * A pure function of the bound fields: calling it again returns the same word.
+   * 
+   * @return Machine code word of this instruction
+   * @throws UnencodeableImmediateException If the immediate is determined to be unencodable
+   */
+  protected int encodeWord() throws UnencodeableImmediateException
   {
     assert arguments != null : "Instruction defined with no labelMapping. Cannot get machine code.";
 
-    this.machineCode |= opcode_encoding << SHIFT_OPCODE;
+    int machineCode = opcode_encoding << SHIFT_OPCODE;
     
-    this.machineCode |= dataWidth.flag << SHIFT_SIZE_FLAG;
+    machineCode |= dataWidth.flag << SHIFT_SIZE_FLAG;
     
-    this.machineCode |= instructionType.flag << SHIFT_TYPE_FLAG;
+    machineCode |= instructionType.flag << SHIFT_TYPE_FLAG;
     
     int shiftDistance = SHIFT_TYPE_FLAG;
     
@@ -130,7 +159,7 @@ public abstract class Instruction
       assert arguments[index].getArgumentType() == DataType.REGISTER : "Expected register argument";
       
       shiftDistance -= arguments[index].getEncodingSize();
-      this.machineCode |= arguments[index].getMachineCodeRepresentation() << shiftDistance;
+      machineCode |= arguments[index].getMachineCodeRepresentation() << shiftDistance;
     }
 
     // If this instruction actually has arguments...
@@ -143,7 +172,7 @@ public abstract class Instruction
       case REGISTER:
         // Shift in the register, as normal
         shiftDistance -= arguments[lastArg].getEncodingSize();
-        this.machineCode |= arguments[lastArg].getMachineCodeRepresentation() << shiftDistance;
+        machineCode |= arguments[lastArg].getMachineCodeRepresentation() << shiftDistance;
         break;
       case IMMEDIATE:
         // To encode an immediate value:
@@ -157,7 +186,7 @@ public abstract class Instruction
         
         // Create a mask with ones for all the bits we have already used
         // Conveniently, shiftDistance is the number of bits we have left
-        int mask = ~((int)Math.pow(2, shiftDistance) - 1);
+        int mask = -1 << shiftDistance;
         
         // AND the mask with the immediate to encode
         // If the result is non-zero, the immediate is too large
@@ -179,12 +208,12 @@ public abstract class Instruction
   
           // This immediate has passed the checks, so should be valid to encode
           // (Note: The immediate shall be right-aligned. Padding, if present, is before the immediate.)
-          this.machineCode |= immediateValue;
+          machineCode |= immediateValue;
         } else if (this.dataWidth == DataWidth.DOUBLE_WORD)
         {
           // The only check in the double word case, done above, is that the immediate
           // is not too large for the bits remaining.
-          this.machineCode |= immediateValue;
+          machineCode |= immediateValue;
         } else
         {
           assert false : "Unreachable code -- This should have already been checked";
@@ -194,7 +223,7 @@ public abstract class Instruction
       }
     }
     
-    return convertIntToByteArray(this.machineCode);
+    return machineCode;
   }
 
   /**
@@ -249,137 +278,97 @@ public abstract class Instruction
           InvalidRegisterException,
           InvalidDataWidthException,
           XmlLookupException {
-    String[] tokens = line.split("\\s+");
-    String opcode = tokens[0];
-    
-    if (opcode.matches("^noop$"))
-    {
-      return new NoopInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^debug$"))
-    {
-      return new DebugInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^add.$"))
-    {
-      return new AddInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^addc.$"))
-    {
-      return new AddInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^sub.$"))
-    {
-      return new SubInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^subc.$"))
-    {
-      return new SubInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^convs$"))
-    {
-      return new ConvsInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^convu$"))
-    {
-      // There are no plans to implement this
-      throw new InvalidOpcodeException(opcode + " not assembleable: Use a movw $0x0 to the top bits");
-    }
-    if (opcode.matches("^ssr.$"))
-    {
-      return new SsrInstruction(tokens, encodingValid);
-    }
-    if (opcode.matches("^sur.$"))
-    {
-      return new SurInstruction(tokens, encodingValid);
-    }
-    if (opcode.matches("^sl.$"))
-    {
-      return new SlInstruction(tokens, encodingValid);
-    }
-    if (opcode.matches("^push.$"))
-    {
-      return new PushInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^pop.$"))
-    {
-      return new PopInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^mov.$"))
-    {
-      return new MoveInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^load.$"))
-    {
-      return new LoadInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^sto.$"))
-    {
-      return new StoreInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^and.$"))
-    {
-      return new AndInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^or.$"))
-    {
-      return new OrInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^xor.$"))
-    {
-      return new XorInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^inv.$"))
-    {
-      return new InvInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^jmp.{0,2}$"))
-    {
-      return new JumpInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^cmp.$"))
-    {
-      return new CmpInstruction(tokens, encodingValid, returnAddress);
-    }
-    if (opcode.matches("^readwcc$"))
-    {
-      // There are no plans to implement this 
-      throw new InvalidOpcodeException(opcode + " not currently in the core or assembler");
-    }
-    if (opcode.matches("^call$"))
+    return createInstruction(line.split("\\s+"), line, encodingValid, returnAddress);
+  }
+
+  /**
+   * Converts the given, already tokenized, line of assembly into an Instruction object
+   *
+   * If encodingValid, the instruction is also bound (see bind) with the default
+   * EncodingContext, so getMachineCode may be called
+   *
+   * @param tokens The opcode followed by each of its arguments
+   * @param line Line of assembly the tokens came from, used for diagnostics
+   * @param encodingValid Whether labels have been replaced yet
+   * @param returnAddress Address of the instruction, used if encodingValid
+   * @return The newly-created instruction
+   * @throws InvalidRegisterException 
+   * @throws InstructionSyntaxError 
+   * @throws InvalidOpcodeException 
+   * @throws InstructionArgumentCountException 
+   * @throws InvalidDataWidthException 
+   */
+  public static Instruction createInstruction(String[] tokens, String line, boolean encodingValid, Integer returnAddress)
+          throws InstructionArgumentCountException,
+          InvalidOpcodeException,
+          InstructionSyntaxError,
+          InvalidRegisterException,
+          InvalidDataWidthException,
+          XmlLookupException {
+    Instruction instruction = parseInstruction(tokens, line);
+    if (encodingValid)
     {
-      return new CallInstruction(tokens, encodingValid, returnAddress);
+      instruction.bind(EncodingContext.getDefault(), returnAddress);
     }
-    if (opcode.matches("^ret$"))
+    return instruction;
+  }
+
+  /**
+   * Converts the given, already tokenized, line of assembly into an unbound Instruction object
+   *
+   * Everything which can be checked without knowing label values is checked here. The
+   * size of the returned instruction is known, but it has to be bound before encoding.
+   *
+   * @param tokens The opcode followed by each of its arguments. The last may be a label.
+   * @param line Line of assembly the tokens came from, used for diagnostics
+   * @return The newly-created, unbound, instruction
+   * @throws InstructionSyntaxError 
+   * @throws InvalidOpcodeException 
+   * @throws InstructionArgumentCountException 
+   * @throws InvalidDataWidthException 
+   */
+  public static Instruction parseInstruction(String[] tokens, String line)
+          throws InstructionArgumentCountException,
+          InvalidOpcodeException,
+          InstructionSyntaxError,
+          InvalidRegisterException,
+          InvalidDataWidthException,
+          XmlLookupException {
+    Mnemonic mnemonic = Mnemonic.lookup(tokens[0]);
+    if (mnemonic != null)
     {
-      return new RetInstruction(tokens, encodingValid, returnAddress);
+      return mnemonic.create(tokens);
     }
 
     throw new InvalidOpcodeException("Unable to create instruction from: " + line);
   }
 
-  
   /**
-   * Create an Instruction from the given string
+   * Create an Instruction without tokens, whose subclass fills in the encoded fields
+   * directly (see ExpandedInstruction)
+   */
+  protected Instruction()
+  {
+  }
+
+  /**
+   * Create an Instruction from the given tokens
    * 
-   * If encodingValid is false, getMachineCode() is undefined
+   * getMachineCode() is undefined until the instruction has been bound
    * 
    * @param tokens The instruction to create
-   * @param encodingValid Whether the passed token[] should be convertible to machine code
-   *                      (I.e., whether labels have been replaced
+   * @param mnemonic The opcode table entry for tokens[0]
    * @throws InvalidDataWidthException If the instruction specifies an unrecognized data width
-   * @throws InstructionSyntaxError 
-   * @throws InstructionArgumentCountException 
-   * @throws InvalidOpcodeException 
-   * @throws InvalidRegisterException 
+   * @throws InstructionSyntaxError If the last argument is not a register, immediate or label
+   * @throws InstructionArgumentCountException If the instruction has the wrong number of arguments
    */
-  protected Instruction(String[] tokens, boolean encodingValid, int opcode_encoding, int num_args)
-          throws InvalidDataWidthException, InstructionSyntaxError, InstructionArgumentCountException,
-          InvalidOpcodeException, InvalidRegisterException, XmlLookupException {
-    this.machineCode = 0;
-    this.arguments = new Argument[num_args];
+  protected Instruction(String[] tokens, Mnemonic mnemonic)
+          throws InvalidDataWidthException, InstructionSyntaxError, InstructionArgumentCountException {
+    int num_args = mnemonic.getArgumentCount();
 
-    String opcode = tokens[0];
+    this.tokens = tokens;
+    this.mnemonic = mnemonic;
+    this.arguments = new Argument[num_args];
 
     // We should have the correct number of arguments plus the actual opcode
     if (tokens.length != num_args + 1)
@@ -392,43 +381,31 @@ public abstract class Instruction
       // Zero argument instructions don't have a data width, per-se
       this.dataWidth = DataWidth.SINGLE_WORD;
     }
+    else if (mnemonic.getDataWidth() != null)
+    {
+      this.dataWidth = mnemonic.getDataWidth();
+    }
     else {
-      // Add the data-width flag to the machine code
-      if (opcode.endsWith("w")) {
+      // Not a valid spelling, but part of a family: work out the data width the long way
+      String opcode = tokens[0];
+      if (opcode.startsWith(Mnemonic.JUMP_STEM)) {
+        // Jumps are always double-word, whatever their (unknown) condition ends with
+        this.dataWidth = DataWidth.DOUBLE_WORD;
+      } else if (opcode.endsWith("w")) {
         this.dataWidth = DataWidth.SINGLE_WORD;
       } else if (opcode.endsWith("d")) {
         this.dataWidth = DataWidth.DOUBLE_WORD;
       } else {
-        if (opcode.startsWith("jmp"))
-        {
-          this.dataWidth = DataWidth.DOUBLE_WORD;
-        } else if (opcode.matches("^convs$"))
-        {
-          this.dataWidth = DataWidth.SINGLE_WORD;
-        } else if (opcode.matches("^call$"))
-        {
-          this.dataWidth = DataWidth.DOUBLE_WORD;
-        }
-        else
-        {
-          throw new InvalidDataWidthException(opcode);
-        }
+        throw new InvalidDataWidthException(opcode);
       }
     }
-    
-    if (encodingValid)
-    {
-      // The syntax checker requires labels to be replaced with values
-      checkInstructionSyntax(tokens);
-    }
 
-    this.opcode_encoding = opcode_encoding;
+    this.opcode_encoding = mnemonic.getEncoding();
     String last_arg;
     last_arg = tokens[num_args];
 
     // Decide whether we are using immediate data or not
-    // The only argument which can validly be immediate is the last one,
-    // and the syntax check has already said the instruction is valid
+    // The only argument which can validly be immediate is the last one
     if (num_args == 0)
     {
       // Zero argument instructions don't have a data type
@@ -439,7 +416,7 @@ public abstract class Instruction
     } else if (last_arg.startsWith(REGISTER_PREFIX))
     {
       this.instructionType = DataType.REGISTER;
-    } else if (last_arg.matches("^" + Assembler.LABEL_REGEX + "$"))
+    } else if (isLabelName(last_arg))
     {
       // Might be a label. Assume Immediate
       this.instructionType = DataType.IMMEDIATE;
@@ -448,21 +425,107 @@ public abstract class Instruction
       // Basic idea is it is not a register, not an immediate, and isn't all caps (not a label)
       throw new InstructionSyntaxError("Invalid token: " + last_arg);
     }
-    
-    // If the encoding is not valid, label values have not been set yet, meaning
-    // we should not continue to generate machine code
-    if (!(encodingValid) || num_args == 0)
+  }
+
+  /**
+   * Whether every occurrence of this instruction with the same (resolved) tokens encodes
+   * to the same machine code, and binding it has no other effect, so that the encoding
+   * may be shared between occurrences (see EncodingMemo)
+   * 
+   * @return True unless the encoding depends on the address, or binding warns
+   */
+  public boolean isShareable()
+  {
+    return true;
+  }
+
+  /**
+   * Return the warning the last bind gave about this instruction, e.g. about an operand
+   * the hardware does not support. The assembler collects these into its result rather
+   * than printing them, so they reach whoever asked for the assembly
+   * 
+   * @return The warning, or null if there was none
+   */
+  public String getWarning()
+  {
+    return null;
+  }
+
+  /**
+   * Whether this instruction stands for other machine instructions (see PseudoInstruction)
+   * 
+   * @return True for pseudo-instructions
+   */
+  public boolean isPseudoInstruction()
+  {
+    return false;
+  }
+
+  /**
+   * Replace the label which is the last argument of this instruction with its value
+   * 
+   * @param value The value of the label
+   */
+  public void resolveSymbol(int value)
+  {
+    assert tokens.length > 1 : "Instruction has no argument to resolve";
+    tokens[tokens.length - 1] = IMMEDIATE_PREFIX + "0x" + Integer.toHexString(value);
+  }
+
+  /**
+   * Check the arguments of this instruction and convert them to their machine code
+   * representation, after which getMachineCode may be called
+   * 
+   * The syntax checker requires labels to be replaced with values first (see resolveSymbol)
+   * 
+   * @param context The ISA tables to encode the arguments with
+   * @param returnAddress The address of this instruction
+   * @throws InstructionSyntaxError If an argument is not where it may be
+   * @throws InvalidRegisterException If an undefined register is encountered
+   * @throws InvalidOpcodeException If the opcode implies an invalid condition
+   */
+  public void bind(EncodingContext context, Integer returnAddress)
+          throws InvalidDataWidthException, InstructionArgumentCountException, InvalidOpcodeException,
+          InstructionSyntaxError, InvalidRegisterException, XmlLookupException {
+    checkInstructionSyntax(tokens);
+
+    int num_args = arguments.length;
+    if (num_args == 0)
     {
       return;
     }
     
     // All but the last argument are certainly registers
     for (int index = 0; index < num_args - 1; index++) {
-      arguments[index] = new Argument(tokens[index + 1].substring(1), this.dataWidth, DataType.REGISTER);
+      arguments[index] = new Argument(tokens[index + 1].substring(1), this.dataWidth, DataType.REGISTER,
+          context.getIsaTables());
     }
 
     // The last argument may be an immediate, depending on the type of instruction
-    arguments[num_args - 1] = new Argument(last_arg.substring(1), this.dataWidth, this.instructionType);
+    arguments[num_args - 1] = new Argument(tokens[num_args].substring(1), this.dataWidth, this.instructionType,
+        context.getIsaTables());
+  }
+
+  /**
+   * Whether the token looks like a label (see Assembler.LABEL_REGEX)
+   *
+   * @param token The token to check
+   * @return True if the token is one or more label characters
+   */
+  protected static boolean isLabelName(String token)
+  {
+    if (token.isEmpty())
+    {
+      return false;
+    }
+    for (int index = 0; index < token.length(); index++)
+    {
+      if (!Lexer.isLabelCharacter(token.charAt(index)))
+      {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -472,8 +535,8 @@ public abstract class Instruction
    * More syntax checking ought to be moved into this function
    *
    * @param tokens The instruction to check
-   * @throws InstructionSyntaxError Triggers if an immediate was found where we weren't expecting one
-   * or a token we could not classify was found.
+   * @throws InstructionSyntaxError Triggers if an immediate was found where we weren't expecting one,
+   * an immediate is not a 32-bit hexadecimal number, or a token we could not classify was found.
    */
   protected static void checkInstructionSyntax(String[] tokens)
       throws InstructionSyntaxError
@@ -497,7 +560,8 @@ public abstract class Instruction
       {
         if (index == tokens.length - 1)
         {
-          // No problem. This is the last argument and may be an immediate
+          // No problem. This is the last argument and may be an immediate, if it is a number
+          checkImmediate(tokens[index]);
           continue;
         }
         else 
@@ -509,4 +573,38 @@ public abstract class Instruction
     }
   }
 
+  /**
+   * Checks that an immediate token is a hexadecimal number of at most 32 bits, as
+   * Argument.parseImmediate expects
+   *
+   * @param token The immediate, including IMMEDIATE_PREFIX
+   * @throws InstructionSyntaxError If the immediate is not such a number
+   */
+  private static void checkImmediate(String token) throws InstructionSyntaxError
+  {
+    int digitsStart = IMMEDIATE_PREFIX.length() + HEX_PREFIX.length();
+    if (!token.startsWith(HEX_PREFIX, IMMEDIATE_PREFIX.length()) || token.length() == digitsStart)
+    {
+      throw new InstructionSyntaxError("Immediate is not a hexadecimal number: " + token);
+    }
+
+    int significantStart = digitsStart;
+    for (int index = digitsStart; index < token.length(); index++)
+    {
+      if (Character.digit(token.charAt(index), 16) < 0)
+      {
+        throw new InstructionSyntaxError("Immediate is not a hexadecimal number: " + token);
+      }
+      if (significantStart == index && token.charAt(index) == '0')
+      {
+        significantStart++;
+      }
+    }
+
+    if (token.length() - significantStart > MAX_IMMEDIATE_DIGITS)
+    {
+      throw new InstructionSyntaxError("Immediate is larger than 32 bits: " + token);
+    }
+  }
+
 }
@@ -4,18 +4,40 @@ public class InvInstruction extends Instruction
 {
   static final int INV_ENCODING = 0x1F;
 
-  protected InvInstruction(String[] tokens, boolean encodingValid, Integer returnAddress)
+  private String warning = null;
+
+  protected InvInstruction(String[] tokens, Mnemonic mnemonic)
+          throws InvalidDataWidthException, InstructionArgumentCountException, InstructionSyntaxError {
+    super(tokens, mnemonic);
+  }
+
+  @Override
+  public boolean isShareable()
+  {
+    // Every occurrence should be warned about
+    return false;
+  }
+
+  @Override
+  public void bind(EncodingContext context, Integer returnAddress)
           throws InvalidDataWidthException, InstructionArgumentCountException, InvalidOpcodeException,
           InstructionSyntaxError, InvalidRegisterException, XmlLookupException {
-    super(tokens, encodingValid, INV_ENCODING, TWO_ARGUMENTS);
+    warning = null;
+    super.bind(context, returnAddress);
     
     if (this.instructionType == DataType.IMMEDIATE
         && this.arguments[1].getMachineCodeRepresentation() > 0x7FFFF)
     {
-      System.err.println("Attention: As of today (15 November, 2017),"
+      warning = "Attention: As of today (15 November, 2017),"
           + "the TigerCat hardware does not support invd with an immediate"
-          + "larger than 0x7FFFF");
+          + "larger than 0x7FFFF";
     }
   }
 
+  @Override
+  public String getWarning()
+  {
+    return warning;
+  }
+
 }
@@ -0,0 +1,289 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : IsaTables.java
+ * Description  : Register and condition-code lookup tables, loaded once from magicNumbers.xml
+ */
+
+package tigercat.instruction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Register and condition-code lookup tables, loaded once from magicNumbers.xml
+ *
+ * The XML is read from the classpath and flattened into immutable open-addressing tables,
+ * so looking up a register or condition costs a single hash probe and allocates nothing.
+ * A counting copy of the tables (see counting) also counts its lookups, for reports.
+ */
+public final class IsaTables
+{
+  /**
+   * The lookup file, relative to the root of the classpath
+   */
+  public static final String LOOKUP_RESOURCE = "/magicNumbers.xml";
+
+  // Returned by lookups for unknown names
+  static final int NOT_FOUND = -1;
+
+  private static final String SINGLE_WIDTH_NAME = "single";
+  private static final String DOUBLE_WIDTH_NAME = "double";
+
+  private static volatile IsaTables defaultTables = null;
+
+  // Indexed by DataWidth.ordinal()
+  private final CodeTable[] registerCodes;
+  private final CodeTable conditionCodes;
+
+  // Null unless these tables count their lookups
+  private final LongAdder lookups;
+
+  private IsaTables(CodeTable[] registerCodes, CodeTable conditionCodes, LongAdder lookups)
+  {
+    this.registerCodes = registerCodes;
+    this.conditionCodes = conditionCodes;
+    this.lookups = lookups;
+  }
+
+  /**
+   * Return a copy of these tables which counts the lookups made through it
+   *
+   * @return The counting tables, sharing these tables' contents
+   */
+  public IsaTables counting()
+  {
+    return new IsaTables(registerCodes, conditionCodes, new LongAdder());
+  }
+
+  /**
+   * @return The number of registers and conditions looked up, or 0 if these tables do not count
+   */
+  public long getLookupCount()
+  {
+    return lookups == null ? 0 : lookups.sum();
+  }
+
+  /**
+   * Return the tables loaded from LOOKUP_RESOURCE, loading them on first use
+   *
+   * @return The default ISA tables
+   * @throws XmlLookupException If the lookup file is missing or invalid
+   */
+  public static IsaTables getDefault() throws XmlLookupException
+  {
+    IsaTables tables = defaultTables;
+    if (tables == null)
+    {
+      synchronized (IsaTables.class)
+      {
+        tables = defaultTables;
+        if (tables == null)
+        {
+          tables = load(LOOKUP_RESOURCE);
+          defaultTables = tables;
+        }
+      }
+    }
+    return tables;
+  }
+
+  /**
+   * Load the tables from an XML resource on the classpath
+   *
+   * @param resource Name of the resource, as for Class.getResourceAsStream
+   * @return The loaded tables
+   * @throws XmlLookupException If the resource is missing, malformed, or defines a name twice
+   */
+  public static IsaTables load(String resource) throws XmlLookupException
+  {
+    Document lookupDoc;
+    try (InputStream stream = IsaTables.class.getResourceAsStream(resource))
+    {
+      if (stream == null)
+      {
+        throw new XmlLookupException("XML file not found: " + resource + ".");
+      }
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      DocumentBuilder builder = factory.newDocumentBuilder();
+      lookupDoc = builder.parse(stream);
+    } catch (ParserConfigurationException | SAXException | IOException e) {
+      throw new XmlLookupException("XML file not found: " + resource + ".");
+    }
+
+    Map<String, Integer> singleRegisters = new LinkedHashMap<>();
+    Map<String, Integer> doubleRegisters = new LinkedHashMap<>();
+    NodeList registers = lookupDoc.getElementsByTagName("register");
+    for (int index = 0; index < registers.getLength(); index++)
+    {
+      Element register = (Element) registers.item(index);
+      String name = register.getAttribute("name");
+      String width = register.getAttribute("data_width");
+
+      Map<String, Integer> target;
+      if (width.equals(SINGLE_WIDTH_NAME)) {
+        target = singleRegisters;
+      } else if (width.equals(DOUBLE_WIDTH_NAME)) {
+        target = doubleRegisters;
+      } else {
+        throw new XmlLookupException("Unrecognized datawidth argument");
+      }
+
+      if (target.put(name, decode(register, name)) != null)
+      {
+        throw new XmlLookupException("More than one matching register found for: " + name
+            + " (this is a bug in the assembler.");
+      }
+    }
+
+    Map<String, Integer> conditions = new LinkedHashMap<>();
+    NodeList codes = lookupDoc.getElementsByTagName("code");
+    for (int index = 0; index < codes.getLength(); index++)
+    {
+      Element code = (Element) codes.item(index);
+      String condition = code.getAttribute("condition");
+      if (conditions.put(condition, decode(code, condition)) != null)
+      {
+        throw new XmlLookupException("More than one matching condition code found for: " + condition
+            + " (this is a bug in the assembler.");
+      }
+    }
+
+    CodeTable[] registerCodes = new CodeTable[Instruction.DataWidth.values().length];
+    registerCodes[Instruction.DataWidth.SINGLE_WORD.ordinal()] = new CodeTable(singleRegisters);
+    registerCodes[Instruction.DataWidth.DOUBLE_WORD.ordinal()] = new CodeTable(doubleRegisters);
+    return new IsaTables(registerCodes, new CodeTable(conditions), null);
+  }
+
+  private static int decode(Element element, String name) throws XmlLookupException
+  {
+    try
+    {
+      return Integer.decode(element.getTextContent());
+    } catch (NumberFormatException e)
+    {
+      throw new XmlLookupException("XML lookup of '" + name + "' failed.");
+    }
+  }
+
+  /**
+   * Look up the encoding of a register
+   *
+   * @param registerName Name of the register, without REGISTER_PREFIX
+   * @param dataWidth Whether to look up a single- or double-word register
+   * @return The encoding, or NOT_FOUND
+   */
+  int getRegisterCode(String registerName, Instruction.DataWidth dataWidth)
+  {
+    if (lookups != null)
+    {
+      lookups.increment();
+    }
+    return registerCodes[dataWidth.ordinal()].get(registerName);
+  }
+
+  /**
+   * Look up the encoding of a jump condition
+   *
+   * @param condition The condition suffix, e.g. ge
+   * @return The encoding, or NOT_FOUND
+   */
+  int getConditionCode(String condition)
+  {
+    if (lookups != null)
+    {
+      lookups.increment();
+    }
+    return conditionCodes.get(condition);
+  }
+
+  /**
+   * Return the names of the registers of one width, as written after REGISTER_PREFIX
+   *
+   * @param doubleWord Whether to list the double-word registers, rather than the single
+   * @return The names, in the order of the lookup file
+   */
+  public Set<String> getRegisterNames(boolean doubleWord)
+  {
+    Instruction.DataWidth dataWidth = doubleWord ? Instruction.DataWidth.DOUBLE_WORD : Instruction.DataWidth.SINGLE_WORD;
+    return registerCodes[dataWidth.ordinal()].names;
+  }
+
+  /**
+   * Return the jump conditions, as written after the jmp of a mnemonic
+   *
+   * @return The conditions, in the order of the lookup file
+   */
+  public Set<String> getConditionNames()
+  {
+    return conditionCodes.names;
+  }
+
+  /**
+   * Immutable open-addressing map from names to non-negative codes
+   */
+  private static final class CodeTable
+  {
+    private final String[] keys;
+    private final int[] codes;
+    private final int mask;
+    private final Set<String> names;
+
+    CodeTable(Map<String, Integer> entries)
+    {
+      names = Collections.unmodifiableSet(new LinkedHashSet<>(entries.keySet()));
+
+      // Keep the table at most half full so probes stay short
+      int capacity = Integer.highestOneBit(Math.max(1, entries.size()) * 2) * 2;
+      keys = new String[capacity];
+      codes = new int[capacity];
+      mask = capacity - 1;
+
+      for (Map.Entry<String, Integer> entry : entries.entrySet())
+      {
+        int slot = spread(entry.getKey().hashCode()) & mask;
+        while (keys[slot] != null)
+        {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = entry.getKey();
+        codes[slot] = entry.getValue();
+      }
+    }
+
+    int get(String key)
+    {
+      int slot = spread(key.hashCode()) & mask;
+      String candidate;
+      while ((candidate = keys[slot]) != null)
+      {
+        if (candidate.equals(key))
+        {
+          return codes[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      return NOT_FOUND;
+    }
+
+    private static int spread(int hash)
+    {
+      return hash ^ (hash >>> 16);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : MachineCodeSink.java
+ * Description  : Growable byte buffer which instructions encode themselves into
+ */
+
+package tigercat.instruction;
+
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer which instructions encode themselves into
+ *
+ * Instruction words are written most significant byte first, the same order
+ * Instruction.convertIntToByteArray uses, without boxing or temporary arrays.
+ */
+public class MachineCodeSink
+{
+  private static final int DEFAULT_CAPACITY = 256;
+
+  private byte[] buffer;
+  private int size;
+  private final boolean growable;
+
+  public MachineCodeSink()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity Number of bytes to reserve up front, e.g. the size of the program
+   */
+  public MachineCodeSink(int capacity)
+  {
+    this.buffer = new byte[Math.max(capacity, Instruction.BYTES_PER_INSTRUCTION)];
+    this.size = 0;
+    this.growable = true;
+  }
+
+  /**
+   * Create a sink which writes into part of a shared, already sized, buffer
+   *
+   * Used to encode separate parts of a program into one output at the same time. The
+   * sink never grows: writing past the end of the buffer is an error.
+   *
+   * @param buffer The buffer to write into
+   * @param offset Offset, in bytes, at which to write the first word
+   */
+  public MachineCodeSink(byte[] buffer, int offset)
+  {
+    this.buffer = buffer;
+    this.size = offset;
+    this.growable = false;
+  }
+
+  /**
+   * Append one 32-bit instruction word
+   *
+   * @param word The encoded instruction
+   */
+  public void putWord(int word)
+  {
+    ensureCapacity(size + Instruction.BYTES_PER_INSTRUCTION);
+    buffer[size]     = (byte) (word >>> 24);
+    buffer[size + 1] = (byte) (word >>> 16);
+    buffer[size + 2] = (byte) (word >>> 8);
+    buffer[size + 3] = (byte) word;
+    size += Instruction.BYTES_PER_INSTRUCTION;
+  }
+
+  /**
+   * Leave a gap in the machine code, e.g. where an instruction failed to encode, so the
+   * words after it still land at their own addresses
+   *
+   * @param offset Offset, in bytes, at which to write the next word. Not before the current one
+   */
+  public void skipTo(int offset)
+  {
+    assert offset >= size : "Cannot skip backwards";
+    ensureCapacity(offset);
+    size = offset;
+  }
+
+  /**
+   * Read back a word which has already been written
+   *
+   * @param offset Offset, in bytes, of the word
+   * @return The word
+   */
+  int getWord(int offset)
+  {
+    return (buffer[offset] & 0xFF) << 24
+        | (buffer[offset + 1] & 0xFF) << 16
+        | (buffer[offset + 2] & 0xFF) << 8
+        | (buffer[offset + 3] & 0xFF);
+  }
+
+  /**
+   * Return the number of bytes written so far, including the offset of a shared buffer
+   *
+   * @return The size of the machine code in bytes
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Forget everything written so far, keeping the buffer for reuse
+   */
+  public void reset()
+  {
+    size = 0;
+  }
+
+  /**
+   * Return the bytes written so far. If the sink was sized exactly, this is the
+   * backing array itself rather than a copy, so the sink must not be reused afterwards.
+   *
+   * @return The machine code
+   */
+  public byte[] toByteArray()
+  {
+    if (size == buffer.length)
+    {
+      return buffer;
+    }
+    return Arrays.copyOf(buffer, size);
+  }
+
+  /**
+   * Return the bytes written so far as boxed Bytes, for the Byte[] based API
+   *
+   * @return The machine code
+   */
+  public Byte[] toBoxedArray()
+  {
+    Byte[] toReturn = new Byte[size];
+    for (int index = 0; index < size; index++)
+    {
+      toReturn[index] = buffer[index];
+    }
+    return toReturn;
+  }
+
+  private void ensureCapacity(int required)
+  {
+    if (required > buffer.length)
+    {
+      if (!growable)
+      {
+        throw new IndexOutOfBoundsException("Machine code overflows its precomputed size: " + required
+            + " > " + buffer.length + " bytes");
+      }
+      buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+    }
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : Mnemonic.java
+ * Description  : Precomputed table of every assembleable mnemonic
+ */
+
+package tigercat.instruction;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * One entry of the precomputed opcode table: everything which can be known about an
+ * instruction from its mnemonic alone
+ *
+ * Every valid spelling (e.g. addw, addcd, call) has its own entry, so dispatching a
+ * mnemonic costs a single hash lookup, whatever the mnemonic. Spellings which are not
+ * valid, but which the assembler has always recognised as belonging to a family (e.g.
+ * addx, jmpq), map to a family entry without a data width, so they still fail with the
+ * same diagnostics as before.
+ */
+public final class Mnemonic
+{
+  /**
+   * Creates the Instruction for a mnemonic
+   */
+  interface InstructionFactory
+  {
+    Instruction create(String[] tokens, Mnemonic mnemonic)
+        throws InvalidDataWidthException, InstructionSyntaxError, InstructionArgumentCountException,
+        InvalidOpcodeException;
+  }
+
+  // Suffixes selecting the data width of an instruction
+  static final char SINGLE_WORD_SUFFIX = 'w';
+  static final char DOUBLE_WORD_SUFFIX = 'd';
+
+  // Jumps are the jump stem followed by a condition of at most two characters
+  static final String JUMP_STEM = "jmp";
+  private static final int MAX_CONDITION_LENGTH = 2;
+
+  // Valid spellings
+  private static final HashMap<String, Mnemonic> MNEMONICS = new HashMap<>();
+
+  // Stems which take a one-character data width suffix
+  private static final HashMap<String, Mnemonic> WIDTH_FAMILIES = new HashMap<>();
+
+  private static final Mnemonic JUMP_FAMILY =
+      new Mnemonic(JUMP_STEM, JumpInstruction.JUMP_ENCODING, null, Instruction.ONE_ARGUMENT, JumpInstruction::new);
+
+  static
+  {
+    addExact("noop", 0x00, Instruction.DataWidth.SINGLE_WORD, Instruction.ZERO_ARGUMENTS, NoopInstruction::new);
+    addExact("debug", DebugInstruction.DEBUG_ENCODING, Instruction.DataWidth.SINGLE_WORD,
+        Instruction.ZERO_ARGUMENTS, DebugInstruction::new);
+    addWidthFamily("add", AddInstruction.ADD_ENCODING, Instruction.THREE_ARGUMENTS, AddInstruction::new);
+    addWidthFamily("addc", AddInstruction.ADDC_ENCODING, Instruction.THREE_ARGUMENTS, AddInstruction::new);
+    addWidthFamily("sub", SubInstruction.SUB_ENCODING, Instruction.THREE_ARGUMENTS, SubInstruction::new);
+    addWidthFamily("subc", SubInstruction.SUBC_ENCODING, Instruction.THREE_ARGUMENTS, SubInstruction::new);
+    addExact("convs", ConvsInstruction.CONVS_ENCODING, Instruction.DataWidth.SINGLE_WORD,
+        Instruction.TWO_ARGUMENTS, ConvsInstruction::new);
+    addExact("convu", 0x00, null, Instruction.TWO_ARGUMENTS, (tokens, mnemonic) -> {
+      // There are no plans to implement this
+      throw new InvalidOpcodeException(tokens[0] + " not assembleable: Use a movw $0x0 to the top bits");
+    });
+    addWidthFamily("ssr", SsrInstruction.SSR_ENCODING, Instruction.THREE_ARGUMENTS, SsrInstruction::new);
+    addWidthFamily("sur", SurInstruction.SUR_ENCODING, Instruction.THREE_ARGUMENTS, SurInstruction::new);
+    addWidthFamily("sl", SlInstruction.SL_ENCODING, Instruction.THREE_ARGUMENTS, SlInstruction::new);
+    addWidthFamily("push", PushInstruction.PUSH_ENCODING, Instruction.ONE_ARGUMENT, PushInstruction::new);
+    addWidthFamily("pop", PopInstruction.POP_ENCODING, Instruction.ONE_ARGUMENT, PopInstruction::new);
+    addWidthFamily("mov", 0x00, Instruction.TWO_ARGUMENTS, MoveInstruction::new);
+    addWidthFamily("load", LoadInstruction.LOAD_ENCODING, Instruction.TWO_ARGUMENTS, LoadInstruction::new);
+    addWidthFamily("sto", StoreInstruction.STORE_ENCODING, Instruction.TWO_ARGUMENTS, StoreInstruction::new);
+    addWidthFamily("and", AndInstruction.AND_ENCODING, Instruction.THREE_ARGUMENTS, AndInstruction::new);
+    addWidthFamily("or", OrInstruction.OR_ENCODING, Instruction.THREE_ARGUMENTS, OrInstruction::new);
+    addWidthFamily("xor", XorInstruction.XOR_ENCODING, Instruction.THREE_ARGUMENTS, XorInstruction::new);
+    addWidthFamily("inv", InvInstruction.INV_ENCODING, Instruction.TWO_ARGUMENTS, InvInstruction::new);
+    addExact(JUMP_STEM, JumpInstruction.JUMP_ENCODING, Instruction.DataWidth.DOUBLE_WORD,
+        Instruction.ONE_ARGUMENT, JumpInstruction::new);
+    addWidthFamily("cmp", CmpInstruction.CMP_ENCODING, Instruction.TWO_ARGUMENTS, CmpInstruction::new);
+    addExact("readwcc", 0x00, null, Instruction.ZERO_ARGUMENTS, (tokens, mnemonic) -> {
+      // There are no plans to implement this
+      throw new InvalidOpcodeException(tokens[0] + " not currently in the core or assembler");
+    });
+    addExact("call", 0x00, Instruction.DataWidth.DOUBLE_WORD, Instruction.ONE_ARGUMENT, CallInstruction::new);
+    addExact("ret", 0x00, Instruction.DataWidth.SINGLE_WORD, Instruction.ZERO_ARGUMENTS, RetInstruction::new);
+  }
+
+  private final String name;
+  private final int encoding;
+  private final Instruction.DataWidth dataWidth;
+  private final int argumentCount;
+  private final InstructionFactory factory;
+
+  private Mnemonic(String name, int encoding, Instruction.DataWidth dataWidth, int argumentCount,
+                   InstructionFactory factory)
+  {
+    this.name = name;
+    this.encoding = encoding;
+    this.dataWidth = dataWidth;
+    this.argumentCount = argumentCount;
+    this.factory = factory;
+  }
+
+  private static void addExact(String name, int encoding, Instruction.DataWidth dataWidth, int argumentCount,
+                               InstructionFactory factory)
+  {
+    MNEMONICS.put(name, new Mnemonic(name, encoding, dataWidth, argumentCount, factory));
+  }
+
+  private static void addWidthFamily(String stem, int encoding, int argumentCount, InstructionFactory factory)
+  {
+    WIDTH_FAMILIES.put(stem, new Mnemonic(stem, encoding, null, argumentCount, factory));
+    addExact(stem + SINGLE_WORD_SUFFIX, encoding, Instruction.DataWidth.SINGLE_WORD, argumentCount, factory);
+    addExact(stem + DOUBLE_WORD_SUFFIX, encoding, Instruction.DataWidth.DOUBLE_WORD, argumentCount, factory);
+  }
+
+  /**
+   * Find the table entry for a mnemonic
+   *
+   * @param opcode The mnemonic, e.g. movw
+   * @return The entry for the mnemonic, or null if it is not an instruction at all
+   */
+  public static Mnemonic lookup(String opcode)
+  {
+    Mnemonic mnemonic = MNEMONICS.get(opcode);
+    if (mnemonic != null)
+    {
+      return mnemonic;
+    }
+
+    // Conditional jumps. Unknown conditions are rejected when the jump is bound
+    if (opcode.startsWith(JUMP_STEM) && opcode.length() <= JUMP_STEM.length() + MAX_CONDITION_LENGTH)
+    {
+      return JUMP_FAMILY;
+    }
+
+    // Families with an unknown width suffix. Rejected when the instruction is created
+    if (opcode.length() > 1)
+    {
+      return WIDTH_FAMILIES.get(opcode.substring(0, opcode.length() - 1));
+    }
+
+    return null;
+  }
+
+  /**
+   * Return every valid spelling in the table, e.g. addw and addcd. Conditional jumps are
+   * not listed: they are jmp followed by any condition of the ISA tables (see lookup)
+   *
+   * @return The spellings, in alphabetical order
+   */
+  public static Set<String> getNames()
+  {
+    return Collections.unmodifiableSet(new TreeSet<>(MNEMONICS.keySet()));
+  }
+
+  /**
+   * Create an unbound instruction with this mnemonic
+   *
+   * @param tokens The mnemonic followed by the arguments
+   * @return The new instruction
+   */
+  Instruction create(String[] tokens)
+      throws InvalidDataWidthException, InstructionSyntaxError, InstructionArgumentCountException,
+      InvalidOpcodeException
+  {
+    return factory.create(tokens, this);
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  public int getEncoding()
+  {
+    return encoding;
+  }
+
+  /**
+   * Return the data width implied by the mnemonic
+   *
+   * @return The data width, or null if the mnemonic does not spell a valid width
+   */
+  Instruction.DataWidth getDataWidth()
+  {
+    return dataWidth;
+  }
+
+  public int getArgumentCount()
+  {
+    return argumentCount;
+  }
+}
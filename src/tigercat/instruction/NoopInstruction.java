@@ -1,30 +1,22 @@
 package tigercat.instruction;
 
-public class NoopInstruction extends Instruction
+public class NoopInstruction extends PseudoInstruction
 {
-  Instruction childInstruction;
-  
-  @Override
-  public Integer getSize()
-  {
-    return childInstruction.getSize();
+  protected NoopInstruction(String[] tokens, Mnemonic mnemonic)
+          throws InvalidDataWidthException, InstructionArgumentCountException, InstructionSyntaxError {
+    super(tokens, mnemonic);
   }
-  
+
   @Override
-  public Byte[] getMachineCode() throws UnencodeableImmediateException
-  {
-    return childInstruction.getMachineCode();
-  }
-  
-  protected NoopInstruction(String[] tokens, boolean encodingValid, Integer returnAddress)
-          throws InvalidDataWidthException, InstructionArgumentCountException, InvalidOpcodeException,
-          InstructionSyntaxError, InvalidRegisterException, XmlLookupException {
-    super(tokens, encodingValid, 0x00, ZERO_ARGUMENTS);
+  protected Instruction[] expand(EncodingContext context, int returnAddress)
+          throws InvalidRegisterException, InvalidOpcodeException, XmlLookupException {
+    // Noop is encoded as an unconditionally false jump: jmpf %arg1
+    Argument never = new ConditionCode("f", DataWidth.DOUBLE_WORD, context.getIsaTables());
+    Argument target = new Argument("arg1", DataWidth.DOUBLE_WORD, DataType.REGISTER, context.getIsaTables());
 
-    // Noop is encoded as an unconditionally false jump
-    String child = new String("jmpf %arg1");
-    
-    childInstruction = Instruction.createInstruction(child, encodingValid, returnAddress);
+    return new Instruction[] {
+        new ExpandedInstruction(JumpInstruction.JUMP_ENCODING, DataWidth.DOUBLE_WORD, DataType.REGISTER,
+            never, target) };
   }
   
 }
@@ -4,10 +4,9 @@ public class OrInstruction extends Instruction
 {
   static final int OR_ENCODING = 0x1D;
 
-  protected OrInstruction(String[] tokens, boolean encodingValid, Integer returnAddress)
-          throws InvalidDataWidthException, InstructionArgumentCountException, InvalidOpcodeException,
-          InstructionSyntaxError, InvalidRegisterException, XmlLookupException {
-    super(tokens, encodingValid, OR_ENCODING, THREE_ARGUMENTS);
+  protected OrInstruction(String[] tokens, Mnemonic mnemonic)
+          throws InvalidDataWidthException, InstructionArgumentCountException, InstructionSyntaxError {
+    super(tokens, mnemonic);
   }
 
 }
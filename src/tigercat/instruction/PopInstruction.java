@@ -4,10 +4,9 @@ public class PopInstruction extends Instruction
 {
   static final int POP_ENCODING = 0x11;
 
-  public PopInstruction(String[] tokens, boolean encodingValid, Integer returnAddress)
-          throws InvalidDataWidthException, InstructionArgumentCountException, InvalidOpcodeException,
-          InstructionSyntaxError, InvalidRegisterException, XmlLookupException {
-    super(tokens, encodingValid, POP_ENCODING, ONE_ARGUMENT);
+  public PopInstruction(String[] tokens, Mnemonic mnemonic)
+          throws InvalidDataWidthException, InstructionArgumentCountException, InstructionSyntaxError {
+    super(tokens, mnemonic);
   }
 
 }
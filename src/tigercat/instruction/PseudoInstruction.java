@@ -0,0 +1,69 @@
+/*
+ * Author       : Team TigerCat
+ * Date         : 18 October 2026
+ * Filename     : PseudoInstruction.java
+ * Description  : Base of every instruction which assembles to other machine instructions
+ */
+
+package tigercat.instruction;
+
+/**
+ * Base of every instruction which assembles to other machine instructions
+ *
+ * Each pseudo-instruction declares its size (getSize, if it expands to more than one
+ * machine instruction), which must be known from the parsed form alone, and its
+ * expansion. The expansion is built from the operands already checked and encoded when
+ * the pseudo-instruction was bound, so no assembly text is built or parsed again, and
+ * encoding costs the same as encoding the machine instructions.
+ */
+abstract class PseudoInstruction extends Instruction
+{
+  private Instruction[] childInstructions;
+
+  protected PseudoInstruction(String[] tokens, Mnemonic mnemonic)
+      throws InvalidDataWidthException, InstructionArgumentCountException, InstructionSyntaxError
+  {
+    super(tokens, mnemonic);
+  }
+
+  /**
+   * Create the bound machine instructions this pseudo-instruction stands for
+   *
+   * Called once the arguments of this pseudo-instruction have been bound
+   *
+   * @param context The ISA tables to look up any further registers or conditions in
+   * @param returnAddress The address of this instruction
+   * @return The machine instructions, in order. Their sizes must add up to getSize()
+   * @throws InvalidRegisterException If a register derived from the arguments is undefined
+   * @throws InvalidOpcodeException If a condition used by the expansion is undefined
+   * @throws XmlLookupException If the ISA tables could not be loaded
+   */
+  protected abstract Instruction[] expand(EncodingContext context, int returnAddress)
+      throws InvalidRegisterException, InvalidOpcodeException, XmlLookupException;
+
+  @Override
+  public boolean isPseudoInstruction()
+  {
+    return true;
+  }
+
+  @Override
+  public void bind(EncodingContext context, Integer returnAddress)
+      throws InvalidDataWidthException, InstructionArgumentCountException, InvalidOpcodeException,
+      InstructionSyntaxError, InvalidRegisterException, XmlLookupException
+  {
+    super.bind(context, returnAddress);
+    childInstructions = expand(context, returnAddress);
+  }
+
+  @Override
+  public void encode(MachineCodeSink sink) throws UnencodeableImmediateException
+  {
+    assert childInstructions != null : "Pseudo-instruction encoded before being bound";
+
+    for (Instruction childInstruction : childInstructions)
+    {
+      childInstruction.encode(sink);
+    }
+  }
+}
@@ -22,9 +22,21 @@ public class Register
     }
   }
   
+  /**
+   * Whether a double-word register is named so that ConvertDoubleRegNameToSingleReg can
+   * name its halves, as the general purpose registers are (ret1, arg2, ...)
+   *
+   * @param doubleWordRegName The name of the register, e.g. arg1
+   * @return False for registers such as SP, which have no single-word halves
+   */
+  public static boolean hasHalves(String doubleWordRegName)
+  {
+    return doubleWordRegName.length() == 4;
+  }
+
   public static String ConvertDoubleRegNameToSingleReg(String doubleWordRegName, HalfReg half)
   {
-    assert doubleWordRegName.length() == 4 : "Expect double-word register names to be four characters long";
+    assert hasHalves(doubleWordRegName) : "Expect double-word register names to be four characters long";
     
     char firstChar = doubleWordRegName.charAt(0);
     char number = doubleWordRegName.charAt(3);
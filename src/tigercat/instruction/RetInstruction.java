@@ -1,29 +1,20 @@
 package tigercat.instruction;
 
-public class RetInstruction extends Instruction
+public class RetInstruction extends PseudoInstruction
 {
-  Instruction childInstruction;
-  
-  @Override
-  public Integer getSize()
-  {
-    return childInstruction.getSize();
+  protected RetInstruction(String[] tokens, Mnemonic mnemonic)
+          throws InvalidDataWidthException, InstructionArgumentCountException, InstructionSyntaxError {
+    super(tokens, mnemonic);
   }
-  
+
   @Override
-  public Byte[] getMachineCode() throws UnencodeableImmediateException
-  {
-    return childInstruction.getMachineCode();
-  }
-  
-  protected RetInstruction(String[] tokens, boolean encodingValid, Integer returnAddress)
-          throws InvalidDataWidthException, InstructionArgumentCountException, InvalidOpcodeException,
-          InstructionSyntaxError, InvalidRegisterException, XmlLookupException {
-    super(tokens, encodingValid, 0x00, ZERO_ARGUMENTS);
+  protected Instruction[] expand(EncodingContext context, int returnAddress) throws InvalidRegisterException, XmlLookupException {
+    // popd %IP
+    Argument instructionPointer = new Argument("IP", DataWidth.DOUBLE_WORD, DataType.REGISTER, context.getIsaTables());
 
-    String child = "popd %IP";
-    
-    childInstruction = Instruction.createInstruction(child, encodingValid, returnAddress);
+    return new Instruction[] {
+        new ExpandedInstruction(PopInstruction.POP_ENCODING, DataWidth.DOUBLE_WORD, DataType.REGISTER,
+            instructionPointer) };
   }
   
 }
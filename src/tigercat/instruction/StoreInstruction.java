@@ -4,10 +4,9 @@ public class StoreInstruction extends Instruction
 {
   static final int STORE_ENCODING = 0x15;
 
-  public StoreInstruction(String[] tokens, boolean encodingValid, Integer returnAddress)
-          throws InvalidDataWidthException, InstructionArgumentCountException, InvalidOpcodeException,
-          InstructionSyntaxError, InvalidRegisterException, XmlLookupException {
-    super(tokens, encodingValid, STORE_ENCODING, TWO_ARGUMENTS);
+  public StoreInstruction(String[] tokens, Mnemonic mnemonic)
+          throws InvalidDataWidthException, InstructionArgumentCountException, InstructionSyntaxError {
+    super(tokens, mnemonic);
   }
 
 }
@@ -4,10 +4,9 @@ public class XorInstruction extends Instruction
 {
   static final int XOR_ENCODING = 0x1E;
 
-  protected XorInstruction(String[] tokens, boolean encodingValid, Integer returnAddress)
-          throws InvalidDataWidthException, InstructionArgumentCountException, InvalidOpcodeException,
-          InstructionSyntaxError, InvalidRegisterException, XmlLookupException {
-    super(tokens, encodingValid, XOR_ENCODING, THREE_ARGUMENTS);
+  protected XorInstruction(String[] tokens, Mnemonic mnemonic)
+          throws InvalidDataWidthException, InstructionArgumentCountException, InstructionSyntaxError {
+    super(tokens, mnemonic);
   }
 
 }
@@ -1,12 +1,23 @@
 package tigercat;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import tigercat.instruction.EncodingContext;
+import tigercat.instruction.IsaTables;
+import tigercat.instruction.XmlLookupException;
 
 public class main
 {
@@ -15,18 +26,141 @@ public class main
     outstream.println("TigerCat Assembler Usage:");
     outstream.println("\tFirst Argument: Input assembly (ASCII) file");
     outstream.println("\tSecond Argument: Output machine code (binary) file");
+    outstream.println("\tOptions:");
+    outstream.println("\t  --pipeline: Assemble in stages, writing output while the input is still being read");
+    outstream.println("\t  --stream: Read the input once per pass, without holding it all in memory");
+    outstream.println("\t  --sync: Force the output to disk before exiting");
+    outstream.println("\t  --no-daemon: Assemble in this JVM, even if a daemon is running");
+    outstream.println("\t  --port N: Port of the daemon to forward to (default: " + AssemblerDaemon.DEFAULT_PORT + ")");
+    outstream.println("\t  --cache DIR: Reuse the output of an identical earlier assembly, cached in DIR");
+    outstream.println("\t  --cache-size MB: Evict the least recently used outputs beyond MB megabytes (default: "
+        + BuildCache.DEFAULT_MAX_BYTES / (1024 * 1024) + ")");
+    outstream.println("\t  --stats: Assemble in this JVM and print the time and allocation of each phase, and counts");
+    outstream.println("\t           of lines, mnemonics, pseudo-instruction words, labels and ISA lookups");
+    outstream.println("\t           With --pipeline, print the depth and stalls of each stage queue instead");
+    outstream.println("\t  --stats-json FILE: As --stats, but write the numbers to FILE as JSON");
+    outstream.println("TigerCat Daemon Usage: --daemon [--port N] to start, --daemon-stop [--port N] to stop");
+    outstream.println("\tWhile a daemon is running, assembling a file forwards it to the daemon");
+    outstream.println("\tOnly the user who started a daemon can use it, through the token in ~/.tigercat");
+    outstream.println("TigerCat Language Server Usage: --lsp, speaking the Language Server Protocol on stdin and stdout");
+    outstream.println("TigerCat Batch Usage: --batch [--jobs N] [--io-threads N] inputs...");
+    outstream.println("\tEach input is a file, a directory, a glob (e.g. 'tests/*.s'), or @manifest listing inputs");
+    outstream.println("\tEach output is written next to its input, as .bin");
+    outstream.println("\t  --jobs N: Assemble N files at once (default: one per CPU)");
+    outstream.println("\t  --io-threads N: Read and write N files at once (default: 4)");
   }
 
-  public static void main(String[] args) throws IOException
+  public static void main(String[] args) throws IOException, XmlLookupException
   {
-    if (args.length < 2)
+    boolean pipeline = false;
+    boolean stream = false;
+    boolean sync = false;
+    boolean batch = false;
+    boolean useDaemon = true;
+    boolean startDaemon = false;
+    boolean stopDaemon = false;
+    boolean languageServer = false;
+    boolean printStats = false;
+    Path statsJson = null;
+    int port = AssemblerDaemon.DEFAULT_PORT;
+    Integer jobs = null;
+    Integer ioThreads = null;
+    Path cacheDirectory = null;
+    long cacheBytes = BuildCache.DEFAULT_MAX_BYTES;
+    List<String> positional = new ArrayList<>();
+    for (int index = 0; index < args.length; index++)
+    {
+      String arg = args[index];
+      if (arg.equals("--pipeline"))
+      {
+        pipeline = true;
+      } else if (arg.equals("--stream"))
+      {
+        stream = true;
+      } else if (arg.equals("--sync"))
+      {
+        sync = true;
+      } else if (arg.equals("--batch"))
+      {
+        batch = true;
+      } else if (arg.equals("--no-daemon"))
+      {
+        useDaemon = false;
+      } else if (arg.equals("--daemon"))
+      {
+        startDaemon = true;
+      } else if (arg.equals("--daemon-stop"))
+      {
+        stopDaemon = true;
+      } else if (arg.equals("--lsp"))
+      {
+        languageServer = true;
+      } else if (arg.equals("--stats"))
+      {
+        printStats = true;
+      } else if (arg.equals("--stats-json") && index + 1 < args.length)
+      {
+        statsJson = Paths.get(args[++index]);
+      } else if (arg.equals("--cache") && index + 1 < args.length)
+      {
+        cacheDirectory = Paths.get(args[++index]);
+      } else if ((arg.equals("--jobs") || arg.equals("--io-threads") || arg.equals("--port")
+          || arg.equals("--cache-size")) && index + 1 < args.length)
+      {
+        int count = parseCount(arg, args[++index]);
+        if (arg.equals("--jobs"))
+        {
+          jobs = count;
+        } else if (arg.equals("--io-threads"))
+        {
+          ioThreads = count;
+        } else if (arg.equals("--cache-size"))
+        {
+          cacheBytes = count * 1024L * 1024;
+        } else
+        {
+          port = count;
+        }
+      } else
+      {
+        positional.add(arg);
+      }
+    }
+
+    if (languageServer)
+    {
+      System.exit(new LanguageServer(EncodingContext.getDefault(), System.in, System.out).run());
+    }
+
+    if (startDaemon)
+    {
+      runDaemon(port);
+      return;
+    }
+
+    if (stopDaemon)
+    {
+      System.exit(stopDaemon(port) ? 0 : 1);
+    }
+
+    if (batch)
+    {
+      if (positional.isEmpty())
+      {
+        printHelp(System.out);
+        System.exit(0);
+      }
+      System.exit(assembleBatch(positional, jobs, ioThreads, sync) ? 0 : 1);
+    }
+
+    if (positional.size() < 2)
     {
       printHelp(System.out);
       System.exit(0);
     }
 
-    Path inputPath = Paths.get(args[0]);
-    Path outputPath = Paths.get(args[1]);
+    Path inputPath = Paths.get(positional.get(0));
+    Path outputPath = Paths.get(positional.get(1));
 
     // Check that the input file exists
     if (!Files.exists(inputPath))
@@ -35,23 +169,331 @@ public class main
       System.exit(1);
     }
 
+    // --pipeline --stats reports on the queues between the stages, rather than the phases
+    boolean pipelineStats = pipeline && !stream && printStats && statsJson == null;
+    if ((printStats || statsJson != null) && !pipelineStats)
+    {
+      AssemblyStats stats = new AssemblyStats();
+      AssemblyResult result = assembleWithStats(inputPath, outputPath, sync, stats);
+      result.printWarnings(System.err);
+      result.print(System.out);
+      if (printStats)
+      {
+        System.out.println();
+        stats.print(System.out);
+      }
+      if (statsJson != null)
+      {
+        Files.write(statsJson, Json.write(stats.toJson()).getBytes(StandardCharsets.UTF_8));
+      }
+      System.exit(result.isSuccess() ? 0 : 1);
+    }
+
+    if (pipeline || stream)
+    {
+      AssemblyPipeline stages = stream ? null : new AssemblyPipeline(new Assembler(EncodingContext.getDefault()));
+      AssemblyResult result = assembleStreamed(inputPath, outputPath, stages, sync);
+      result.printWarnings(System.err);
+      result.print(System.out);
+      if (pipelineStats)
+      {
+        System.out.println();
+        stages.printStats(System.out);
+      }
+      System.exit(result.isSuccess() ? 0 : 1);
+    }
+
+    if (cacheDirectory != null)
+    {
+      BuildCache cache = new BuildCache(cacheDirectory, cacheBytes);
+      cache.setSync(sync);
+      AssemblyResult result = assembleCached(inputPath, outputPath, cache, useDaemon, port, sync);
+      result.printWarnings(System.err);
+      result.print(System.out);
+      System.exit(result.isSuccess() ? 0 : 1);
+    }
+
+    AssemblyResult result = assemble(inputPath, null, useDaemon, port);
+    result.printWarnings(System.err);
+    result.print(System.out);
+    if (!result.isSuccess())
+    {
+      System.exit(1);
+    }
+
+    // Write the machine code followed by an instruction's worth of zeros, to ensure the CPU stalls after executing the program
+    ImageWriter writer = new ImageWriter(outputPath);
+    writer.setSync(sync);
+    writer.write(result.getImage());
+  }
+
+  /**
+   * Assemble on the daemon if one is running, or else in this JVM
+   *
+   * @param source The input, if it has already been read, so exactly that is assembled
+   */
+  static AssemblyResult assemble(Path inputPath, byte[] source, boolean useDaemon, int port)
+      throws IOException, XmlLookupException
+  {
+    AssemblyResult result = useDaemon ? assembleOnDaemon(inputPath, source, port) : null;
+    if (result == null)
+    {
+      if (source == null)
+      {
+        source = Files.readAllBytes(inputPath);
+      }
+      String inputString = new String(source, Charset.defaultCharset());
+
+      Assembler assembler = new Assembler(EncodingContext.getDefault(), ForkJoinPool.commonPool());
+      result = assembler.assembleToResult(inputString, inputPath.toString(), null);
+    }
+    return result;
+  }
+
+  /**
+   * Assemble in this JVM, recording the time and allocation of each phase, from loading
+   * the ISA tables to writing the output, and the counts of the program
+   */
+  static AssemblyResult assembleWithStats(Path inputPath, Path outputPath, boolean sync, AssemblyStats stats)
+      throws IOException, XmlLookupException
+  {
+    stats.startPhase("isaTables");
+    IsaTables isaTables = IsaTables.getDefault().counting();
+    stats.endPhase();
+
+    stats.startPhase("read");
     String inputString = new String(Files.readAllBytes(inputPath), Charset.defaultCharset());
+    stats.endPhase();
+
+    Assembler assembler = new Assembler(new EncodingContext(isaTables, true), ForkJoinPool.commonPool());
+    AssemblyResult result = assembler.assembleToResult(inputString, inputPath.toString(), stats);
+    stats.setIsaLookups(isaTables.getLookupCount());
+
+    if (result.isSuccess())
+    {
+      stats.startPhase("write");
+      ImageWriter writer = new ImageWriter(outputPath);
+      writer.setSync(sync);
+      writer.write(result.getImage());
+      stats.endPhase();
+    }
+    return result;
+  }
+
+  /**
+   * Put the output of an identical earlier assembly in place, if the cache has one, or
+   * else assemble, write the output, and cache it
+   *
+   * A cache which cannot be written to only costs the time of assembling.
+   */
+  static AssemblyResult assembleCached(Path inputPath, Path outputPath, BuildCache cache, boolean useDaemon,
+                                       int port, boolean sync) throws IOException, XmlLookupException
+  {
+    byte[] source = Files.readAllBytes(inputPath);
+    String key = cache.keyFor(source);
 
-    // TODO: Decide whether Assembler should be static class
-    Assembler assembler = new Assembler();
-    byte[] outputMC = assembler.assemble(inputString);
+    BuildCache.Entry entry = cache.lookup(key);
+    if (entry != null)
+    {
+      try
+      {
+        if (entry.getResult().isSuccess())
+        {
+          cache.install(entry, outputPath);
+        }
+        return entry.getResult();
+      } catch (IOException e)
+      {
+        // Evicted since it was looked up, so assemble after all
+      }
+    }
 
-    Files.write(outputPath, outputMC, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-    
-    // Write an instruction's worth of zeros to the end of the output to ensure the CPU stalls after executing the program
-    byte[] zeroPadding = new byte[4];
-    for (int index = 0; index < zeroPadding.length; index ++)
+    AssemblyResult result = assemble(inputPath, source, useDaemon, port);
+    if (result.isSuccess())
+    {
+      ImageWriter writer = new ImageWriter(outputPath);
+      writer.setSync(sync);
+      writer.write(result.getImage());
+    }
+
+    try
+    {
+      cache.store(key, result);
+    } catch (IOException e)
+    {
+      System.err.println("Unable to cache the output: " + e);
+    }
+    return result;
+  }
+
+  /**
+   * Assemble with a StreamingAssembly or an AssemblyPipeline, streaming the machine code
+   * into a temporary file beside the output, which replaces the output only once assembly
+   * has succeeded
+   *
+   * @param pipeline The pipeline to run, or null to assemble in bounded memory with a
+   *                 StreamingAssembly
+   */
+  static AssemblyResult assembleStreamed(Path inputPath, Path outputPath, AssemblyPipeline pipeline, boolean sync)
+      throws IOException, XmlLookupException
+  {
+    Path absoluteOutput = outputPath.toAbsolutePath();
+    Path partial = Files.createTempFile(absoluteOutput.getParent(), absoluteOutput.getFileName().toString(), ".part");
+    try
+    {
+      ImageWriter writer = new ImageWriter(partial);
+      writer.setSync(sync);
+
+      AssemblyResult result;
+      FileChannel output = writer.open();
+      try
+      {
+        if (pipeline == null)
+        {
+          result = new Assembler(EncodingContext.getDefault()).assemble(inputPath, output);
+        } else
+        {
+          try (Reader input = new InputStreamReader(Files.newInputStream(inputPath), Charset.defaultCharset()))
+          {
+            pipeline.run(input, output);
+          }
+          result = pipeline.getResult();
+        }
+      } catch (IOException | RuntimeException e)
+      {
+        output.close();
+        throw e;
+      }
+
+      if (!result.isSuccess())
+      {
+        output.close();
+        return result;
+      }
+
+      // An instruction's worth of zeros, to ensure the CPU stalls after executing the program
+      writer.finish(output);
+      Files.move(partial, outputPath, StandardCopyOption.REPLACE_EXISTING);
+      return result;
+    } finally
+    {
+      Files.deleteIfExists(partial);
+    }
+  }
+
+  private static int parseCount(String option, String value)
+  {
+    try
+    {
+      int count = Integer.parseInt(value);
+      if (count > 0)
+      {
+        return count;
+      }
+    } catch (NumberFormatException e)
+    {
+      // Reported below
+    }
+    System.err.println(option + " needs a positive number, not " + value);
+    System.exit(1);
+    return 0;
+  }
+
+  /**
+   * Assemble every input with a BatchAssembler and print the summary
+   *
+   * @return True if every file assembled
+   */
+  static boolean assembleBatch(List<String> arguments, Integer jobs, Integer ioThreads, boolean sync)
+      throws XmlLookupException
+  {
+    List<Path> inputs;
+    try
+    {
+      inputs = BatchAssembler.expandInputs(arguments);
+    } catch (IOException e)
+    {
+      System.err.println(e.getMessage());
+      return false;
+    }
+
+    BatchAssembler batch = new BatchAssembler(EncodingContext.getDefault());
+    if (jobs != null)
+    {
+      batch.setJobs(jobs);
+    }
+    if (ioThreads != null)
+    {
+      batch.setIoThreads(ioThreads);
+    }
+    batch.setSync(sync);
+
+    long start = System.nanoTime();
+    List<BatchAssembler.FileResult> results = batch.assemble(inputs);
+    return BatchAssembler.printSummary(results, System.nanoTime() - start, System.out);
+  }
+
+  /**
+   * Forward the input to a running daemon
+   *
+   * @param source The input, if it has already been read, in which case it is sent as text
+   * @return The result, or null if no daemon is running or it could not assemble the input,
+   *         in which case the caller assembles it itself
+   */
+  static AssemblyResult assembleOnDaemon(Path inputPath, byte[] source, int port)
+  {
+    try (DaemonClient client = DaemonClient.connect(port))
+    {
+      if (client == null)
+      {
+        return null;
+      }
+      return source == null ? client.assemble(inputPath, 0)
+          : client.assemble(new String(source, Charset.defaultCharset()), 0);
+    } catch (IOException e)
+    {
+      System.err.println(e.getMessage() + "; assembling without the daemon");
+      return null;
+    }
+  }
+
+  /**
+   * Run a daemon until it is asked to stop, or the JVM is
+   */
+  static void runDaemon(int port) throws IOException, XmlLookupException
+  {
+    final AssemblerDaemon daemon = new AssemblerDaemon(EncodingContext.getDefault(), port);
+    daemon.start();
+    Runtime.getRuntime().addShutdownHook(new Thread(daemon::shutdown));
+    System.out.println("TigerCat daemon listening on localhost:" + daemon.getPort());
+
+    try
+    {
+      daemon.awaitShutdown();
+      daemon.awaitTermination(AssemblerDaemon.DEFAULT_TIMEOUT_MILLIS);
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+    System.out.println("TigerCat daemon stopped");
+  }
+
+  /**
+   * Ask the daemon on the port to stop
+   *
+   * @return True if a daemon was running
+   */
+  static boolean stopDaemon(int port) throws IOException
+  {
+    try (DaemonClient client = DaemonClient.connect(port))
     {
-      // Strictly not necessary, since Java initializes everything to zero,
-      // but better safe than sorry!
-      zeroPadding[index] = 0;
+      if (client == null)
+      {
+        System.err.println("No daemon is listening on localhost:" + port);
+        return false;
+      }
+      client.shutdown();
+      return true;
     }
-    
-    Files.write(outputPath, zeroPadding, StandardOpenOption.APPEND);
   }
-}
\ No newline at end of file
+}